@@ -0,0 +1,108 @@
+/**
+ * Copyright (c) 2008-2010  Morten Silcowitz.
+ *
+ * This file is part of the Jinngine physics library
+ *
+ * Jinngine is published under the GPL license, available
+ * at http://www.gnu.org/copyleft/gpl.html.
+ */
+package jinngine.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import jinngine.collision.BroadphaseCollisionDetection;
+import jinngine.collision.DynamicAABBTree;
+import jinngine.collision.ExhaustiveSearch;
+import jinngine.collision.SAP2;
+import jinngine.collision.SAP3;
+import jinngine.collision.SpatialHashGrid;
+import jinngine.collision.SweepAndPrune;
+import jinngine.geometry.Box;
+import jinngine.geometry.Geometry;
+import jinngine.math.Vector3;
+import jinngine.physics.Body;
+import jinngine.util.Pair;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures a single run() of each {@link BroadphaseCollisionDetection} implementation. Boxes are
+ * placed in a jittered grid, where neighbouring boxes are close to touching, and every box oscillates
+ * around its grid position, so overlaps are created and removed all the time.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BroadphaseBenchmark {
+
+	@Param({"SweepAndPrune", "SAP2", "SAP3", "DynamicAABBTree", "SpatialHashGrid", "ExhaustiveSearch"})
+	public String implementation;
+
+	@Param({"1000"})
+	public int boxes;
+
+	private BroadphaseCollisionDetection broadphase;
+	private Body[] bodies;
+	private Vector3[] origins;
+	private double[] phases;
+	private int events = 0;
+	private double time = 0;
+
+	/**
+	 * Create the named broad-phase implementation
+	 */
+	public static BroadphaseCollisionDetection create( String name ) {
+		if ("SweepAndPrune".equals(name)) return new SweepAndPrune();
+		if ("SAP2".equals(name)) return new SAP2();
+		if ("SAP3".equals(name)) return new SAP3();
+		if ("DynamicAABBTree".equals(name)) return new DynamicAABBTree();
+		if ("SpatialHashGrid".equals(name)) return new SpatialHashGrid(2.0);
+		if ("ExhaustiveSearch".equals(name)) return new ExhaustiveSearch();
+		throw new IllegalArgumentException("BroadphaseBenchmark: unknown implementation " + name);
+	}
+
+	@Setup
+	public void setup() {
+		broadphase = create(implementation);
+		broadphase.addHandler(new BroadphaseCollisionDetection.Handler() {
+			public void overlap(Pair<Geometry> pair) { events++; }
+			public void separation(Pair<Geometry> pair) { events++; }
+		});
+
+		Random random = new Random(1);
+		int side = (int)Math.ceil(Math.pow(boxes, 1.0/3.0));
+		bodies = new Body[boxes];
+		origins = new Vector3[boxes];
+		phases = new double[boxes];
+		for (int i=0; i<boxes; i++) {
+			origins[i] = new Vector3( (i%side)*1.05, ((i/side)%side)*1.05, (i/(side*side))*1.05 );
+			phases[i] = random.nextDouble()*2*Math.PI;
+			bodies[i] = new Body("box", new Box(1,1,1));
+			bodies[i].setPosition(origins[i]);
+			broadphase.add(bodies[i].getGeometries().next());
+		}
+		broadphase.run();
+	}
+
+	@Benchmark
+	public int run() {
+		// move boxes, moving each box by a fraction of its size
+		time += 0.1;
+		for (int i=0; i<boxes; i++) {
+			final Vector3 o = origins[i];
+			final double offset = 0.1*Math.sin(time+phases[i]);
+			bodies[i].setPosition(o.x+offset, o.y-offset, o.z+offset);
+		}
+
+		broadphase.run();
+		return events;
+	}
+}
@@ -0,0 +1,28 @@
+/**
+ * Copyright (c) 2008-2010  Morten Silcowitz.
+ *
+ * This file is part of the Jinngine physics library
+ *
+ * Jinngine is published under the GPL license, available
+ * at http://www.gnu.org/copyleft/gpl.html.
+ */
+package jinngine.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Run the jinngine benchmarks. All JMH command line options are accepted, for instance a regular
+ * expression selecting the benchmarks to run. The GC profiler is always enabled, so allocation
+ * rates (gc.alloc.rate.norm, bytes per operation) are reported along with the timings.
+ */
+public final class Main {
+	public static void main( String[] args ) throws Exception {
+		new Runner(new OptionsBuilder()
+			.parent(new CommandLineOptions(args))
+			.addProfiler(GCProfiler.class)
+			.build()).run();
+	}
+}
@@ -0,0 +1,79 @@
+/**
+ * Copyright (c) 2008-2010  Morten Silcowitz.
+ *
+ * This file is part of the Jinngine physics library
+ *
+ * Jinngine is published under the GPL license, available
+ * at http://www.gnu.org/copyleft/gpl.html.
+ */
+package jinngine.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import jinngine.collision.GJK;
+import jinngine.geometry.Box;
+import jinngine.geometry.contact.SupportMapContactGenerator;
+import jinngine.math.Quaternion;
+import jinngine.math.Vector3;
+import jinngine.physics.Body;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures GJK.run() and SupportMapContactGenerator.run() for a pair of boxes. The second box is
+ * rotated and placed above the first one, such that the boxes are either separated by more than the
+ * envelope, within the envelope, or penetrating each other.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class NarrowphaseBenchmark {
+
+	@Param({"separated", "touching", "penetrating"})
+	public String configuration;
+
+	private Box a, b;
+	private final GJK gjk = new GJK();
+	private SupportMapContactGenerator generator;
+	private final Vector3 pa = new Vector3(), pb = new Vector3();
+
+	@Setup
+	public void setup() {
+		a = new Box(1,1,1);
+		b = new Box(1,1,1);
+		Body bodya = new Body("a", a);
+		Body bodyb = new Body("b", b);
+
+		final double height;
+		if ("separated".equals(configuration)) {
+			height = 2.0;
+		} else if ("touching".equals(configuration)) {
+			height = 1.1;
+		} else {
+			height = 0.9;
+		}
+		bodya.setPosition(0,0,0);
+		bodyb.setPosition(0.1,height,0.2);
+		bodyb.setOrientation(Quaternion.rotation(0.3, new Vector3(1,1,0).normalize()).toRotationMatrix3());
+		generator = new SupportMapContactGenerator(a, a, b, b);
+	}
+
+	@Benchmark
+	public boolean gjk() {
+		gjk.run(a, b, pa, pb, Double.POSITIVE_INFINITY, 1e-7, 32);
+		return gjk.getState().intersection;
+	}
+
+	@Benchmark
+	public SupportMapContactGenerator contactGenerator() {
+		generator.run();
+		return generator;
+	}
+}
@@ -0,0 +1,165 @@
+/**
+ * Copyright (c) 2008-2010  Morten Silcowitz.
+ *
+ * This file is part of the Jinngine physics library
+ *
+ * Jinngine is published under the GPL license, available
+ * at http://www.gnu.org/copyleft/gpl.html.
+ */
+package jinngine.benchmarks;
+
+import jinngine.collision.SAP2;
+import jinngine.geometry.Box;
+import jinngine.geometry.Sphere;
+import jinngine.math.Vector3;
+import jinngine.physics.Body;
+import jinngine.physics.DeactivationPolicy;
+import jinngine.physics.DefaultScene;
+import jinngine.physics.Scene;
+import jinngine.physics.constraint.joint.UniversalJoint;
+import jinngine.physics.force.GravityForce;
+import jinngine.physics.solver.NonsmoothNonlinearConjugateGradient;
+
+/**
+ * Canonical scenes used by the benchmarks. Scenes are created with a deactivation policy
+ * that never deactivates bodies, such that the amount of work done in each time-step
+ * stays roughly the same during a benchmark run.
+ */
+public final class Scenes {
+
+	/** Names of the available scenes */
+	public static final String STACK = "stack", PYRAMID = "pyramid", RAGDOLLS = "ragdolls", SPHERES = "spheres";
+
+	// deactivation policy that keeps all bodies active
+	private static final DeactivationPolicy active = new DeactivationPolicy() {
+		public boolean shouldBeDeactivated(Body b) { return false; }
+		public boolean shouldBeActivated(Body b) { return true; }
+		public void deactivate(Body b) { b.deactivated = true; }
+		public void activate(Body b) { b.deactivated = false; }
+		public void forceActivate(Body b) { b.deactivated = false; }
+	};
+
+	private Scenes() {}
+
+	/**
+	 * Create a new scene with the default broad-phase and solver
+	 */
+	public static DefaultScene createScene() {
+		DefaultScene scene = new DefaultScene(new SAP2(), new NonsmoothNonlinearConjugateGradient(45), active);
+		scene.setTimestep(0.05);
+		return scene;
+	}
+
+	/**
+	 * Create one of the named scenes
+	 */
+	public static DefaultScene create( String name ) {
+		DefaultScene scene = createScene();
+		if (STACK.equals(name)) {
+			stack(scene, 20);
+		} else if (PYRAMID.equals(name)) {
+			pyramid(scene, 10);
+		} else if (RAGDOLLS.equals(name)) {
+			ragdolls(scene, 12);
+		} else if (SPHERES.equals(name)) {
+			spheres(scene, 8);
+		} else {
+			throw new IllegalArgumentException("Scenes: unknown scene " + name);
+		}
+		return scene;
+	}
+
+	/**
+	 * Add a fixed floor with its top face at y=0
+	 */
+	public static void floor( Scene scene ) {
+		Body floor = new Body("floor", new Box(200,10,200));
+		floor.setPosition(0,-5,0);
+		floor.setFixed(true);
+		scene.addBody(floor);
+	}
+
+	/**
+	 * A single column of unit boxes
+	 */
+	public static void stack( Scene scene, int height ) {
+		floor(scene);
+		for (int i=0; i<height; i++) {
+			box(scene, 1,1,1, 0, 0.5+i, 0);
+		}
+	}
+
+	/**
+	 * A two dimensional pyramid of unit boxes, with the given number of boxes in the bottom row
+	 */
+	public static void pyramid( Scene scene, int base ) {
+		floor(scene);
+		for (int i=0; i<base; i++) {
+			for (int j=0; j<base-i; j++) {
+				box(scene, 1,1,1, j*1.05 + i*0.525 - base*0.525, 0.5+i, 0);
+			}
+		}
+	}
+
+	/**
+	 * A pile of simple ragdolls, made from boxes connected by universal joints
+	 */
+	public static void ragdolls( Scene scene, int count ) {
+		floor(scene);
+		for (int i=0; i<count; i++) {
+			ragdoll(scene, (i%2)*0.5, 3.5 + i*3.5, (i%3)*0.5);
+		}
+	}
+
+	/**
+	 * A grid of spheres falling onto the floor, each layer of size x size spheres
+	 */
+	public static void spheres( Scene scene, int size ) {
+		floor(scene);
+		for (int layer=0; layer<4; layer++) {
+			for (int i=0; i<size; i++) {
+				for (int j=0; j<size; j++) {
+					Body body = new Body("sphere", new Sphere(0.5));
+					body.setPosition(i*1.1 - size*0.55 + (layer%2)*0.3, 1.0 + layer*2.5 + ((i+j)%3)*0.2, j*1.1 - size*0.55);
+					scene.addBody(body);
+					scene.addForce(new GravityForce(body));
+				}
+			}
+		}
+	}
+
+	private static Body box( Scene scene, double x, double y, double z, double px, double py, double pz ) {
+		Body body = new Body("box", new Box(x,y,z));
+		body.setPosition(px,py,pz);
+		scene.addBody(body);
+		scene.addForce(new GravityForce(body));
+		return body;
+	}
+
+	// a ragdoll similar to the one in RagdollExample, with torso, head, arms and legs
+	private static void ragdoll( Scene scene, double x, double y, double z ) {
+		Vector3 xaxis = new Vector3(1,0,0), yaxis = new Vector3(0,1,0), zaxis = new Vector3(0,0,1);
+
+		Body head = box(scene, 1,1,1, x, y+1.5, z);
+		Body torso = box(scene, 1.7,2,1.2, x, y, z);
+		scene.addConstraint(new UniversalJoint(head, torso, new Vector3(x,y+1,z), zaxis, xaxis));
+
+		Body leftarm = box(scene, 0.5,2,0.5, x+1.2, y, z);
+		scene.addConstraint(limited(new UniversalJoint(torso, leftarm, new Vector3(x+1.2,y+1,z), zaxis, yaxis), 1.0));
+		Body rightarm = box(scene, 0.5,2,0.5, x-1.2, y, z);
+		scene.addConstraint(limited(new UniversalJoint(torso, rightarm, new Vector3(x-1.2,y+1,z), zaxis, yaxis), 1.0));
+
+		Body leftleg = box(scene, 0.5,2,0.5, x+0.5, y-2.1, z);
+		scene.addConstraint(limited(new UniversalJoint(torso, leftleg, new Vector3(x+0.5,y-1.05,z), xaxis, zaxis), 0.5));
+		Body rightleg = box(scene, 0.5,2,0.5, x-0.5, y-2.1, z);
+		scene.addConstraint(limited(new UniversalJoint(torso, rightleg, new Vector3(x-0.5,y-1.05,z), xaxis, zaxis), 0.5));
+	}
+
+	private static UniversalJoint limited( UniversalJoint joint, double limit ) {
+		joint.getFirstAxisControler().setLimits(-limit, limit);
+		joint.getSecondAxisControler().setLimits(-limit, limit);
+		joint.getFirstAxisControler().setFrictionMagnitude(0.01);
+		joint.getSecondAxisControler().setFrictionMagnitude(0.01);
+		return joint;
+	}
+}
@@ -0,0 +1,110 @@
+/**
+ * Copyright (c) 2008-2010  Morten Silcowitz.
+ *
+ * This file is part of the Jinngine physics library
+ *
+ * Jinngine is published under the GPL license, available
+ * at http://www.gnu.org/copyleft/gpl.html.
+ */
+package jinngine.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.concurrent.TimeUnit;
+
+import jinngine.physics.Body;
+import jinngine.physics.DefaultScene;
+import jinngine.physics.constraint.Constraint;
+import jinngine.physics.solver.ConjugateGradients;
+import jinngine.physics.solver.GaussSeidel;
+import jinngine.physics.solver.NonsmoothNonlinearConjugateGradient;
+import jinngine.physics.solver.PackedNonsmoothNonlinearConjugateGradient;
+import jinngine.physics.solver.PackedProjectedGaussSeidel;
+import jinngine.physics.solver.ProjectedGaussSeidel;
+import jinngine.physics.solver.Solver;
+import jinngine.physics.solver.Solver.NCPConstraint;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures each {@link Solver} implementation in jinngine.physics.solver on the same NCP problem. The
+ * problem is taken from one of the canonical scenes after it has settled, and every invocation
+ * solves it from lambda = 0 with a fixed maximum number of iterations. The experimental solvers
+ * are not included.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SolverBenchmark {
+
+	@Param({"ProjectedGaussSeidel", "NonsmoothNonlinearConjugateGradient", "PackedProjectedGaussSeidel",
+		"PackedNonsmoothNonlinearConjugateGradient", "GaussSeidel", "ConjugateGradients"})
+	public String solver;
+
+	@Param({Scenes.PYRAMID, Scenes.RAGDOLLS})
+	public String scene;
+
+	@Param({"25"})
+	public int iterations;
+
+	private Solver instance;
+	private final List<NCPConstraint> constraints = new ArrayList<NCPConstraint>();
+	private final List<Body> bodies = new ArrayList<Body>();
+
+	/**
+	 * Create the named solver
+	 */
+	public static Solver create( String name, int iterations ) {
+		final Solver solver;
+		if ("ProjectedGaussSeidel".equals(name)) solver = new ProjectedGaussSeidel();
+		else if ("NonsmoothNonlinearConjugateGradient".equals(name)) solver = new NonsmoothNonlinearConjugateGradient(iterations);
+		else if ("PackedProjectedGaussSeidel".equals(name)) solver = new PackedProjectedGaussSeidel();
+		else if ("PackedNonsmoothNonlinearConjugateGradient".equals(name)) solver = new PackedNonsmoothNonlinearConjugateGradient(iterations);
+		else if ("GaussSeidel".equals(name)) solver = new GaussSeidel();
+		else if ("ConjugateGradients".equals(name)) solver = new ConjugateGradients();
+		else throw new IllegalArgumentException("SolverBenchmark: unknown solver " + name);
+		solver.setMaximumIterations(iterations);
+		return solver;
+	}
+
+	@Setup
+	public void setup() {
+		instance = create(solver, iterations);
+
+		// let the scene settle, and take the ncp problem from the constraints in the scene
+		DefaultScene model = Scenes.create(scene);
+		for (int i=0; i<40; i++)
+			model.tick();
+
+		Iterator<Body> bodyiter = model.getBodies();
+		while (bodyiter.hasNext())
+			bodies.add(bodyiter.next());
+
+		ListIterator<NCPConstraint> constraintiter = constraints.listIterator();
+		Iterator<Constraint> iter = model.getConstraints();
+		while (iter.hasNext())
+			iter.next().applyConstraints(constraintiter, model.getTimestep());
+	}
+
+	@Benchmark
+	public double solve() {
+		// start from lambda = 0
+		for (NCPConstraint ci: constraints)
+			ci.lambda = 0;
+		for (Body body: bodies) {
+			body.deltavelocity.assignZero();
+			body.deltaomega.assignZero();
+		}
+
+		return instance.solve(constraints, bodies, 1e-5);
+	}
+}
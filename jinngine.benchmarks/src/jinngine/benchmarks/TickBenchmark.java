@@ -0,0 +1,51 @@
+/**
+ * Copyright (c) 2008-2010  Morten Silcowitz.
+ *
+ * This file is part of the Jinngine physics library
+ *
+ * Jinngine is published under the GPL license, available
+ * at http://www.gnu.org/copyleft/gpl.html.
+ */
+package jinngine.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import jinngine.physics.DefaultScene;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures DefaultScene.tick() on the canonical scenes in {@link Scenes}. Each measurement
+ * iteration starts from a freshly created scene, that has been advanced a number of time-steps
+ * such that contacts are established.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TickBenchmark {
+
+	@Param({Scenes.STACK, Scenes.PYRAMID, Scenes.RAGDOLLS, Scenes.SPHERES})
+	public String scene;
+
+	private DefaultScene model;
+
+	@Setup(Level.Iteration)
+	public void setup() {
+		model = Scenes.create(scene);
+		for (int i=0; i<20; i++)
+			model.tick();
+	}
+
+	@Benchmark
+	public void tick() {
+		model.tick();
+	}
+}
@@ -0,0 +1,128 @@
+/**
+ * Copyright (c) 2008-2010  Morten Silcowitz.
+ *
+ * This file is part of the Jinngine physics library
+ *
+ * Jinngine is published under the GPL license, available
+ * at http://www.gnu.org/copyleft/gpl.html.
+ */
+package jinngine.collision;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import jinngine.geometry.Geometry;
+
+/**
+ * Casts large batches of rays against the geometries handled by a broad-phase, for instance to simulate range
+ * sensors. Rays are given as flat arrays of origins and directions, and the closest hit of each ray is written into
+ * flat result arrays, so no objects are created per ray by the batch itself. Rays are divided into ranges that are
+ * cast in parallel using a fork-join pool. Each worker thread uses its own {@link SceneQuery}, with its own
+ * {@link RayCast} and GJK instances and scratch vectors, which are reused between ranges and between batches.
+ * <p>
+ * As for {@link SceneQuery}, rays are tested against the bounding boxes computed in the last run of the broad-phase,
+ * unless update() is called first. The scene must not be changed while a batch is running.
+ */
+public final class BatchRayCast {
+
+	// number of rays handled by a single task
+	private static final int BATCH = 256;
+
+	private final BroadphaseCollisionDetection broadphase;
+
+	// query engine of each worker thread
+	private final ThreadLocal<SceneQuery> queries = new ThreadLocal<SceneQuery>() {
+		@Override
+		protected final SceneQuery initialValue() {
+			return new SceneQuery(broadphase);
+		}
+	};
+
+	// fork-join task that casts a range of rays
+	private final class CastTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final Batch batch;
+		private final int from, to;
+
+		public CastTask(Batch batch, int from, int to) {
+			this.batch = batch;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected final void compute() {
+			if (to-from <= BATCH) {
+				batch.cast(queries.get(), from, to);
+			} else {
+				int middle = (from+to) >>> 1;
+				invokeAll( new CastTask(batch, from, middle), new CastTask(batch, middle, to));
+			}
+		}
+	}
+
+	// arguments of a single call to run()
+	private static final class Batch {
+		final double[] origins, directions;
+		final double maxdistance;
+		final int mask;
+		final double[] distances, normals;
+		final Geometry[] geometries;
+
+		Batch( double[] origins, double[] directions, double maxdistance, int mask,
+				double[] distances, double[] normals, Geometry[] geometries ) {
+			this.origins = origins;
+			this.directions = directions;
+			this.maxdistance = maxdistance;
+			this.mask = mask;
+			this.distances = distances;
+			this.normals = normals;
+			this.geometries = geometries;
+		}
+
+		final void cast( SceneQuery query, int from, int to ) {
+			query.raycast(origins, directions, from, to, maxdistance, mask, distances, normals, geometries);
+		}
+	}
+
+	/**
+	 * Create a batch ray caster for the geometries of the given broad-phase
+	 */
+	public BatchRayCast( BroadphaseCollisionDetection broadphase ) {
+		this.broadphase = broadphase;
+	}
+
+	/**
+	 * Compute bounding boxes from the current state of the bodies, see {@link SceneQuery#update()}
+	 */
+	public final void update() {
+		broadphase.getBoundsStore().update();
+	}
+
+	/**
+	 * Cast a batch of rays, and find the closest hit of each ray. Vectors are stored as x,y,z in consecutive
+	 * entries, so the vector of ray i starts at index 3*i.
+	 * @param pool a fork-join pool to cast rays in, or null to cast all rays in the calling thread
+	 * @param origins origins of the rays
+	 * @param directions directions of the rays. Need not be normalised
+	 * @param count number of rays
+	 * @param maxdistance maximum distance along each ray. Can be positive infinity
+	 * @param mask only geometries whose collision category shares a bit with this mask are considered. Use ~0 to consider all geometries
+	 * @param distances receives the distance to the closest hit of each ray, or positive infinity if the ray hit nothing
+	 * @param normals receives the unit surface normal at the closest hit of each ray, or zero if the ray hit nothing
+	 * @param geometries receives the geometry hit by each ray, or null if the ray hit nothing
+	 */
+	public final void run( ForkJoinPool pool, double[] origins, double[] directions, int count, double maxdistance, int mask,
+			double[] distances, double[] normals, Geometry[] geometries ) {
+		if (origins.length < 3*count || directions.length < 3*count || normals.length < 3*count
+				|| distances.length < count || geometries.length < count)
+			throw new IllegalArgumentException("Arrays are too small for the given number of rays");
+
+		final Batch batch = new Batch(origins, directions, maxdistance, mask, distances, normals, geometries);
+		if (pool == null || count <= BATCH) {
+			batch.cast(queries.get(), 0, count);
+		} else {
+			pool.invoke(new CastTask(batch, 0, count));
+		}
+	}
+}
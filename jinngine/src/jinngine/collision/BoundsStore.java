@@ -0,0 +1,339 @@
+/**
+ * Copyright (c) 2008-2010  Morten Silcowitz.
+ *
+ * This file is part of the Jinngine physics library
+ *
+ * Jinngine is published under the GPL license, available
+ * at http://www.gnu.org/copyleft/gpl.html.
+ */
+package jinngine.collision;
+
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import jinngine.geometry.Geometry;
+import jinngine.math.Vector3;
+import jinngine.physics.Body;
+
+/**
+ * Flat store of world space axis aligned bounding boxes, used by {@link BroadphaseCollisionDetection}
+ * implementations. Each geometry is given an integer handle, and its bounding box is stored in a single
+ * double array, as minimum x,y,z followed by maximum x,y,z, starting at index 6*handle. Bounds are computed
+ * once per time-step by update(), possibly in parallel, and broad-phase implementations read the stored values
+ * instead of calling {@link Geometry#getMinBounds()} and {@link Geometry#getMaxBounds()} for every comparison.
+ * <p>
+ * Bounds of geometries attached to deactivated bodies are not computed again, because they do not change while
+ * the body is sleeping. Handles are released when geometries are removed, and are reused by later geometries.
+ * <p>
+ * The collision filter bits of each geometry are stored along with its bounds, when the geometry is added, so
+ * broad-phase implementations can discard filtered pairs using {@link #interacts(int, int)}, before any overlap 
+ * counters or pairs are created.
+ */
+public final class BoundsStore {
+
+	// number of geometries handled by a single task in the parallel update
+	private static final int BATCH = 64;
+
+	private final Map<Geometry,Integer> handles = new IdentityHashMap<Geometry,Integer>();
+	private Geometry[] geometries = new Geometry[16];
+	private double[] bounds = new double[6*16];
+	private int[] categories = new int[16];
+	private int[] masks = new int[16];
+	private int[] freehandles = new int[16];
+	private int freecount = 0;
+	private int handlecount = 0;
+
+	// true if bounds were updated after the last run of the broad-phase
+	private boolean current = false;
+
+	// incremented whenever bounds are computed for all geometries
+	private volatile int version = 0;
+
+	// fork-join task that computes bounds for a range of handles
+	private final class UpdateTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final int from, to;
+
+		public UpdateTask(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected final void compute() {
+			if (to-from <= BATCH) {
+				update(from, to);
+			} else {
+				int middle = (from+to) >>> 1;
+				invokeAll( new UpdateTask(from, middle), new UpdateTask(middle, to));
+			}
+		}
+	}
+
+	/**
+	 * Add a geometry to the store, and compute its bounds
+	 * @return the handle of the geometry
+	 */
+	public final int add( Geometry g ) {
+		if (handles.containsKey(g))
+			throw new IllegalArgumentException("Given geometry already exsist");
+
+		// obtain a handle
+		final int handle;
+		if (freecount > 0) {
+			handle = freehandles[--freecount];
+		} else {
+			handle = handlecount++;
+			if (handle >= geometries.length) {
+				final Geometry[] geos = new Geometry[2*geometries.length];
+				System.arraycopy(geometries, 0, geos, 0, geometries.length);
+				geometries = geos;
+				final double[] b = new double[6*geos.length];
+				System.arraycopy(bounds, 0, b, 0, bounds.length);
+				bounds = b;
+				categories = grow(categories, geos.length);
+				masks = grow(masks, geos.length);
+			}
+		}
+		handles.put(g, handle);
+		geometries[handle] = g;
+		categories[handle] = g.getCollisionCategory();
+		masks[handle] = g.getCollisionMask();
+		compute(handle);
+		return handle;
+	}
+
+	/**
+	 * Remove a geometry from the store, and release its handle
+	 * @return the handle that the geometry had
+	 */
+	public final int remove( Geometry g ) {
+		final Integer h = handles.remove(g);
+		if (h == null)
+			throw new IllegalArgumentException("Given geometry does not exist");
+		final int handle = h;
+
+		geometries[handle] = null;
+		if (freecount == freehandles.length) {
+			final int[] free = new int[2*freehandles.length];
+			System.arraycopy(freehandles, 0, free, 0, freecount);
+			freehandles = free;
+		}
+		freehandles[freecount++] = handle;
+		return handle;
+	}
+
+	/**
+	 * Return true if the collision filters of the two handles allow them to interact, that is, if the 
+	 * category of each geometry shares at least one bit with the mask of the other
+	 */
+	public final boolean interacts( int i, int j ) {
+		return (categories[i] & masks[j]) != 0 && (categories[j] & masks[i]) != 0;
+	}
+
+	/**
+	 * Return the handle of the given geometry, or -1 if the geometry is not in the store
+	 */
+	public final int getHandle( Geometry g ) {
+		final Integer h = handles.get(g);
+		return h == null? -1 : h;
+	}
+
+	/**
+	 * Return the geometry with the given handle, or null if the handle is not in use
+	 */
+	public final Geometry getGeometry( int handle ) {
+		return geometries[handle];
+	}
+
+	/**
+	 * Return an upper bound on the handles in use. All handles in use are smaller than this number
+	 */
+	public final int getHandleCount() {
+		return handlecount;
+	}
+
+	/**
+	 * Return the number of geometries in the store
+	 */
+	public final int size() {
+		return handles.size();
+	}
+
+	/**
+	 * Return the array of stored bounds. The bounds of a handle are stored as minimum x,y,z followed
+	 * by maximum x,y,z, starting at index 6*handle. The array is replaced when the store grows, so
+	 * the returned reference should not be kept across calls to add()
+	 */
+	public final double[] getBounds() {
+		return bounds;
+	}
+
+	/**
+	 * Return the minimum bound of the given handle on the given axis
+	 */
+	public final double getMin( int handle, int axis ) {
+		return bounds[6*handle+axis];
+	}
+
+	/**
+	 * Return the maximum bound of the given handle on the given axis
+	 */
+	public final double getMax( int handle, int axis ) {
+		return bounds[6*handle+3+axis];
+	}
+
+	/**
+	 * Return true if the stored bounding boxes of the given handles overlap
+	 */
+	public final boolean overlap( int a, int b ) {
+		final int i = 6*a, j = 6*b;
+		return bounds[i]   < bounds[j+3] && bounds[j]   < bounds[i+3]
+		    && bounds[i+1] < bounds[j+4] && bounds[j+1] < bounds[i+4]
+		    && bounds[i+2] < bounds[j+5] && bounds[j+2] < bounds[i+5];
+	}
+
+	/**
+	 * Add the geometries whose stored bounds overlap the given axis aligned box to result
+	 */
+	public final void query( Vector3 min, Vector3 max, Collection<Geometry> result ) {
+		for (int handle=0; handle<handlecount; handle++) {
+			final Geometry g = geometries[handle];
+			if (g != null && overlap(bounds, 6*handle, min, max))
+				result.add(g);
+		}
+	}
+
+	/**
+	 * Add the geometries whose stored bounds are hit by a box swept along a line segment to result, see
+	 * {@link BroadphaseCollisionDetection#query(Vector3, Vector3, double, Vector3, Collection)}
+	 */
+	public final void query( Vector3 point, Vector3 direction, double length, Vector3 extent, Collection<Geometry> result ) {
+		final double[] segment = segment(point, direction, length, extent, QueryBuffers.get().segment);
+		for (int handle=0; handle<handlecount; handle++) {
+			final Geometry g = geometries[handle];
+			if (g != null && intersects(bounds, 6*handle, segment))
+				result.add(g);
+		}
+	}
+
+	/**
+	 * Compute the bounds of all geometries attached to active bodies
+	 */
+	public final void update() {
+		update(0, handlecount);
+		current = true;
+		version++;
+	}
+
+	/**
+	 * Compute the bounds of all geometries attached to active bodies, using the given pool.
+	 * Bounds are computed from the state of the bodies only, so geometries can be handled concurrently.
+	 * @param pool a fork-join pool to compute bounds in, or null to compute bounds in the calling thread
+	 */
+	public final void update( ForkJoinPool pool ) {
+		if (pool == null || handlecount <= BATCH) {
+			update();
+		} else {
+			pool.invoke(new UpdateTask(0, handlecount));
+			current = true;
+			version++;
+		}
+	}
+
+	/**
+	 * Called by broad-phase implementations at the beginning of each run. Bounds are computed, unless
+	 * update() was called after the previous run.
+	 */
+	final void prepare() {
+		if (!current) {
+			update(0, handlecount);
+			version++;
+		}
+		current = false;
+	}
+
+	/**
+	 * Return a number that changes whenever bounds are computed for all geometries. Broad-phase implementations
+	 * use it to tell whether their own structures were built from the current bounds
+	 */
+	final int getVersion() {
+		return version;
+	}
+
+	// pack a line segment, starting at point and ending at point + direction*length, along with 
+	// the extents of the box being swept, into the given array, as used by intersects()
+	static final double[] segment( Vector3 point, Vector3 direction, double length, Vector3 extent, double[] segment ) {
+		segment[0] = point.x;     segment[1] = point.y;     segment[2] = point.z;
+		segment[3] = direction.x; segment[4] = direction.y; segment[5] = direction.z;
+		segment[6] = extent.x;    segment[7] = extent.y;    segment[8] = extent.z;
+		segment[9] = length;
+		return segment;
+	}
+
+	// true if the box starting at index k, enlarged by the extents of the segment, is hit by the segment
+	static final boolean intersects( double[] box, int k, double[] segment ) {
+		double tmin = 0, tmax = segment[9];
+		for (int axis=0; axis<3; axis++) {
+			final double min = box[k+axis] - segment[6+axis];
+			final double max = box[k+3+axis] + segment[6+axis];
+			final double p = segment[axis], d = segment[3+axis];
+			if (d == 0) {
+				// segment is parallel to the slab
+				if (p < min || max < p)
+					return false;
+			} else {
+				double t1 = (min-p)/d, t2 = (max-p)/d;
+				if (t1 > t2) { final double t = t1; t1 = t2; t2 = t; }
+				if (t1 > tmin) tmin = t1;
+				if (t2 < tmax) tmax = t2;
+				if (tmin > tmax)
+					return false;
+			}
+		}
+		return true;
+	}
+
+	// true if the box starting at index k overlaps the box given by min and max
+	static final boolean overlap( double[] box, int k, Vector3 min, Vector3 max ) {
+		return box[k]   < max.x && min.x < box[k+3]
+		    && box[k+1] < max.y && min.y < box[k+4]
+		    && box[k+2] < max.z && min.z < box[k+5];
+	}
+
+	private final void update( int from, int to ) {
+		for (int handle=from; handle<to; handle++) {
+			final Geometry g = geometries[handle];
+			// bounds of sleeping geometries does not change
+			if (g != null && !sleeping(g))
+				compute(handle);
+		}
+	}
+
+	private final void compute( int handle ) {
+		final Geometry g = geometries[handle];
+		final Vector3 min = g.getMinBounds();
+		final Vector3 max = g.getMaxBounds();
+		if (min.isNaN() || max.isNaN())
+			throw new IllegalStateException("Geometry has NaN in its bounding box values" );
+
+		final int k = 6*handle;
+		bounds[k]   = min.x; bounds[k+1] = min.y; bounds[k+2] = min.z;
+		bounds[k+3] = max.x; bounds[k+4] = max.y; bounds[k+5] = max.z;
+	}
+
+	private static final int[] grow( int[] a, int length ) {
+		final int[] b = new int[length];
+		System.arraycopy(a, 0, b, 0, a.length);
+		return b;
+	}
+
+	// true if the body of the given geometry is deactivated
+	private static final boolean sleeping( Geometry g ) {
+		final Body body = g.getBody();
+		return body != null && body.deactivated;
+	}
+}
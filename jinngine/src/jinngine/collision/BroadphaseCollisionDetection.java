@@ -9,8 +9,10 @@
 
 package jinngine.collision;
 
+import java.util.Collection;
 import java.util.Set;
 import jinngine.geometry.*;
+import jinngine.math.Vector3;
 import jinngine.util.Pair;
 
 /**
@@ -63,6 +65,35 @@ public interface BroadphaseCollisionDetection {
 	 */
 	public void remove(Geometry a);
 	
+	/**
+	 * Add a collection of geometries. This is equivalent to calling add() for each geometry, but implementations
+	 * may handle large collections more efficiently, for instance when loading a level.
+	 * @param geometries Geometries to be added
+	 */
+	public void addAll(Collection<Geometry> geometries);
+
+	/**
+	 * Remove a collection of geometries. This is equivalent to calling remove() for each geometry.
+	 * @param geometries Geometries to be removed
+	 */
+	public void removeAll(Collection<Geometry> geometries);
+
+	/**
+	 * Take a geometry out of the work done in each run, because its body was deactivated. Existing pairs of
+	 * the geometry are kept, and overlaps with active geometries are still reported, but pairs of two
+	 * deactivated geometries do not change. The change takes effect in the next run(), so it is safe to
+	 * call this method from a {@link Handler}.
+	 * @param g Geometry to be deactivated
+	 */
+	public void deactivate(Geometry g);
+
+	/**
+	 * Put a deactivated geometry back into the work done in each run. Like {@link #deactivate(Geometry)},
+	 * the change takes effect in the next run().
+	 * @param g Geometry to be activated
+	 */
+	public void activate(Geometry g);
+
 
 	/**
 	 * Return a complete set of the overlapping geometry pairs
@@ -70,6 +101,64 @@ public interface BroadphaseCollisionDetection {
 	 */
 	public Set<Pair<Geometry>> getOverlappingPairs();
 	
+	/**
+	 * Return a read-only view of the overlapping geometry pairs. Unlike getOverlappingPairs(), the view is backed 
+	 * by the internal pair store of the implementation, so no pairs are copied. The order of the pairs is unspecified,
+	 * and can change whenever the broad-phase runs or geometries are added or removed.
+	 * @return
+	 */
+	public PairView getOverlappingPairView();
+	
+	/**
+	 * Return a read-only view of the pairs that started to overlap in the last call to run(). Together with 
+	 * getRemovedPairs(), this allows consumers to update their own state incrementally, instead of handling 
+	 * all overlapping pairs in every time-step. The view is cleared when the next run() starts, or when a 
+	 * geometry is removed after the last run.
+	 * @return
+	 */
+	public PairView getAddedPairs();
+	
+	/**
+	 * Return a read-only view of the pairs that stopped overlapping in the last call to run(), including pairs
+	 * of geometries removed between the previous run and the last run. Removed pairs should be applied before 
+	 * added pairs, as a pair can be removed along with a geometry, and added again by the following run.
+	 * @return
+	 */
+	public PairView getRemovedPairs();
+
+	/**
+	 * Return the store of bounding boxes used by this implementation. Bounding boxes are computed at the
+	 * beginning of run(), unless {@link BoundsStore#update()} was called after the previous run. This allows
+	 * a scene to compute all bounding boxes in a separate stage, for instance in parallel.
+	 * @return
+	 */
+	public BoundsStore getBoundsStore();
+
+	/**
+	 * Find the geometries whose bounding boxes overlap the given axis aligned box, and add them to result.
+	 * The query uses the bounding boxes in the store, see {@link #getBoundsStore()}, and it does not change
+	 * the state of the broad-phase, so several threads can query at the same time, as long as no geometries
+	 * are added or removed, and the broad-phase is not running.
+	 * @param min minimum corner of the box
+	 * @param max maximum corner of the box
+	 * @param result collection that receives the geometries found 
+	 */
+	public void query( Vector3 min, Vector3 max, Collection<Geometry> result );
+
+	/**
+	 * Find the geometries whose bounding boxes are hit by a box, swept along the line segment from point to 
+	 * point+direction*length, and add them to result. The swept box is centred at the segment and has the given 
+	 * half side lengths, so a zero extent gives the geometries whose bounding boxes are hit by the segment itself. 
+	 * The query is used to cull candidates for ray casts and shape casts, see {@link SceneQuery}. Like 
+	 * {@link #query(Vector3, Vector3, Collection)}, this query can be issued from several threads at the same time.
+	 * @param point start point of the segment
+	 * @param direction direction of the segment
+	 * @param length length of the segment, in units of the direction vector. Can be positive infinity
+	 * @param extent half side lengths of the swept box
+	 * @param result collection that receives the geometries found
+	 */
+	public void query( Vector3 point, Vector3 direction, double length, Vector3 extent, Collection<Geometry> result );
+
 	/**
 	 * Run the broad-phase collision detection. This call will invoke calls to any registered event handler, se {@link Handler}.
 	 * The method overlap() in the {@link Handler} interface, is called when ever a new overlap between two objects arises. separation() is 
@@ -0,0 +1,59 @@
+/**
+ * Copyright (c) 2008-2010  Morten Silcowitz.
+ *
+ * This file is part of the Jinngine physics library
+ *
+ * Jinngine is published under the GPL license, available
+ * at http://www.gnu.org/copyleft/gpl.html.
+ */
+package jinngine.collision;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import jinngine.geometry.Geometry;
+import jinngine.util.Pair;
+
+/**
+ * Records the pairs reported by a broad-phase implementation, between the end of one run and the end of the next. 
+ * This includes separations reported by remove(). Implementations call begin() at the start of run() and remove(), 
+ * end() at the end of run(), and overlap() and separation() along with their handler events.
+ */
+final class ChangeSet {
+	private final List<Pair<Geometry>> added = new ArrayList<Pair<Geometry>>();
+	private final List<Pair<Geometry>> removed = new ArrayList<Pair<Geometry>>();
+	
+	// true if the recorded pairs belong to a completed run
+	private boolean complete = false;
+	
+	// views of the recorded pairs
+	public final PairView addedview = new PairView() {
+		public final int size() { return added.size(); }
+		public final Pair<Geometry> get(int index) { return added.get(index); }
+	};
+	public final PairView removedview = new PairView() {
+		public final int size() { return removed.size(); }
+		public final Pair<Geometry> get(int index) { return removed.get(index); }
+	};
+	
+	// start recording, discarding the pairs of a completed run
+	public final void begin() {
+		if (complete) {
+			added.clear();
+			removed.clear();
+			complete = false;
+		}
+	}
+	
+	public final void end() {
+		complete = true;
+	}
+	
+	public final void overlap( Pair<Geometry> pair ) {
+		added.add(pair);
+	}
+	
+	public final void separation( Pair<Geometry> pair ) {
+		removed.add(pair);
+	}
+}
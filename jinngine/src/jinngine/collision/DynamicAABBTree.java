@@ -0,0 +1,739 @@
+/**
+ * Copyright (c) 2008-2010  Morten Silcowitz.
+ *
+ * This file is part of the Jinngine physics library
+ *
+ * Jinngine is published under the GPL license, available
+ * at http://www.gnu.org/copyleft/gpl.html.
+ */
+package jinngine.collision;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import jinngine.geometry.Geometry;
+import jinngine.math.Vector3;
+import jinngine.util.LongIntHashMap;
+import jinngine.util.Pair;
+
+/**
+ * Broad-phase collision detection using a dynamic bounding volume hierarchy of axis aligned bounding boxes.
+ * Each geometry is stored in a leaf, using a bounding box that is enlarged by a margin. As long as the
+ * bounding box of the geometry stays inside the enlarged box, the tree is not modified. When a geometry
+ * leaves its enlarged box, the leaf is removed and inserted again, using the surface area heuristic to
+ * choose its position. The tree is kept balanced using rotations, as in an AVL tree.
+ * <p>
+ * Pairs of geometries whose enlarged boxes overlap are kept as candidate pairs. Overlap and separation
+ * events are reported when the actual bounding boxes of a candidate pair start or stop overlapping.
+ * The method does not depend on the distribution of geometries along any axis, unlike sweep-and-prune.
+ */
+public class DynamicAABBTree implements BroadphaseCollisionDetection {
+
+	private static final int NULL = -1;
+	private static final int OVERLAPPING = 1;
+
+	private final List<Handler> handlers = new ArrayList<Handler>();
+
+	// the margin used to enlarge bounding boxes of leaves
+	private final double margin;
+
+	// tree nodes. Bounding boxes are stored as minimum x,y,z followed by maximum x,y,z
+	private double[] boxes = new double[6*16];
+	private int[] parent = new int[16];
+	private int[] child1 = new int[16];
+	private int[] child2 = new int[16];
+	private int[] height = new int[16];
+	private int[] leafhandle = new int[16];
+	private int nodecount = 0;
+	private int freenode = NULL;
+	private int root = NULL;
+
+	// geometry handles with their actual bounding boxes, and leaf nodes of handles
+	private final BoundsStore store = new BoundsStore();
+	private int[] leaves = new int[16];
+
+	// deactivated handles, and the requested state of handles. Deactivations are applied at the end 
+	// of each run, so new candidate pairs of a handle are handled once before it is left out
+	private boolean[] sleeping = new boolean[16];
+	private boolean[] deactivated = new boolean[16];
+
+	// leaves that moved in this run, and a stack used for tree queries
+	private int[] moved = new int[16];
+	private boolean[] ismoved = new boolean[16];
+	private boolean[] removing = new boolean[16];
+	private int movedcount = 0;
+	private int[] stack = new int[64];
+
+	// version of the bounds store that the enlarged boxes of the leaves were last fitted to
+	private volatile int fitted = -1;
+
+	// candidate pairs, with overlapping pairs flagged
+	private final LongIntHashMap candidates = new LongIntHashMap();
+	private long[] removed = new long[16];
+
+	// overlapping pairs, with their positions in the list
+	private final List<Pair<Geometry>> overlaps = new ArrayList<Pair<Geometry>>();
+	private long[] overlapkeys = new long[64];
+	private final LongIntHashMap overlapindices = new LongIntHashMap();
+
+	// events recorded since the last run, and a view of the overlapping pairs
+	private final ChangeSet changes = new ChangeSet();
+	private final PairView overlapview = new PairView() {
+		public final int size() { return overlaps.size(); }
+		public final Pair<Geometry> get(int index) { return overlaps.get(index); }
+	};
+
+	/**
+	 * Create a new dynamic AABB tree, using a default margin of 0.2 for enlarged bounding boxes
+	 */
+	public DynamicAABBTree() {
+		this(0.2);
+	}
+
+	/**
+	 * Create a new dynamic AABB tree
+	 * @param margin the margin by which bounding boxes are enlarged in the leaves of the tree
+	 */
+	public DynamicAABBTree( double margin ) {
+		this.margin = margin;
+	}
+
+	@Override
+	public void add(Geometry g) {
+		// obtain a handle
+		final int handle = store.add(g);
+		if (handle >= leaves.length) {
+			final int length = 2*leaves.length;
+			leaves = grow(leaves, length);
+			moved = grow(moved, length);
+			ismoved = grow(ismoved, length);
+			removing = grow(removing, length);
+			sleeping = grow(sleeping, length);
+			deactivated = grow(deactivated, length);
+		}
+		sleeping[handle] = false;
+		deactivated[handle] = false;
+
+		// create leaf
+		final int leaf = allocateNode();
+		leafhandle[leaf] = handle;
+		leaves[handle] = leaf;
+		fatten(handle, leaf);
+		insertLeaf(leaf);
+
+		// new pairs of this geometry are found in the next run
+		moved[movedcount++] = handle;
+		ismoved[handle] = true;
+	}
+
+	@Override
+	public void remove(Geometry g) {
+		removeAll(Collections.singletonList(g));
+	}
+
+	@Override
+	public void addAll(Collection<Geometry> geometries) {
+		for (Geometry g: geometries)
+			add(g);
+	}
+
+	/**
+	 * Remove a collection of geometries. The handles of all geometries are marked, and the candidate pairs
+	 * and moved leaves are scanned once for the whole collection, instead of once for each geometry
+	 */
+	@Override
+	public void removeAll(Collection<Geometry> geometries) {
+		// release the handles. They are not reused before the geometries are completely removed
+		final int[] handles = new int[geometries.size()];
+		int count = 0;
+		for (Geometry g: geometries) {
+			final int handle = store.remove(g);
+			handles[count++] = handle;
+
+			// remove leaf from tree
+			final int leaf = leaves[handle];
+			removeLeaf(leaf);
+			freeNode(leaf);
+			removing[handle] = true;
+		}
+
+		// remove from moved list
+		int j = 0;
+		for (int i=0; i<movedcount; i++) {
+			if (removing[moved[i]])
+				ismoved[moved[i]] = false;
+			else
+				moved[j++] = moved[i];
+		}
+		movedcount = j;
+
+		// remove candidate pairs that involve the geometries, and signal separation events for overlapping ones
+		int removedcount = 0;
+		for (int i=0; i<candidates.capacity(); i++) {
+			if (candidates.isUsed(i)) {
+				final long key = candidates.keyAt(i);
+				if (removing[LongIntHashMap.first(key)] || removing[LongIntHashMap.second(key)]) {
+					if (removedcount == removed.length)
+						removed = grow(removed, 2*removed.length);
+					removed[removedcount++] = key;
+				}
+			}
+		}
+		changes.begin();
+		for (int i=0; i<removedcount; i++) {
+			final long key = removed[i];
+			if ((candidates.remove(key, 0) & OVERLAPPING) != 0) {
+				final Pair<Geometry> pair = removeOverlap(key);
+				changes.separation(pair);
+				for (Handler handler: handlers) {
+					handler.separation(pair);
+				}
+			}
+		}
+		for (int i=0; i<count; i++)
+			removing[handles[i]] = false;
+	}
+
+	/**
+	 * Deactivated geometries do not move, so their leaves are not fitted, and their candidate pairs with 
+	 * other deactivated geometries are not visited in each run
+	 */
+	@Override
+	public void deactivate(Geometry g) {
+		deactivated[handle(g)] = true;
+	}
+
+	@Override
+	public void activate(Geometry g) {
+		deactivated[handle(g)] = false;
+	}
+
+	private final int handle( Geometry g ) {
+		final int handle = store.getHandle(g);
+		if (handle < 0)
+			throw new IllegalArgumentException("Given geometry does not exist");
+		return handle;
+	}
+
+	@Override
+	public void addHandler(Handler h) {
+		handlers.add(h);
+	}
+
+	@Override
+	public void removeHandler(Handler h) {
+		handlers.remove(h);
+	}
+
+	@Override
+	public Set<Pair<Geometry>> getOverlappingPairs() {
+		return new LinkedHashSet<Pair<Geometry>>(overlaps);
+	}
+
+	@Override
+	public PairView getOverlappingPairView() {
+		return overlapview;
+	}
+
+	@Override
+	public PairView getAddedPairs() {
+		return changes.addedview;
+	}
+
+	@Override
+	public PairView getRemovedPairs() {
+		return changes.removedview;
+	}
+
+	@Override
+	public BoundsStore getBoundsStore() {
+		return store;
+	}
+
+	@Override
+	public void run() {
+		// make sure bounds are up to date
+		store.prepare();
+		final double[] bounds = store.getBounds();
+		changes.begin();
+
+		// activations apply at once, and deactivations at the end of the run
+		for (int handle=0; handle<store.getHandleCount(); handle++)
+			sleeping[handle] = sleeping[handle] && deactivated[handle];
+
+		// re-insert leaves that left their enlarged bounding box
+		fit();
+
+		// find new candidate pairs for moved leaves
+		for (int i=0; i<movedcount; i++) {
+			query(moved[i]);
+			ismoved[moved[i]] = false;
+		}
+		movedcount = 0;
+
+		// go through candidate pairs, and report changes in overlap
+		int removedcount = 0;
+		for (int i=0; i<candidates.capacity(); i++) {
+			if (!candidates.isUsed(i))
+				continue;
+
+			final long key = candidates.keyAt(i);
+			final int a = LongIntHashMap.first(key), b = LongIntHashMap.second(key);
+			if (sleeping[a] && sleeping[b])
+				continue;
+			final boolean wasOverlapping = (candidates.valueAt(i) & OVERLAPPING) != 0;
+
+			// remove candidates when enlarged boxes no longer overlap
+			final boolean candidate = overlap(boxes, 6*leaves[a], boxes, 6*leaves[b]);
+			final boolean overlapping = candidate && overlap(bounds, 6*a, bounds, 6*b);
+
+			if (overlapping && !wasOverlapping) {
+				candidates.put(key, OVERLAPPING);
+				final Pair<Geometry> pair = addOverlap(key);
+				changes.overlap(pair);
+				for (Handler handler: handlers) {
+					handler.overlap(pair);
+				}
+			} else if (!overlapping && wasOverlapping) {
+				candidates.put(key, 0);
+				final Pair<Geometry> pair = removeOverlap(key);
+				changes.separation(pair);
+				for (Handler handler: handlers) {
+					handler.separation(pair);
+				}
+			}
+
+			if (!candidate) {
+				if (removedcount == removed.length)
+					removed = grow(removed, 2*removed.length);
+				removed[removedcount++] = key;
+			}
+		}
+		for (int i=0; i<removedcount; i++) {
+			candidates.remove(removed[i], 0);
+		}
+		changes.end();
+
+		// apply deactivations
+		System.arraycopy(deactivated, 0, sleeping, 0, store.getHandleCount());
+	}
+
+	@Override
+	public void query(Vector3 min, Vector3 max, Collection<Geometry> result) {
+		// bounds may have been computed after the last run
+		if (fitted != store.getVersion())
+			fit();
+
+		final double[] bounds = store.getBounds();
+		final QueryBuffers buffers = QueryBuffers.get();
+		int[] stack = buffers.stack;
+		int top = 0;
+		stack[top++] = root;
+		while (top > 0) {
+			final int node = stack[--top];
+			if (node == NULL || !BoundsStore.overlap(boxes, 6*node, min, max))
+				continue;
+
+			if (child1[node] == NULL) {
+				// enlarged boxes are conservative, so test the actual bounds
+				final int handle = leafhandle[node];
+				if (BoundsStore.overlap(bounds, 6*handle, min, max))
+					result.add(store.getGeometry(handle));
+			} else {
+				if (top+2 > stack.length) {
+					stack = grow(stack, 2*stack.length);
+					buffers.stack = stack;
+				}
+				stack[top++] = child1[node];
+				stack[top++] = child2[node];
+			}
+		}
+	}
+
+	@Override
+	public void query(Vector3 point, Vector3 direction, double length, Vector3 extent, Collection<Geometry> result) {
+		// bounds may have been computed after the last run
+		if (fitted != store.getVersion())
+			fit();
+
+		final double[] bounds = store.getBounds();
+		final QueryBuffers buffers = QueryBuffers.get();
+		final double[] segment = BoundsStore.segment(point, direction, length, extent, buffers.segment);
+		int[] stack = buffers.stack;
+		int top = 0;
+		stack[top++] = root;
+		while (top > 0) {
+			final int node = stack[--top];
+			if (node == NULL || !BoundsStore.intersects(boxes, 6*node, segment))
+				continue;
+
+			if (child1[node] == NULL) {
+				final int handle = leafhandle[node];
+				if (BoundsStore.intersects(bounds, 6*handle, segment))
+					result.add(store.getGeometry(handle));
+			} else {
+				if (top+2 > stack.length) {
+					stack = grow(stack, 2*stack.length);
+					buffers.stack = stack;
+				}
+				stack[top++] = child1[node];
+				stack[top++] = child2[node];
+			}
+		}
+	}
+
+	/**
+	 * Return the height of the tree. A tree with a single leaf has height zero, and an empty tree has height -1
+	 */
+	public final int getHeight() {
+		return root == NULL? -1 : height[root];
+	}
+
+	// re-insert leaves that left their enlarged bounding box. Queries call this when bounds were computed
+	// after the last run, so it is synchronized, and the moved leaves are handled in the next run
+	private final synchronized void fit() {
+		final int version = store.getVersion();
+		if (fitted == version)
+			return;
+
+		final double[] bounds = store.getBounds();
+		for (int handle=0; handle<store.getHandleCount(); handle++) {
+			// sleeping geometries does not move, unless they were activated after the last run
+			if (store.getGeometry(handle) == null || (sleeping[handle] && deactivated[handle]))
+				continue;
+
+			final int leaf = leaves[handle];
+			if (!contains(boxes, 6*leaf, bounds, 6*handle)) {
+				removeLeaf(leaf);
+				fatten(handle, leaf);
+				insertLeaf(leaf);
+				if (!ismoved[handle]) {
+					ismoved[handle] = true;
+					moved[movedcount++] = handle;
+				}
+			}
+		}
+		fitted = version;
+	}
+
+	// add candidate pairs for all leaves overlapping the leaf of the given geometry
+	private final void query( int handle ) {
+		final int leaf = leaves[handle];
+		int top = 0;
+		stack[top++] = root;
+		while (top > 0) {
+			final int node = stack[--top];
+			if (node == NULL || !overlap(boxes, 6*node, boxes, 6*leaf))
+				continue;
+
+			if (child1[node] == NULL) {
+				final int other = leafhandle[node];
+				// pairs rejected by the collision filter never become candidates
+				if (other != handle && store.interacts(handle, other)) {
+					final long key = LongIntHashMap.pair(handle, other);
+					if (!candidates.containsKey(key))
+						candidates.put(key, 0);
+				}
+			} else {
+				if (top+2 > stack.length)
+					stack = grow(stack, 2*stack.length);
+				stack[top++] = child1[node];
+				stack[top++] = child2[node];
+			}
+		}
+	}
+
+	private final void insertLeaf( int leaf ) {
+		if (root == NULL) {
+			root = leaf;
+			parent[leaf] = NULL;
+			return;
+		}
+
+		// find the best sibling, using the surface area heuristic
+		final int l = 6*leaf;
+		int index = root;
+		while (child1[index] != NULL) {
+			final int c1 = child1[index], c2 = child2[index];
+			final double area = area(boxes, 6*index);
+			final double combined = unionArea(6*index, l);
+
+			// cost of creating a new parent for this node and the new leaf
+			final double cost = 2*combined;
+
+			// minimum cost of pushing the leaf further down the tree
+			final double inheritance = 2*(combined - area);
+			final double cost1 = unionArea(6*c1, l) - (child1[c1] == NULL? 0 : area(boxes, 6*c1)) + inheritance;
+			final double cost2 = unionArea(6*c2, l) - (child1[c2] == NULL? 0 : area(boxes, 6*c2)) + inheritance;
+
+			if (cost < cost1 && cost < cost2)
+				break;
+
+			index = cost1 < cost2? c1 : c2;
+		}
+		final int sibling = index;
+
+		// create a new parent
+		final int oldparent = parent[sibling];
+		final int newparent = allocateNode();
+		parent[newparent] = oldparent;
+		union(newparent, leaf, sibling);
+		height[newparent] = height[sibling]+1;
+
+		if (oldparent != NULL) {
+			if (child1[oldparent] == sibling) child1[oldparent] = newparent;
+			else child2[oldparent] = newparent;
+		} else {
+			root = newparent;
+		}
+		child1[newparent] = sibling;
+		child2[newparent] = leaf;
+		parent[sibling] = newparent;
+		parent[leaf] = newparent;
+
+		// walk back up the tree fixing heights and boxes
+		refit(parent[leaf]);
+	}
+
+	private final void removeLeaf( int leaf ) {
+		if (leaf == root) {
+			root = NULL;
+			return;
+		}
+
+		final int p = parent[leaf];
+		final int grandparent = parent[p];
+		final int sibling = child1[p] == leaf? child2[p] : child1[p];
+
+		if (grandparent != NULL) {
+			// connect sibling to grandparent, and destroy the parent
+			if (child1[grandparent] == p) child1[grandparent] = sibling;
+			else child2[grandparent] = sibling;
+			parent[sibling] = grandparent;
+			freeNode(p);
+			refit(grandparent);
+		} else {
+			root = sibling;
+			parent[sibling] = NULL;
+			freeNode(p);
+		}
+	}
+
+	// balance and update boxes and heights from the given node to the root
+	private final void refit( int index ) {
+		while (index != NULL) {
+			index = balance(index);
+			final int c1 = child1[index], c2 = child2[index];
+			height[index] = 1 + Math.max(height[c1], height[c2]);
+			union(index, c1, c2);
+			index = parent[index];
+		}
+	}
+
+	// perform a left or right rotation if node a is imbalanced. Returns the new root of the sub-tree
+	private final int balance( int a ) {
+		if (child1[a] == NULL || height[a] < 2)
+			return a;
+
+		final int b = child1[a], c = child2[a];
+		final int balance = height[c] - height[b];
+
+		// rotate c up
+		if (balance > 1) {
+			final int f = child1[c], g = child2[c];
+
+			child1[c] = a;
+			parent[c] = parent[a];
+			parent[a] = c;
+			replaceChild(parent[c], a, c);
+
+			if (height[f] > height[g]) {
+				child2[c] = f;
+				child2[a] = g;
+				parent[g] = a;
+				union(a, b, g);
+				union(c, a, f);
+				height[a] = 1 + Math.max(height[b], height[g]);
+				height[c] = 1 + Math.max(height[a], height[f]);
+			} else {
+				child2[c] = g;
+				child2[a] = f;
+				parent[f] = a;
+				union(a, b, f);
+				union(c, a, g);
+				height[a] = 1 + Math.max(height[b], height[f]);
+				height[c] = 1 + Math.max(height[a], height[g]);
+			}
+			return c;
+		}
+
+		// rotate b up
+		if (balance < -1) {
+			final int d = child1[b], e = child2[b];
+
+			child1[b] = a;
+			parent[b] = parent[a];
+			parent[a] = b;
+			replaceChild(parent[b], a, b);
+
+			if (height[d] > height[e]) {
+				child2[b] = d;
+				child1[a] = e;
+				parent[e] = a;
+				union(a, c, e);
+				union(b, a, d);
+				height[a] = 1 + Math.max(height[c], height[e]);
+				height[b] = 1 + Math.max(height[a], height[d]);
+			} else {
+				child2[b] = e;
+				child1[a] = d;
+				parent[d] = a;
+				union(a, c, d);
+				union(b, a, e);
+				height[a] = 1 + Math.max(height[c], height[d]);
+				height[b] = 1 + Math.max(height[a], height[e]);
+			}
+			return b;
+		}
+
+		return a;
+	}
+
+	private final void replaceChild( int p, int oldchild, int newchild ) {
+		if (p == NULL) {
+			root = newchild;
+		} else if (child1[p] == oldchild) {
+			child1[p] = newchild;
+		} else {
+			child2[p] = newchild;
+		}
+	}
+
+	private final int allocateNode() {
+		final int node;
+		if (freenode != NULL) {
+			node = freenode;
+			freenode = parent[node];
+		} else {
+			node = nodecount++;
+			if (node >= parent.length) {
+				final int length = 2*parent.length;
+				boxes = grow(boxes, 6*length);
+				parent = grow(parent, length);
+				child1 = grow(child1, length);
+				child2 = grow(child2, length);
+				height = grow(height, length);
+				leafhandle = grow(leafhandle, length);
+			}
+		}
+		parent[node] = NULL;
+		child1[node] = NULL;
+		child2[node] = NULL;
+		height[node] = 0;
+		leafhandle[node] = NULL;
+		return node;
+	}
+
+	private final void freeNode( int node ) {
+		parent[node] = freenode;
+		height[node] = -1;
+		freenode = node;
+	}
+
+	// set the box of a leaf to the bounds of its geometry, enlarged by the margin
+	private final void fatten( int handle, int leaf ) {
+		final double[] bounds = store.getBounds();
+		final int k = 6*handle, l = 6*leaf;
+		for (int i=0; i<3; i++) {
+			boxes[l+i]   = bounds[k+i]   - margin;
+			boxes[l+i+3] = bounds[k+i+3] + margin;
+		}
+	}
+
+	// set the box of node to the union of the boxes of nodes a and b
+	private final void union( int node, int a, int b ) {
+		final int k = 6*node, i = 6*a, j = 6*b;
+		for (int n=0; n<3; n++) {
+			boxes[k+n]   = Math.min(boxes[i+n], boxes[j+n]);
+			boxes[k+n+3] = Math.max(boxes[i+n+3], boxes[j+n+3]);
+		}
+	}
+
+	// surface area of the union of two boxes
+	private final double unionArea( int i, int j ) {
+		final double dx = Math.max(boxes[i+3], boxes[j+3]) - Math.min(boxes[i], boxes[j]);
+		final double dy = Math.max(boxes[i+4], boxes[j+4]) - Math.min(boxes[i+1], boxes[j+1]);
+		final double dz = Math.max(boxes[i+5], boxes[j+5]) - Math.min(boxes[i+2], boxes[j+2]);
+		return 2*(dx*dy + dy*dz + dz*dx);
+	}
+
+	private static final double area( double[] a, int i ) {
+		final double dx = a[i+3]-a[i], dy = a[i+4]-a[i+1], dz = a[i+5]-a[i+2];
+		return 2*(dx*dy + dy*dz + dz*dx);
+	}
+
+	private static final boolean overlap( double[] a, int i, double[] b, int j ) {
+		return a[i]   < b[j+3] && b[j]   < a[i+3]
+		    && a[i+1] < b[j+4] && b[j+1] < a[i+4]
+		    && a[i+2] < b[j+5] && b[j+2] < a[i+5];
+	}
+
+	// true if box b is inside box a
+	private static final boolean contains( double[] a, int i, double[] b, int j ) {
+		return a[i]   <= b[j]   && a[i+1] <= b[j+1] && a[i+2] <= b[j+2]
+		    && b[j+3] <= a[i+3] && b[j+4] <= a[i+4] && b[j+5] <= a[i+5];
+	}
+
+	private final Pair<Geometry> addOverlap( long key ) {
+		final Pair<Geometry> pair = new Pair<Geometry>(store.getGeometry(LongIntHashMap.first(key)), store.getGeometry(LongIntHashMap.second(key)));
+		final int index = overlaps.size();
+		overlaps.add(pair);
+		if (index == overlapkeys.length)
+			overlapkeys = grow(overlapkeys, 2*overlapkeys.length);
+		overlapkeys[index] = key;
+		overlapindices.put(key, index);
+		return pair;
+	}
+
+	private final Pair<Geometry> removeOverlap( long key ) {
+		// swap the last overlap into the position of the removed one
+		final int index = overlapindices.remove(key, -1);
+		final int last = overlaps.size()-1;
+		final Pair<Geometry> pair = overlaps.get(index);
+		if (index != last) {
+			overlaps.set(index, overlaps.get(last));
+			overlapkeys[index] = overlapkeys[last];
+			overlapindices.put(overlapkeys[index], index);
+		}
+		overlaps.remove(last);
+		return pair;
+	}
+
+	private static final boolean[] grow( boolean[] a, int length ) {
+		final boolean[] b = new boolean[length];
+		System.arraycopy(a, 0, b, 0, a.length);
+		return b;
+	}
+
+	private static final double[] grow( double[] a, int length ) {
+		final double[] b = new double[length];
+		System.arraycopy(a, 0, b, 0, a.length);
+		return b;
+	}
+
+	private static final int[] grow( int[] a, int length ) {
+		final int[] b = new int[length];
+		System.arraycopy(a, 0, b, 0, a.length);
+		return b;
+	}
+
+	private static final long[] grow( long[] a, int length ) {
+		final long[] b = new long[length];
+		System.arraycopy(a, 0, b, 0, a.length);
+		return b;
+	}
+}
@@ -10,7 +10,6 @@ package jinngine.collision;
 
 import java.util.*;
 
-import jinngine.geometry.BoundingBox;
 import jinngine.geometry.Geometry;
 import jinngine.math.Vector3;
 import jinngine.util.Pair;
@@ -25,8 +24,22 @@ public class ExhaustiveSearch implements BroadphaseCollisionDetection {
 	
 	private final Set<Pair<Geometry>> existingPairs = new LinkedHashSet<Pair<Geometry>>();
 	private final Set<Pair<Geometry>> leavingPairs = new LinkedHashSet<Pair<Geometry>>();
-	private final List<Geometry> geometries = new ArrayList<Geometry>();
+	private final List<Pair<Geometry>> overlaps = new ArrayList<Pair<Geometry>>();
+	private final ChangeSet changes = new ChangeSet();
+	private final PairView overlapview = new PairView() {
+		public final int size() { return overlaps.size(); }
+		public final Pair<Geometry> get(int index) { return overlaps.get(index); }
+	};
+	private final BoundsStore bounds = new BoundsStore();
 	private final List<BroadphaseCollisionDetection.Handler> handlers = new ArrayList<Handler>();
+	
+	// deactivated geometries, and the requested state of geometries, by handle. Deactivations are 
+	// applied at the end of each run, so a geometry is tested once more before it is left out
+	private boolean[] sleeping = new boolean[16];
+	private boolean[] deactivated = new boolean[16];
+	
+	// the number of pairs tested in the last run
+	private int tests = 0;
 
 	public ExhaustiveSearch() {}
 	
@@ -36,20 +49,39 @@ public class ExhaustiveSearch implements BroadphaseCollisionDetection {
 
 	public void run() {
 		leavingPairs.addAll(existingPairs);
+		changes.begin();
+		
+		//make sure bounds are up to date
+		bounds.prepare();
+		final double[] b = bounds.getBounds();
+
+		// activations apply at once, and deactivations at the end of the run
+		for (int handle=0; handle<bounds.getHandleCount(); handle++)
+			sleeping[handle] = sleeping[handle] && deactivated[handle];
 
-//		O(N^2) broad-phase collision detection
-		int size = geometries.size();
+//		O(N^2) broad-phase collision detection. Pairs of sleeping geometries keep their state,
+//		so only pairs with at least one active geometry are tested
+		int size = bounds.getHandleCount();
+		tests = 0;
 		for ( int i=0; i<size; i++) {
-			Geometry c1 = geometries.get(i);
-			for (int j=i+1; j<size; j++ ) {
-				Geometry c2 = geometries.get(j);
-				if (c1 != c2 ) {
-					if ( overlap(c1,c2)  ) {
-						Pair<Geometry> pair = new Pair<Geometry>(c1,c2);
+			Geometry c1 = bounds.getGeometry(i);
+			if (c1 == null || sleeping[i]) continue;
+			for (int j=0; j<size; j++ ) {
+				// pairs of active geometries are tested once
+				if (j == i || (j < i && !sleeping[j])) continue;
+				Geometry c2 = bounds.getGeometry(j);
+				if (c2 == null) continue;
+				// pairs rejected by the collision filter are ignored
+				if (bounds.interacts(i, j)) {
+					tests++;
+					if ( overlap(b,6*i,b,6*j)  ) {
+						Pair<Geometry> pair = i < j? new Pair<Geometry>(c1,c2) : new Pair<Geometry>(c2,c1);
 						
 						//if we discover a new pair, report it and add to table
 						if ( !existingPairs.contains(pair)) {
 							existingPairs.add( pair );
+							overlaps.add( pair );
+							changes.overlap(pair);
 							
 							//notify handlers
 							for ( Handler handler: handlers)
@@ -67,35 +99,56 @@ public class ExhaustiveSearch implements BroadphaseCollisionDetection {
 		Iterator<Pair<Geometry>> leaving = leavingPairs.iterator();
 		while (leaving.hasNext()) {
 			Pair<Geometry> pair = leaving.next();
+			if (sleeping(pair.getFirst()) && sleeping(pair.getSecond()))
+				continue;
 			
 			for ( Handler handler: handlers)
 				handler.separation(pair);
 
 			existingPairs.remove(pair);
+			overlaps.remove(pair);
+			changes.separation(pair);
 		}
 		
 		leavingPairs.clear();
+		changes.end();
+		
+		// apply deactivations
+		System.arraycopy(deactivated, 0, sleeping, 0, size);
+	}
+	
+	// true if the given geometry is deactivated
+	private final boolean sleeping( Geometry g ) {
+		return sleeping[bounds.getHandle(g)];
 	}
 	
-	private static final boolean overlap( BoundingBox i , BoundingBox j) {
+	/**
+	 * Return the number of pairs tested for overlap in the last run
+	 */
+	public final int getTests() {
+		return tests;
+	}
+	
+	private static final boolean[] grow( boolean[] a, int length ) {
+		final boolean[] b = new boolean[length];
+		System.arraycopy(a, 0, b, 0, a.length);
+		return b;
+	}
+	
+	private static final boolean overlap( double[] bi, int i, double[] bj, int j) {
 
-		Vector3 bi = i.getMinBounds();
-		Vector3 ei = i.getMaxBounds();
-		Vector3 bj = j.getMinBounds();
-		Vector3 ej = j.getMaxBounds();
-		
-		double bix = bi.x;
-		double biy = bi.y;
-		double biz = bi.z;
-		double eix = ei.x;
-		double eiy = ei.y;
-		double eiz = ei.z;
-		double bjx = bj.x;
-		double bjy = bj.y;
-		double bjz = bj.z;
-		double ejx = ej.x;
-		double ejy = ej.y;
-		double ejz = ej.z;
+		double bix = bi[i];
+		double biy = bi[i+1];
+		double biz = bi[i+2];
+		double eix = bi[i+3];
+		double eiy = bi[i+4];
+		double eiz = bi[i+5];
+		double bjx = bj[j];
+		double bjy = bj[j+1];
+		double bjz = bj[j+2];
+		double ejx = bj[j+3];
+		double ejy = bj[j+4];
+		double ejz = bj[j+5];
 
 		//TODO test this 
 		if( (((bjx < bix) && (bix <= ejx)) || ((bix <= bjx) && (bjx < eix ))) &&
@@ -114,12 +167,73 @@ public class ExhaustiveSearch implements BroadphaseCollisionDetection {
 
 	@Override
 	public void add(Geometry a) {
-		geometries.add(a);
+		final int handle = bounds.add(a);
+		if (handle >= sleeping.length) {
+			sleeping = grow(sleeping, 2*sleeping.length);
+			deactivated = grow(deactivated, 2*deactivated.length);
+		}
+		sleeping[handle] = false;
+		deactivated[handle] = false;
 	}
 
 	@Override
 	public void remove(Geometry a) {
-		geometries.remove(a);
+		removeAll(Collections.singletonList(a));
+	}
+
+	/**
+	 * Remove a collection of geometries. The pairs are scanned once for the whole collection, 
+	 * instead of once for each geometry
+	 */
+	@Override
+	public void removeAll(Collection<Geometry> geometries) {
+		final Set<Geometry> removed = new HashSet<Geometry>();
+		for (Geometry g: geometries) {
+			bounds.remove(g);
+			removed.add(g);
+		}
+		
+		// report separation of the pairs that involve the geometries at once, 
+		// so handlers never see a removed geometry in a later run
+		changes.begin();
+		Set<Pair<Geometry>> separated = new HashSet<Pair<Geometry>>();
+		Iterator<Pair<Geometry>> pairs = existingPairs.iterator();
+		while (pairs.hasNext()) {
+			Pair<Geometry> pair = pairs.next();
+			if (removed.contains(pair.getFirst()) || removed.contains(pair.getSecond())) {
+				pairs.remove();
+				separated.add(pair);
+				changes.separation(pair);
+				for ( Handler handler: handlers)
+					handler.separation(pair);
+			}
+		}
+		if (!separated.isEmpty())
+			overlaps.removeAll(separated);
+	}
+
+	@Override
+	public void addAll(Collection<Geometry> geometries) {
+		for (Geometry g: geometries)
+			add(g);
+	}
+
+
+	@Override
+	public void deactivate(Geometry g) {
+		deactivated[handle(g)] = true;
+	}
+
+	@Override
+	public void activate(Geometry g) {
+		deactivated[handle(g)] = false;
+	}
+
+	private final int handle( Geometry g ) {
+		final int handle = bounds.getHandle(g);
+		if (handle < 0)
+			throw new IllegalArgumentException("Given geometry does not exist");
+		return handle;
 	}
 
 	@Override
@@ -132,6 +246,40 @@ public class ExhaustiveSearch implements BroadphaseCollisionDetection {
 		handlers.remove(h);
 	}
 
+	@Override
+	public PairView getOverlappingPairView() {
+		return overlapview;
+	}
+
+	@Override
+	public PairView getAddedPairs() {
+		return changes.addedview;
+	}
+
+	@Override
+	public PairView getRemovedPairs() {
+		return changes.removedview;
+	}
+
+	/**
+	 * Queries test the bounding box of every geometry, like run() tests every pair, so this implementation
+	 * can serve as a reference for the others
+	 */
+	@Override
+	public void query(Vector3 min, Vector3 max, Collection<Geometry> result) {
+		bounds.query(min, max, result);
+	}
+
+	@Override
+	public void query(Vector3 point, Vector3 direction, double length, Vector3 extent, Collection<Geometry> result) {
+		bounds.query(point, direction, length, extent, result);
+	}
+
+	@Override
+	public BoundsStore getBoundsStore() {
+		return bounds;
+	}
+
 	@Override
 	public Set<Pair<Geometry>> getOverlappingPairs() {
 		return new LinkedHashSet<Pair<Geometry>>(existingPairs);
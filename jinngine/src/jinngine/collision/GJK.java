@@ -16,8 +16,11 @@ import jinngine.math.Vector3;
  * Implementation of the Gilbert-Johnsson-Keerthi algorithm, for computing the distance 
  * between convex objects and/or closest points. This implementation is based on the theory presented in 
  * [Bergen, 2003, Continuous Collision Detection in Interactive 3D environments, ISBN-13: 978-1558608016].
- * This describes an approach that is based on a recursive simplex reduction technique. This implementation
- * us "unrolled", so that recursive calls are avoided. 
+ * The simplex is reduced using the signed volumes distance sub-algorithm, described in [Montanari, Petrinic 
+ * and Barbieri, 2017, Improving the GJK algorithm for faster and more reliable distance queries between 
+ * convex objects, ACM Transactions on Graphics 36(3)]. Instead of solving the Johnson sub-algorithm for 
+ * every subset of the simplex, the origin is projected onto the simplex, and signed volumes in the 
+ * projection plane decide which sub-simplex supports the closest point. No objects are created by run().
  */
 public final class GJK {
 	/**
@@ -46,6 +49,17 @@ public final class GJK {
 
 	private final State state = new State();
 	
+	// scratch vectors for support points and negated directions
+	private final Vector3 sa = new Vector3();
+	private final Vector3 sb = new Vector3();
+	private final Vector3 nv = new Vector3();
+	
+	// signed volumes sub-algorithm. Local vertex k is the simplex point simplices[permutation[k]][0]. 
+	// Barycentric weights are computed into the weight arrays, one for each level of the recursion
+	private final double[] x = new double[4], y = new double[4], z = new double[4];
+	private final double[] weights = new double[4], faceweights = new double[4], edgeweights = new double[4];
+	private final int[] order = new int[4];
+	
 	/**
 	 * Get the internal state of the GJK algorithm
 	 * @return A GJK state
@@ -58,7 +72,7 @@ public final class GJK {
 	 * Find the closest pair of points on the convex objects A and B, given by the support mappings Sa and Sb. This 
 	 * method does not take into account the value of {@link SupportMap3.sphereSweepRadius()}. This is so, because 
 	 * the closest points of two sphere swept volumes are trivially known if the closest points of the original shapes
-	 * are known. 
+	 * are known. The number of iterations used is available in {@link State#iterations} on return.
 	 * 
 	 * @param Sa support mapping of a convex object A
 	 * @param Sb support mapping of a convex object B
@@ -76,17 +90,19 @@ public final class GJK {
 	 * @param maxiter maximum number of iterations before termination is forced.
 	 */
 	public void run( SupportMap3 Sa, SupportMap3 Sb, Vector3 va, Vector3 vb, double envelope, double epsilon, int maxiter ) {		
+		final Vector3 v = state.v;
+		final Vector3 w = state.w;
+		final Vector3 sa = this.sa;
+		final Vector3 sb = this.sb;
+		final Vector3 nv = this.nv;
+
 		// if v has become too small, reset it TODO check this
-		if (state.v.norm()<epsilon) {
-			state.v.assign(10,10,10);
+		if (v.norm()<epsilon) {
+			v.assign(10,10,10);
 		}
 
 		state.iterations = 0;
 		state.intersection = false;
-    	final Vector3 v = state.v;
-		final Vector3 w = state.w;
-		final Vector3 sa = new Vector3();
-		final Vector3 sb = new Vector3();
     			
     	// initially update the simplex (often results in a quick termination)
     	if (state.simplexSize>0)
@@ -95,12 +111,12 @@ public final class GJK {
     	// main loop
 		while ( true  ) {
 			state.iterations++;		
-//		    System.out.println("gjk iteration" + " " + v.norm()+ "  : " + state.simplexSize);
 			
 			// store points of convex objects a and b, and A-B 
-			sa.assign( Sa.supportPoint(state.v.negate()));
-			sb.assign( Sb.supportPoint(state.v));	    							
-			w.assign( sa.sub(sb) );
+			nv.assign(-v.x, -v.y, -v.z);
+			Sa.supportPoint(nv, sa);
+			Sb.supportPoint(v, sb);
+			w.assign(sa.x-sb.x, sa.y-sb.y, sa.z-sb.z);
 
 			// termination condition
 			// ||v||2 -v.w is an upper bound for ||vk-v(A-B)||2 which converges towards zero as k goes large
@@ -108,7 +124,7 @@ public final class GJK {
 				break;
 						
 			//add w to the simplices
-			Vector3[] row = state.simplices[state.permutation[state.simplexSize]];
+			final Vector3[] row = state.simplices[state.permutation[state.simplexSize]];
 			row[0].assign(w);
 			row[1].assign(sa);
 			row[2].assign(sb);
@@ -120,17 +136,16 @@ public final class GJK {
 				break;
 			}
 			
-			// separating axis test (distance is at least more than the envelope)
-			if ( v.normalize().dot(w) > envelope ) {
+			// separating axis test (distance is at least more than the envelope). A zero v 
+			// is treated as the unit x axis, as by Vector3.normalize()
+			final double length = v.norm();
+			if ( (length > 0? v.dot(w)/length : w.x) > envelope ) {
 				state.intersection = false;
 				break;
 			} 
 			
 			//Calculate the vector v using lambda values
-			v.assignZero();
-			for (int i=0; i<state.simplexSize;i++) {
-				Vector3.add(v, state.simplices[state.permutation[i]][0].multiply( state.lambda[state.permutation[i]]));
-			}
+			combine(state, 0, v);
 
 			//Check for a penetrating state
 			if ( v.norm() < epsilon || state.simplexSize > 3 ) {
@@ -138,24 +153,29 @@ public final class GJK {
 			}
 		} //while true
 		
-		//Computing v, p, and q, closest points of A and B
-//		state.v.assignZero(); 
-		state.p.assignZero(); state.q.assignZero(); 
-		for (int i=0; i<state.simplexSize;i++) {
-//			Vector3.add(state.v, state.simplices[state.permutation[i]][0].multiply(state.lambda[state.permutation[i]]));			
-			Vector3.add(state.p, state.simplices[state.permutation[i]][1].multiply(state.lambda[state.permutation[i]]));
-			Vector3.add(state.q, state.simplices[state.permutation[i]][2].multiply(state.lambda[state.permutation[i]]));				
-		}
-
-		// return closest points in return arguments
+		//Computing p and q, closest points of A and B, and return them in the arguments
+		combine(state, 1, state.p);
+		combine(state, 2, state.q);
 		va.assign(state.p);
 		vb.assign(state.q);
 		
 		// check for intersection
-		if ( va.sub(vb).norm() < epsilon || state.simplexSize > 3)
+		final double dx = va.x-vb.x, dy = va.y-vb.y, dz = va.z-vb.z;
+		if ( Math.sqrt(dx*dx+dy*dy+dz*dz) < epsilon || state.simplexSize > 3)
 			state.intersection = true;
 	}
 	
+	// store the convex combination of the given column of the simplex in result
+	private static final void combine( final State state, final int column, final Vector3 result ) {
+		double rx = 0, ry = 0, rz = 0;
+		for (int i=0; i<state.simplexSize;i++) {
+			final int k = state.permutation[i];
+			final Vector3 p = state.simplices[k][column];
+			final double l = state.lambda[k];
+			rx += p.x*l; ry += p.y*l; rz += p.z*l;
+		}
+		result.assign(rx, ry, rz);
+	}
 	
 	/**
 	 *  updateSimplex() uses the cached information in GJK3.State to update the current simplex. More specifically,
@@ -169,431 +189,218 @@ public final class GJK {
 	private final void updateSimplex(final GJK.State state, final SupportMap3 Sa, final SupportMap3 Sb) {
 
 		for (int i = 0; i<state.simplexSize; i++) {
-			//add w to the simplices
 			final Vector3[] row = state.simplices[state.permutation[i]];
 
-			//store points of convex objects a and b, and A-B (in A space)
-			row[1].assign(Sa.supportPoint(state.simplices[i][3].negate()));
-			row[2].assign(Sb.supportPoint(state.simplices[i][3]));	    							
-			row[0].assign(row[1].sub(row[2]));
-			//row[4] = v.copy(); not needed
+			//store points of convex objects a and b, and A-B, using the cached direction of the row
+			final Vector3 d = row[3];
+			nv.assign(-d.x, -d.y, -d.z);
+			Sa.supportPoint(nv, row[1]);
+			Sb.supportPoint(d, row[2]);
+			row[0].assign(row[1].x-row[2].x, row[1].y-row[2].y, row[1].z-row[2].z);
 		}
 
 		//recompute the simplex and lambda values
 		reduceSimplex( state );
 	
 		//Calculate the vector v
-		state.v.assign(new Vector3());
-		for (int i=0; i<state.simplexSize;i++) 
-			Vector3.add(state.v, state.simplices[state.permutation[i]][0].multiply( state.lambda[state.permutation[i]]));
-	}
-
-	/**
-	 * Return a support point on the CSO of A and B, (A-B), in world space
-	 * @param Sa support mapping for object A
-	 * @param a body for object A
-	 * @param Sb support mapping for object B
-	 * @param b Body for object B
-	 * @param v direction vector 
-	 * @return a new support point on the configuration space obstacle of A and B
-	 */
-	@SuppressWarnings("unused")
-	private final Vector3 support( final SupportMap3 Sa, final SupportMap3 Sb, final Vector3 v) {
-		final Vector3 sva = Sa.supportPoint(v) ;
-		//We need rotate the vector reverse in B space
-		final Vector3 svb = Sb.supportPoint(v.multiply(-1));   		
-		return sva.sub(svb);
-	}
-	/**
-	 * Auxiliary function for swapping two elements in a permutation array.
-	 * 
-	 * @param i 
-	 * @param j
-	 * @param permutation 
-	 */
-	private final void swap( final int i, final int j, final int[] permutation ) {
-		final int temp = permutation[i];
-		permutation[i] = permutation[j];
-		permutation[j] = temp;
+		combine(state, 0, state.v);
 	}
 
 	/**
-	 * Method is a hard-coded method that reduces the given simplex to the smallest possible simplex,
-	 * that contains the closest point to the origin. This approach is described in detail in [Bergen 2003],
-	 * and can be quite cumbersome to grasp. However, it is sufficient to know that the method finds the 
-	 * smallest subset of simplex points, which contains the closest point to the origin of the whole simplex.
-	 * In addition, the method also computes a parametrisation of the closest point, v, expressed as a convex
-	 * combination of the new simplex points, given by the lambda coefficients.
+	 * Reduce the given simplex to the smallest sub-simplex that contains the point closest to the origin, and 
+	 * compute the closest point as a convex combination of the remaining points, given by the lambda values. The 
+	 * remaining points are moved to the front of the permutation, keeping their order.
 	 * @param state State containing the simplex that is to be reduced
 	 * @return returns false if the latest added simplex point was rejected, true otherwise. Upon return, the state
 	 * class will be updated containing new simplex points, lambda values and permutation vector. 
 	 */
 	private final boolean reduceSimplex(final State state) {
-		// Matrix is a 4x3 matrix like:| y1 a1 b1 |
-		// permutation is              | ...      |
-		//  {size,p1,p2,p3,p4}         | y4 a4 b4 |
-		//		
-		final Vector3[][] matrix = state.simplices;
-		final double[] lambda = state.lambda;
+		final int n = state.simplexSize;
 		final int[] perm = state.permutation;
-		final double epsilon = 1e-15;
-		
-		//trivial case
-		if (state.simplexSize == 1) {
-			lambda[perm[0]]=1;
-			state.simplexSize=1;
-			return true;
+		for (int k=0; k<n; k++) {
+			final Vector3 p = state.simplices[perm[k]][0];
+			x[k] = p.x; y[k] = p.y; z[k] = p.z;
 		}
 
-		if (state.simplexSize == 2) {
-			// 1 12
-			// 2
-			final Vector3[] row0 = matrix[perm[0]];
-			final Vector3[] row1 = matrix[perm[1]];
-			final Vector3 y1 = row0[0]; 
-			final Vector3 y2 = row1[0]; 
-
-			final double d12_1 = y2.sub(y1).dot(y2);
-			final double d12_2 = y1.sub(y2).dot(y1);
-			
-			//y1 (no permutation needed)
-			if ( d12_2 <= 0 ) {                  lambda[perm[0]] = 1;  state.simplexSize = 1; return false;}
-			//y2 ( (2,1)
-			if ( d12_1 <= 0 ) { swap(1,0, perm); lambda[perm[0]] = 1;  state.simplexSize = 1; return true; }
-
-			final double d12 = d12_1 + d12_2;
-			//terminate on affinely dependent points in the set (if d12 is zero, we can never use point y2)
-			if ( Math.abs(d12) <= epsilon ) {
-//				System.out.println("Affinely dependent set in case d12");
-				state.simplexSize = 1;
-				return false;
-			}
-			
-			if ( d12_1 > 0 && d12_2 > 0 ) {	
-				//y1, y2 (no permutation)			
-				lambda[perm[0]] = d12_1/d12; lambda[perm[1]] = d12_2/d12;
-				return true;
-			} else {
-//				System.out.println("Unable to determine smallest set, use y1");
-				state.simplexSize = 1;
-				return false;
-			}
-				
-		} else if (state.simplexSize == 3) {
-			// 1 12 123
-			// 2 13
-			// 3 23
-			
-			final Vector3[] row0 = matrix[perm[0]];
-			final Vector3[] row1 = matrix[perm[1]];
-			final Vector3[] row2 = matrix[perm[2]];			
-			final Vector3 y1 = row0[0]; 
-			final Vector3 y2 = row1[0];
-			final Vector3 y3 = row2[0];
-			
-			//y1, (no permutation)
-			final double d13_3 = y1.sub(y3).dot(y1);// d13_3 = Math.abs(d13_3)<epsilon?0:d13_3;
-			final double d12_2 = y1.sub(y2).dot(y1);// d12_2 = Math.abs(d12_2)<epsilon?0:d12_2;
-			if ( d12_2 <= 0 && d13_3 <=0 ) /*{Vector3.set(v,y1); return new Vector3[] {y1};}*/ 
-			{                 lambda[perm[0]]=1; state.simplexSize=1; return true; }
-
-			//y2 (2,1)
-			final double d12_1 = y2.sub(y1).dot(y2); //d12_1 = Math.abs(d12_1)<epsilon?0:d12_1;
-			final double d23_3 = y2.sub(y3).dot(y2); //d23_3 = Math.abs(d23_3)<epsilon?0:d23_3;
-			if ( d12_1 <= 0 && d23_3 <=0 ) //{Vector3.set(v,y2); return new Vector3[] {y2}; }
-			{ swap(1,0,perm); lambda[perm[0]]=1; state.simplexSize=1; return true; }
-				
-			//y3 (3,1)
-			final double d13_1 = y3.sub(y1).dot(y3); //d13_1 = Math.abs(d13_1)<epsilon?0:d13_1;
-			final double d23_2 = y3.sub(y2).dot(y3); //d23_2 = Math.abs(d23_2)<epsilon?0:d23_2;
-			if ( d23_2 <= 0 && d13_1 <=0 ) //{Vector3.set(v,y3); return new Vector3[] {y3}; }
-			{ swap(2,0,perm); lambda[perm[0]]=1; state.simplexSize=1; return true; }
-			
-			final double d23 = d23_2 + d23_3;
-			final double d13 = d13_1 + d13_3;
-			final double d12 = d12_1 + d12_2;
-
-			//terminate on affinely dependent points in the set
-//			if ( Math.abs(d13)<=epsilon ||
-//					Math.abs(d23)<=epsilon ) {
-//				
-//				//System.out.println("Affinely independent set on d13 or d23 ,  d13="+d13+"  d23="+d23+"  d12="+d12);
-//				state.simplexSize = 2;
-//				return false;
-//			}
-			//TODO 2009-08-09,  I've discovered that the above is wrong. Just because d13 is zero, it does not mean that y2 and y3 cannot be 
-			//used, and vice versa. The idea of the check, is to prevent GJK from performing useless iterations, using 
-			//points that are affinely dependent. It now remains to fix the condition such that it works in the intended way.
-			
-			
-
-			//y2,y3 (2,1) (3,2)
-			final double d123_1 = d23_2 * y2.sub(y1).dot(y2) + d23_3 * y2.sub(y1).dot(y3); //d123_1 = Math.abs(d123_1)<epsilon?0:d123_1;
-			if (d123_1 <= 0 && d23_2 > 0 && d23_3 > 0) //{Vector3.set(v,y2.multiply(d23_2/d23).Add(y3.multiply(d23_3/d23))); return new Vector3[] {y2,y3};}
-			{ swap(1,0,perm); swap(2,1,perm); lambda[perm[0]]=d23_2/d23; lambda[perm[1]]=d23_3/d23; state.simplexSize=2; return true; }
-			
-			//y1,y3 (3,2)
-			final double d123_2 = d13_1 * y1.sub(y2).dot(y1) + d13_3 * y1.sub(y2).dot(y3); //d123_2 = Math.abs(d123_2)<epsilon?0:d123_2;
-			if (d123_2 <= 0 && d13_1 > 0 && d13_3 > 0) //{ Vector3.set(v,y1.multiply(d13_1/d13).Add(y3.multiply(d13_3/d13))); return new Vector3[] {y1,y3};}
-			{                 swap(2,1,perm); lambda[perm[0]]=d13_1/d13; lambda[perm[1]]=d13_3/d13; state.simplexSize=2; return true; }
-
-			//y1,y2 (no permutation)
-			final double d123_3 = d12_1 * y1.sub(y3).dot(y1) + d12_2 * y1.sub(y3).dot(y2); //d123_3 = Math.abs(d123_3)<epsilon?0:d123_3;
-			if (d123_3 <= 0 && d12_1 > 0 && d12_2 > 0) //{ /*Vector3.set(v,y1.multiply(d12_1/d12).Add(y2.multiply(d12_2/d12)));*/ return null;  /*return new Vector3[] {y1,y2};*/ }
-			{                                 lambda[perm[0]]=d12_1/d12; lambda[perm[1]]=d12_2/d12; state.simplexSize=2; return false; }
-
-			//y1, y2, y3 (no permutation)	
-			final double d123 = d123_1 + d123_2 + d123_3;
-			//System.out.println("d123 = "+d123);
-
-			if ( d123_1 > 0 && d123_2 > 0 && d123_3 > 0)
-			{  		
-				lambda[perm[0]]=d123_1/d123; lambda[perm[1]]=d123_2/d123; lambda[perm[2]]=d123_3/d123; state.simplexSize=3; 
-				return true;
-			} else {
-//				System.out.println("Unable to determine smallest set, use y1,y2");
-				//double d123_3 = d12_1 * y1.minus(y3).dot(y1) + d12_2 * y1.minus(y3).dot(y2); d123_3 = Math.abs(d123_3)<epsilon?0:d123_3;
-				lambda[perm[0]]=d12_1/d12; lambda[perm[1]]=d12_2/d12; state.simplexSize=2; return false; 
-				//System.exit(-1);
-			}
-			
-		} else if (state.simplexSize == 4) {
-			// 1 12 123 1234
-			// 2 13 124
-			// 3 14 134
-			// 4 23 234
-            //	 24
-			//   34
-			
-			final Vector3[] row0 = matrix[perm[0]];
-			final Vector3[] row1 = matrix[perm[1]];
-			final Vector3[] row2 = matrix[perm[2]];			
-			final Vector3[] row3 = matrix[perm[3]];			
-			final Vector3 y1 = row0[0]; 
-			final Vector3 y2 = row1[0];
-			final Vector3 y3 = row2[0];
-			final Vector3 y4 = row3[0];
-			
-			//y1 (no permutation)
-			final double d13_3 = y1.sub(y3).dot(y1); //d13_3= Math.abs(d13_3)<epsilon?0:d13_3;
-			final double d12_2 = y1.sub(y2).dot(y1); //d12_2= Math.abs(d12_2)<epsilon?0:d12_2;
-			final double d14_4 = y1.sub(y4).dot(y1); //d14_4= Math.abs(d14_4)<epsilon?0:d14_4;
-			if ( d12_2 <= 0 && d13_3 <=0 && d14_4 <=0 ) //{Vector3.set(v, y1); return new Vector3[] {y1}; }
-			{                lambda[perm[0]] = 1; state.simplexSize=1; return true; }
-			
-			//y2 (2,1)
-			final double d12_1 = y2.sub(y1).dot(y2); //d12_1= Math.abs(d12_1)<epsilon?0:d12_1;
-			final double d23_3 = y2.sub(y3).dot(y2); //d23_3= Math.abs(d23_3)<epsilon?0:d23_3;
-			final double d24_4 = y2.sub(y4).dot(y2); //d24_4= Math.abs(d24_4)<epsilon?0:d24_4;
-			if ( d12_1 <= 0 && d23_3 <=0 && d24_4 <= 0) //{Vector3.set(v, y2); return new Vector3[] {y2}; }
-			{ swap(1,0,perm); lambda[perm[0]] = 1; state.simplexSize=1; return true; }
-
-			//y3 (3,1)
-			final double d13_1 = y3.sub(y1).dot(y3); //d13_1= Math.abs(d13_1)<epsilon?0:d13_1;
-			final double d23_2 = y3.sub(y2).dot(y3); //d23_2= Math.abs(d23_2)<epsilon?0:d23_2;
-			final double d34_4 = y3.sub(y4).dot(y3); //d34_4= Math.abs(d34_4)<epsilon?0:d34_4;
-			if ( d23_2 <= 0 && d13_1 <=0 && d34_4 <=0 ) //{Vector3.set(v, y3); return new Vector3[] {y3}; }
-			{ swap(2,0,perm); lambda[perm[0]] = 1; state.simplexSize=1; return true; }
-
-			//y4 (4,1)
-			final double d14_1 = y4.sub(y1).dot(y4); //d14_1= Math.abs(d14_1)<epsilon?0:d14_1;
-			final double d24_2 = y4.sub(y2).dot(y4); //d24_2= Math.abs(d24_2)<epsilon?0:d24_2;
-			final double d34_3 = y4.sub(y3).dot(y4); //d34_3= Math.abs(d34_3)<epsilon?0:d34_3;
-			if ( d14_1 <= 0 && d24_2 <=0 && d34_3 <=0 ) //{Vector3.set(v, y4); return new Vector3[] {y4}; }
-			{ swap(3,0,perm); lambda[perm[0]] = 1; state.simplexSize=1; return true; }
-
-			final double d12 = d12_1 + d12_2;
-			final double d13 = d13_1 + d13_3;
-			final double d14 = d14_1 + d14_4;
-			final double d23 = d23_2 + d23_3;
-			final double d24 = d24_2 + d24_4;
-			final double d34 = d34_3 + d34_4;
-			
-			//terminate on affinely dependent points in the set
-//			if ( (d12)<=epsilon || (d13)<=epsilon || (d14)<=epsilon ||
-//					(d23)<=epsilon || (d24)<=epsilon || (d34)<=epsilon ) {
-//				//System.out.println("Affinely independent set");
-//				state.simplexSize = 3;
-//				return false;
-//			}
-
-			//y1,y2 (no permutation)
-			final double d123_3 = d12_1 * y1.sub(y3).dot(y1) + d12_2 * y1.sub(y3).dot(y2); //d123_3= Math.abs(d123_3)<epsilon?0:d123_3;
-			final double d124_4 = d12_1 * y1.sub(y4).dot(y1) + d12_2 * y1.sub(y4).dot(y2); //d124_4= Math.abs(d124_4)<epsilon?0:d124_4;
-			//System.out.println("d123_3: " + d123_3 + " d124_4: " + d124_4);
-			if( d12_1 > 0 && d12_2 > 0 && d123_3 <=0 && d124_4 <=0) {
-//				Vector3.set(v, y1.multiply(d12_1/d12).Add(y2.multiply(d12_2/d12)));
-//				return new Vector3[] {y1,y2};
-				lambda[perm[0]] = d12_1 / d12; lambda[perm[1]] = d12_2/d12;
-				state.simplexSize = 2;
-				return true;				
-			}
-
-			//y1, y3 (3,2)
-			final double d123_2 = d13_1 * y1.sub(y2).dot(y1) + d13_3 * y1.sub(y2).dot(y3); //d123_2= Math.abs(d123_2)<epsilon?0:d123_2;
-			final double d134_4 = d13_1 * y1.sub(y4).dot(y1) + d13_3 * y1.sub(y4).dot(y3); //d134_4= Math.abs(d134_4)<epsilon?0:d134_4;
-			//System.out.println("d123_2: " + d123_2 + " d134_4: " + d134_4);
-			if( d13_1 > 0 && d13_3 > 0 && d123_2 <=0 && d134_4 <=0) {				
-//				Vector3.set(v, y1.multiply(d13_1/d13).Add(y3.multiply(d13_3/d13)));
-//				return new Vector3[] {y1,y3};				
-				swap(2,1,perm);
-				lambda[perm[0]] = d13_1 / d13; lambda[perm[1]] = d13_3/d13;
-				state.simplexSize = 2;
-				return true;
+		int mask;
+		switch (n) {
+		case 1: weights[0] = 1; mask = 1; break;
+		case 2: mask = segment(0, 1, weights); break;
+		case 3: mask = triangle(0, 1, 2, weights); break;
+		default: mask = tetrahedron(weights); break;
+		}
 
+		// move the remaining points to the front of the permutation
+		System.arraycopy(perm, 0, order, 0, n);
+		int size = 0;
+		for (int k=0; k<n; k++) {
+			if ((mask & (1<<k)) != 0) {
+				perm[size++] = order[k];
+				state.lambda[order[k]] = weights[k];
 			}
+		}
+		int removed = size;
+		for (int k=0; k<n; k++)
+			if ((mask & (1<<k)) == 0)
+				perm[removed++] = order[k];
+		state.simplexSize = size;
 
-			//y1, y4 (4,2)
-			final double d124_2 = d14_1 * y1.sub(y2).dot(y1) + d14_4 * y1.sub(y2).dot(y4); //d124_2= Math.abs(d124_2)<epsilon?0:d124_2;
-			final double d134_3 = d14_1 * y1.sub(y3).dot(y1) + d14_4 * y1.sub(y3).dot(y4); //d134_3= Math.abs(d134_3)<epsilon?0:d134_3;
-			//System.out.println("d124_2: " + d124_2 + " d134_3: " + d134_3);
-			if( d14_1 > 0 && d14_4 > 0 && d124_2 <=0 && d134_3 <=0) {
-//				Vector3.set(v, y1.multiply(d14_1/d14).Add(y4.multiply(d14_4/d14)));
-//				return new Vector3[] {y1,y4};
-				swap(3,1,perm);
-				lambda[perm[0]] = d14_1 / d14; lambda[perm[1]] = d14_4/d14;
-				state.simplexSize = 2;
-				return true;
-
-			}
+		return (mask & (1<<(n-1))) != 0;
+	}
 
-			//y2,y3 (2,1) (3,2)
-			final double d123_1 = d23_2 * y2.sub(y1).dot(y2) + d23_3 * y2.sub(y1).dot(y3); //d123_1= Math.abs(d123_1)<epsilon?0:d123_1;
-			final double d234_4 = d23_2 * y2.sub(y4).dot(y2) + d23_3 * y2.sub(y4).dot(y3); //d234_4= Math.abs(d234_4)<epsilon?0:d234_4;
-			//System.out.println("d123_1: " + d123_1 + " d234_4: " + d234_4);
-			if( d23_2 > 0 && d23_3 > 0 && d123_1 <=0 && d234_4 <=0) {
-//				Vector3.set(v, y2.multiply(d23_2/d23).Add(y3.multiply(d23_3/d23)));
-//				return new Vector3[] {y2,y3};
-				
-				swap(1,0,perm); swap(3,1,perm);
-				lambda[perm[0]] = d23_2 / d23; lambda[perm[1]] = d23_3/d23;
-				state.simplexSize = 2;
-				return true;
+	// squared norm of the convex combination of the local vertices in mask
+	private final double distance( final int mask, final double[] w ) {
+		double px = 0, py = 0, pz = 0;
+		for (int k=0; k<4; k++) {
+			if ((mask & (1<<k)) != 0) {
+				px += x[k]*w[k]; py += y[k]*w[k]; pz += z[k]*w[k];
 			}
+		}
+		return px*px+py*py+pz*pz;
+	}
 
-			//y2,y4 (2,1) (4,2)
-			final double d124_1 = d24_2 * y2.sub(y1).dot(y2) + d24_4 * y2.sub(y1).dot(y4); //d124_1= Math.abs(d124_1)<epsilon?0:d124_1;
-			final double d234_3 = d24_2 * y2.sub(y3).dot(y2) + d24_4 * y2.sub(y3).dot(y4); //d234_3= Math.abs(d234_3)<epsilon?0:d234_3;
-			//System.out.println("d124_1: " + d124_1 + " d234_3: " + d234_3);
-			if( d24_2 > 0 && d24_4 > 0 && d124_1 <=0 && d234_3 <=0) {
-//				Vector3.set(v, y2.multiply(d24_2/d24).Add(y4.multiply(d24_4/d24)));
-//				return new Vector3[] {y2,y4};
-				swap(1,0,perm); swap(3,1,perm);
-				lambda[perm[0]] = d24_2 / d24; lambda[perm[1]] = d24_4/d24;
-				state.simplexSize = 2;
-				return true;
-
-			}
+	// twice the signed area of the triangle p1,p2,p3 in a coordinate plane
+	private static final double area( double p1u, double p1v, double p2u, double p2v, double p3u, double p3v ) {
+		return (p2u-p1u)*(p3v-p1v) - (p2v-p1v)*(p3u-p1u);
+	}
 
-			//y3,y4 (3,1) (2,4)
-			final double d134_1 = d34_3 * y3.sub(y1).dot(y3) + d34_4 * y3.sub(y1).dot(y4); //d134_1= Math.abs(d134_1)<epsilon?0:d134_1;
-			final double d234_2 = d34_3 * y3.sub(y2).dot(y3) + d34_4 * y3.sub(y2).dot(y4); //d234_2= Math.abs(d234_2)<epsilon?0:d234_2;
-			//System.out.println("d134_1: " + d134_1 + " d234_2: " + d234_2);
-			if( d34_3 > 0 && d34_4 > 0 && d134_1 <=0 && d234_2 <=0) {
-//				Vector3.set(v, y3.multiply(d34_3/d34).Add(y4.multiply(d34_4/d34)));
-//				return new Vector3[] {y3,y4};				
-				swap(2,0,perm); swap(1,3,perm);
-				lambda[perm[0]] = d34_3 / d34; lambda[perm[1]] = d34_4/d34;
-				state.simplexSize = 2;
-				return true;
+	// six times the signed volume of the tetrahedron p1,p2,p3,p4
+	private static final double volume( double p1x, double p1y, double p1z, double p2x, double p2y, double p2z,
+			double p3x, double p3y, double p3z, double p4x, double p4y, double p4z ) {
+		final double ux = p2x-p1x, uy = p2y-p1y, uz = p2z-p1z;
+		final double vx = p3x-p1x, vy = p3y-p1y, vz = p3z-p1z;
+		final double wx = p4x-p1x, wy = p4y-p1y, wz = p4z-p1z;
+		return ux*(vy*wz-vz*wy) + uy*(vz*wx-vx*wz) + uz*(vx*wy-vy*wx);
+	}
 
-			}
+	// closest point to the origin on the segment between local vertices a and b. Weights 
+	// are written into out, and the vertices supporting the closest point are returned as a mask
+	private final int segment( final int a, final int b, final double[] out ) {
+		final double tx = x[b]-x[a], ty = y[b]-y[a], tz = z[b]-z[a];
+		final double tt = tx*tx+ty*ty+tz*tz;
+
+		// project the origin onto the line through a and b
+		final double s = tt > 0? -(x[a]*tx+y[a]*ty+z[a]*tz)/tt : 0;
+		final double px = x[a]+tx*s, py = y[a]+ty*s, pz = z[a]+tz*s;
+
+		// signed lengths of the segment and its sub-segments, along the axis where the segment is longest
+		final double ax = Math.abs(tx), ay = Math.abs(ty), az = Math.abs(tz);
+		final double mu, ca, cb;
+		if (ax >= ay && ax >= az) {
+			mu = x[a]-x[b]; ca = px-x[b]; cb = x[a]-px;
+		} else if (ay >= az) {
+			mu = y[a]-y[b]; ca = py-y[b]; cb = y[a]-py;
+		} else {
+			mu = z[a]-z[b]; ca = pz-z[b]; cb = z[a]-pz;
+		}
 
-			//y1,y2,y3 (no permutation)
-			final double d1234_4 = d123_1 * (y1.sub(y4).dot(y1)) + d123_2 * (y1.sub(y4).dot(y2) ) + d123_3 * (y1.sub(y4).dot(y3));
-			//d1234_4 = Math.abs(d1234_4)<epsilon?0:d1234_4;
-			if ( d123_1 > 0 && d123_2 > 0 && d123_3 > 0 && d1234_4 <= 0) {
-				final double d123 = d123_1 + d123_2 + d123_3;
-				lambda[perm[0]]= d123_1/d123; lambda[perm[1]]= d123_2/d123; lambda[perm[2]] = d123_3/d123;
-				state.simplexSize = 3;
-				
-//				Vector3.set(v, y1.multiply(lambda1).Add(y2.multiply(lambda2)).Add(y3.multiply(lambda3)));
-//				return new Vector3[] {y1,y2,y3};
-				
-				return false;
-			}
+		// the projected origin is inside the segment
+		if (mu*ca > 0 && mu*cb > 0) {
+			out[a] = ca/mu; out[b] = cb/mu;
+			return (1<<a) | (1<<b);
+		}
 
-			//y1,y2,y4 (4,3)
-			final double d1234_3 = d124_1 * (y1.sub(y3).dot(y1)) + d124_2 * (y1.sub(y3).dot(y2) ) + d124_4 * (y1.sub(y3).dot(y4));
-			//d1234_3 = Math.abs(d1234_3)<epsilon?0:d1234_3;
-			if ( d124_1 > 0 && d124_2 > 0 && d124_4 > 0 && d1234_3 <= 0) { 
-				final double d124 = d124_1 + d124_2 + d124_4;
-//				Vector3.set(v, y1.multiply(d124_1/d124).Add(y2.multiply(d124_2/d124)).Add(y4.multiply(d124_4/d124)));
-//				return new Vector3[] {y1,y2,y4};
-				swap(3,2,perm);
-				lambda[perm[0]]= d124_1/d124; lambda[perm[1]]= d124_2/d124; lambda[perm[2]] = d124_4/d124;
-				state.simplexSize = 3;
-				return true;
+		// otherwise, the closest point is the end point on the side of the projection
+		final int k = s < 0.5? a : b;
+		out[k] = 1;
+		return 1<<k;
+	}
 
+	// closest point to the origin on the triangle of local vertices a, b and c
+	private final int triangle( final int a, final int b, final int c, final double[] out ) {
+		final double ux = x[b]-x[a], uy = y[b]-y[a], uz = z[b]-z[a];
+		final double vx = x[c]-x[a], vy = y[c]-y[a], vz = z[c]-z[a];
+		final double nx = uy*vz-uz*vy, ny = uz*vx-ux*vz, nz = ux*vy-uy*vx;
+		final double nn = nx*nx+ny*ny+nz*nz;
+
+		// signed areas of the triangle, and of the sub-triangles where the projected origin replaces a vertex, 
+		// in the coordinate plane where the projected triangle is largest. A degenerate triangle has zero area
+		double mu = 0, ca = 0, cb = 0, cc = 0;
+		if (nn > 0) {
+			// project the origin onto the plane of the triangle
+			final double s = (x[a]*nx+y[a]*ny+z[a]*nz)/nn;
+			final double px = nx*s, py = ny*s, pz = nz*s;
+			final double ax = Math.abs(nx), ay = Math.abs(ny), az = Math.abs(nz);
+			if (ax >= ay && ax >= az) {
+				mu = nx;
+				ca = area(py, pz, y[b], z[b], y[c], z[c]);
+				cb = area(y[a], z[a], py, pz, y[c], z[c]);
+				cc = area(y[a], z[a], y[b], z[b], py, pz);
+			} else if (ay >= az) {
+				mu = ny;
+				ca = area(pz, px, z[b], x[b], z[c], x[c]);
+				cb = area(z[a], x[a], pz, px, z[c], x[c]);
+				cc = area(z[a], x[a], z[b], x[b], pz, px);
+			} else {
+				mu = nz;
+				ca = area(px, py, x[b], y[b], x[c], y[c]);
+				cb = area(x[a], y[a], px, py, x[c], y[c]);
+				cc = area(x[a], y[a], x[b], y[b], px, py);
 			}
 
-			//y1,y3,y4 (3,2) (4,3)
-			final double d1234_2 = d134_1 * (y1.sub(y2).dot(y1)) + d134_3 * (y1.sub(y2).dot(y3) ) + d134_4 * (y1.sub(y2).dot(y4));
-			//d1234_2 = Math.abs(d1234_2)<epsilon?0:d1234_2;
-			if ( d134_1 > 0 && d134_3 > 0 && d134_4 > 0 && d1234_2 <= 0) { 
-				final double d134 = d134_1 + d134_3 + d134_4;
-//				Vector3.set(v, y1.multiply(d134_1/d134).Add(y3.multiply(d134_3/d134)).Add(y4.multiply(d134_4/d134)));
-//				return new Vector3[] {y1,y3,y4};
-				swap(2,1,perm); swap(3,2,perm);
-				lambda[perm[0]]= d134_1/d134; lambda[perm[1]]= d134_3/d134; lambda[perm[2]] = d134_4/d134;
-				state.simplexSize = 3;
-				return true;
-
+			// the projected origin is inside the triangle
+			if (mu*ca > 0 && mu*cb > 0 && mu*cc > 0) {
+				out[a] = ca/mu; out[b] = cb/mu; out[c] = cc/mu;
+				return (1<<a) | (1<<b) | (1<<c);
 			}
+		}
 
-			//y2,y3,y4 (2,1)(3,2)(4,3)
-			final double d1234_1 = d234_2 * (y2.sub(y1).dot(y2)) + d234_3 * (y2.sub(y1).dot(y3) ) + d234_4 * (y2.sub(y1).dot(y4));
-			//d1234_1 = Math.abs(d1234_1)<epsilon?0:d1234_1;
-			if ( d234_2 > 0 && d234_3 > 0 && d234_4 > 0 && d1234_1 <= 0) {
-				final double d234 = d234_2 + d234_3 + d234_4;
-//				Vector3.set(v, y2.multiply(d234_2/d234).Add(y3.multiply(d234_3/d234)).Add(y4.multiply(d234_4/d234)));
-//				return new Vector3[] {y2,y3,y4};
-				swap(1,0,perm); swap(2,1,perm); swap(3,2,perm);
-				lambda[perm[0]]= d234_2/d234; lambda[perm[1]]= d234_3/d234; lambda[perm[2]] = d234_4/d234;
-				state.simplexSize = 3;
-				return true;
+		// otherwise, the closest point is on one of the edges opposite a vertex with a non-positive weight
+		double best = Double.POSITIVE_INFINITY;
+		int mask = 0;
+		for (int i=0; i<3; i++) {
+			final double weight = i==0? ca : i==1? cb : cc;
+			if (mu*weight > 0)
+				continue;
+			final int edge = i==0? segment(b, c, edgeweights) : i==1? segment(a, c, edgeweights) : segment(a, b, edgeweights);
+			final double d = distance(edge, edgeweights);
+			if (d < best) {
+				best = d;
+				mask = edge;
+				copy(edge, edgeweights, out);
 			}
+		}
+		return mask;
+	}
 
-			//y1,y2,y3,y4 (no permute)
-			final double d1234 = d1234_1 + d1234_2 + d1234_3 + d1234_4;
-			//System.out.println("d1234 = "+d1234);
-
-			//System.out.println("d1234:" + d1234 + "," + d1234_1 +","+d1234_2 + ","+d1234_3+","+d1234_4 + "sum = " + (d1234_1+d1234_2+d1234_3+d1234_4)/d1234 );
-			//System.out.println("v is then");
-			//v.Print();
-			//System.out.println("Simplex*** d14 = " + y1.Minus(y4).Length()/y4.Length());
-			//return new Vector3[] {y1,y2,y3,y4};
-			if ( d1234_1 > 0 && d1234_2 > 0 && d1234_3 > 0 && d1234_4 > 0) {
-				//GJK penetrating state
-
-				//check for the accuracy, v should be the zero vector
-				if(  y1.multiply(d1234_1/d1234).add(y2.multiply(d1234_2/d1234)).add(y3.multiply(d1234_3/d1234)).add(y4.multiply(d1234_4/d1234)).norm() > 1 ) {
-					//System.out.println("wrong penetration");
-					//result is bad, terminate with last good subset {y1,y2,y3}
-					state.simplexSize = 3;
-					return false;
-				}
-				
-				lambda[perm[0]] = d1234_1/d1234; lambda[perm[1]] = d1234_2/d1234; lambda[perm[2]]=d1234_3/d1234; lambda[perm[3]] = d1234_4/d1234;
-				state.simplexSize=4;
-				return true;
-			} else {
-				//System.out.println("unable to determine smallest X");
-				//The algorithm was unable to determine the subset. return the last best known subset:
-				final double d123 = d123_1 + d123_2 + d123_3;
-				lambda[perm[0]]= d123_1/d123; lambda[perm[1]]= d123_2/d123; lambda[perm[2]] = d123_3/d123;
-				state.simplexSize = 3;				
-
+	// closest point to the origin on the tetrahedron of the local vertices 0, 1, 2 and 3
+	private final int tetrahedron( final double[] out ) {
+		// signed volumes of the tetrahedron, and of the sub-tetrahedra where the origin replaces a vertex
+		final double mu = volume(x[0], y[0], z[0], x[1], y[1], z[1], x[2], y[2], z[2], x[3], y[3], z[3]);
+		final double c0 = volume(0, 0, 0, x[1], y[1], z[1], x[2], y[2], z[2], x[3], y[3], z[3]);
+		final double c1 = volume(x[0], y[0], z[0], 0, 0, 0, x[2], y[2], z[2], x[3], y[3], z[3]);
+		final double c2 = volume(x[0], y[0], z[0], x[1], y[1], z[1], 0, 0, 0, x[3], y[3], z[3]);
+		final double c3 = volume(x[0], y[0], z[0], x[1], y[1], z[1], x[2], y[2], z[2], 0, 0, 0);
+
+		// the origin is inside the tetrahedron
+		if (mu*c0 > 0 && mu*c1 > 0 && mu*c2 > 0 && mu*c3 > 0) {
+			out[0] = c0/mu; out[1] = c1/mu; out[2] = c2/mu; out[3] = c3/mu;
+			return 15;
+		}
 
-				//try{System.in.read();}catch (Exception e) {}
-				return false;
+		// otherwise, the closest point is on one of the faces opposite a vertex with a non-positive weight
+		double best = Double.POSITIVE_INFINITY;
+		int mask = 0;
+		for (int i=0; i<4; i++) {
+			final double weight = i==0? c0 : i==1? c1 : i==2? c2 : c3;
+			if (mu*weight > 0)
+				continue;
+			final int face = i==0? triangle(1, 2, 3, faceweights) : i==1? triangle(0, 2, 3, faceweights) 
+					: i==2? triangle(0, 1, 3, faceweights) : triangle(0, 1, 2, faceweights);
+			final double d = distance(face, faceweights);
+			if (d < best) {
+				best = d;
+				mask = face;
+				copy(face, faceweights, out);
 			}
 		}
+		return mask;
+	}
 
-//		System.out.println("GJK: impossible ending!");
-
-		//Ending up here is actually not possible :)
-		return false;
+	// copy the weights of the local vertices in mask
+	private static final void copy( final int mask, final double[] from, final double[] to ) {
+		for (int k=0; k<4; k++)
+			if ((mask & (1<<k)) != 0)
+				to[k] = from[k];
 	}
-	
 }
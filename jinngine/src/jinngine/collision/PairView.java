@@ -0,0 +1,29 @@
+/**
+ * Copyright (c) 2008-2010  Morten Silcowitz.
+ *
+ * This file is part of the Jinngine physics library
+ *
+ * Jinngine is published under the GPL license, available
+ * at http://www.gnu.org/copyleft/gpl.html.
+ */
+package jinngine.collision;
+
+import jinngine.geometry.Geometry;
+import jinngine.util.Pair;
+
+/**
+ * Read-only view of a sequence of geometry pairs, backed by the internal storage of a {@link BroadphaseCollisionDetection}
+ * implementation. Pairs are accessed by index, so a view can be iterated without allocating objects. A view reflects the 
+ * state of the broad-phase at any time, so it must not be iterated while the broad-phase is running or being modified.
+ */
+public interface PairView {
+	/**
+	 * Return the number of pairs in this view
+	 */
+	public int size();
+	
+	/**
+	 * Return the pair at the given index, where 0 <= index < size()
+	 */
+	public Pair<Geometry> get(int index);
+}
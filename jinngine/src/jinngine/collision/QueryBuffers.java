@@ -0,0 +1,67 @@
+/**
+ * Copyright (c) 2008-2010  Morten Silcowitz.
+ *
+ * This file is part of the Jinngine physics library
+ *
+ * Jinngine is published under the GPL license, available
+ * at http://www.gnu.org/copyleft/gpl.html.
+ */
+package jinngine.collision;
+
+import java.util.Arrays;
+
+/**
+ * Scratch space for broad-phase queries. Queries can be issued from several threads at the same time, so
+ * each thread has its own buffers, see {@link #get()}. The buffers only grow, so queries do not allocate
+ * memory once the buffers of a thread are large enough.
+ */
+final class QueryBuffers {
+	private static final ThreadLocal<QueryBuffers> local = new ThreadLocal<QueryBuffers>() {
+		@Override
+		protected QueryBuffers initialValue() {
+			return new QueryBuffers();
+		}
+	};
+
+	/**
+	 * Segment of a query, packed by {@link BoundsStore#segment(jinngine.math.Vector3, jinngine.math.Vector3, double, jinngine.math.Vector3, double[])}
+	 */
+	final double[] segment = new double[10];
+
+	/**
+	 * Stack of nodes to visit in a tree query. The query replaces it by a larger stack when needed
+	 */
+	int[] stack = new int[64];
+
+	/**
+	 * Stamps of handles visited by a query, see {@link #stamp(int)}
+	 */
+	int[] stamps = new int[16];
+	private int stamp = 0;
+
+	/**
+	 * Return the buffers of the calling thread
+	 */
+	static final QueryBuffers get() {
+		return local.get();
+	}
+
+	/**
+	 * Return a new stamp for a query over the given number of handles. A handle is visited by the query
+	 * if its entry in stamps equals the returned value
+	 */
+	final int stamp( int handles ) {
+		if (stamps.length < handles) {
+			int length = stamps.length;
+			while (length < handles)
+				length *= 2;
+			stamps = new int[length];
+			stamp = 0;
+		}
+		if (++stamp == 0) {
+			Arrays.fill(stamps, 0);
+			stamp = 1;
+		}
+		return stamp;
+	}
+}
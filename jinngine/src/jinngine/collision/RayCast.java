@@ -19,6 +19,35 @@ import jinngine.math.Vector3;
 public final class RayCast {
 	final GJK gjk = new GJK();
 	final GJK.State gjkstate = gjk.getState();
+
+	// current point on the ray, and the optional support mapping that is added to it
+	private final Vector3 x = new Vector3();
+	private SupportMap3 Sc = null;
+	
+	// total number of gjk iterations in the last ray cast
+	private int gjkiterations = 0;
+
+	// translated support mapping Sc+x, or the point x alone if Sc is not given. The mapping 
+	// is kept by the instance, so that no support mappings are created for each ray cast
+	private final SupportMap3 Sa = new SupportMap3() {
+		@Override
+		public final Vector3 supportPoint(Vector3 direction) { 
+			return Sc == null? new Vector3(x) : x.add(Sc.supportPoint(direction)); 
+		}
+		@Override
+		public final Vector3 supportPoint(Vector3 direction, Vector3 result) {
+			if (Sc == null)
+				return result.assign(x);
+			Sc.supportPoint(direction, result);
+			Vector3.add(result, x);
+			return result;
+		}
+		@Override
+		public final void supportFeature(Vector3 d, List<Vector3> returnList) {}
+		@Override
+		public final double sphereSweepRadius() {return 0;}
+	};
+
 	/** 
 	 * Perform ray cast against the convex object defined by Sb. 
 	 * @param Sb support mapping of a convex shape
@@ -50,7 +79,9 @@ public final class RayCast {
 			final boolean sweep) {
 		
 		int iterations = 0; 
-		final Vector3 x = point.add(direction.multiply(lambda));
+		gjkiterations = 0;
+		x.assign(point.x+direction.x*lambda, point.y+direction.y*lambda, point.z+direction.z*lambda);
+		this.Sc = Sc;
 		final double sphere;
 		
 		// sphere swept volumes?
@@ -60,31 +91,6 @@ public final class RayCast {
 			sphere = 0;
 		}
 		
-		
-		// translated support mapping Sc+x
-		final SupportMap3 Sa;		
-		if (Sc == null) {
-			Sa = new SupportMap3() {
-				@Override
-				public final Vector3 supportPoint(Vector3 direction) { return new Vector3(x); }
-				@Override
-				public final void supportFeature(Vector3 d, List<Vector3> returnList) {}
-				@Override
-				public final double sphereSweepRadius() {return 0;}
-			};
-		} else {
-			// if Sc is given, add it to the second support map
-			Sa = new SupportMap3() {
-				@Override
-				public final Vector3 supportPoint(Vector3 direction) { return x.add(Sc.supportPoint(direction)); }
-				@Override
-				public final void supportFeature(Vector3 d, List<Vector3> returnList) {}
-				@Override
-				public final double sphereSweepRadius() {return 0;}
-				
-			};			
-		}
-		
 		// vectors from the GJK internal state (pretty ugly but it works) 
 		final Vector3 v = gjkstate.v;
 		final Vector3 w = gjkstate.w;
@@ -96,20 +102,35 @@ public final class RayCast {
 			// run as many gjk iterations as necessary to get a separating axis. If the distance
 			// is within the envelope, run until the error in v is below epsilon. 
 			gjk.run(Sa, Sb, pc, pb, envelope+sphere, epsilon, 31);
+			gjkiterations += gjkstate.iterations;
 			//termination
 			if (v.norm() < envelope+sphere  || iterations > 31 )
 				break;
 			// ray miss?
 			if ( v.dot(direction) >= 0) {
-				return Double.POSITIVE_INFINITY;
+				lambda = Double.POSITIVE_INFINITY;
+				break;
 			} else {
-				// move forward as much as possible, half way into the envelope 
-				Vector3 vs = v.sub(v.normalize().multiply(envelope*0.5+sphere));
-				lambda = lambda - vs.dot(w) / v.dot(direction);
-				x.assign(point.add(direction.multiply(lambda)));
+				// move forward as much as possible, half way into the envelope. The plane v.x = v.w 
+				// separates the cores of sphere swept shapes, so advance until the distance to this plane 
+				// equals the sweep radius
+				final double norm = v.norm(), l = 1./norm, e = envelope*0.5;
+				final double vsw = (v.x-v.x*l*e)*w.x + (v.y-v.y*l*e)*w.y + (v.z-v.z*l*e)*w.z;
+				lambda = lambda - (vsw - norm*sphere) / v.dot(direction);
+				x.assign(point.x+direction.x*lambda, point.y+direction.y*lambda, point.z+direction.z*lambda);
 			}			
 		}
+		
+		// do not keep a reference to the shape
+		this.Sc = null;
 //		System.out.println("RayCast: Hitpoint lambda=" + lambda);
 		return lambda;
 	}
+	
+	/**
+	 * Return the total number of GJK iterations performed by the last call to run()
+	 */
+	public final int getIterations() {
+		return gjkiterations;
+	}
 }
@@ -1,16 +1,22 @@
 package jinngine.collision;
 
 import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.LinkedHashMap;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.ListIterator;
 import java.util.Map;
 import java.util.Set;
-import java.util.Map.Entry;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import jinngine.geometry.Geometry;
+import jinngine.math.Vector3;
+import jinngine.util.LongHashMap;
+import jinngine.util.LongIntHashMap;
 import jinngine.util.Pair;
 
 /**
@@ -18,79 +24,204 @@ import jinngine.util.Pair;
  */
 public class SAP2 implements BroadphaseCollisionDetection {
 
+	// a geometry in the sweep, with its sweep points and the counters it is involved in
+	private static final class Handle {
+		public final Geometry geo;
+		public final int slot;
+		public final SweepPoint[] points = new SweepPoint[6];
+		public final ArrayList<Counter> counters = new ArrayList<Counter>(4);
+		public boolean removed = false;
+		public boolean inserted = false;
+		public int active = -1;
+		// true if the sweep points are in the sleeping axes, and the requested state of the geometry
+		public boolean sleeping = false;
+		public boolean deactivated = false;
+		public boolean pending = false;
+		public Handle(Geometry geo, int slot) {
+			this.geo = geo;
+			this.slot = slot;
+		}
+	}
+	
 	private final class SweepPoint {
 		public final Geometry geo;
+		public final Handle handle;
 		public final boolean begin;
 		public final int axis;
-		public SweepPoint(Geometry geo, boolean begin, int axis) {
+		private final int index;
+		// value of the point when its axis was last sorted, and the value before that. New points 
+		// are placed at the end of the axes, so they start out at positive infinity
+		public double value = Double.POSITIVE_INFINITY;
+		public double last = Double.POSITIVE_INFINITY;
+		public SweepPoint(Handle handle, boolean begin, int axis) {
 			super();
-			this.geo = geo;
+			this.geo = handle.geo;
+			this.handle = handle;
 			this.begin = begin;
 			this.axis = axis;
-			
-			//do an initial check on value
-			if (Double.isNaN(value())) {
-				throw new IllegalStateException("Geometry has a NaN as bounding value");
-			}		
+			this.index = 6*handle.slot + (begin? 0 : 3) + axis;
 		}
-		public final double value() {
-			if (begin) {
-				return geo.getMinBounds().get(axis);
-			} else {
-				return geo.getMaxBounds().get(axis);				
+		public final double read() {
+			// bounds are read from the store, which is refreshed at the beginning of each run
+			return bounds.getBounds()[index];
+		}
+	}
+	
+	// changes to overlap counters, recorded while sorting an axis
+	private static final class SwapBuffer {
+		public Handle[] first = new Handle[64];
+		public Handle[] second = new Handle[64];
+		public int[] delta = new int[64];
+		public int count = 0;
+		
+		public final void add( Handle a, Handle b, int d ) {
+			if (count == delta.length) {
+				first = Arrays.copyOf(first, 2*count);
+				second = Arrays.copyOf(second, 2*count);
+				delta = Arrays.copyOf(delta, 2*count);
 			}
+			first[count] = a; second[count] = b; delta[count] = d;
+			count++;
 		}
 	}
 	
-	private final class Counter {
+	// fork-join task that sorts a single axis
+	private static final class SortTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final ArrayList<SweepPoint> axis;
+		private final SleepingAxis sleeping;
+		private final Handle[] slots;
+		private final SwapBuffer buffer;
+		private final BoundsStore bounds;
+		
+		public SortTask( ArrayList<SweepPoint> axis, SleepingAxis sleeping, Handle[] slots, SwapBuffer buffer, BoundsStore bounds ) {
+			this.axis = axis;
+			this.sleeping = sleeping;
+			this.slots = slots;
+			this.buffer = buffer;
+			this.bounds = bounds;
+		}
+		
+		@Override
+		protected final void compute() {
+			sortAxis(axis, sleeping, slots, buffer, bounds);
+		}
+	}
+	
+	// overlap counter of a pair. The counter knows its position in the counter lists of both handles, 
+	// and in the list of overlapping counters, so it can be removed in constant time. Counters are numbered
+	// in order of creation, and the geometry pair is only created once the pair overlaps
+	private static final class Counter {
+		public final long key;
+		public final long serial;
+		public Pair<Geometry> pair;
+		public final Handle first, second;
+		public int firstindex, secondindex;
+		public int overlapindex = -1;
 		public boolean wasOverlapping = false;
-		public int overlaps;		
+		public boolean changed = false;
+		public int overlaps;
+		public Counter(long key, long serial, Handle first, Handle second) {
+			this.key = key;
+			this.serial = serial;
+			this.first = first;
+			this.second = second;
+		}
 	}
 	
 	private ArrayList<Handler> handlers = new ArrayList<Handler>();
-	private ArrayList<Pair<Geometry>> overlaps = new ArrayList<Pair<Geometry>>();
-	private Map<Pair<Geometry>,Counter> counters = new LinkedHashMap<Pair<Geometry>, Counter>();
-	private ArrayList<Geometry> geometries = new ArrayList<Geometry>();
+	private ArrayList<Counter> overlaps = new ArrayList<Counter>();
+	private final LongHashMap<Counter> counters = new LongHashMap<Counter>();
+	private final ChangeSet changes = new ChangeSet();
+	private final PairView overlapview = new PairView() {
+		public final int size() { return overlaps.size(); }
+		public final Pair<Geometry> get(int index) { return overlaps.get(index).pair; }
+	};
+	private final ArrayList<Counter> changed = new ArrayList<Counter>();
+	private long serial = 0;
+	private Map<Geometry,Handle> handles = new HashMap<Geometry,Handle>();
+	private Handle[] slots = new Handle[16];
+	private int removedcount = 0;
 	private ArrayList<SweepPoint> axis1 = new ArrayList<SweepPoint>();
 	private ArrayList<SweepPoint> axis2 = new ArrayList<SweepPoint>();
 	private ArrayList<SweepPoint> axis3 = new ArrayList<SweepPoint>();
 	
+	// sweep points of deactivated geometries, and geometries whose state was changed since the last run
+	private final SleepingAxis sleeping1 = new SleepingAxis();
+	private final SleepingAxis sleeping2 = new SleepingAxis();
+	private final SleepingAxis sleeping3 = new SleepingAxis();
+	private final ArrayList<Handle> pending = new ArrayList<Handle>();
+	private boolean[] marked = new boolean[16];
+	
+	// work done in the last run
+	private int sortedpoints = 0;
+	private int visitedcounters = 0;
+	private final BoundsStore bounds = new BoundsStore();
+	private final SortedBounds sortedbounds = new SortedBounds(bounds);
+	private final SwapBuffer buffer1 = new SwapBuffer();
+	private final SwapBuffer buffer2 = new SwapBuffer();
+	private final SwapBuffer buffer3 = new SwapBuffer();
+	private ForkJoinPool pool = null;
+	
+	// order of sweep points by their values, with end points before begin points of the same value
+	private static final Comparator<SweepPoint> order = new Comparator<SweepPoint>() {
+		@Override
+		public int compare(SweepPoint o1, SweepPoint o2) {
+			return SleepingAxis.compare(o1.value, o1.begin, o2.value, o2.begin);
+		}
+	};
+	
+	// order of counters by creation
+	private static final Comparator<Counter> creation = new Comparator<Counter>() {
+		@Override
+		public int compare(Counter o1, Counter o2) {
+			return o1.serial < o2.serial? -1 : (o1.serial > o2.serial? 1 : 0);
+		}
+	};
 	
-	private final void sortAxis( ArrayList<SweepPoint> axis) {
+
+	// sort the given axis, and record the changes to overlap counters in the given buffer. 
+	// Pairs rejected by the collision filter are never counted
+	private static final void sortAxis( ArrayList<SweepPoint> axis, SleepingAxis sleeping, Handle[] slots, SwapBuffer buffer, BoundsStore bounds ) {
+		buffer.count = 0;
+		final int n = axis.size();
+		
+		// refresh values from the bounds store
+		for (int j=0; j<n; j++) {
+			final SweepPoint p = axis.get(j);
+			p.last = p.value;
+			p.value = p.read();
+			if (Double.isNaN(p.value))
+				throw new IllegalStateException("Geometry has NaN in its bounding box values" + p.geo.getBody().identifier );
+		}
+		
+		// points that moved passed the sleeping points between their old and new values. Increments 
+		// are recorded before decrements, so a counter is never decremented before it is created
+		if (sleeping.size() > 0) {
+			for (int j=0; j<n; j++)
+				pass(axis.get(j), sleeping, slots, buffer, bounds, true);
+			for (int j=0; j<n; j++)
+				pass(axis.get(j), sleeping, slots, buffer, bounds, false);
+		}
+		
 		// insertion sort from Cormen et al, Introduction to Algorithms
-		for (int j=1; j<axis.size(); j++ ) {
+		for (int j=1; j<n; j++ ) {
 			final SweepPoint keyelement = axis.get(j);
-			double key = keyelement.value();
 			
-			if (Double.isNaN(key))
-				throw new IllegalStateException("Geometry has NaN in its bounding box values" + keyelement.geo.getBody().identifier );
-				
 			int i = j-1;
-			while(i>=0 && axis.get(i).value() > key) {
+			while(i>=0 && order.compare(axis.get(i), keyelement) > 0) {
 				// swap
 				final SweepPoint swapper = axis.get(i);
 				
-				if (keyelement.begin && !swapper.begin) {
-					// increment overlap (end before begin)
-					final Pair<Geometry> pair = new Pair<Geometry>(keyelement.geo,swapper.geo);
-					if (counters.containsKey(pair)) {
-						counters.get(pair).overlaps++;
+				// the two points of an empty interval may swap, but never change an overlap
+				if (keyelement.begin != swapper.begin && keyelement.handle != swapper.handle 
+						&& bounds.interacts(keyelement.handle.slot, swapper.handle.slot)) {
+					if (keyelement.begin) {
+						// increment overlap (end before begin)
+						buffer.add(keyelement.handle, swapper.handle, 1);
 					} else {
-						Counter counter = new Counter(); counter.overlaps = 1;
-						counters.put(pair,counter);
-					}
-				}
-
-				if (!keyelement.begin && swapper.begin) {
-					// decrement overlap (begin before end)
-					final Pair<Geometry> pair = new Pair<Geometry>(keyelement.geo,swapper.geo);
-					if (counters.containsKey(pair)) {
-						counters.get(pair).overlaps--;
-						
-						
-					} else {
-						//ignore this case
-						System.out.println("hmm?");
+						// decrement overlap (begin before end)
+						buffer.add(keyelement.handle, swapper.handle, -1);
 					}
 				}
 				
@@ -101,24 +232,293 @@ public class SAP2 implements BroadphaseCollisionDetection {
 		}
 	}
 	
+	// record the changes to overlap counters of a point that passed sleeping points, when moving from
+	// its last value to its current value. Only increments or only decrements are recorded
+	private static final void pass( SweepPoint p, SleepingAxis sleeping, Handle[] slots, SwapBuffer buffer, BoundsStore bounds, boolean increments ) {
+		final int direction = SleepingAxis.compare(p.value, p.begin, p.last, p.begin);
+		if (direction == 0)
+			return;
+		
+		// a begin point moving up, or an end point moving down, leaves intervals
+		final boolean up = direction > 0;
+		final int delta = up == p.begin? -1 : 1;
+		if ((delta > 0) != increments)
+			return;
+		
+		final int from = sleeping.lower(up? p.last : p.value, p.begin);
+		final int to = sleeping.lower(up? p.value : p.last, p.begin);
+		for (int i=from; i<to; i++) {
+			if (sleeping.begin(i) != p.begin) {
+				final Handle other = slots[sleeping.handle(i)];
+				if (bounds.interacts(p.handle.slot, other.slot))
+					buffer.add(p.handle, other, delta);
+			}
+		}
+	}
+	
+	// apply the changes recorded in the given buffer to the overlap counters
+	private final void merge( SwapBuffer buffer ) {
+		for (int i=0; i<buffer.count; i++) {
+			if (buffer.delta[i] > 0) {
+				increment(buffer.first[i], buffer.second[i]);
+			} else {
+				// a pair is only decremented on an axis after it was incremented on that axis, 
+				// and counters are only deleted at the end of a run, so the counter exists
+				final Counter counter = counters.get(LongIntHashMap.pair(buffer.first[i].slot, buffer.second[i].slot));
+				assert counter != null : "SAP2: decrement of a missing overlap counter";
+				if (counter != null) {
+					counter.overlaps--;
+					change(counter);
+				}
+			}
+		}
+		
+		// release references to handles
+		Arrays.fill(buffer.first, 0, buffer.count, null);
+		Arrays.fill(buffer.second, 0, buffer.count, null);
+		buffer.count = 0;
+	}
+	
+	/**
+	 * Enable or disable concurrent sorting of the three axes. When a pool is given, each axis is sorted by a 
+	 * separate task in the given pool. Changes to overlap counters are recorded by each task, and applied 
+	 * afterwards in axis order, so overlap and separation events are reported in the same order as when 
+	 * sorting serially, and handlers are always invoked from the thread calling run()
+	 * @param pool a fork-join pool to sort axes in, or null to sort all axes in the calling thread
+	 */
+	public final void setParallelism( ForkJoinPool pool ) {
+		this.pool = pool;
+	}
+	
+	// insert a new counter into the counter lists of its handles
+	private static final void attach( Counter c ) {
+		c.firstindex = c.first.counters.size();
+		c.first.counters.add(c);
+		c.secondindex = c.second.counters.size();
+		c.second.counters.add(c);
+	}
+	
+	// remove a counter from the counter lists of its handles, by moving the last counter of each list into its place
+	private static final void detach( Counter c ) {
+		detach(c.first, c.firstindex);
+		detach(c.second, c.secondindex);
+	}
+	
+	private static final void detach( Handle h, int index ) {
+		final int last = h.counters.size()-1;
+		final Counter moved = h.counters.remove(last);
+		if (index != last) {
+			h.counters.set(index, moved);
+			if (moved.first == h) moved.firstindex = index; else moved.secondindex = index;
+		}
+	}
+	
+	// insert a counter into the list of overlapping counters
+	private final void addOverlap( Counter c ) {
+		c.overlapindex = overlaps.size();
+		overlaps.add(c);
+	}
+	
+	// remove a counter from the list of overlapping counters, by moving the last counter into its place
+	private final void removeOverlap( Counter c ) {
+		final int last = overlaps.size()-1;
+		final Counter moved = overlaps.remove(last);
+		if (c.overlapindex != last) {
+			overlaps.set(c.overlapindex, moved);
+			moved.overlapindex = c.overlapindex;
+		}
+		c.overlapindex = -1;
+	}
+	
 	@Override
 	public void add(Geometry g) {
-		if ( !geometries.contains(g)) {
-			geometries.add(g);
+		final Handle handle = createHandle(g);
+		axis1.add(handle.points[0]);
+		axis1.add(handle.points[1]);
+		axis2.add(handle.points[2]);
+		axis2.add(handle.points[3]);
+		axis3.add(handle.points[4]);
+		axis3.add(handle.points[5]);
+	}
+	
+	private final Handle createHandle(Geometry g) {
+		if ( !handles.containsKey(g)) {
+			final Handle handle = new Handle(g, bounds.add(g));
+			handles.put(g, handle);
+			sortedbounds.invalidate();
+			if (handle.slot >= slots.length) {
+				slots = Arrays.copyOf(slots, 2*slots.length);
+				marked = Arrays.copyOf(marked, slots.length);
+			}
+			slots[handle.slot] = handle;
 
 			//create new sweep points
-			axis1.add(new SweepPoint(g,true,0));
-			axis1.add(new SweepPoint(g,false,0));
-			axis2.add(new SweepPoint(g,true,1));
-			axis2.add(new SweepPoint(g,false,1));
-			axis3.add(new SweepPoint(g,true,2));
-			axis3.add(new SweepPoint(g,false,2));
-			
-
+			handle.points[0] = new SweepPoint(handle,true,0);
+			handle.points[1] = new SweepPoint(handle,false,0);
+			handle.points[2] = new SweepPoint(handle,true,1);
+			handle.points[3] = new SweepPoint(handle,false,1);
+			handle.points[4] = new SweepPoint(handle,true,2);
+			handle.points[5] = new SweepPoint(handle,false,2);
+			return handle;
 		} else {
 			throw new IllegalArgumentException("Given geometry already exsist");
 		}
 	}
+	
+	/**
+	 * Add a collection of geometries. Instead of leaving the new sweep points to the insertion sort in
+	 * the next run, which takes quadratic time for unsorted points, the new points are sorted in O(m log m) 
+	 * time and merged into each axis. Counters for pairs that involve new geometries are then found in a 
+	 * single sweep along each axis. The relative order of the existing sweep points is not changed, so the
+	 * counters of existing pairs stay valid.
+	 */
+	@Override
+	public void addAll(Collection<Geometry> geometries) {
+		final List<Handle> added = new ArrayList<Handle>(geometries.size());
+		for (Geometry g: geometries) {
+			final Handle handle = createHandle(g);
+			handle.inserted = true;
+			for (SweepPoint p: handle.points)
+				p.value = p.read();
+			added.add(handle);
+		}
+		
+		// take out sweep points of removed geometries, so they do not take part in the sweep
+		if (removedcount > 0) {
+			compact(axis1);
+			compact(axis2);
+			compact(axis3);
+			removedcount = 0;
+		}
+		
+		insert(axis1, added, 0);
+		insert(axis2, added, 1);
+		insert(axis3, added, 2);
+		
+		for (Handle handle: added)
+			handle.inserted = false;
+	}
+	
+	/**
+	 * Remove a collection of geometries. Counters are deleted using the counter lists of the handles, and 
+	 * sweep points of sleeping geometries are taken out of the sleeping axes in a single pass
+	 */
+	@Override
+	public void removeAll(Collection<Geometry> geometries) {
+		final List<Handle> purged = new ArrayList<Handle>();
+		for (Geometry g: geometries) {
+			final Handle handle = release(g);
+			if (handle.sleeping) {
+				marked[handle.slot] = true;
+				purged.add(handle);
+			}
+		}
+		if (!purged.isEmpty()) {
+			sleeping1.remove(marked);
+			sleeping2.remove(marked);
+			sleeping3.remove(marked);
+			for (Handle handle: purged)
+				marked[handle.slot] = false;
+		}
+	}
+	
+	// merge the sweep points of the given handles into the axis, and count overlaps of new pairs on the axis
+	private final void insert( ArrayList<SweepPoint> axis, List<Handle> added, int k ) {
+		final List<SweepPoint> points = new ArrayList<SweepPoint>(2*added.size());
+		for (Handle handle: added) {
+			points.add(handle.points[2*k]);
+			points.add(handle.points[2*k+1]);
+		}
+		merge(axis, points);
+		
+		// sweep the axis along with the sleeping points. When a geometry begins, its interval overlaps 
+		// all active intervals on this axis
+		final SleepingAxis sleeping = k == 0? sleeping1 : (k == 1? sleeping2 : sleeping3);
+		final List<Handle> active = new ArrayList<Handle>();
+		int i = 0, j = 0;
+		while (i < axis.size() || j < sleeping.size()) {
+			final Handle handle;
+			final boolean begin;
+			if (j == sleeping.size() || (i < axis.size() 
+					&& SleepingAxis.compare(axis.get(i).value, axis.get(i).begin, sleeping.value(j), sleeping.begin(j)) <= 0)) {
+				handle = axis.get(i).handle;
+				begin = axis.get(i).begin;
+				i++;
+			} else {
+				handle = slots[sleeping.handle(j)];
+				begin = sleeping.begin(j);
+				j++;
+			}
+			
+			if (begin) {
+				// the end point of an empty interval comes before its begin point
+				if (handle.active == -2) {
+					handle.active = -1;
+					continue;
+				}
+				for (Handle other: active) {
+					if ((handle.inserted || other.inserted) && bounds.interacts(handle.slot, other.slot))
+						increment(handle, other);
+				}
+				handle.active = active.size();
+				active.add(handle);
+			} else if (handle.active < 0) {
+				handle.active = -2;
+			} else {
+				// move the last active handle into the position of this handle
+				final Handle last = active.remove(active.size()-1);
+				if (last != handle) {
+					active.set(handle.active, last);
+					last.active = handle.active;
+				}
+				handle.active = -1;
+			}
+		}
+	}
+	
+	// sort the given points, and merge them into the axis. The relative order of points already in the axis is kept
+	private static final void merge( ArrayList<SweepPoint> axis, List<SweepPoint> points ) {
+		Collections.sort(points, order);
+		final List<SweepPoint> existing = new ArrayList<SweepPoint>(axis);
+		axis.clear();
+		axis.ensureCapacity(existing.size()+points.size());
+		int i = 0, j = 0;
+		while (i < existing.size() || j < points.size()) {
+			if (j == points.size() || (i < existing.size() && order.compare(existing.get(i), points.get(j)) <= 0)) {
+				axis.add(existing.get(i++));
+			} else {
+				axis.add(points.get(j++));
+			}
+		}
+	}
+	
+	// increment the overlap counter of a pair
+	private final void increment( Handle a, Handle b ) {
+		final long key = LongIntHashMap.pair(a.slot, b.slot);
+		final Counter counter = counters.get(key);
+		if (counter != null) {
+			counter.overlaps++;
+			change(counter);
+		} else {
+			Counter c = new Counter(key, serial++, a, b); c.overlaps = 1;
+			counters.put(key,c);
+			attach(c);
+			change(c);
+		}
+	}
+	
+	// remember that a counter changed in this run
+	private final void change( Counter c ) {
+		if (!c.changed) {
+			c.changed = true;
+			changed.add(c);
+		}
+	}
+	
+	// delete a counter from the counter table
+	private final void delete( Counter c ) {
+		counters.remove(c.key);
+	}
 
 	@Override
 	public void addHandler(Handler h) {
@@ -127,54 +527,200 @@ public class SAP2 implements BroadphaseCollisionDetection {
 
 	@Override
 	public Set<Pair<Geometry>> getOverlappingPairs() {
-		return new LinkedHashSet<Pair<Geometry>>(overlaps);
+		final Set<Pair<Geometry>> pairs = new LinkedHashSet<Pair<Geometry>>();
+		for (Counter c: overlaps)
+			pairs.add(c.pair);
+		return pairs;
+	}
+
+	@Override
+	public PairView getOverlappingPairView() {
+		return overlapview;
+	}
+
+	@Override
+	public PairView getAddedPairs() {
+		return changes.addedview;
+	}
+
+	@Override
+	public PairView getRemovedPairs() {
+		return changes.removedview;
 	}
 
 	@Override
 	public void remove(Geometry g) {
-		if (geometries.contains(g)) {
-			// remove 
-			geometries.remove(g);
-
-			// remove sweep points
-			removeSweepPoint(axis1, g);
-			removeSweepPoint(axis2, g);
-			removeSweepPoint(axis3, g);
-
-			// go through counters, and delete the ones that involve g. If the counter var 
-			// an overlapping counter, signal an separation event
-			Iterator<Entry<Pair<Geometry>,Counter>> iter = counters.entrySet().iterator();		
-			while (iter.hasNext()) {
-				Entry<Pair<Geometry>,Counter> entry = iter.next();
-				Counter c = entry.getValue();
-				Pair<Geometry> pair = entry.getKey();
-				if ( pair.getFirst() == g || pair.getSecond() == g) {
-					if (c.wasOverlapping) {
-						// notify handlers
-						for (Handler h: handlers) {
-							h.separation(pair);
-						}
-
-						overlaps.remove(pair);
-					}
+		// the slot of the handle may be reused before the next run, so sleeping points are removed right away
+		final Handle handle = release(g);
+		if (handle.sleeping) {
+			sleeping1.remove(handle.slot, handle.points[0].value, handle.points[1].value);
+			sleeping2.remove(handle.slot, handle.points[2].value, handle.points[3].value);
+			sleeping3.remove(handle.slot, handle.points[4].value, handle.points[5].value);
+		}
+	}
+	
+	// remove the handle of a geometry along with its counters. Sweep points of sleeping handles are left 
+	// to the caller
+	private final Handle release(Geometry g) {
+		final Handle handle = handles.remove(g);
+		if (handle != null) {
+			bounds.remove(g);
+			slots[handle.slot] = null;
+			
+			// sweep points are marked as removed, and taken out of the axes in the next run
+			handle.removed = true;
+			if (!handle.sleeping)
+				removedcount++;
 
-					// remove counter
-					iter.remove();
+			// delete the counters that involve g. If a counter was overlapping, signal a separation event
+			changes.begin();
+			for (int i=handle.counters.size()-1; i>=0; i--) {
+				final Counter c = handle.counters.get(i);
+				detach(c);
+				delete(c);
+				if (c.wasOverlapping) {
+					removeOverlap(c);
+					changes.separation(c.pair);
+					
+					// notify handlers
+					for (Handler h: handlers) {
+						h.separation(c.pair);
+					}
 				}
 			}
+			return handle;
 		} else {
 			throw new IllegalArgumentException("Given geometry does not exist");
 		}
-
 	}
 
-	private final void removeSweepPoint( List<SweepPoint> list, Geometry g ) {
-		ListIterator<SweepPoint> iter = list.listIterator();
-		while(iter.hasNext()) {
-			SweepPoint p = iter.next();
-			if (p.geo == g)
-				iter.remove();
+	// remove the sweep points of removed and sleeping geometries from the given axis
+	private static final void compact( ArrayList<SweepPoint> axis ) {
+		int j = 0;
+		for (int i=0; i<axis.size(); i++) {
+			final SweepPoint p = axis.get(i);
+			if (!p.handle.removed && !p.handle.sleeping)
+				axis.set(j++, p);
 		}
+		axis.subList(j, axis.size()).clear();
+	}
+	
+	/**
+	 * Take the given geometry out of the sweep, because its body was deactivated. From the next run, 
+	 * the sweep points of the geometry are no longer sorted. Active geometries that move across them 
+	 * are found by binary search, so the existing pairs of the geometry are kept, and new pairs with 
+	 * active geometries are still reported
+	 */
+	@Override
+	public void deactivate(Geometry g) {
+		request(g, true);
+	}
+	
+	/**
+	 * Put the given geometry back into the sweep. The sweep points of the geometry are merged into the 
+	 * axes at the beginning of the next run
+	 */
+	@Override
+	public void activate(Geometry g) {
+		request(g, false);
+	}
+	
+	// remember the requested state of a geometry, to be applied in the next run
+	private final void request( Geometry g, boolean deactivated ) {
+		final Handle handle = handles.get(g);
+		if (handle != null) {
+			handle.deactivated = deactivated;
+			if (!handle.pending) {
+				handle.pending = true;
+				pending.add(handle);
+			}
+		} else {
+			throw new IllegalArgumentException("Given geometry does not exist");
+		}
+	}
+	
+	// merge the sweep points of activated geometries into the axes
+	private final void wake() {
+		final List<Handle> woke = new ArrayList<Handle>();
+		for (Handle handle: pending) {
+			if (!handle.removed && handle.sleeping && !handle.deactivated) {
+				handle.sleeping = false;
+				marked[handle.slot] = true;
+				woke.add(handle);
+			}
+		}
+		if (woke.isEmpty())
+			return;
+		
+		sleeping1.remove(marked);
+		sleeping2.remove(marked);
+		sleeping3.remove(marked);
+		for (Handle handle: woke)
+			marked[handle.slot] = false;
+		
+		// sweep points keep the values they had when they were sorted last
+		for (int k=0; k<3; k++) {
+			final List<SweepPoint> points = new ArrayList<SweepPoint>(2*woke.size());
+			for (Handle handle: woke) {
+				points.add(handle.points[2*k]);
+				points.add(handle.points[2*k+1]);
+			}
+			merge(k == 0? axis1 : (k == 1? axis2 : axis3), points);
+		}
+	}
+	
+	// move the sweep points of deactivated geometries to the sleeping axes. Activations that were
+	// requested during the run stay pending until the next run
+	private final void sleep() {
+		boolean slept = false;
+		int j = 0;
+		for (int i=0; i<pending.size(); i++) {
+			final Handle handle = pending.get(i);
+			if (handle.removed || handle.deactivated == handle.sleeping) {
+				handle.pending = false;
+			} else if (handle.deactivated) {
+				handle.pending = false;
+				handle.sleeping = true;
+				sleeping1.add(handle.slot, handle.points[0].value, handle.points[1].value);
+				sleeping2.add(handle.slot, handle.points[2].value, handle.points[3].value);
+				sleeping3.add(handle.slot, handle.points[4].value, handle.points[5].value);
+				slept = true;
+			} else {
+				pending.set(j++, handle);
+			}
+		}
+		pending.subList(j, pending.size()).clear();
+		
+		if (slept) {
+			sleeping1.flush();
+			sleeping2.flush();
+			sleeping3.flush();
+			compact(axis1);
+			compact(axis2);
+			compact(axis3);
+		}
+	}
+	
+	/**
+	 * Return the number of sweep points sorted in the last run. Sweep points of deactivated geometries are 
+	 * not sorted
+	 */
+	public final int getSortedPoints() {
+		return sortedpoints;
+	}
+	
+	/**
+	 * Return the number of overlap counters visited in the last run. Only counters that changed are visited
+	 */
+	public final int getVisitedCounters() {
+		return visitedcounters;
+	}
+
+	/**
+	 * Return the number of bounding boxes tested by the last query, when queries are issued from a single thread
+	 */
+	public final int getQueryTests() {
+		return sortedbounds.getVisited();
 	}
 
 	@Override
@@ -182,44 +728,95 @@ public class SAP2 implements BroadphaseCollisionDetection {
 		handlers.remove(h);
 	}
 
+	@Override
+	public void query(Vector3 min, Vector3 max, Collection<Geometry> result) {
+		// the sweep points are only sorted in run(), so queries use their own order, see SortedBounds
+		sortedbounds.query(min, max, result);
+	}
+
+	@Override
+	public void query(Vector3 point, Vector3 direction, double length, Vector3 extent, Collection<Geometry> result) {
+		sortedbounds.query(point, direction, length, extent, result);
+	}
+
+	@Override
+	public BoundsStore getBoundsStore() {
+		return bounds;
+	}
+
 	@Override
 	public void run() {
-		// sort each axis and update counters
-		sortAxis(axis1);
-		sortAxis(axis2);
-		sortAxis(axis3);
-		
-		int countingOverlaps = 0;
-		// go through all counters
-		Iterator<Entry<Pair<Geometry>,Counter>> iter = counters.entrySet().iterator();		
-		while (iter.hasNext()) {
-			Entry<Pair<Geometry>,Counter> entry = iter.next();
-			Counter c = entry.getValue();
-			Pair<Geometry> pair = entry.getKey();
-			
-			if (c.overlaps == 3) 
-				countingOverlaps ++;
+		// make sure bounds are up to date
+		bounds.prepare();
+		
+		// take out sweep points of removed geometries, in a single pass over each axis
+		if (removedcount > 0) {
+			compact(axis1);
+			compact(axis2);
+			compact(axis3);
+			removedcount = 0;
+		}
+		wake();
+		changes.begin();
+		sortedpoints = axis1.size() + axis2.size() + axis3.size();
+		
+		// sort each axis, possibly concurrently
+		if (pool != null) {
+			final Handle[] slots = this.slots;
+			pool.invoke(new RecursiveAction() {
+				private static final long serialVersionUID = 1L;
+				@Override
+				protected void compute() {
+					invokeAll(new SortTask(axis1, sleeping1, slots, buffer1, bounds), 
+							new SortTask(axis2, sleeping2, slots, buffer2, bounds), 
+							new SortTask(axis3, sleeping3, slots, buffer3, bounds));
+				}
+			});
+		} else {
+			sortAxis(axis1, sleeping1, slots, buffer1, bounds);
+			sortAxis(axis2, sleeping2, slots, buffer2, bounds);
+			sortAxis(axis3, sleeping3, slots, buffer3, bounds);
+		}
+		
+		// update counters in axis order
+		merge(buffer1);
+		merge(buffer2);
+		merge(buffer3);
+		
+		// go through the counters that changed, in order of creation. Counters of removed 
+		// geometries are no longer in the counter table
+		Collections.sort(changed, creation);
+		visitedcounters = changed.size();
+		for (int i=0; i<changed.size(); i++) {
+			final Counter c = changed.get(i);
+			c.changed = false;
+			if (counters.get(c.key) != c)
+				continue;
 			
 			if (c.wasOverlapping) {
 				// report separation 
 				if (c.overlaps < 3 ) {
-					overlaps.remove(pair);
+					removeOverlap(c);
 					c.wasOverlapping = false;
+					changes.separation(c.pair);
 					
 					// notify handlers
 					for (Handler h: handlers) {
-						h.separation(pair);
+						h.separation(c.pair);
 					}			
 				}
 			} else {
 				// report overlap
 				if (c.overlaps > 2) {
-					overlaps.add(pair);
+					if (c.pair == null)
+						c.pair = new Pair<Geometry>(c.first.geo, c.second.geo);
+					addOverlap(c);
 					c.wasOverlapping = true;
+					changes.overlap(c.pair);
 					
 					// notify handlers
 					for (Handler h: handlers) {
-						h.overlap(pair);
+						h.overlap(c.pair);
 					}			
 
 				}
@@ -228,9 +825,15 @@ public class SAP2 implements BroadphaseCollisionDetection {
 			// if counter is zero at this 
 			// point, remove it
 			if (c.overlaps < 1) {
-				iter.remove();
+				delete(c);
+				detach(c);
 			}
-		} // for all counters
+		} // for all changed counters
+		changed.clear();
+		changes.end();
+		
+		// handlers may have deactivated geometries during the run
+		sleep();
 	} 
 
 }
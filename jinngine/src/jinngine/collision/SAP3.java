@@ -0,0 +1,726 @@
+/**
+ * Copyright (c) 2008-2010  Morten Silcowitz.
+ *
+ * This file is part of the Jinngine physics library
+ *
+ * Jinngine is published under the GPL license, available
+ * at http://www.gnu.org/copyleft/gpl.html.
+ */
+package jinngine.collision;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import jinngine.geometry.Geometry;
+import jinngine.math.Vector3;
+import jinngine.util.LongIntHashMap;
+import jinngine.util.Pair;
+
+/**
+ * Sweep-and-prune implementation working on primitive arrays. This is a variant of {@link SAP2},
+ * where geometries are identified by integer handles, and sweep points are stored as encoded integers
+ * in parallel with their values. Geometry handles and bounding boxes are taken from a {@link BoundsStore},
+ * and the insertion sort only touches the endpoint arrays. Overlap counters are kept in an open
+ * addressing hash table, keyed by the packed handle pair, and only the counters that changed during
+ * the sort are visited afterwards.
+ */
+public class SAP3 implements BroadphaseCollisionDetection {
+
+	// counter flags, the overlap count is stored in the remaining bits
+	private static final int OVERLAPPING = 1;
+	private static final int DIRTY = 2;
+	private static final int COUNT = 16;
+	private static final int MISSING = Integer.MIN_VALUE;
+
+	private final List<Handler> handlers = new ArrayList<Handler>();
+
+	// geometry handles and bounds
+	private final BoundsStore bounds = new BoundsStore();
+	private final SortedBounds sortedbounds = new SortedBounds(bounds);
+
+	// sweep points on each axis, encoded as handle*2 for minimum and handle*2+1 for maximum points
+	private final int[][] points = new int[3][32];
+	private final double[][] values = new double[3][32];
+	private double[] last = new double[32];
+	private int pointcount = 0;
+
+	// sweep points of deactivated geometries on each axis, with the values they had when they were
+	// deactivated, and the handles whose state was changed since the last run
+	private final SleepingAxis[] sleepingaxes = { new SleepingAxis(), new SleepingAxis(), new SleepingAxis() };
+	private double[] rest = new double[6*16];
+	private boolean[] sleeping = new boolean[16];
+	private boolean[] deactivated = new boolean[16];
+	private boolean[] pending = new boolean[16];
+	private boolean[] removing = new boolean[16];
+	private int[] pendinglist = new int[16];
+	private int pendingcount = 0;
+	private int sortedpoints = 0;
+
+	// overlap counters and counters changed since last run
+	private final LongIntHashMap counters = new LongIntHashMap();
+	private long[] dirty = new long[64];
+	private int dirtycount = 0;
+
+	// overlapping pairs, with their positions in the list
+	private final List<Pair<Geometry>> overlaps = new ArrayList<Pair<Geometry>>();
+	private long[] overlapkeys = new long[64];
+	private final LongIntHashMap overlapindices = new LongIntHashMap();
+
+	// events recorded since the last run, and a view of the overlapping pairs
+	private final ChangeSet changes = new ChangeSet();
+	private final PairView overlapview = new PairView() {
+		public final int size() { return overlaps.size(); }
+		public final Pair<Geometry> get(int index) { return overlaps.get(index); }
+	};
+
+	@Override
+	public void add(Geometry g) {
+		// obtain a handle
+		final int handle = bounds.add(g);
+		flags(handle);
+
+		// add sweep points
+		if (pointcount+2 > points[0].length) {
+			for (int axis=0; axis<3; axis++) {
+				final int[] p = new int[2*points[axis].length];
+				System.arraycopy(points[axis], 0, p, 0, pointcount);
+				points[axis] = p;
+				values[axis] = grow(values[axis], p.length);
+			}
+		}
+		// new points are placed at the end of the axes, so they start out at positive infinity
+		for (int axis=0; axis<3; axis++) {
+			points[axis][pointcount] = 2*handle;
+			values[axis][pointcount] = Double.POSITIVE_INFINITY;
+			points[axis][pointcount+1] = 2*handle+1;
+			values[axis][pointcount+1] = Double.POSITIVE_INFINITY;
+		}
+		pointcount += 2;
+	}
+
+	// make room for the flags of the given handle, and reset them
+	private final void flags( int handle ) {
+		sortedbounds.invalidate();
+		if (handle >= sleeping.length) {
+			int length = sleeping.length;
+			while (handle >= length)
+				length *= 2;
+			sleeping = grow(sleeping, length);
+			deactivated = grow(deactivated, length);
+			pending = grow(pending, length);
+			removing = grow(removing, length);
+			rest = grow(rest, 6*length);
+		}
+		sleeping[handle] = false;
+		deactivated[handle] = false;
+		pending[handle] = false;
+	}
+
+	@Override
+	public void remove(Geometry g) {
+		removeAll(Collections.singletonList(g));
+	}
+
+	/**
+	 * Add a collection of geometries. The new sweep points are sorted and merged into each axis in 
+	 * O(n + m log m) time, instead of being moved into place by the insertion sort in the next run, 
+	 * which takes quadratic time for unsorted points. Overlap counters for pairs involving new geometries
+	 * are found in a single sweep along each axis, and the pairs are reported by the next run.
+	 */
+	@Override
+	public void addAll(Collection<Geometry> geometries) {
+		final int m = geometries.size();
+		if (m == 0)
+			return;
+
+		// obtain handles
+		final int[] added = new int[m];
+		int k = 0;
+		for (Geometry g: geometries) {
+			added[k] = bounds.add(g);
+			flags(added[k++]);
+		}
+
+		// make room for the new sweep points
+		final int n = pointcount;
+		if (n+2*m > points[0].length) {
+			int length = points[0].length;
+			while (n+2*m > length)
+				length *= 2;
+			for (int axis=0; axis<3; axis++) {
+				final int[] p = new int[length];
+				System.arraycopy(points[axis], 0, p, 0, n);
+				points[axis] = p;
+				values[axis] = grow(values[axis], length);
+			}
+		}
+
+		// mark new handles
+		final boolean[] inserted = new boolean[bounds.getHandleCount()];
+		for (int i=0; i<m; i++)
+			inserted[added[i]] = true;
+
+		final int[] newpoints = new int[2*m], existingpoints = new int[n];
+		final double[] newvalues = new double[2*m], existingvalues = new double[n];
+		final int[] scratchpoints = new int[2*m];
+		final double[] scratchvalues = new double[2*m];
+		final int[] active = new int[bounds.getHandleCount()];
+		final int[] activeindex = new int[bounds.getHandleCount()];
+
+		for (int axis=0; axis<3; axis++) {
+			final int[] p = points[axis];
+			final double[] v = values[axis];
+
+			// sort the new points by value
+			for (int i=0; i<m; i++) {
+				newpoints[2*i] = 2*added[i];
+				newvalues[2*i] = bounds.getMin(added[i], axis);
+				newpoints[2*i+1] = 2*added[i]+1;
+				newvalues[2*i+1] = bounds.getMax(added[i], axis);
+			}
+			sort(newpoints, newvalues, scratchpoints, scratchvalues, 2*m);
+
+			// merge with the existing points, keeping the order of the existing points
+			System.arraycopy(p, 0, existingpoints, 0, n);
+			System.arraycopy(v, 0, existingvalues, 0, n);
+			merge(existingpoints, existingvalues, n, newpoints, newvalues, 2*m, p, v);
+
+			// sweep the axis along with the sleeping points. When a geometry begins, its interval 
+			// overlaps all active intervals on this axis
+			final SleepingAxis s = sleepingaxes[axis];
+			int activecount = 0;
+			Arrays.fill(activeindex, -1);
+			for (int l=0, q=0; l<n+2*m || q<s.size(); ) {
+				final int handle;
+				final boolean begin;
+				if (q == s.size() || (l < n+2*m && SleepingAxis.compare(v[l], (p[l]&1) == 0, s.value(q), s.begin(q)) <= 0)) {
+					handle = p[l]>>>1; begin = (p[l]&1) == 0; l++;
+				} else {
+					handle = s.handle(q); begin = s.begin(q); q++;
+				}
+				if (begin) {
+					// the end point of an empty interval comes before its begin point
+					if (activeindex[handle] == -2) {
+						activeindex[handle] = -1;
+						continue;
+					}
+					for (int a=0; a<activecount; a++) {
+						if ((inserted[handle] || inserted[active[a]]) && bounds.interacts(handle, active[a]))
+							change(LongIntHashMap.pair(handle, active[a]), 1);
+					}
+					activeindex[handle] = activecount;
+					active[activecount++] = handle;
+				} else if (activeindex[handle] < 0) {
+					activeindex[handle] = -2;
+				} else {
+					// move the last active handle into the position of this handle
+					final int last = active[--activecount];
+					active[activeindex[handle]] = last;
+					activeindex[last] = activeindex[handle];
+					activeindex[handle] = -1;
+				}
+			}
+		}
+		pointcount += 2*m;
+	}
+
+	/**
+	 * Remove a collection of geometries. The handles of all geometries are marked, and each axis and the 
+	 * counter table are scanned once for the whole collection, instead of once for each geometry
+	 */
+	@Override
+	public void removeAll(Collection<Geometry> geometries) {
+		// release the handles. They are not reused before the geometries are completely removed
+		final int[] handles = new int[geometries.size()];
+		boolean purge = false;
+		int m = 0;
+		for (Geometry g: geometries) {
+			final int handle = bounds.remove(g);
+			handles[m++] = handle;
+			removing[handle] = true;
+			pending[handle] = false;
+			if (sleeping[handle]) {
+				sleeping[handle] = false;
+				purge = true;
+			}
+		}
+
+		// remove sweep points
+		int j = 0;
+		for (int axis=0; axis<3; axis++) {
+			if (purge)
+				sleepingaxes[axis].remove(removing);
+			final int[] p = points[axis];
+			final double[] v = values[axis];
+			j = 0;
+			for (int i=0; i<pointcount; i++) {
+				if (!removing[p[i]>>>1]) {
+					p[j] = p[i]; v[j] = v[i]; j++;
+				}
+			}
+		}
+		pointcount = j;
+
+		// collect counters that involve the geometries
+		long[] removed = new long[8];
+		int removedcount = 0;
+		for (int i=0; i<counters.capacity(); i++) {
+			if (counters.isUsed(i)) {
+				final long key = counters.keyAt(i);
+				if (removing[LongIntHashMap.first(key)] || removing[LongIntHashMap.second(key)]) {
+					if (removedcount == removed.length)
+						removed = grow(removed, 2*removed.length);
+					removed[removedcount++] = key;
+				}
+			}
+		}
+
+		// delete counters. If a counter was overlapping, signal a separation event
+		changes.begin();
+		for (int i=0; i<removedcount; i++) {
+			final long key = removed[i];
+			final int value = counters.remove(key, 0);
+			if ((value & OVERLAPPING) != 0) {
+				final Pair<Geometry> pair = removeOverlap(key);
+				changes.separation(pair);
+				for (Handler handler: handlers) {
+					handler.separation(pair);
+				}
+			}
+		}
+
+		for (int i=0; i<m; i++)
+			removing[handles[i]] = false;
+	}
+
+	/**
+	 * Deactivated geometries are taken out of the axes at the end of the next run, and their sweep points 
+	 * are no longer sorted. Active sweep points that move across them are found by binary search, so pairs 
+	 * with deactivated geometries are kept, and new pairs are still reported
+	 */
+	@Override
+	public void deactivate(Geometry g) {
+		request(g, true);
+	}
+
+	/**
+	 * Activated geometries are merged into the axes at the beginning of the next run
+	 */
+	@Override
+	public void activate(Geometry g) {
+		request(g, false);
+	}
+
+	private final void request( Geometry g, boolean state ) {
+		final int handle = bounds.getHandle(g);
+		if (handle < 0)
+			throw new IllegalArgumentException("Given geometry does not exist");
+		deactivated[handle] = state;
+		if (!pending[handle]) {
+			pending[handle] = true;
+			if (pendingcount == pendinglist.length)
+				pendinglist = grow(pendinglist, 2*pendinglist.length);
+			pendinglist[pendingcount++] = handle;
+		}
+	}
+
+	// merge the sweep points of activated geometries into the axes, using the values they had when
+	// they were deactivated
+	private final void wake() {
+		if (pendingcount == 0)
+			return;
+		final boolean[] woken = new boolean[sleeping.length];
+		int m = 0;
+		for (int i=0; i<pendingcount; i++) {
+			final int handle = pendinglist[i];
+			if (pending[handle] && sleeping[handle] && !deactivated[handle]) {
+				sleeping[handle] = false;
+				woken[handle] = true;
+				m++;
+			}
+		}
+		if (m == 0)
+			return;
+
+		final int n = pointcount;
+		if (n+2*m > points[0].length) {
+			int length = points[0].length;
+			while (n+2*m > length)
+				length *= 2;
+			for (int axis=0; axis<3; axis++) {
+				final int[] p = new int[length];
+				System.arraycopy(points[axis], 0, p, 0, n);
+				points[axis] = p;
+				values[axis] = grow(values[axis], length);
+			}
+		}
+
+		final int[] newpoints = new int[2*m], existingpoints = new int[n], scratchpoints = new int[2*m];
+		final double[] newvalues = new double[2*m], existingvalues = new double[n], scratchvalues = new double[2*m];
+		for (int axis=0; axis<3; axis++) {
+			sleepingaxes[axis].remove(woken);
+			int k = 0;
+			for (int i=0; i<pendingcount; i++) {
+				final int handle = pendinglist[i];
+				if (woken[handle]) {
+					newpoints[k] = 2*handle;     newvalues[k++] = rest[6*handle+axis];
+					newpoints[k] = 2*handle+1;   newvalues[k++] = rest[6*handle+3+axis];
+				}
+			}
+			sort(newpoints, newvalues, scratchpoints, scratchvalues, 2*m);
+			System.arraycopy(points[axis], 0, existingpoints, 0, n);
+			System.arraycopy(values[axis], 0, existingvalues, 0, n);
+			merge(existingpoints, existingvalues, n, newpoints, newvalues, 2*m, points[axis], values[axis]);
+		}
+		pointcount += 2*m;
+	}
+
+	// move the sweep points of deactivated geometries into the sleeping axes. Activations requested
+	// during the run stay pending until the next run
+	private final void sleep() {
+		final double[] b = bounds.getBounds();
+		boolean slept = false;
+		int j = 0;
+		for (int i=0; i<pendingcount; i++) {
+			final int handle = pendinglist[i];
+			if (!pending[handle] || deactivated[handle] == sleeping[handle]) {
+				pending[handle] = false;
+			} else if (deactivated[handle]) {
+				// the stored bounds are the values the points were sorted by in this run
+				pending[handle] = false;
+				sleeping[handle] = true;
+				System.arraycopy(b, 6*handle, rest, 6*handle, 6);
+				for (int axis=0; axis<3; axis++)
+					sleepingaxes[axis].add(handle, rest[6*handle+axis], rest[6*handle+3+axis]);
+				slept = true;
+			} else {
+				pendinglist[j++] = handle;
+			}
+		}
+		pendingcount = j;
+		if (!slept)
+			return;
+
+		for (int axis=0; axis<3; axis++) {
+			sleepingaxes[axis].flush();
+			final int[] p = points[axis];
+			final double[] v = values[axis];
+			int k = 0;
+			for (int i=0; i<pointcount; i++) {
+				if (!sleeping[p[i]>>>1]) {
+					p[k] = p[i]; v[k] = v[i]; k++;
+				}
+			}
+			if (axis == 2)
+				pointcount = k;
+		}
+	}
+
+	/**
+	 * Return the number of sweep points sorted in the last run. Sweep points of deactivated geometries 
+	 * are not sorted
+	 */
+	public final int getSortedPoints() {
+		return sortedpoints;
+	}
+
+	/**
+	 * Return the number of bounding boxes tested by the last query, when queries are issued from a single thread
+	 */
+	public final int getQueryTests() {
+		return sortedbounds.getVisited();
+	}
+
+	@Override
+	public void addHandler(Handler h) {
+		handlers.add(h);
+	}
+
+	@Override
+	public void removeHandler(Handler h) {
+		handlers.remove(h);
+	}
+
+	@Override
+	public Set<Pair<Geometry>> getOverlappingPairs() {
+		return new LinkedHashSet<Pair<Geometry>>(overlaps);
+	}
+
+	@Override
+	public PairView getOverlappingPairView() {
+		return overlapview;
+	}
+
+	@Override
+	public PairView getAddedPairs() {
+		return changes.addedview;
+	}
+
+	@Override
+	public PairView getRemovedPairs() {
+		return changes.removedview;
+	}
+
+	@Override
+	public void query(Vector3 min, Vector3 max, Collection<Geometry> result) {
+		// the sweep points are only sorted in run(), so queries use their own order, see SortedBounds
+		sortedbounds.query(min, max, result);
+	}
+
+	@Override
+	public void query(Vector3 point, Vector3 direction, double length, Vector3 extent, Collection<Geometry> result) {
+		sortedbounds.query(point, direction, length, extent, result);
+	}
+
+	@Override
+	public BoundsStore getBoundsStore() {
+		return bounds;
+	}
+
+	@Override
+	public void run() {
+		// make sure bounds are up to date
+		bounds.prepare();
+		wake();
+		changes.begin();
+
+		// sort each axis and update counters
+		sortedpoints = 3*pointcount;
+		sortAxis(0);
+		sortAxis(1);
+		sortAxis(2);
+
+		// go through the changed counters
+		for (int i=0; i<dirtycount; i++) {
+			final long key = dirty[i];
+			final int value = counters.get(key, MISSING);
+
+			// counter could be removed along with a geometry
+			if (value == MISSING)
+				continue;
+
+			final int count = value >> 4;
+			boolean overlapping = (value & OVERLAPPING) != 0;
+
+			if (overlapping) {
+				// report separation
+				if (count < 3) {
+					overlapping = false;
+					final Pair<Geometry> pair = removeOverlap(key);
+					changes.separation(pair);
+					for (Handler h: handlers) {
+						h.separation(pair);
+					}
+				}
+			} else {
+				// report overlap
+				if (count > 2) {
+					overlapping = true;
+					final Pair<Geometry> pair = addOverlap(key);
+					changes.overlap(pair);
+					for (Handler h: handlers) {
+						h.overlap(pair);
+					}
+				}
+			}
+
+			// if counter is zero at this point, remove it
+			if (count < 1 && !overlapping) {
+				counters.remove(key, 0);
+			} else {
+				counters.put(key, count*COUNT | (overlapping? OVERLAPPING : 0));
+			}
+		}
+		dirtycount = 0;
+		changes.end();
+
+		// handlers may have deactivated geometries during the run
+		sleep();
+	}
+
+	private final void sortAxis( int axis ) {
+		final int[] p = points[axis];
+		final double[] v = values[axis];
+		final int n = pointcount;
+
+		// refresh sweep point values from the stored bounds, where the maximum 
+		// bounds of a handle are stored three entries after the minimum bounds
+		final double[] b = bounds.getBounds();
+		if (last.length < n)
+			last = new double[p.length];
+		for (int i=0; i<n; i++) {
+			last[i] = v[i];
+			v[i] = b[6*(p[i]>>>1) + 3*(p[i]&1) + axis];
+		}
+
+		// find the sleeping points passed by each point. Increments are counted before 
+		// decrements, so decremented counters always exist
+		final SleepingAxis s = sleepingaxes[axis];
+		if (s.size() > 0) {
+			for (int i=0; i<n; i++)
+				pass(p[i], last[i], v[i], s, true);
+			for (int i=0; i<n; i++)
+				pass(p[i], last[i], v[i], s, false);
+		}
+
+		// insertion sort from Cormen et al, Introduction to Algorithms. Points are ordered 
+		// by value, with end points before begin points of the same value
+		for (int j=1; j<n; j++ ) {
+			final int keypoint = p[j];
+			final double key = v[j];
+			final boolean begin = (keypoint&1) == 0;
+
+			int i = j-1;
+			while(i>=0 && SleepingAxis.compare(v[i], (p[i]&1) == 0, key, begin) > 0) {
+				// swap
+				final int swapper = p[i];
+				final boolean swapperbegin = (swapper&1) == 0;
+
+				// the two points of an empty interval may swap, but never change an overlap
+				if (begin != swapperbegin && (keypoint>>>1) != (swapper>>>1) && bounds.interacts(keypoint>>>1, swapper>>>1)) {
+					if (begin) {
+						// increment overlap (end before begin)
+						change(LongIntHashMap.pair(keypoint>>>1, swapper>>>1), 1);
+					} else {
+						// decrement overlap (begin before end)
+						change(LongIntHashMap.pair(keypoint>>>1, swapper>>>1), -1);
+					}
+				}
+
+				p[i+1] = swapper;
+				v[i+1] = v[i];
+				i=i-1;
+			}
+			p[i+1] = keypoint;
+			v[i+1] = key;
+		}
+	}
+
+	// count the sleeping points passed by a point moving from one value to another. Only increments,
+	// or only decrements are counted
+	private final void pass( int point, double from, double to, SleepingAxis s, boolean increments ) {
+		final boolean begin = (point&1) == 0;
+		final int direction = SleepingAxis.compare(to, begin, from, begin);
+		if (direction == 0)
+			return;
+
+		// a begin point moving up, or an end point moving down, leaves intervals
+		final boolean up = direction > 0;
+		final int delta = up == begin? -1 : 1;
+		if ((delta > 0) != increments)
+			return;
+
+		final int handle = point>>>1;
+		final int lower = s.lower(up? from : to, begin);
+		final int upper = s.lower(up? to : from, begin);
+		for (int i=lower; i<upper; i++) {
+			if (s.begin(i) != begin && bounds.interacts(handle, s.handle(i)))
+				change(LongIntHashMap.pair(handle, s.handle(i)), delta);
+		}
+	}
+
+	// merge two sorted sequences of sweep points, keeping the order of points in each sequence
+	private static final void merge( int[] p1, double[] v1, int n1, int[] p2, double[] v2, int n2, int[] p, double[] v ) {
+		int i = 0, j = 0;
+		for (int l=0; l<n1+n2; l++) {
+			if (j == n2 || (i < n1 && SleepingAxis.compare(v1[i], (p1[i]&1) == 0, v2[j], (p2[j]&1) == 0) <= 0)) {
+				p[l] = p1[i]; v[l] = v1[i]; i++;
+			} else {
+				p[l] = p2[j]; v[l] = v2[j]; j++;
+			}
+		}
+	}
+
+	// stable merge sort of n sweep points by value, with end points before begin points of the same value
+	private static final void sort( int[] p, double[] v, int[] sp, double[] sv, int n ) {
+		for (int width=1; width<n; width*=2) {
+			for (int from=0; from<n; from+=2*width) {
+				final int middle = Math.min(from+width, n), to = Math.min(from+2*width, n);
+				int i = from, j = middle;
+				for (int l=from; l<to; l++) {
+					if (j == to || (i < middle && SleepingAxis.compare(v[i], (p[i]&1) == 0, v[j], (p[j]&1) == 0) <= 0)) {
+						sp[l] = p[i]; sv[l] = v[i]; i++;
+					} else {
+						sp[l] = p[j]; sv[l] = v[j]; j++;
+					}
+				}
+			}
+			System.arraycopy(sp, 0, p, 0, n);
+			System.arraycopy(sv, 0, v, 0, n);
+		}
+	}
+
+	// change the overlap count of the given pair, and remember the pair as changed
+	private final void change( long key, int delta ) {
+		int value = counters.get(key, MISSING);
+		if (value == MISSING) {
+			// ignore decrements of non existing counters
+			if (delta < 0) return;
+			value = 0;
+		}
+		value += delta*COUNT;
+
+		if ((value & DIRTY) == 0) {
+			value |= DIRTY;
+			if (dirtycount == dirty.length)
+				dirty = grow(dirty, 2*dirty.length);
+			dirty[dirtycount++] = key;
+		}
+
+		counters.put(key, value);
+	}
+
+	private final Pair<Geometry> addOverlap( long key ) {
+		final Pair<Geometry> pair = new Pair<Geometry>(bounds.getGeometry(LongIntHashMap.first(key)), bounds.getGeometry(LongIntHashMap.second(key)));
+		final int index = overlaps.size();
+		overlaps.add(pair);
+		if (index == overlapkeys.length)
+			overlapkeys = grow(overlapkeys, 2*overlapkeys.length);
+		overlapkeys[index] = key;
+		overlapindices.put(key, index);
+		return pair;
+	}
+
+	private final Pair<Geometry> removeOverlap( long key ) {
+		// swap the last overlap into the position of the removed one
+		final int index = overlapindices.remove(key, -1);
+		final int last = overlaps.size()-1;
+		final Pair<Geometry> pair = overlaps.get(index);
+		if (index != last) {
+			overlaps.set(index, overlaps.get(last));
+			overlapkeys[index] = overlapkeys[last];
+			overlapindices.put(overlapkeys[index], index);
+		}
+		overlaps.remove(last);
+		return pair;
+	}
+
+	private static final double[] grow( double[] a, int length ) {
+		final double[] b = new double[length];
+		System.arraycopy(a, 0, b, 0, a.length);
+		return b;
+	}
+
+	private static final int[] grow( int[] a, int length ) {
+		final int[] b = new int[length];
+		System.arraycopy(a, 0, b, 0, a.length);
+		return b;
+	}
+
+	private static final boolean[] grow( boolean[] a, int length ) {
+		final boolean[] b = new boolean[length];
+		System.arraycopy(a, 0, b, 0, a.length);
+		return b;
+	}
+
+	private static final long[] grow( long[] a, int length ) {
+		final long[] b = new long[length];
+		System.arraycopy(a, 0, b, 0, a.length);
+		return b;
+	}
+}
@@ -0,0 +1,282 @@
+/**
+ * Copyright (c) 2008-2010  Morten Silcowitz.
+ *
+ * This file is part of the Jinngine physics library
+ *
+ * Jinngine is published under the GPL license, available
+ * at http://www.gnu.org/copyleft/gpl.html.
+ */
+package jinngine.collision;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import jinngine.geometry.Geometry;
+import jinngine.geometry.SupportMap3;
+import jinngine.math.Vector3;
+
+/**
+ * Ray casts, shape casts and box queries against the geometries handled by a broad-phase, typically the one
+ * of a scene, as in new SceneQuery(scene.getBroadphase()). Each cast first finds candidate geometries using the
+ * spatial structure of the broad-phase, see {@link BroadphaseCollisionDetection#query(Vector3, Vector3, double, Vector3, java.util.Collection)},
+ * and only then runs the GJK based {@link RayCast} on the candidates. Geometries that are not support mappings
+ * are ignored by casts.
+ * <p>
+ * Queries use the bounding boxes computed in the last run of the broad-phase, that is, before bodies were moved
+ * in the last time-step. Call update() after each time-step, before issuing queries, to compute bounding boxes from
+ * the current state of the bodies. These bounds are then reused by the next run of the broad-phase.
+ * <p>
+ * A SceneQuery keeps internal state, so an instance should only be used by one thread at a time. Several instances
+ * can query the same broad-phase concurrently, as long as the scene is not changed in the meantime.
+ */
+public final class SceneQuery {
+
+	/**
+	 * Result of a ray cast or shape cast
+	 */
+	public static final class Hit {
+		/** The geometry that was hit */
+		public Geometry geometry;
+		/** Distance travelled along the normalised direction of the cast */
+		public double distance;
+		/** Point of contact on the surface of the geometry */
+		public final Vector3 point = new Vector3();
+		/** Unit surface normal of the geometry at the point of contact, estimated from the closest points found by GJK */
+		public final Vector3 normal = new Vector3();
+	}
+
+	// support mapping of a point with a sphere sweep radius, used for sphere casts
+	private static final class SweptPoint implements SupportMap3 {
+		private double radius;
+		@Override
+		public final Vector3 supportPoint(Vector3 direction) { return new Vector3(); }
+		@Override
+		public final Vector3 supportPoint(Vector3 direction, Vector3 result) { return result.assignZero(); }
+		@Override
+		public final void supportFeature(Vector3 direction, List<Vector3> face) {}
+		@Override
+		public final double sphereSweepRadius() { return radius; }
+	}
+
+	// hits in order of increasing distance
+	private static final Comparator<Hit> order = new Comparator<Hit>() {
+		@Override
+		public final int compare(Hit a, Hit b) {
+			return Double.compare(a.distance, b.distance);
+		}
+	};
+
+	// ray casts are accurate to within the envelope of each geometry
+	private final double envelope = 1e-5;
+	private final double epsilon = 1e-7;
+
+	private final BroadphaseCollisionDetection broadphase;
+	private final RayCast raycast = new RayCast();
+	private final List<Geometry> candidates = new ArrayList<Geometry>();
+	private final SweptPoint sphere = new SweptPoint();
+	private final Vector3 pb = new Vector3();
+	private final Vector3 pc = new Vector3();
+
+	// scratch vectors for the direction and origin of casts, and a zero extent for rays
+	private final Vector3 d = new Vector3();
+	private final Vector3 origin = new Vector3();
+	private final Vector3 zero = new Vector3();
+	private final Hit result = new Hit();
+
+	/**
+	 * Create a query engine for the geometries of the given broad-phase
+	 */
+	public SceneQuery( BroadphaseCollisionDetection broadphase ) {
+		this.broadphase = broadphase;
+	}
+
+	/**
+	 * Compute bounding boxes from the current state of the bodies. Should be called once after each time-step,
+	 * before any queries, and not while other threads are querying the broad-phase
+	 */
+	public final void update() {
+		broadphase.getBoundsStore().update();
+	}
+
+	/**
+	 * Cast a ray, and find the closest geometry that it hits
+	 * @param point origin of the ray
+	 * @param direction direction of the ray. Need not be normalised
+	 * @param maxdistance maximum distance along the ray. Can be positive infinity
+	 * @param mask only geometries whose collision category shares a bit with this mask are considered. Use ~0 to consider all geometries
+	 * @param hit receives the closest hit, if any
+	 * @return true if the ray hit a geometry
+	 */
+	public final boolean raycast( Vector3 point, Vector3 direction, double maxdistance, int mask, Hit hit ) {
+		normalize(direction, d);
+		return cast(null, point, point, d, maxdistance, zero, mask, hit, null);
+	}
+
+	/**
+	 * Cast a ray, and find all geometries that it hits. Hits are added to the given list, in order of increasing distance
+	 * @param point origin of the ray
+	 * @param direction direction of the ray. Need not be normalised
+	 * @param maxdistance maximum distance along the ray. Can be positive infinity
+	 * @param mask only geometries whose collision category shares a bit with this mask are considered. Use ~0 to consider all geometries
+	 * @param hits receives the hits
+	 * @return the number of hits
+	 */
+	public final int raycastAll( Vector3 point, Vector3 direction, double maxdistance, int mask, List<Hit> hits ) {
+		normalize(direction, d);
+		final int size = hits.size();
+		cast(null, point, point, d, maxdistance, zero, mask, null, hits);
+		Collections.sort(hits.subList(size, hits.size()), order);
+		return hits.size() - size;
+	}
+
+	/**
+	 * Sweep a sphere along a direction, and find the closest geometry that it hits
+	 * @param centre initial centre of the sphere
+	 * @param radius radius of the sphere
+	 * @param direction direction of the sweep. Need not be normalised
+	 * @param maxdistance maximum distance of the sweep. Can be positive infinity
+	 * @param mask only geometries whose collision category shares a bit with this mask are considered. Use ~0 to consider all geometries
+	 * @param hit receives the closest hit, if any
+	 * @return true if the sphere hit a geometry
+	 */
+	public final boolean sweepSphere( Vector3 centre, double radius, Vector3 direction, double maxdistance, int mask, Hit hit ) {
+		normalize(direction, d);
+		sphere.radius = radius;
+		return cast(sphere, centre, centre, d, maxdistance, new Vector3(radius, radius, radius), mask, hit, null);
+	}
+
+	/**
+	 * Sweep a convex shape along a direction, and find the closest geometry that it hits. The shape is swept from its
+	 * current position in world space. If the shape is a geometry handled by the broad-phase, it is not reported as a hit
+	 * @param shape support mapping of the shape
+	 * @param direction direction of the sweep. Need not be normalised
+	 * @param maxdistance maximum distance of the sweep. Can be positive infinity
+	 * @param mask only geometries whose collision category shares a bit with this mask are considered. Use ~0 to consider all geometries
+	 * @param hit receives the closest hit, if any
+	 * @return true if the shape hit a geometry
+	 */
+	public final boolean sweep( SupportMap3 shape, Vector3 direction, double maxdistance, int mask, Hit hit ) {
+		normalize(direction, d);
+
+		// find the bounding box of the shape using its support mapping
+		final double radius = shape.sphereSweepRadius();
+		final Vector3 min = new Vector3(), max = new Vector3(), axis = new Vector3(), p = new Vector3();
+		for (int i=0; i<3; i++) {
+			axis.assignZero();
+			axis.set(i, 1);
+			max.set(i, shape.supportPoint(axis, p).get(i) + radius);
+			axis.set(i, -1);
+			min.set(i, shape.supportPoint(axis, p).get(i) - radius);
+		}
+
+		// the shape is cast from its world position, while the broad-phase sweeps its bounding box
+		final Vector3 centre = min.add(max).multiply(0.5);
+		final Vector3 extent = max.sub(min).multiply(0.5);
+		return cast(shape, new Vector3(), centre, d, maxdistance, extent, mask, hit, null);
+	}
+
+	/**
+	 * Find the geometries whose bounding boxes overlap the given axis aligned box
+	 * @param min minimum corner of the box
+	 * @param max maximum corner of the box
+	 * @param mask only geometries whose collision category shares a bit with this mask are considered. Use ~0 to consider all geometries
+	 * @param result receives the geometries found
+	 */
+	public final void overlap( Vector3 min, Vector3 max, int mask, List<Geometry> result ) {
+		candidates.clear();
+		broadphase.query(min, max, candidates);
+		for (int i=0; i<candidates.size(); i++) {
+			final Geometry g = candidates.get(i);
+			if ((g.getCollisionCategory() & mask) != 0)
+				result.add(g);
+		}
+	}
+
+	/**
+	 * Cast the rays from index from to index to, and write the closest hits into the result arrays, 
+	 * see {@link BatchRayCast#run(java.util.concurrent.ForkJoinPool, double[], double[], int, double, int, double[], double[], Geometry[])}
+	 */
+	final void raycast( double[] origins, double[] directions, int from, int to, double maxdistance, int mask, 
+			double[] distances, double[] normals, Geometry[] geometries ) {
+		for (int i=from; i<to; i++) {
+			final int k = 3*i;
+			origin.assign(origins[k], origins[k+1], origins[k+2]);
+			d.assign(directions[k], directions[k+1], directions[k+2]);
+			normalize(d, d);
+			if (cast(null, origin, origin, d, maxdistance, zero, mask, result, null)) {
+				distances[i] = result.distance;
+				normals[k] = result.normal.x; normals[k+1] = result.normal.y; normals[k+2] = result.normal.z;
+				geometries[i] = result.geometry;
+			} else {
+				distances[i] = Double.POSITIVE_INFINITY;
+				normals[k] = 0; normals[k+1] = 0; normals[k+2] = 0;
+				geometries[i] = null;
+			}
+		}
+		// do not keep a reference to the last geometry hit
+		result.geometry = null;
+	}
+
+	// store the normalised vector v in result
+	private static final void normalize( Vector3 v, Vector3 result ) {
+		final double length = v.norm();
+		if (length == 0) {
+			// same convention as Vector3.normalize()
+			result.assign(1, 0, 0);
+		} else {
+			result.assign(v.x/length, v.y/length, v.z/length);
+		}
+	}
+
+	// cast the optional shape from point along the unit direction d. The bounding box with the given
+	// extent and centre at origin is swept through the broad-phase, to find candidate geometries. The closest
+	// hit is written into closest, or if closest is null, all hits are added to hits
+	private final boolean cast( SupportMap3 shape, Vector3 point, Vector3 origin, Vector3 d, double maxdistance,
+			Vector3 extent, int mask, Hit closest, List<Hit> hits ) {
+		candidates.clear();
+		broadphase.query(origin, d, maxdistance, extent, candidates);
+
+		double best = maxdistance;
+		boolean found = false;
+		// candidates are visited by index, so no iterator is allocated
+		for (int i=0; i<candidates.size(); i++) {
+			final Geometry g = candidates.get(i);
+			if (g == shape || !(g instanceof SupportMap3) || (g.getCollisionCategory() & mask) == 0)
+				continue;
+
+			final SupportMap3 Sb = (SupportMap3)g;
+			final double lambda = raycast.run(Sb, shape, point, d, pb, pc, 0, envelope, epsilon, true);
+
+			// misses are returned as positive infinity
+			if (lambda == Double.POSITIVE_INFINITY || lambda > best)
+				continue;
+
+			final Hit hit = closest != null? closest : new Hit();
+			hit.geometry = g;
+			hit.distance = lambda;
+
+			// the closest points are separated by at most the envelope and the sweep radii
+			final Vector3 n = hit.normal;
+			n.assign(pc.x-pb.x, pc.y-pb.y, pc.z-pb.z);
+			final double length = n.norm();
+			if (length > 0) {
+				n.assign(n.x/length, n.y/length, n.z/length);
+			} else {
+				// the cast started inside the geometry
+				n.assign(-d.x, -d.y, -d.z);
+			}
+			final double radius = Sb.sphereSweepRadius();
+			hit.point.assign(pb.x+n.x*radius, pb.y+n.y*radius, pb.z+n.z*radius);
+
+			found = true;
+			if (closest != null) {
+				best = lambda;
+			} else {
+				hits.add(hit);
+			}
+		}
+		return found;
+	}
+}
@@ -0,0 +1,197 @@
+/**
+ * Copyright (c) 2008-2010  Morten Silcowitz.
+ *
+ * This file is part of the Jinngine physics library
+ *
+ * Jinngine is published under the GPL license, available
+ * at http://www.gnu.org/copyleft/gpl.html.
+ */
+package jinngine.collision;
+
+/**
+ * Sorted sweep points of deactivated geometries on a single axis, used by the sweep-and-prune implementations.
+ * Deactivated geometries do not move, so their sweep points are kept apart from the sweep points of active
+ * geometries, and are never sorted again. When a sweep point of an active geometry moves, the sleeping points
+ * it passes are found by binary search, using {@link #lower(double, boolean)}.
+ * <p>
+ * Points are ordered by value, and end points are ordered before begin points of the same value, such that
+ * touching intervals do not overlap. Sweep-and-prune implementations must use the same order for their active
+ * points, see {@link #compare(double, boolean, double, boolean)}, so the relative order of an active and a
+ * sleeping point is given by their values alone. Points are encoded as 2*handle for begin points and
+ * 2*handle+1 for end points.
+ */
+final class SleepingAxis {
+	private int[] points = new int[16];
+	private double[] values = new double[16];
+	private int size = 0;
+
+	// points added since the last call to flush()
+	private int[] addedpoints = new int[16];
+	private double[] addedvalues = new double[16];
+	private int addedcount = 0;
+	private int[] scratchpoints = new int[0];
+	private double[] scratchvalues = new double[0];
+
+	/**
+	 * Compare two sweep points by value, ordering end points before begin points of the same value
+	 */
+	static final int compare( double value1, boolean begin1, double value2, boolean begin2 ) {
+		if (value1 < value2) return -1;
+		if (value1 > value2) return 1;
+		return begin1 == begin2? 0 : (begin1? 1 : -1);
+	}
+
+	/**
+	 * Return the number of sleeping points
+	 */
+	final int size() {
+		return size;
+	}
+
+	/**
+	 * Return the handle of the point at index i
+	 */
+	final int handle( int i ) {
+		return points[i]>>>1;
+	}
+
+	/**
+	 * Return true if the point at index i is a begin point
+	 */
+	final boolean begin( int i ) {
+		return (points[i]&1) == 0;
+	}
+
+	/**
+	 * Return the value of the point at index i
+	 */
+	final double value( int i ) {
+		return values[i];
+	}
+
+	/**
+	 * Return the index of the first point that is not ordered before a point of the given value and type.
+	 * The points passed by a point moving from one value to another are those between the two indices
+	 * returned for the old and the new value. Points at the boundaries have the type of the moving point, so
+	 * they never change the overlap of a pair
+	 */
+	final int lower( double value, boolean begin ) {
+		int low = 0, high = size;
+		while (low < high) {
+			final int middle = (low+high) >>> 1;
+			if (compare(values[middle], (points[middle]&1) == 0, value, begin) < 0)
+				low = middle+1;
+			else
+				high = middle;
+		}
+		return low;
+	}
+
+	/**
+	 * Add the two points of a handle. Points are inserted in the next call to flush()
+	 */
+	final void add( int handle, double min, double max ) {
+		if (addedcount+2 > addedpoints.length) {
+			addedpoints = grow(addedpoints, 2*addedpoints.length);
+			addedvalues = grow(addedvalues, 2*addedvalues.length);
+		}
+		addedpoints[addedcount] = 2*handle;   addedvalues[addedcount++] = min;
+		addedpoints[addedcount] = 2*handle+1; addedvalues[addedcount++] = max;
+	}
+
+	/**
+	 * Sort the points added since the last flush, and merge them with the sleeping points,
+	 * in O(n + m log m) time for m added points
+	 */
+	final void flush() {
+		if (addedcount == 0)
+			return;
+
+		// bottom-up merge sort of the added points
+		final int m = addedcount;
+		if (scratchpoints.length < m) {
+			scratchpoints = new int[addedpoints.length];
+			scratchvalues = new double[addedpoints.length];
+		}
+		for (int width=1; width<m; width*=2) {
+			for (int from=0; from<m; from+=2*width) {
+				final int middle = Math.min(from+width, m), to = Math.min(from+2*width, m);
+				int i = from, j = middle;
+				for (int l=from; l<to; l++) {
+					if (j == to || (i < middle && compare(addedvalues[i], (addedpoints[i]&1) == 0, addedvalues[j], (addedpoints[j]&1) == 0) <= 0)) {
+						scratchpoints[l] = addedpoints[i]; scratchvalues[l] = addedvalues[i]; i++;
+					} else {
+						scratchpoints[l] = addedpoints[j]; scratchvalues[l] = addedvalues[j]; j++;
+					}
+				}
+			}
+			System.arraycopy(scratchpoints, 0, addedpoints, 0, m);
+			System.arraycopy(scratchvalues, 0, addedvalues, 0, m);
+		}
+
+		// merge from the back, so no extra space is needed
+		if (size+m > points.length) {
+			int length = points.length;
+			while (size+m > length)
+				length *= 2;
+			points = grow(points, length);
+			values = grow(values, length);
+		}
+		int i = size-1, j = m-1;
+		for (int l=size+m-1; j>=0; l--) {
+			if (i >= 0 && compare(values[i], (points[i]&1) == 0, addedvalues[j], (addedpoints[j]&1) == 0) > 0) {
+				points[l] = points[i]; values[l] = values[i]; i--;
+			} else {
+				points[l] = addedpoints[j]; values[l] = addedvalues[j]; j--;
+			}
+		}
+		size += m;
+		addedcount = 0;
+	}
+
+	/**
+	 * Remove the two points of the given handle, with the given minimum and maximum values
+	 */
+	final void remove( int handle, double min, double max ) {
+		removePoint(2*handle, min);
+		removePoint(2*handle+1, max);
+	}
+
+	/**
+	 * Remove the points of all handles whose entry in the given array is true, in a single pass
+	 */
+	final void remove( boolean[] removed ) {
+		int j = 0;
+		for (int i=0; i<size; i++) {
+			if (!removed[points[i]>>>1]) {
+				points[j] = points[i]; values[j] = values[i]; j++;
+			}
+		}
+		size = j;
+	}
+
+	private final void removePoint( int point, double value ) {
+		// the point is found among the points of the same value and type
+		for (int i=lower(value, (point&1) == 0); i<size; i++) {
+			if (points[i] == point) {
+				System.arraycopy(points, i+1, points, i, size-i-1);
+				System.arraycopy(values, i+1, values, i, size-i-1);
+				size--;
+				return;
+			}
+		}
+		throw new IllegalStateException("SleepingAxis: point not found");
+	}
+
+	private static final int[] grow( int[] a, int length ) {
+		final int[] b = new int[length];
+		System.arraycopy(a, 0, b, 0, a.length);
+		return b;
+	}
+
+	private static final double[] grow( double[] a, int length ) {
+		final double[] b = new double[length];
+		System.arraycopy(a, 0, b, 0, a.length);
+		return b;
+	}
+}
@@ -0,0 +1,218 @@
+/**
+ * Copyright (c) 2008-2010  Morten Silcowitz.
+ *
+ * This file is part of the Jinngine physics library
+ *
+ * Jinngine is published under the GPL license, available
+ * at http://www.gnu.org/copyleft/gpl.html.
+ */
+package jinngine.collision;
+
+import java.util.Collection;
+
+import jinngine.geometry.Geometry;
+import jinngine.math.Vector3;
+
+/**
+ * Bounding boxes of a store, sorted by their minimum value on the x axis, used by the sweep-and-prune
+ * implementations to answer queries. A box overlapping the interval [lo,hi] on the x axis has its minimum
+ * value in [lo-w,hi], where w is the largest width of the sorted boxes, so only the boxes in this part of
+ * the sorted order are tested. Boxes much wider than the average are kept apart and always tested, such that
+ * a single large geometry, like a floor, does not widen the interval of every query.
+ * <p>
+ * The order is built from the stored bounds, when a query finds that bounds were computed, or geometries
+ * were added, since it was last built. Building is synchronized, so queries can still be issued from
+ * several threads at the same time.
+ */
+final class SortedBounds {
+	// boxes wider than this multiple of the average width are always tested
+	private static final double WIDE = 4;
+
+	private final BoundsStore store;
+
+	// version of the store that the order was built from, or -1 if geometries were added since
+	private volatile int built = -1;
+
+	// sorted handles and their minimum values, and the largest width of the sorted boxes
+	private int[] handles = new int[16];
+	private double[] mins = new double[16];
+	private int count = 0;
+	private double width = 0;
+
+	// wide boxes
+	private int[] wide = new int[16];
+	private int widecount = 0;
+
+	private int[] scratchhandles = new int[16];
+	private double[] scratchmins = new double[16];
+
+	// boxes tested by the last query
+	private int visited = 0;
+
+	SortedBounds( BoundsStore store ) {
+		this.store = store;
+	}
+
+	/**
+	 * Rebuild the order in the next query. Must be called when geometries are added to the store
+	 */
+	final void invalidate() {
+		built = -1;
+	}
+
+	/**
+	 * Return the number of boxes tested by the last query, when queries are issued from a single thread
+	 */
+	final int getVisited() {
+		return visited;
+	}
+
+	/**
+	 * See {@link BroadphaseCollisionDetection#query(Vector3, Vector3, Collection)}
+	 */
+	final void query( Vector3 min, Vector3 max, Collection<Geometry> result ) {
+		if (built != store.getVersion())
+			build();
+
+		final double[] b = store.getBounds();
+		final int from = lower(from(min.x)), to = upper(max.x);
+		for (int i=from; i<to; i++) {
+			final int handle = handles[i];
+			if (store.getGeometry(handle) != null && BoundsStore.overlap(b, 6*handle, min, max))
+				result.add(store.getGeometry(handle));
+		}
+		for (int i=0; i<widecount; i++) {
+			final int handle = wide[i];
+			if (store.getGeometry(handle) != null && BoundsStore.overlap(b, 6*handle, min, max))
+				result.add(store.getGeometry(handle));
+		}
+		visited = Math.max(to-from, 0) + widecount;
+	}
+
+	/**
+	 * See {@link BroadphaseCollisionDetection#query(Vector3, Vector3, double, Vector3, Collection)}
+	 */
+	final void query( Vector3 point, Vector3 direction, double length, Vector3 extent, Collection<Geometry> result ) {
+		if (built != store.getVersion())
+			build();
+
+		// interval of the swept box on the x axis
+		final double end = direction.x == 0? point.x : point.x + direction.x*length;
+		final double lo = Math.min(point.x, end) - extent.x, hi = Math.max(point.x, end) + extent.x;
+
+		final double[] b = store.getBounds();
+		final double[] segment = BoundsStore.segment(point, direction, length, extent, QueryBuffers.get().segment);
+		final int from = lower(from(lo)), to = upper(hi);
+		for (int i=from; i<to; i++) {
+			final int handle = handles[i];
+			if (store.getGeometry(handle) != null && BoundsStore.intersects(b, 6*handle, segment))
+				result.add(store.getGeometry(handle));
+		}
+		for (int i=0; i<widecount; i++) {
+			final int handle = wide[i];
+			if (store.getGeometry(handle) != null && BoundsStore.intersects(b, 6*handle, segment))
+				result.add(store.getGeometry(handle));
+		}
+		visited = Math.max(to-from, 0) + widecount;
+	}
+
+	// smallest minimum value of a sorted box that can reach the given value. The margin covers rounding
+	// in the computed widths and in the subtraction
+	private final double from( double lo ) {
+		return lo - width - 2*(Math.ulp(lo) + Math.ulp(width));
+	}
+
+	// index of the first sorted box with a minimum value not less than the given value
+	private final int lower( double value ) {
+		int low = 0, high = count;
+		while (low < high) {
+			final int middle = (low+high) >>> 1;
+			if (mins[middle] < value)
+				low = middle+1;
+			else
+				high = middle;
+		}
+		return low;
+	}
+
+	// index of the first sorted box with a minimum value greater than the given value
+	private final int upper( double value ) {
+		int low = 0, high = count;
+		while (low < high) {
+			final int middle = (low+high) >>> 1;
+			if (mins[middle] <= value)
+				low = middle+1;
+			else
+				high = middle;
+		}
+		return low;
+	}
+
+	private final synchronized void build() {
+		final int version = store.getVersion();
+		if (built == version)
+			return;
+
+		final double[] b = store.getBounds();
+		final int n = store.getHandleCount();
+		if (handles.length < n) {
+			int length = handles.length;
+			while (length < n)
+				length *= 2;
+			handles = new int[length];
+			mins = new double[length];
+			wide = new int[length];
+			scratchhandles = new int[length];
+			scratchmins = new double[length];
+		}
+
+		// average width of the boxes
+		double sum = 0;
+		int finite = 0;
+		for (int handle=0; handle<n; handle++) {
+			final double w = b[6*handle+3] - b[6*handle];
+			if (store.getGeometry(handle) != null && w < Double.POSITIVE_INFINITY) {
+				sum += w;
+				finite++;
+			}
+		}
+		final double limit = finite > 0? WIDE*sum/finite : 0;
+
+		// separate wide boxes
+		count = 0;
+		widecount = 0;
+		width = 0;
+		for (int handle=0; handle<n; handle++) {
+			if (store.getGeometry(handle) == null)
+				continue;
+			final int k = 6*handle;
+			final double w = b[k+3] - b[k];
+			if (w <= limit) {
+				handles[count] = handle;
+				mins[count++] = b[k];
+				width = Math.max(width, w);
+			} else {
+				wide[widecount++] = handle;
+			}
+		}
+
+		// bottom-up merge sort by minimum value
+		for (int w=1; w<count; w*=2) {
+			for (int from=0; from<count; from+=2*w) {
+				final int middle = Math.min(from+w, count), to = Math.min(from+2*w, count);
+				int i = from, j = middle;
+				for (int l=from; l<to; l++) {
+					if (j == to || (i < middle && mins[i] <= mins[j])) {
+						scratchhandles[l] = handles[i]; scratchmins[l] = mins[i]; i++;
+					} else {
+						scratchhandles[l] = handles[j]; scratchmins[l] = mins[j]; j++;
+					}
+				}
+			}
+			System.arraycopy(scratchhandles, 0, handles, 0, count);
+			System.arraycopy(scratchmins, 0, mins, 0, count);
+		}
+
+		built = version;
+	}
+}
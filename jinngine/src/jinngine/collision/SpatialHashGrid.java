@@ -0,0 +1,795 @@
+/**
+ * Copyright (c) 2008-2010  Morten Silcowitz.
+ *
+ * This file is part of the Jinngine physics library
+ *
+ * Jinngine is published under the GPL license, available
+ * at http://www.gnu.org/copyleft/gpl.html.
+ */
+package jinngine.collision;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import jinngine.geometry.Geometry;
+import jinngine.math.Vector3;
+import jinngine.util.LongIntHashMap;
+import jinngine.util.Pair;
+
+/**
+ * Broad-phase collision detection using a hashed uniform grid. Space is divided into cubic cells, and
+ * each geometry is inserted into the cells that its bounding box overlaps. Only cells that contain geometries
+ * are stored, in a hash table keyed by the integer cell coordinates, so memory use and the cost of insertion
+ * and queries do not depend on the extent of the world. The grid is well suited for large numbers of geometries
+ * of similar size, such as particles, when the cell size is chosen close to the typical geometry size.
+ * <p>
+ * For geometries of mixed sizes, a hierarchy of grids can be used, where the cell size doubles from one level
+ * to the next. Each geometry is placed in the finest level whose cells are at least as large as the geometry,
+ * and is tested against geometries in its own level and all coarser levels. Geometries larger than the cells
+ * of the coarsest level span several cells in that level.
+ * <p>
+ * The grid is rebuilt in each call to run(). A pair that shares several cells is only tested in the cell that
+ * contains the minimum corner of the intersection of the two bounding boxes, so each pair is found once. Overlap
+ * and separation events are found by comparing the set of overlapping pairs with the set found in the previous run.
+ * <p>
+ * Deactivated geometries do not move, so they are kept in a separate set of cells, which is only changed when
+ * geometries are deactivated or activated. A deactivated geometry is placed in the cells of its own level and all
+ * coarser levels, such that active geometries find it in the level of the larger of the two geometries.
+ * <p>
+ * Queries walk the cells that the query box overlaps, or the cells that a segment passes through, in each level.
+ * When this would visit more cells than there are geometries, all bounding boxes are tested instead.
+ */
+public class SpatialHashGrid implements BroadphaseCollisionDetection {
+
+	private static final int NONE = -1;
+
+	private final List<Handler> handlers = new ArrayList<Handler>();
+
+	// geometry handles and bounds
+	private final BoundsStore bounds = new BoundsStore();
+
+	// cell sizes and their inverses for each level
+	private final double[] cellsizes;
+	private final double[] inverses;
+
+	// level and sleeping state of each handle in the current run, and the requested state of each handle
+	private int[] levels = new int[16];
+	private boolean[] sleeping = new boolean[16];
+	private boolean[] deactivated = new boolean[16];
+	private boolean[] pending = new boolean[16];
+	private boolean[] removing = new boolean[16];
+	private int[] pendinglist = new int[16];
+	private int pendingcount = 0;
+
+	// cells of sleeping handles, with the bounds the handles were inserted with. Free entries are linked
+	private final LongIntHashMap sleepingcells = new LongIntHashMap();
+	private double[] rest = new double[6*16];
+	private int[] sleepinghandles = new int[64];
+	private int[] sleepingnext = new int[64];
+	private int sleepingcount = 0;
+	private int free = NONE;
+
+	// cells, mapping cell keys to the first entry in a linked list of handles
+	private final LongIntHashMap cells = new LongIntHashMap(1024);
+	private int[] entryhandles = new int[256];
+	private int[] entrynext = new int[256];
+	private int entrycount = 0;
+
+	// version of the bounds store that the cells were built from, or -1 if geometries were added since.
+	// Queries rebuild the cells when bounds were computed after the last run
+	private volatile int built = -1;
+
+	// bounds of all geometries when the cells were built, used to clip segments in queries
+	private final double[] world = new double[6];
+
+	// cell entries visited by the last query
+	private int visited = 0;
+
+	// overlapping pairs, with their positions in the list and the last run they were found in
+	private final List<Pair<Geometry>> overlaps = new ArrayList<Pair<Geometry>>();
+	private long[] overlapkeys = new long[64];
+	private int[] overlapruns = new int[64];
+	private final LongIntHashMap overlapindices = new LongIntHashMap();
+
+	// events recorded since the last run, and a view of the overlapping pairs
+	private final ChangeSet changes = new ChangeSet();
+	private final PairView overlapview = new PairView() {
+		public final int size() { return overlaps.size(); }
+		public final Pair<Geometry> get(int index) { return overlaps.get(index); }
+	};
+	private int run = 0;
+
+	/**
+	 * Create a new single level grid
+	 * @param cellsize the side length of the grid cells
+	 */
+	public SpatialHashGrid( double cellsize ) {
+		this(cellsize, 1);
+	}
+
+	/**
+	 * Create a new hierarchical grid
+	 * @param cellsize the side length of the cells in the finest level
+	 * @param levels the number of levels. The cell size is doubled in each level
+	 */
+	public SpatialHashGrid( double cellsize, int levels ) {
+		if (!(cellsize > 0))
+			throw new IllegalArgumentException("SpatialHashGrid: cell size must be positive");
+		if (levels < 1 || levels > 16)
+			throw new IllegalArgumentException("SpatialHashGrid: number of levels must be in [1,16]");
+
+		cellsizes = new double[levels];
+		inverses = new double[levels];
+		for (int l=0; l<levels; l++) {
+			cellsizes[l] = cellsize * (1<<l);
+			inverses[l] = 1.0/cellsizes[l];
+		}
+	}
+
+	@Override
+	public void add(Geometry g) {
+		final int handle = bounds.add(g);
+		if (handle >= levels.length) {
+			final int length = 2*levels.length;
+			levels = grow(levels, length);
+			sleeping = grow(sleeping, length);
+			deactivated = grow(deactivated, length);
+			pending = grow(pending, length);
+			removing = grow(removing, length);
+			final double[] r = new double[6*length];
+			System.arraycopy(rest, 0, r, 0, rest.length);
+			rest = r;
+		}
+		sleeping[handle] = false;
+		deactivated[handle] = false;
+		pending[handle] = false;
+		built = -1;
+	}
+
+	@Override
+	public void remove(Geometry g) {
+		removeAll(Collections.singletonList(g));
+	}
+
+	@Override
+	public void addAll(Collection<Geometry> geometries) {
+		for (Geometry g: geometries)
+			add(g);
+	}
+
+	/**
+	 * Remove a collection of geometries. The handles of all geometries are marked, and the overlapping pairs
+	 * are scanned once for the whole collection, instead of once for each geometry
+	 */
+	@Override
+	public void removeAll(Collection<Geometry> geometries) {
+		// release the handles. They are not reused before the geometries are completely removed
+		final int[] handles = new int[geometries.size()];
+		int count = 0;
+		for (Geometry g: geometries) {
+			final int handle = bounds.remove(g);
+			handles[count++] = handle;
+			removing[handle] = true;
+
+			// the handle can be reused before the next run, so sleeping cells are updated at once
+			pending[handle] = false;
+			if (sleeping[handle]) {
+				cells(handle, false);
+				sleeping[handle] = false;
+			}
+		}
+
+		// remove overlapping pairs that involve the geometries, and signal separation events
+		changes.begin();
+		for (int i=overlaps.size()-1; i>=0; i--) {
+			// removing an overlap moves the last overlap into this position, which was already visited
+			final long key = overlapkeys[i];
+			if (removing[LongIntHashMap.first(key)] || removing[LongIntHashMap.second(key)]) {
+				final Pair<Geometry> pair = removeOverlap(key);
+				changes.separation(pair);
+				for (Handler handler: handlers) {
+					handler.separation(pair);
+				}
+			}
+		}
+
+		for (int i=0; i<count; i++)
+			removing[handles[i]] = false;
+	}
+
+	/**
+	 * Deactivated geometries are moved to the sleeping cells at the end of the next run. Active geometries
+	 * are still tested against them, but they are no longer inserted into the grid in each run
+	 */
+	@Override
+	public void deactivate(Geometry g) {
+		request(g, true);
+	}
+
+	@Override
+	public void activate(Geometry g) {
+		request(g, false);
+	}
+
+	private final void request( Geometry g, boolean state ) {
+		final int handle = bounds.getHandle(g);
+		if (handle < 0)
+			throw new IllegalArgumentException("Given geometry does not exist");
+		deactivated[handle] = state;
+		if (!pending[handle]) {
+			pending[handle] = true;
+			if (pendingcount == pendinglist.length)
+				pendinglist = grow(pendinglist, 2*pendinglist.length);
+			pendinglist[pendingcount++] = handle;
+		}
+	}
+
+	// remove activated handles from the sleeping cells, at the beginning of a run
+	private final void wake() {
+		for (int i=0; i<pendingcount; i++) {
+			final int handle = pendinglist[i];
+			if (pending[handle] && !deactivated[handle] && sleeping[handle]) {
+				cells(handle, false);
+				sleeping[handle] = false;
+			}
+		}
+	}
+
+	// insert deactivated handles into the sleeping cells at the end of a run, so they are tested 
+	// once more with their final bounds. Activations requested during the run stay pending
+	private final void sleep() {
+		final double[] b = bounds.getBounds();
+		int j = 0;
+		for (int i=0; i<pendingcount; i++) {
+			final int handle = pendinglist[i];
+			if (!pending[handle] || deactivated[handle] == sleeping[handle]) {
+				pending[handle] = false;
+			} else if (deactivated[handle]) {
+				pending[handle] = false;
+				System.arraycopy(b, 6*handle, rest, 6*handle, 6);
+				levels[handle] = level(rest, 6*handle);
+				sleeping[handle] = true;
+				cells(handle, true);
+			} else {
+				pendinglist[j++] = handle;
+			}
+		}
+		pendingcount = j;
+	}
+
+	// insert a sleeping handle into the sleeping cells of its level and all coarser levels, or remove it
+	private final void cells( int handle, boolean insert ) {
+		final int k = 6*handle;
+		for (int level=levels[handle]; level<cellsizes.length; level++) {
+			final double inverse = inverses[level];
+			final int x0 = cell(rest[k], inverse),   x1 = cell(rest[k+3], inverse);
+			final int y0 = cell(rest[k+1], inverse), y1 = cell(rest[k+4], inverse);
+			final int z0 = cell(rest[k+2], inverse), z1 = cell(rest[k+5], inverse);
+			for (int x=x0; x<=x1; x++)
+				for (int y=y0; y<=y1; y++)
+					for (int z=z0; z<=z1; z++) {
+						if (insert)
+							insertSleeping(key(x,y,z,level), handle);
+						else
+							removeSleeping(key(x,y,z,level), handle);
+					}
+		}
+	}
+
+	private final void insertSleeping( long cell, int handle ) {
+		int entry = free;
+		if (entry != NONE) {
+			free = sleepingnext[entry];
+		} else {
+			if (sleepingcount == sleepinghandles.length) {
+				sleepinghandles = grow(sleepinghandles, 2*sleepinghandles.length);
+				sleepingnext = grow(sleepingnext, 2*sleepingnext.length);
+			}
+			entry = sleepingcount++;
+		}
+		sleepinghandles[entry] = handle;
+		sleepingnext[entry] = sleepingcells.get(cell, NONE);
+		sleepingcells.put(cell, entry);
+	}
+
+	private final void removeSleeping( long cell, int handle ) {
+		int previous = NONE;
+		int entry = sleepingcells.get(cell, NONE);
+		while (sleepinghandles[entry] != handle) {
+			previous = entry;
+			entry = sleepingnext[entry];
+		}
+		if (previous != NONE)
+			sleepingnext[previous] = sleepingnext[entry];
+		else if (sleepingnext[entry] != NONE)
+			sleepingcells.put(cell, sleepingnext[entry]);
+		else
+			sleepingcells.remove(cell, NONE);
+		sleepingnext[entry] = free;
+		free = entry;
+	}
+
+	// the finest level whose cells are at least as large as the given box
+	private final int level( double[] b, int k ) {
+		final double extent = Math.max(b[k+3]-b[k], Math.max(b[k+4]-b[k+1], b[k+5]-b[k+2]));
+		int level = 0;
+		while (level < cellsizes.length-1 && extent > cellsizes[level])
+			level++;
+		return level;
+	}
+
+	/**
+	 * Return the number of cell entries inserted in the last run. Deactivated geometries are not inserted
+	 */
+	public final int getInsertedEntries() {
+		return entrycount;
+	}
+
+	/**
+	 * Return the number of cell entries visited by the last query, or the number of geometries if the last 
+	 * query tested all bounding boxes. Only valid when queries are issued from a single thread
+	 */
+	public final int getVisitedEntries() {
+		return visited;
+	}
+
+	@Override
+	public void addHandler(Handler h) {
+		handlers.add(h);
+	}
+
+	@Override
+	public void removeHandler(Handler h) {
+		handlers.remove(h);
+	}
+
+	@Override
+	public Set<Pair<Geometry>> getOverlappingPairs() {
+		return new LinkedHashSet<Pair<Geometry>>(overlaps);
+	}
+
+	@Override
+	public PairView getOverlappingPairView() {
+		return overlapview;
+	}
+
+	@Override
+	public PairView getAddedPairs() {
+		return changes.addedview;
+	}
+
+	@Override
+	public PairView getRemovedPairs() {
+		return changes.removedview;
+	}
+
+	@Override
+	public void query(Vector3 min, Vector3 max, Collection<Geometry> result) {
+		if (built != bounds.getVersion())
+			rebuild();
+
+		// walking the cells only pays off if the box overlaps fewer cells than there are geometries
+		double count = 0;
+		for (int level=0; level<cellsizes.length; level++) {
+			final double inverse = inverses[level];
+			count += span(min.x, max.x, inverse) * span(min.y, max.y, inverse) * span(min.z, max.z, inverse);
+		}
+		if (!(count <= bounds.size())) {
+			visited = bounds.size();
+			bounds.query(min, max, result);
+			return;
+		}
+
+		final QueryBuffers buffers = QueryBuffers.get();
+		final int stamp = buffers.stamp(bounds.getHandleCount());
+		int visited = 0;
+		for (int level=0; level<cellsizes.length; level++) {
+			final double inverse = inverses[level];
+			final int x0 = cell(min.x, inverse), x1 = cell(max.x, inverse);
+			final int y0 = cell(min.y, inverse), y1 = cell(max.y, inverse);
+			final int z0 = cell(min.z, inverse), z1 = cell(max.z, inverse);
+			for (int x=x0; x<=x1; x++)
+				for (int y=y0; y<=y1; y++)
+					for (int z=z0; z<=z1; z++)
+						visited += visit(key(x,y,z,level), level, min, max, null, buffers.stamps, stamp, result);
+		}
+		this.visited = visited + activated(min, max, null, buffers.stamps, stamp, result);
+	}
+
+	@Override
+	public void query(Vector3 point, Vector3 direction, double length, Vector3 extent, Collection<Geometry> result) {
+		if (built != bounds.getVersion())
+			rebuild();
+
+		// clip the segment to the bounds of all geometries, enlarged by the extent
+		double t0 = 0, t1 = length;
+		for (int axis=0; axis<3; axis++) {
+			final double p = point.get(axis), d = direction.get(axis), e = extent.get(axis);
+			final double min = world[axis] - e, max = world[3+axis] + e;
+			if (d == 0) {
+				if (p < min || max < p)
+					t1 = -1;
+			} else {
+				double ta = (min-p)/d, tb = (max-p)/d;
+				if (ta > tb) { final double t = ta; ta = tb; tb = t; }
+				if (ta > t0) t0 = ta;
+				if (tb < t1) t1 = tb;
+			}
+		}
+		if (!(t0 <= t1)) {
+			visited = 0;
+			return;
+		}
+
+		// the cells of each level are walked along the segment, and the cells within the extent of each 
+		// visited cell are searched. This only pays off if it visits fewer cells than there are geometries
+		double count = 0;
+		for (int level=0; level<cellsizes.length; level++) {
+			final double inverse = inverses[level];
+			double steps = 1, block = 1;
+			for (int axis=0; axis<3; axis++) {
+				final double p = point.get(axis), d = direction.get(axis);
+				steps += Math.abs(Math.floor(at(p,d,t1)*inverse) - Math.floor(at(p,d,t0)*inverse));
+				block *= 2*Math.ceil(extent.get(axis)*inverse)+1;
+			}
+			count += steps*block;
+		}
+		if (!(count <= bounds.size())) {
+			visited = bounds.size();
+			bounds.query(point, direction, length, extent, result);
+			return;
+		}
+
+		final QueryBuffers buffers = QueryBuffers.get();
+		final double[] segment = BoundsStore.segment(point, direction, length, extent, buffers.segment);
+		final int stamp = buffers.stamp(bounds.getHandleCount());
+		int visited = 0;
+		for (int level=0; level<cellsizes.length; level++) {
+			final double cellsize = cellsizes[level], inverse = inverses[level];
+			final int rx = (int)Math.ceil(extent.x*inverse);
+			final int ry = (int)Math.ceil(extent.y*inverse);
+			final int rz = (int)Math.ceil(extent.z*inverse);
+
+			// cells of the first and last point of the clipped segment
+			int x = cell(at(point.x, direction.x, t0), inverse), y = cell(at(point.y, direction.y, t0), inverse), z = cell(at(point.z, direction.z, t0), inverse);
+			final int x1 = cell(at(point.x, direction.x, t1), inverse), y1 = cell(at(point.y, direction.y, t1), inverse), z1 = cell(at(point.z, direction.z, t1), inverse);
+
+			// walk the cells along the segment, by stepping along the axis whose next cell boundary is crossed 
+			// first. The number of steps along each axis is fixed, so the walk always ends in the last cell
+			final int sx = x1 > x? 1 : -1, sy = y1 > y? 1 : -1, sz = z1 > z? 1 : -1;
+			double tx = boundary(point.x, direction.x, x, sx, cellsize);
+			double ty = boundary(point.y, direction.y, y, sy, cellsize);
+			double tz = boundary(point.z, direction.z, z, sz, cellsize);
+			final double dx = cellsize/Math.abs(direction.x), dy = cellsize/Math.abs(direction.y), dz = cellsize/Math.abs(direction.z);
+			for (int steps=Math.abs(x1-x)+Math.abs(y1-y)+Math.abs(z1-z); ; steps--) {
+				for (int i=x-rx; i<=x+rx; i++)
+					for (int j=y-ry; j<=y+ry; j++)
+						for (int k=z-rz; k<=z+rz; k++)
+							visited += visit(key(i,j,k,level), level, null, null, segment, buffers.stamps, stamp, result);
+				if (steps == 0)
+					break;
+
+				final double ux = x == x1? Double.POSITIVE_INFINITY : tx;
+				final double uy = y == y1? Double.POSITIVE_INFINITY : ty;
+				final double uz = z == z1? Double.POSITIVE_INFINITY : tz;
+				if (x != x1 && !(uy < ux) && !(uz < ux)) {
+					x += sx; tx += dx;
+				} else if (y != y1 && !(uz < uy)) {
+					y += sy; ty += dy;
+				} else if (z != z1) {
+					z += sz; tz += dz;
+				} else if (x != x1) {
+					x += sx; tx += dx;
+				} else {
+					y += sy; ty += dy;
+				}
+			}
+		}
+		this.visited = visited + activated(null, null, segment, buffers.stamps, stamp, result);
+	}
+
+	// search the entries of a cell for handles of the given level, and add the geometries of handles not 
+	// visited before to result, if they overlap the box or are hit by the segment. Returns the number of 
+	// entries visited
+	private final int visit( long key, int level, Vector3 min, Vector3 max, double[] segment, int[] stamps, int stamp, Collection<Geometry> result ) {
+		int visited = 0;
+		int entry = cells.get(key, NONE);
+		while (entry != NONE) {
+			final int handle = entryhandles[entry];
+			entry = entrynext[entry];
+			visited++;
+			// handles deactivated after the cells were built are found in the sleeping cells
+			if (!sleeping[handle])
+				test(handle, min, max, segment, stamps, stamp, result);
+		}
+
+		entry = sleepingcells.get(key, NONE);
+		while (entry != NONE) {
+			final int handle = sleepinghandles[entry];
+			entry = sleepingnext[entry];
+			visited++;
+			// sleeping handles are also in the cells of coarser levels. Activated handles are tested separately
+			if (levels[handle] == level && deactivated[handle])
+				test(handle, min, max, segment, stamps, stamp, result);
+		}
+		return visited;
+	}
+
+	// test the handles that were activated after the last run, which are in neither kind of cells
+	private final int activated( Vector3 min, Vector3 max, double[] segment, int[] stamps, int stamp, Collection<Geometry> result ) {
+		int visited = 0;
+		for (int i=0; i<pendingcount; i++) {
+			final int handle = pendinglist[i];
+			if (pending[handle] && sleeping[handle] && !deactivated[handle]) {
+				test(handle, min, max, segment, stamps, stamp, result);
+				visited++;
+			}
+		}
+		return visited;
+	}
+
+	private final void test( int handle, Vector3 min, Vector3 max, double[] segment, int[] stamps, int stamp, Collection<Geometry> result ) {
+		if (stamps[handle] == stamp)
+			return;
+		stamps[handle] = stamp;
+
+		final Geometry g = bounds.getGeometry(handle);
+		if (g == null)
+			return;
+		final double[] b = bounds.getBounds();
+		if (segment == null? BoundsStore.overlap(b, 6*handle, min, max) : BoundsStore.intersects(b, 6*handle, segment))
+			result.add(g);
+	}
+
+	// number of cells covering the interval from min to max
+	private static final double span( double min, double max, double inverse ) {
+		return Math.max(Math.floor(max*inverse) - Math.floor(min*inverse) + 1, 0);
+	}
+
+	// coordinate of a segment at the given parameter
+	private static final double at( double p, double d, double t ) {
+		return d == 0? p : p + d*t;
+	}
+
+	// parameter of the next cell boundary crossed along an axis, when stepping from the given cell
+	private static final double boundary( double p, double d, int cell, int step, double cellsize ) {
+		if (d == 0)
+			return Double.POSITIVE_INFINITY;
+		return ((step > 0? cell+1 : cell)*cellsize - p)/d;
+	}
+
+	@Override
+	public BoundsStore getBoundsStore() {
+		return bounds;
+	}
+
+	/**
+	 * Return the number of levels in this grid
+	 */
+	public final int getLevels() {
+		return cellsizes.length;
+	}
+
+	/**
+	 * Return the side length of the cells in the given level
+	 */
+	public final double getCellSize( int level ) {
+		return cellsizes[level];
+	}
+
+	@Override
+	public void run() {
+		// make sure bounds are up to date
+		bounds.prepare();
+		final double[] b = bounds.getBounds();
+		final int n = bounds.getHandleCount();
+		wake();
+		changes.begin();
+		build();
+
+		// find overlapping pairs. Each active geometry is tested against geometries in its own level
+		// and in coarser levels. Within a level, a pair is found by its smallest handle. Pairs found
+		// in this run are marked with the run number
+		run++;
+		for (int handle=0; handle<n; handle++) {
+			if (bounds.getGeometry(handle) == null || sleeping[handle])
+				continue;
+
+			final int k = 6*handle;
+			for (int level=levels[handle]; level<cellsizes.length; level++) {
+				final double inverse = inverses[level];
+				final int x0 = cell(b[k], inverse),   x1 = cell(b[k+3], inverse);
+				final int y0 = cell(b[k+1], inverse), y1 = cell(b[k+4], inverse);
+				final int z0 = cell(b[k+2], inverse), z1 = cell(b[k+5], inverse);
+				for (int x=x0; x<=x1; x++)
+					for (int y=y0; y<=y1; y++)
+						for (int z=z0; z<=z1; z++)
+							query(x, y, z, level, handle);
+			}
+		}
+
+		// report separations. Pairs of sleeping geometries are not tested, and keep their state
+		for (int i=overlaps.size()-1; i>=0; i--) {
+			if (overlapruns[i] == run)
+				continue;
+			final long key = overlapkeys[i];
+			if (sleeping[LongIntHashMap.first(key)] && sleeping[LongIntHashMap.second(key)])
+				continue;
+
+			final Pair<Geometry> pair = removeOverlap(key);
+			changes.separation(pair);
+			for (Handler h: handlers) {
+				h.separation(pair);
+			}
+		}
+		changes.end();
+
+		// handlers may have deactivated geometries during the run
+		sleep();
+	}
+
+	// insert active geometries into the cells of their level
+	private final void build() {
+		final double[] b = bounds.getBounds();
+		final int n = bounds.getHandleCount();
+		cells.clear();
+		entrycount = 0;
+		for (int axis=0; axis<3; axis++) {
+			world[axis] = Double.POSITIVE_INFINITY;
+			world[3+axis] = Double.NEGATIVE_INFINITY;
+		}
+		for (int handle=0; handle<n; handle++) {
+			if (bounds.getGeometry(handle) == null)
+				continue;
+
+			final int k = 6*handle;
+			for (int axis=0; axis<3; axis++) {
+				world[axis] = Math.min(world[axis], b[k+axis]);
+				world[3+axis] = Math.max(world[3+axis], b[k+3+axis]);
+			}
+			if (sleeping[handle])
+				continue;
+
+			final int level = level(b, k);
+			levels[handle] = level;
+
+			final double inverse = inverses[level];
+			final int x0 = cell(b[k], inverse),   x1 = cell(b[k+3], inverse);
+			final int y0 = cell(b[k+1], inverse), y1 = cell(b[k+4], inverse);
+			final int z0 = cell(b[k+2], inverse), z1 = cell(b[k+5], inverse);
+			for (int x=x0; x<=x1; x++)
+				for (int y=y0; y<=y1; y++)
+					for (int z=z0; z<=z1; z++)
+						insert(key(x,y,z,level), handle);
+		}
+		built = bounds.getVersion();
+	}
+
+	// build the cells from the current bounds. Queries call this when bounds were computed after the last
+	// run, or geometries were added, so it is synchronized
+	private final synchronized void rebuild() {
+		if (built != bounds.getVersion())
+			build();
+	}
+
+	// test the given handle against all handles in the given cell, and report new overlaps
+	private final void query( int x, int y, int z, int level, int handle ) {
+		int entry = cells.get(key(x,y,z,level), NONE);
+		while (entry != NONE) {
+			final int other = entryhandles[entry];
+			entry = entrynext[entry];
+
+			// pairs within the same level are found by the smallest handle
+			if (other == handle || (levels[other] == levels[handle] && other < handle))
+				continue;
+			test(x, y, z, level, handle, other);
+		}
+
+		// sleeping handles are in the cells of their own level and all coarser levels, 
+		// so a pair is found in the level of the larger geometry
+		entry = sleepingcells.get(key(x,y,z,level), NONE);
+		while (entry != NONE) {
+			final int other = sleepinghandles[entry];
+			entry = sleepingnext[entry];
+			if (Math.max(levels[handle], levels[other]) == level)
+				test(x, y, z, level, handle, other);
+		}
+	}
+
+	// test a pair in the given cell, and report a new overlap
+	private final void test( int x, int y, int z, int level, int handle, int other ) {
+		final double[] b = bounds.getBounds();
+		final double inverse = inverses[level];
+		if (!bounds.interacts(handle, other) || !bounds.overlap(handle, other))
+			return;
+
+		// the pair is only handled in the cell that contains the minimum corner of the 
+		// intersection of the two boxes. This also ignores handles from distant cells that share the key
+		final int i = 6*handle, j = 6*other;
+		if (cell(Math.max(b[i], b[j]), inverse) != x 
+				|| cell(Math.max(b[i+1], b[j+1]), inverse) != y 
+				|| cell(Math.max(b[i+2], b[j+2]), inverse) != z)
+			return;
+
+		final long key = LongIntHashMap.pair(handle, other);
+		final int index = overlapindices.get(key, NONE);
+		if (index == NONE) {
+			final Pair<Geometry> pair = addOverlap(key);
+			changes.overlap(pair);
+			for (Handler h: handlers) {
+				h.overlap(pair);
+			}
+		} else {
+			overlapruns[index] = run;
+		}
+	}
+
+	private final void insert( long cell, int handle ) {
+		if (entrycount == entryhandles.length) {
+			entryhandles = grow(entryhandles, 2*entryhandles.length);
+			entrynext = grow(entrynext, 2*entrynext.length);
+		}
+		entryhandles[entrycount] = handle;
+		entrynext[entrycount] = cells.get(cell, NONE);
+		cells.put(cell, entrycount);
+		entrycount++;
+	}
+
+	private static final int cell( double value, double inverse ) {
+		return (int)Math.floor(value*inverse);
+	}
+
+	// pack cell coordinates and level into a key. Coordinates are wrapped to 20 bits, so distant
+	// cells can share a key. This only causes additional bounding box tests
+	private static final long key( int x, int y, int z, int level ) {
+		final long key = ((long)(x & 0xfffff) << 44) | ((long)(y & 0xfffff) << 24) | ((long)(z & 0xfffff) << 4) | level;
+		return key == LongIntHashMap.EMPTY? key+1 : key;
+	}
+
+	private final Pair<Geometry> addOverlap( long key ) {
+		final Pair<Geometry> pair = new Pair<Geometry>(bounds.getGeometry(LongIntHashMap.first(key)), bounds.getGeometry(LongIntHashMap.second(key)));
+		final int index = overlaps.size();
+		overlaps.add(pair);
+		if (index == overlapkeys.length) {
+			final long[] keys = new long[2*overlapkeys.length];
+			System.arraycopy(overlapkeys, 0, keys, 0, overlapkeys.length);
+			overlapkeys = keys;
+			overlapruns = grow(overlapruns, keys.length);
+		}
+		overlapkeys[index] = key;
+		overlapruns[index] = run;
+		overlapindices.put(key, index);
+		return pair;
+	}
+
+	private final Pair<Geometry> removeOverlap( long key ) {
+		// swap the last overlap into the position of the removed one
+		final int index = overlapindices.remove(key, -1);
+		final int last = overlaps.size()-1;
+		final Pair<Geometry> pair = overlaps.get(index);
+		if (index != last) {
+			overlaps.set(index, overlaps.get(last));
+			overlapkeys[index] = overlapkeys[last];
+			overlapruns[index] = overlapruns[last];
+			overlapindices.put(overlapkeys[index], index);
+		}
+		overlaps.remove(last);
+		return pair;
+	}
+
+	private static final boolean[] grow( boolean[] a, int length ) {
+		final boolean[] b = new boolean[length];
+		System.arraycopy(a, 0, b, 0, a.length);
+		return b;
+	}
+
+	private static final int[] grow( int[] a, int length ) {
+		final int[] b = new int[length];
+		System.arraycopy(a, 0, b, 0, a.length);
+		return b;
+	}
+}
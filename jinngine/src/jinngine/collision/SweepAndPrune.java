@@ -24,7 +24,9 @@ import jinngine.util.Pair;
  */
 public class SweepAndPrune implements BroadphaseCollisionDetection {
 	private final int MAX_GEOMETRIES = 2500;
-	private int geometries = 0;
+	private int points = 0;
+	private boolean deleted = false;
+	private final Map<Geometry,Handle> handles = new HashMap<Geometry,Handle>();
 	private final List<Handler> handlers = new ArrayList<Handler>();
 	private final SweepPoint[] xAxis = new SweepPoint[MAX_GEOMETRIES];
 	private final SweepPoint[] yAxis = new SweepPoint[MAX_GEOMETRIES];
@@ -33,6 +35,26 @@ public class SweepAndPrune implements BroadphaseCollisionDetection {
 	private final Set<Pair<Geometry>> overlappingPairs = new LinkedHashSet<Pair<Geometry>>();
 	private final Set<Pair<Geometry>> incomming = new LinkedHashSet<Pair<Geometry>>();
 	private final Set<Pair<Geometry>> leaving = new LinkedHashSet<Pair<Geometry>>();
+	private final BoundsStore bounds = new BoundsStore();
+	private final SortedBounds sortedbounds = new SortedBounds(bounds);
+	private final ChangeSet changes = new ChangeSet();
+	
+	// sweep points of deactivated geometries, geometries whose state was changed since the last 
+	// run, and the number of sweep points sorted in the last run
+	private final SleepingAxis xSleeping = new SleepingAxis();
+	private final SleepingAxis ySleeping = new SleepingAxis();
+	private final SleepingAxis zSleeping = new SleepingAxis();
+	private final List<Handle> pending = new ArrayList<Handle>();
+	private boolean[] marked = new boolean[16];
+	private int sorted = 0;
+	
+	// overlapping pairs as a list, copied from the set of overlapping pairs only when the set has changed
+	private final List<Pair<Geometry>> overlaps = new ArrayList<Pair<Geometry>>();
+	private boolean overlapschanged = false;
+	private final PairView overlapview = new PairView() {
+		public final int size() { return overlapList().size(); }
+		public final Pair<Geometry> get(int index) { return overlapList().get(index); }
+	};
 
 	public SweepAndPrune() {}
 	
@@ -47,96 +69,76 @@ public class SweepAndPrune implements BroadphaseCollisionDetection {
 
 	public void add(Geometry a) {
 		//System.out.println("Geometry added");
+		if (handles.containsKey(a))
+			throw new IllegalArgumentException("Given geometry already exsist");
+		final Handle handle = new Handle(bounds.add(a));
+		handles.put(a, handle);
+		sortedbounds.invalidate();
+		if (handle.slot >= marked.length)
+			marked = new boolean[2*marked.length];
+		
 		//insert sweep points
-		xAxis[geometries*2] = new SweepPoint(a,0,true);
-		xAxis[geometries*2+1] = new SweepPoint(a,0,false);
-		yAxis[geometries*2] = new SweepPoint(a,1,true);
-		yAxis[geometries*2+1] = new SweepPoint(a,1,false);
-		zAxis[geometries*2] = new SweepPoint(a,2,true);
-		zAxis[geometries*2+1] = new SweepPoint(a,2,false);
-		geometries++;
+		xAxis[points] = handle.points[0] = new SweepPoint(a,handle,0,true);
+		xAxis[points+1] = handle.points[1] = new SweepPoint(a,handle,0,false);
+		yAxis[points] = handle.points[2] = new SweepPoint(a,handle,1,true);
+		yAxis[points+1] = handle.points[3] = new SweepPoint(a,handle,1,false);
+		zAxis[points] = handle.points[4] = new SweepPoint(a,handle,2,true);
+		zAxis[points+1] = handle.points[5] = new SweepPoint(a,handle,2,false);
+		points += 2;
 	}
 
 	/**
 	 * Internal method. An implementation of insertion sort that observes when elements are interchanged. 
+	 * Points are ordered by value, with end points before begin points of the same value. Before sorting,
+	 * the sleeping points passed by each point are found by binary search.
 	 * @param A
-	 * @param counters
-	 * @param pairs
+	 * @param sleeping
 	 */
-	private final void sort(SweepPoint[] A, Map<Pair<Geometry>,Integer> counters, Set<Pair<Geometry>> pairs, Set<Pair<Geometry>> incomming, Set<Pair<Geometry>> leaving) {
-		for (int i = 1;i<geometries*2;i++) {
-			//SweepPoint pivot = a.get(i);
+	private final void sort(SweepPoint[] A, SleepingAxis sleeping) {
+		// sweep values are read from the bounds store
+		for (int i=0; i<points; i++) {
+			A[i].last = A[i].value;
+			A[i].updateValue();
+		}
+		
+		// increments are handled before decrements, so counters always exist when decremented
+		if (sleeping.size() > 0) {
+			for (int i=0; i<points; i++)
+				pass(A[i], sleeping, true);
+			for (int i=0; i<points; i++)
+				pass(A[i], sleeping, false);
+		}
+		
+		for (int i = 1;i<points;i++) {
 			SweepPoint pivot = A[i];
 
-			//TODO ineffective, sweep values are now updateded in each iteration to allow
-			// changes in fixed and sleeping geometry at any time
-			//if(!pivot.geometry.getBody().isFixed() && !pivot.geometry.getBody().sleepy )
-			pivot.updateValue();
-			
-			double ei = pivot.value;
-
 			int j = i-1;
 			while ( j>=0 ) {
-				//				SweepPoint e = a.get(j);
 				SweepPoint e = A[j];
 
-				//if ( e.geometry.getBody() != null )
-					//if(!e.geometry.getBody().isFixed() && !e.geometry.getBody().sleepy)
-						e.updateValue();
-
-
-				if (e.value > ei) { 
-					//System.out.println(e.value + " > " + ei);
-					//System.out.println("Event");
-
+				if (SleepingAxis.compare(e.value, e.begin, pivot.value, pivot.begin) > 0) { 
 					//swap elements a(j) and a(j+1),  and decrement j 
 					A[j+1]=  A[j];
 					A[j]= pivot;
 
 					j--;
 
-
-					//handle counters
+					//handle counters, ignoring pairs rejected by the collision filter, 
+					//and the points of an empty interval
+					if (e.handle == pivot.handle || !bounds.interacts(e.handle.slot, pivot.handle.slot)) {
+						continue;
+					}
+					
 					if (!e.begin && pivot.begin) {
 						//an end-point was put before a begin point, we increment
-						Integer counter = counters.get(new Pair<Geometry>(e.geometry,pivot.geometry));
-						if (counter == null) {
-							counter = new Integer(0);
-						}
-						counters.put(new Pair<Geometry>(e.geometry,pivot.geometry),++counter);
-//						System.out.println("vounter="+counter);
-						//overlap was found
-						if (counter == 3 ) {
-							Pair<Geometry> pair = new Pair<Geometry>(e.geometry,pivot.geometry);
-							pairs.add(pair);
-							incomming.add(pair);
-							leaving.remove(pair);
-						}
+						increment(e.geometry, e.handle, pivot.geometry, pivot.handle);
 					}
 
 					if (e.begin && !pivot.begin) {
 						//a begin point was put before an end point, we decrement
-						Integer counter = counters.get(new Pair<Geometry>(e.geometry,pivot.geometry));
-						if (counter == null) {
-							System.out.println("why does this happen?");
-							System.exit(0);
-							break;
-							//counter = new Integer(0);
-						}
-						counters.put(new Pair<Geometry>(e.geometry,pivot.geometry),--counter);
-						//System.out.println("vounter="+counter);
-						//overlap vanished
-						if (counter == 2) { //counter < 3 (but ==2 is more effective)
-							//O(k) operation
-							Pair<Geometry> pair = new Pair<Geometry>(e.geometry,pivot.geometry);
-							pairs.remove(pair);
-							if(!incomming.remove(pair))
-								leaving.add(pair);
-
-						}
+						decrement(e.geometry, pivot.geometry);
 					}
 
-
 				} else {
 					//done
 					break;
@@ -144,6 +146,68 @@ public class SweepAndPrune implements BroadphaseCollisionDetection {
 			}
 		}
 	}
+	
+	//count the sleeping points passed by a point that moved from its last value to its 
+	//current value. Only increments or only decrements are handled
+	private final void pass(SweepPoint p, SleepingAxis sleeping, boolean increments) {
+		final int direction = SleepingAxis.compare(p.value, p.begin, p.last, p.begin);
+		if (direction == 0)
+			return;
+		
+		//a begin point moving up, or an end point moving down, leaves intervals
+		final boolean up = direction > 0;
+		final boolean increment = up != p.begin;
+		if (increment != increments)
+			return;
+		
+		final int from = sleeping.lower(up? p.last : p.value, p.begin);
+		final int to = sleeping.lower(up? p.value : p.last, p.begin);
+		for (int i=from; i<to; i++) {
+			final int slot = sleeping.handle(i);
+			if (sleeping.begin(i) != p.begin && bounds.interacts(p.handle.slot, slot)) {
+				final Geometry other = bounds.getGeometry(slot);
+				if (increment)
+					increment(p.geometry, p.handle, other, handles.get(other));
+				else
+					decrement(p.geometry, other);
+			}
+		}
+	}
+	
+	private final void increment(Geometry a, Handle ha, Geometry b, Handle hb) {
+		Integer counter = counters.get(new Pair<Geometry>(a,b));
+		if (counter == null) {
+			counter = new Integer(0);
+			
+			//remember the new counter for both geometries
+			Pair<Geometry> pair = new Pair<Geometry>(a,b);
+			ha.pairs.add(pair);
+			hb.pairs.add(pair);
+		}
+		counters.put(new Pair<Geometry>(a,b),++counter);
+		//overlap was found
+		if (counter == 3 ) {
+			Pair<Geometry> pair = new Pair<Geometry>(a,b);
+			overlappingPairs.add(pair);
+			incomming.add(pair);
+			leaving.remove(pair);
+		}
+	}
+	
+	private final void decrement(Geometry a, Geometry b) {
+		Integer counter = counters.get(new Pair<Geometry>(a,b));
+		if (counter == null)
+			throw new IllegalStateException("SweepAndPrune: decrementing a missing counter");
+		counters.put(new Pair<Geometry>(a,b),--counter);
+		//overlap vanished
+		if (counter == 2) { //counter < 3 (but ==2 is more effective)
+			//O(k) operation
+			Pair<Geometry> pair = new Pair<Geometry>(a,b);
+			overlappingPairs.remove(pair);
+			if(!incomming.remove(pair))
+				leaving.add(pair);
+		}
+	}
 
 
 	public Iterator<Pair<Geometry>> overlappingPairs() {
@@ -151,166 +215,312 @@ public class SweepAndPrune implements BroadphaseCollisionDetection {
 	}
 
 	public void remove(Geometry a) {
-		//System.out.println("delete");
-		//Mark deleted sweep points, deleted points will not report overlaps.
-		//This is ofcourse not optimal, as the sweep points will remain inside
-		//the SAP algorithm and consume resources. However, it is non trivial 
-		//to remove a sweep point. The naive way would be to reset counters,
-		//remove the points and do a o(nlgn) sort and sweep the line to recalculate
-		//the counters.
+		//the slot of a sleeping geometry can be reused before 
+		//the next run, so its points are removed at once
+		final Handle handle = release(a);
+		if (handle.sleeping) {
+			xSleeping.remove(handle.slot, handle.points[0].value, handle.points[1].value);
+			ySleeping.remove(handle.slot, handle.points[2].value, handle.points[3].value);
+			zSleeping.remove(handle.slot, handle.points[4].value, handle.points[5].value);
+		}
+	}
+	
+	//remove the handle of a geometry and its counters, leaving the 
+	//points of a sleeping geometry to the caller
+	private final Handle release(Geometry a) {
+		final Handle handle = handles.remove(a);
+		if (handle == null)
+			throw new IllegalArgumentException("Given geometry does not exist");
 		
-		//remove the deleted sweep points
-//		int j=0;
-//		for ( int i=0; i<geometries*2-j; i++) {
-//			SweepPoint p = xAxis[i];
-//
-//			//overwrite the deleted sweeppoint
-//			if (p.geometry == a)
-//				j++;
-//			
-//			xAxis[i] = xAxis[i+j];
-//		}
-//		
-//		j=0;
-//		for ( int i=0; i<geometries*2-j; i++) {
-//			SweepPoint p = yAxis[i];
-//
-//			//overwrite the deleted sweeppoint
-//			if (p.geometry == a)
-//				j++;
-//			
-//			xAxis[i] = xAxis[i+j];
-//		} 
-//		
-//		j=0;
-//		for ( int i=0; i<geometries*2-j; i++) {
-//			SweepPoint p = zAxis[i];
-//
-//			//overwrite the deleted sweeppoint
-//			if (p.geometry == a)
-//				j++;
-//			
-//			xAxis[i] = xAxis[i+j];
-//		}
-
-		int i = 0; int j=0;
-		while (j<geometries*2) {
-			SweepPoint p = xAxis[j];
-
-			if (p.geometry == a) {
-				j++;
-				continue;
-			}
+		//Mark deleted sweep points. Deleted points are taken out of the 
+		//axes in a single pass at the beginning of the next run
+		for (SweepPoint p: handle.points)
+			p.delete = true;
+		if (!handle.sleeping)
+			deleted = true;
+		bounds.remove(a);
+		
+		//remove the counters that involve the geometry, using the pairs 
+		//recorded for the geometry
+		changes.begin();
+		for (Pair<Geometry> gp: handle.pairs) {
+			counters.remove(gp);
+			Geometry other = gp.getFirst() == a? gp.getSecond() : gp.getFirst();
+			handles.get(other).pairs.remove(gp);
 			
-			xAxis[i] = xAxis[j];			
-			i++; j++;
+			//invoke event handler to report 
+			//vanishing overlap
+			if (overlappingPairs.remove(gp)) {
+				overlapschanged = true;
+				changes.separation(gp);
+				for ( Handler handler: handlers)
+					handler.separation(gp);
+			}
+		}
+		return handle;
+	}
+	
+	//take deleted sweep points, and sweep points of sleeping geometries, out of the given axis
+	private final int compact(SweepPoint[] A) {
+		int j=0;
+		for (int i=0; i<points; i++) {
+			if (!A[i].delete && !A[i].handle.sleeping)
+				A[j++] = A[i];
 		}
+		for (int i=j; i<points; i++)
+			A[i] = null;
+		return j;
+	}
+	
+	//merge the given points into the axis, by their values when they were last sorted
+	private final void merge(SweepPoint[] A, List<SweepPoint> added) {
+		Collections.sort(added, new Comparator<SweepPoint>() {
+			@Override
+			public int compare(SweepPoint o1, SweepPoint o2) {
+				return SleepingAxis.compare(o1.value, o1.begin, o2.value, o2.begin);
+			}
+		});
 		
-		i=0; j=0;
-		while (j<geometries*2) {
-			SweepPoint p = yAxis[j];
-
-			if (p.geometry == a) {
-				j++;
-				continue;
+		//merge from the back
+		int i = points-1, j = added.size()-1;
+		for (int k=points+added.size()-1; j>=0; k--) {
+			if (i >= 0 && SleepingAxis.compare(A[i].value, A[i].begin, added.get(j).value, added.get(j).begin) > 0) {
+				A[k] = A[i--];
+			} else {
+				A[k] = added.get(j--);
 			}
-			
-			yAxis[i] = yAxis[j];			
-			i++; j++;
 		}
-		
-		i=0; j=0;
-		while (j<geometries*2) {
-			SweepPoint p = zAxis[j];
+	}
+	
+	/**
+	 * Deactivated geometries are taken out of the axes at the end of the next run, and their points 
+	 * are no longer sorted. Active sweep points that move across them are found by binary search, so 
+	 * pairs with deactivated geometries are kept, and new pairs are still reported
+	 */
+	public void deactivate(Geometry g) {
+		request(g, true);
+	}
 
-			if (p.geometry == a) {
-				j++;
-				continue;
+	/**
+	 * Activated geometries are merged into the axes at the beginning of the next run
+	 */
+	public void activate(Geometry g) {
+		request(g, false);
+	}
+	
+	private final void request(Geometry g, boolean deactivated) {
+		final Handle handle = handles.get(g);
+		if (handle == null)
+			throw new IllegalArgumentException("Given geometry does not exist");
+		handle.deactivated = deactivated;
+		if (!handle.pending) {
+			handle.pending = true;
+			pending.add(handle);
+		}
+	}
+	
+	//merge the sweep points of activated geometries into the axes
+	private final void wake() {
+		final List<Handle> woke = new ArrayList<Handle>();
+		for (Handle handle: pending) {
+			if (!handle.points[0].delete && handle.sleeping && !handle.deactivated) {
+				handle.sleeping = false;
+				marked[handle.slot] = true;
+				woke.add(handle);
 			}
-			
-			zAxis[i] = zAxis[j];			
-			i++; j++;
 		}
-
+		if (woke.isEmpty())
+			return;
 		
-		Iterator<Pair<Geometry>> iter = overlappingPairs.iterator();
-		while (iter.hasNext()) { 
-			Pair<Geometry> gp = iter.next();
-			//deleted geometry is part of overlaps
-			if (gp.contains(a)) {
-				counters.remove(gp);
-				
-				//invoke event handler to report 
-				//vanishing overlap
-				for ( Handler handler: handlers)
-					handler.separation(gp);								
-
-				iter.remove();
+		xSleeping.remove(marked);
+		ySleeping.remove(marked);
+		zSleeping.remove(marked);
+		for (Handle handle: woke)
+			marked[handle.slot] = false;
+		
+		final SweepPoint[][] axes = {xAxis, yAxis, zAxis};
+		for (int k=0; k<3; k++) {
+			final List<SweepPoint> added = new ArrayList<SweepPoint>();
+			for (Handle handle: woke) {
+				added.add(handle.points[2*k]);
+				added.add(handle.points[2*k+1]);
 			}
+			merge(axes[k], added);
 		}
-			
-		//one less geometry in the algorithm by now
-		geometries--;	
+		points += 2*woke.size();
+	}
+	
+	//move the sweep points of deactivated geometries into the sleeping axes. Activations 
+	//requested during the run are kept until the next run
+	private final void sleep() {
+		boolean slept = false;
+		final Iterator<Handle> iterator = pending.iterator();
+		while (iterator.hasNext()) {
+			final Handle handle = iterator.next();
+			if (handle.points[0].delete || handle.deactivated == handle.sleeping) {
+				handle.pending = false;
+				iterator.remove();
+			} else if (handle.deactivated) {
+				handle.pending = false;
+				iterator.remove();
+				handle.sleeping = true;
+				xSleeping.add(handle.slot, handle.points[0].value, handle.points[1].value);
+				ySleeping.add(handle.slot, handle.points[2].value, handle.points[3].value);
+				zSleeping.add(handle.slot, handle.points[4].value, handle.points[5].value);
+				slept = true;
+			}
+		}
+		
+		if (slept) {
+			xSleeping.flush();
+			ySleeping.flush();
+			zSleeping.flush();
+			compact(xAxis);
+			compact(yAxis);
+			points = compact(zAxis);
+		}
+	}
+	
+	/**
+	 * Return the number of sweep points sorted in the last run. Sweep points of deactivated 
+	 * geometries are not sorted
+	 */
+	public final int getSortedPoints() {
+		return sorted;
+	}
+
+	/**
+	 * Return the number of bounding boxes tested by the last query, when queries are issued from a single thread
+	 */
+	public final int getQueryTests() {
+		return sortedbounds.getVisited();
 	}
     
 	public void run() {
+		//make sure bounds are up to date
+		bounds.prepare();
+		
+		//take out deleted sweep points
+		if (deleted) {
+			compact(xAxis);
+			compact(yAxis);
+			points = compact(zAxis);
+			deleted = false;
+		}
+		wake();
+		
 		incomming.clear();
 		leaving.clear();
+		changes.begin();
 		//Sort sweep lines
-		sort(xAxis, counters, overlappingPairs, incomming, leaving);
-		sort(yAxis, counters, overlappingPairs, incomming, leaving);
-		sort(zAxis, counters, overlappingPairs, incomming, leaving);
+		sorted = 3*points;
+		sort(xAxis, xSleeping);
+		sort(yAxis, ySleeping);
+		sort(zAxis, zSleeping);
 
 		//report overlaps
 		for (Pair<Geometry> p: incomming) {
+			changes.overlap(p);
 			for ( Handler handler: handlers)
 				handler.overlap(p);
 		}
 
 		//report separations
 		for (Pair<Geometry> p: leaving) {
+			changes.separation(p);
 			for ( Handler handler: handlers)
 				handler.separation(p);
 		}
 		
+		if (!incomming.isEmpty() || !leaving.isEmpty())
+			overlapschanged = true;
+		changes.end();
+		
+		//handlers may have deactivated geometries during the run
+		sleep();
+	}
+	
+	//copy the set of overlapping pairs into the list, if the set has changed
+	private final List<Pair<Geometry>> overlapList() {
+		if (overlapschanged) {
+			overlaps.clear();
+			overlaps.addAll(overlappingPairs);
+			overlapschanged = false;
+		}
+		return overlaps;
+	}
+
+	//	inner private class Handle, holding the sweep points of a geometry, 
+	//  and the pairs that the geometry has counters for
+	private static final class Handle {
+		public Handle(int slot) {
+			this.slot = slot;
+		}
+		
+		public final int slot;
+		public final SweepPoint[] points = new SweepPoint[6];
+		public final Set<Pair<Geometry>> pairs = new LinkedHashSet<Pair<Geometry>>();
+		
+		//true if the sweep points are in the sleeping axes, and the requested state of the geometry
+		public boolean sleeping = false;
+		public boolean deactivated = false;
+		public boolean pending = false;
 	}
 
 	//	inner private class SweepPoint
 	private final class SweepPoint  {
 
-		public SweepPoint(Geometry geo, int axis, boolean begin ) {
+		public SweepPoint(Geometry geo, Handle handle, int axis, boolean begin ) {
 			this.geometry = geo;
-			this.aabb = geo;
+			this.handle = handle;
 			this.begin = begin;
 			this.axis = axis;
-
-			updateValue();
-			//System.out.println("Sweep point value: " + value);
-
+			this.index = 6*handle.slot + (begin? 0 : 3) + axis;
 		}
 
 		public final Geometry geometry;
-		public final BoundingBox aabb;
+		public final Handle handle;
 		public final boolean begin;
 		public final int axis;
-		public double value;
+		private final int index;
+		//value when last sorted, and the value before that. New points are 
+		//placed at the end of the axes, so they start out at positive infinity
+		public double value = Double.POSITIVE_INFINITY;
+		public double last = Double.POSITIVE_INFINITY;
 		public boolean delete = false;
 
 		public final void updateValue() {
 			//get the correct axis bounds for each body's AABB
-			Vector3 thisBounds;
-			if ( this.begin ) {
-				thisBounds = this.aabb.getMinBounds(); 
-			} else {
-				thisBounds = this.aabb.getMaxBounds(); 
-			}
+			this.value = bounds.getBounds()[index];
+		}
 
-			this.value = thisBounds.get(this.axis);
-			//thisBounds.print();
-			//System.out.println("Sweep point value: " + value);
+	}
 
-		}
+	@Override
+	public void addAll(Collection<Geometry> geometries) {
+		for (Geometry g: geometries)
+			add(g);
+	}
 
+	@Override
+	public void removeAll(Collection<Geometry> geometries) {
+		//counters are removed using the pairs of each geometry, and 
+		//sleeping points are taken out in a single pass
+		final List<Handle> purged = new ArrayList<Handle>();
+		for (Geometry g: geometries) {
+			final Handle handle = release(g);
+			if (handle.sleeping) {
+				marked[handle.slot] = true;
+				purged.add(handle);
+			}
+		}
+		if (!purged.isEmpty()) {
+			xSleeping.remove(marked);
+			ySleeping.remove(marked);
+			zSleeping.remove(marked);
+			for (Handle handle: purged)
+				marked[handle.slot] = false;
+		}
 	}
 
 	@Override
@@ -324,6 +534,37 @@ public class SweepAndPrune implements BroadphaseCollisionDetection {
 		
 	}
 
+	@Override
+	public PairView getOverlappingPairView() {
+		return overlapview;
+	}
+
+	@Override
+	public PairView getAddedPairs() {
+		return changes.addedview;
+	}
+
+	@Override
+	public PairView getRemovedPairs() {
+		return changes.removedview;
+	}
+
+	@Override
+	public void query(Vector3 min, Vector3 max, Collection<Geometry> result) {
+		// the sweep points are only sorted in run(), so queries use their own order, see SortedBounds
+		sortedbounds.query(min, max, result);
+	}
+
+	@Override
+	public void query(Vector3 point, Vector3 direction, double length, Vector3 extent, Collection<Geometry> result) {
+		sortedbounds.query(point, direction, length, extent, result);
+	}
+
+	@Override
+	public BoundsStore getBoundsStore() {
+		return bounds;
+	}
+
 	@Override
 	public Set<Pair<Geometry>> getOverlappingPairs() {
 		return new HashSet<Pair<Geometry>>(overlappingPairs);
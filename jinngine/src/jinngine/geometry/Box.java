@@ -34,6 +34,20 @@ public class Box implements SupportMap3, Geometry, Material {
 	// auxiliary user reference
 	private Object auxiliary;
 	
+	// integer id, assigned by the scene
+	private int id = -1;
+	
+	// collision filter bits
+	private int category = 1;
+	private int mask = ~0;
+	
+	// world space rotation and corners relative to the body position, cached for the 
+	// transformations of the body given by the transformations counter
+	private final Matrix3 worldrotation = new Matrix3();
+	private final Vector3[] worldcorners = new Vector3[] { new Vector3(), new Vector3(), new Vector3(), new Vector3(),
+			new Vector3(), new Vector3(), new Vector3(), new Vector3() };
+	private volatile int transformations = -1;
+	
 	// material settings (defaults)
 	private double restitution = 0.7;
 	private double friction = 0.5;
@@ -86,22 +100,66 @@ public class Box implements SupportMap3, Geometry, Material {
 	// user auxiliary methods
 	public Object getAuxiliary() { return auxiliary; }
 	public void setAuxiliary(Object auxiliary) { this.auxiliary = auxiliary; }
+	
+	// id methods
+	public int getId() { return id; }
+	public void setId(int id) { this.id = id; }
+	
+	// collision filter methods
+	public int getCollisionCategory() { return category; }
+	public void setCollisionCategory(int category) { this.category = category; }
+	public int getCollisionMask() { return mask; }
+	public void setCollisionMask(int mask) { this.mask = mask; }
 
 	@Override
 	public Vector3 supportPoint(Vector3 direction) {
-		// calculate a support point in world space
-		Vector3 v = body.state.rotation.multiply(localrotation).transpose().multiply(direction);
-		double sv1 = v.x<0?-0.5:0.5;
-		double sv2 = v.y<0?-0.5:0.5;
-		double sv3 = v.z<0?-0.5:0.5;
-		return body.state.rotation.multiply(localtransform.multiply(new Vector3(sv1, sv2, sv3)).add(localdisplacement)).add(body.state.position);
+		return supportPoint(direction, new Vector3());
+	}
+
+	@Override
+	public Vector3 supportPoint(Vector3 direction, Vector3 result) {
+		transform();
+		
+		// get the direction into the canonical box space. Only the signs are needed
+		final Matrix3 R = worldrotation;
+		final double vx = direction.x*R.a11 + direction.y*R.a21 + direction.z*R.a31;
+		final double vy = direction.x*R.a12 + direction.y*R.a22 + direction.z*R.a32;
+		final double vz = direction.x*R.a13 + direction.y*R.a23 + direction.z*R.a33;
+		
+		// pick the corner in world space
+		final Vector3 corner = worldcorners[(vx<0?0:1) | (vy<0?0:2) | (vz<0?0:4)];
+		final Vector3 position = body.state.position;
+		return result.assign(corner.x+position.x, corner.y+position.y, corner.z+position.z);
+	}
+	
+	// compute the world space rotation and corners, if the body was transformed since they were last 
+	// computed. The cache is written with plain, unsynchronized writes, and several threads can recompute it
+	// at the same time, for instance in the parallel narrow-phase. A reader can see a mix of two writes, but
+	// the race is harmless, because the body is not transformed while its geometries are used concurrently,
+	// so every writer computes identical values from the same state. The volatile counter is stored last,
+	// so a thread that finds it current also sees the values written before it
+	private final void transform() {
+		final int version = body.state.transformations;
+		if (transformations == version)
+			return;
+		
+		final Matrix3 rotation = body.state.rotation;
+		worldrotation.assign(rotation.multiply(localrotation));
+		for (int i=0; i<8; i++) {
+			final Vector3 corner = new Vector3((i&1)==0?-0.5:0.5, (i&2)==0?-0.5:0.5, (i&4)==0?-0.5:0.5);
+			worldcorners[i].assign(rotation.multiply(localtransform.multiply(corner).add(localdisplacement)));
+		}
+		transformations = version;
 	}
 
 	@Override
 	public Body getBody() { return body; }
 	
 	@Override
-	public void setBody(Body b) { this.body = b; }
+	public void setBody(Body b) { 
+		this.body = b; 
+		transformations = -1;
+	}
 
 	@Override
 	public InertiaMatrix getInertialMatrix() {
@@ -127,6 +185,7 @@ public class Box implements SupportMap3, Geometry, Material {
 	public void setLocalTransform(Matrix3 rotation, Vector3 displacement) {
 		this.localdisplacement.assign(displacement);
 		this.localrotation.assign(rotation);
+		transformations = -1;
 
 		//set the local transform 
 		localtransform.assign( localrotation.multiply(new Matrix3(new Vector3(xs,0,0), new Vector3(0,ys,0), new Vector3(0,0,zs))));
@@ -371,6 +430,13 @@ public class Box implements SupportMap3, Geometry, Material {
 		return new Vector3(xs,ys,zs);
 	}
 
+	/**
+	 * Copy the side lengths of this box into the given vector
+	 */
+	public void getDimentions(Vector3 dimensions) {
+		dimensions.assign(xs,ys,zs);
+	}
+
 	@Override
 	public void setLocalScale(Vector3 s) {
 		throw new UnsupportedOperationException();
@@ -12,8 +12,8 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
-import quickhull3d.Point3d;
-import quickhull3d.QuickHull3D;
+import com.github.quickhull3d.Point3d;
+import com.github.quickhull3d.QuickHull3D;
 
 import jinngine.geometry.util.MassProperties;
 import jinngine.math.InertiaMatrix;
@@ -220,6 +220,9 @@ public class ConvexHull implements SupportMap3, Geometry, Material {
 
 	// Geometry
 	private Object auxiliary;
+	private int id = -1;
+	private int category = 1;
+	private int mask = ~0;
 	private Body body = new Body("default");
 	private double envelope = 0.125;
 	private Matrix3 localrotation = Matrix3.identity();
@@ -228,6 +231,12 @@ public class ConvexHull implements SupportMap3, Geometry, Material {
 //	private final Vector3 displacement = new Vector3();
 	private final Vector3 localscale = new Vector3(1,1,1);
 	private final Vector3 inverselocalscale = new Vector3(1,1,1);
+	
+	// local rotation and scaling, and the world space rotation and scaling, cached for the 
+	// transformations of the body given by the transformations counter
+	private final Matrix3 localscaledrotation = localrotation.scale(localscale);
+	private final Matrix3 worldrotation = new Matrix3();
+	private volatile int transformations = -1;
 
 	// AxisAlignedBoundingBox
 	private final Vector3 extremalpoint = new Vector3();
@@ -243,20 +252,32 @@ public class ConvexHull implements SupportMap3, Geometry, Material {
 	
 	@Override
 	public Vector3 supportPoint(Vector3 direction) {
+		return supportPoint(direction, new Vector3());
+	}
+
+	@Override
+	public Vector3 supportPoint(Vector3 direction, Vector3 result) {
+		transform();
+		
 		// normals are transformed (RS^-1)
-		Vector3 v = body.state.rotation.multiply(localrotation).scale(localscale).transpose().multiply(direction);
+		final Matrix3 R = worldrotation;
+		final double vx = direction.x*R.a11 + direction.y*R.a21 + direction.z*R.a31;
+		final double vy = direction.x*R.a12 + direction.y*R.a22 + direction.z*R.a32;
+		final double vz = direction.x*R.a13 + direction.y*R.a23 + direction.z*R.a33;
 		
 		// do hill climbing if the hull has a considerable number of vertices
 //		if (numberOfVertices > 32) {
 			//hill climb along v
 			int index = cachedVertex;
-			double value = v.dot(vertices.get(index));
+			Vector3 p = vertices.get(index);
+			double value = vx*p.x+vy*p.y+vz*p.z;
 			boolean better = true;
 			while (better) {
 				better = false;
 				//go through adjacency list and pick first improver (greedy)
 				for ( int i: adjacent.get(index)) {
-					double newvalue = v.dot(vertices.get(i));
+					p = vertices.get(i);
+					double newvalue = vx*p.x+vy*p.y+vz*p.z;
 					if ( newvalue > value) {
 						value = newvalue;
 						index = i;
@@ -270,7 +291,11 @@ public class ConvexHull implements SupportMap3, Geometry, Material {
 			cachedVertex = index;
 			
 			// return the final support point in world space
-			return body.state.rotation.multiply(localrotation.scale(localscale).multiply(vertices.get(index)).add(localtranslation)).add(body.state.position);
+			Matrix3.multiply(localscaledrotation, vertices.get(index), result);
+			Vector3.add(result, localtranslation);
+			Matrix3.multiply(body.state.rotation, result, result);
+			Vector3.add(result, body.state.position);
+			return result;
 
 //		} else {
 //			// if not, just check each vertex
@@ -289,6 +314,15 @@ public class ConvexHull implements SupportMap3, Geometry, Material {
 
 	}
 
+	// compute the world space rotation and scaling, if the body was transformed since it was last computed
+	private final void transform() {
+		final int version = body.state.transformations;
+		if (transformations == version)
+			return;
+		worldrotation.assign(body.state.rotation.multiply(localrotation).scale(localscale));
+		transformations = version;
+	}
+
 	@Override
 	public void supportFeature(Vector3 direction, List<Vector3> returnface) {
 		// Su  
@@ -346,6 +380,7 @@ public class ConvexHull implements SupportMap3, Geometry, Material {
 	@Override
 	public void setBody(Body b) {
 		this.body = b;
+		transformations = -1;
 	}
 
 	@Override
@@ -358,6 +393,8 @@ public class ConvexHull implements SupportMap3, Geometry, Material {
 		this.localtranslation.assign(localTransl);
                 this.localrotation.assign(localRot);
                 localtransform4.assign( Transforms.transformAndTranslate4(localrotation, localtranslation) );
+		localscaledrotation.assign(localrotation.scale(localscale));
+		transformations = -1;
 	}
 	
 	@Override
@@ -404,6 +441,36 @@ public class ConvexHull implements SupportMap3, Geometry, Material {
 		this.auxiliary = auxiliary;
 	}
 	
+	@Override
+	public int getId() {
+		return id;
+	}
+
+	@Override
+	public void setId(int id) {
+		this.id = id;
+	}
+	
+	@Override
+	public int getCollisionCategory() {
+		return category;
+	}
+
+	@Override
+	public void setCollisionCategory(int category) {
+		this.category = category;
+	}
+
+	@Override
+	public int getCollisionMask() {
+		return mask;
+	}
+
+	@Override
+	public void setCollisionMask(int mask) {
+		this.mask = mask;
+	}
+	
 	public Vector3 getCentreOfMass() {
 		return new Vector3(centreOfMass);
 	}
@@ -432,6 +499,8 @@ public class ConvexHull implements SupportMap3, Geometry, Material {
 	public void setLocalScale(Vector3 s) {
 		localscale.assign(s);
 		inverselocalscale.assign(1/s.x,1/s.y,1/s.z);
+		localscaledrotation.assign(localrotation.scale(localscale));
+		transformations = -1;
 		
 		//re-assign bounds by scaling the previous extremal point TODO not sure this is tight
 		//search vertices to find extremal bounds
@@ -28,6 +28,19 @@ public interface Geometry extends BoundingBox {
 	 */
 	public void setBody(Body b);
 	
+	/**
+	 * Get the integer id of this geometry. Ids are dense, and assigned when the body of the geometry is 
+	 * added to a scene. The id is -1 when the geometry is not in a scene
+	 * @return
+	 */
+	public int getId();
+	
+	/**
+	 * Set the integer id of this geometry. Normally, it should not be necessary for the user to call
+	 * this method directly, as ids are assigned by the scene
+	 */
+	public void setId(int id);
+	
 	/**
 	 * Set the local rotation for this geometry and displacement. The local transform is applied before the transform 
 	 * of the associated body is applied. This is used to rotate and translate geometries around in the
@@ -108,5 +121,33 @@ public interface Geometry extends BoundingBox {
 	 */
 	public void setAuxiliary(Object aux);
 	
+	/**
+	 * Get the collision category bits of this geometry. The default category is 1
+	 * @return
+	 */
+	public int getCollisionCategory();
+	
+	/**
+	 * Set the collision category bits of this geometry. Two geometries are only considered by broad-phase 
+	 * collision detection if the category of each geometry shares at least one bit with the mask of the other. 
+	 * Filter bits are read when the geometry is added to the broad-phase, so changes to a geometry that is 
+	 * already added will not take effect before the geometry is removed and added again.
+	 * @param category
+	 */
+	public void setCollisionCategory(int category);
+	
+	/**
+	 * Get the collision mask bits of this geometry. By default, all bits are set
+	 * @return
+	 */
+	public int getCollisionMask();
+	
+	/**
+	 * Set the collision mask bits of this geometry, that is, the categories of geometries that this geometry
+	 * can collide with. See {@link #setCollisionCategory(int)}
+	 * @param mask
+	 */
+	public void setCollisionMask(int mask);
+	
 }
 
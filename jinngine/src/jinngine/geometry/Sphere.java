@@ -29,6 +29,30 @@ public class Sphere implements SupportMap3, Geometry, Material {
 		this.auxiliary = auxiliary;
 	}
 
+	public int getId() {
+		return id;
+	}
+
+	public void setId(int id) {
+		this.id = id;
+	}
+
+	public int getCollisionCategory() {
+		return category;
+	}
+
+	public void setCollisionCategory(int category) {
+		this.category = category;
+	}
+
+	public int getCollisionMask() {
+		return mask;
+	}
+
+	public void setCollisionMask(int mask) {
+		this.mask = mask;
+	}
+
 	private Body body;
 	private double radius;
 	private final Vector3 displacement = new Vector3();
@@ -36,10 +60,16 @@ public class Sphere implements SupportMap3, Geometry, Material {
 	private final Matrix4 localtransform4 = new Matrix4();
 	private double envelope = 1;
 	private Object auxiliary;
+	private int id = -1;
+	private int category = 1;
+	private int mask = ~0;
 	private double restitution = 0.7;
 	private double friction = 0.5;
 	private double mass;
-
+	
+	// world space displacement, cached for the transformations of the body given by the transformations counter
+	private final Vector3 worlddisplacement = new Vector3();
+	private volatile int transformations = -1;
 
 	public Sphere(double radius) {
 		super();
@@ -55,8 +85,31 @@ public class Sphere implements SupportMap3, Geometry, Material {
 
 	@Override
 	public Vector3 supportPoint(Vector3 direction) {
+		return supportPoint(direction, new Vector3());
+	}
+
+	@Override
+	public Vector3 supportPoint(Vector3 direction, Vector3 result) {
+		transform();
+		
 		//sphere is invariant under rotation
-		return direction.normalize().multiply(radius).add(body.state.position).add(Matrix3.multiply(body.state.rotation, displacement, new Vector3()) );
+		double nx = 1, ny = 0, nz = 0;
+		double l = Math.sqrt(direction.x*direction.x+direction.y*direction.y+direction.z*direction.z);
+		if ( l != 0.0 ) {
+			l = 1./l;
+			nx = direction.x*l; ny = direction.y*l; nz = direction.z*l;
+		}
+		final Vector3 position = body.state.position;
+		return result.assign(nx*radius+position.x+worlddisplacement.x, ny*radius+position.y+worlddisplacement.y, nz*radius+position.z+worlddisplacement.z);
+	}
+	
+	// compute the world space displacement, if the body was transformed since it was last computed
+	private final void transform() {
+		final int version = body.state.transformations;
+		if (transformations == version)
+			return;
+		worlddisplacement.assign(Matrix3.multiply(body.state.rotation, displacement, new Vector3()));
+		transformations = version;
 	}
 
 	@Override
@@ -94,6 +147,7 @@ public class Sphere implements SupportMap3, Geometry, Material {
 	@Override
 	public void setBody(Body b) {
 		this.body = b;
+		transformations = -1;
 		
 	}
 
@@ -101,6 +155,7 @@ public class Sphere implements SupportMap3, Geometry, Material {
 	public void setLocalTransform(Matrix3 B, Vector3 b2) {
 		//A sphere only supports translations as local transform
 		displacement.assign(b2);
+		transformations = -1;
 	localtransform4.assign(Transforms.transformAndTranslate4(Matrix3.scaleMatrix(radius), displacement));
 	}
 	
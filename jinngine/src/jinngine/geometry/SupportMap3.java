@@ -28,6 +28,16 @@ public interface SupportMap3  {
 	 */
 	public Vector3 supportPoint( Vector3 direction );
 
+	/**
+	 * Compute a support point of this geometry, in the given direction, and store it in result. Unlike 
+	 * supportPoint(Vector3), this method should not create any objects, so it can be used in inner loops, 
+	 * such as in GJK. The direction is not modified, and result must not be the same instance as direction.
+	 * @param direction the direction of the support point
+	 * @param result receives the farthest point, in the given direction, existing on this geometry
+	 * @return result
+	 */
+	public Vector3 supportPoint( Vector3 direction, Vector3 result );
+
 	/**
 	 * Return the feature that supports the direction d. This could be either a point, 
 	 * line segment, or a face. In case of a face, the points must appear in counter 
@@ -63,19 +63,41 @@ public final class UniformCapsule implements Geometry, SupportMap3, Material {
 	 */
 	
 	private Object auxiliary;
+	private int id = -1;
+	private int category = 1;
+	private int mask = ~0;
 	private Body body;
 	private double envelope = 0.125;
 	private final Matrix3 rotation = new Matrix3(Matrix3.identity());
 	private final Vector3 translation = new Vector3();
 	
+	// world space rotation and end points relative to the body position, cached for the 
+	// transformations of the body given by the transformations counter
+	private final Matrix3 worldrotation = new Matrix3();
+	private final Vector3 worldpoint1 = new Vector3();
+	private final Vector3 worldpoint2 = new Vector3();
+	private volatile int transformations = -1;
+	
 	@Override
 	public final Object getAuxiliary() {return this.auxiliary;}
 	@Override
 	public final void setAuxiliary(Object aux) {this.auxiliary = aux;}
 	@Override
+	public final int getId() {return id;}
+	@Override
+	public final void setId(int id) {this.id = id;}
+	@Override
+	public final int getCollisionCategory() {return category;}
+	@Override
+	public final void setCollisionCategory(int category) {this.category = category;}
+	@Override
+	public final int getCollisionMask() {return mask;}
+	@Override
+	public final void setCollisionMask(int mask) {this.mask = mask;}
+	@Override
 	public final Body getBody() {return body;}
 	@Override
-	public final void setBody(Body b) {this.body = b;}
+	public final void setBody(Body b) {this.body = b; transformations = -1;}
 	@Override
 	public final double getEnvelope() {return envelope;}
 	@Override
@@ -104,7 +126,7 @@ public final class UniformCapsule implements Geometry, SupportMap3, Material {
 		throw new UnsupportedOperationException("UniformCapsule: no support for scaling");
 	}
 	@Override
-	public final void setLocalTransform(Matrix3 R, Vector3 b) { rotation.assign(R); translation.assign(b); }
+	public final void setLocalTransform(Matrix3 R, Vector3 b) { rotation.assign(R); translation.assign(b); transformations = -1; }
 	
 	/*
 	 *  BoundingBox methods
@@ -144,10 +166,32 @@ public final class UniformCapsule implements Geometry, SupportMap3, Material {
 
 	@Override
 	public Vector3 supportPoint(Vector3 direction) {
-		// calculate a support point in world space
-		Vector3 v = body.state.rotation.multiply(rotation).transpose().multiply(direction);
-		double sv3 = v.z<0?-0.5:0.5;
-		return body.state.rotation.multiply(rotation.multiply(new Vector3(0, 0, sv3*length)).add(translation)).add(body.state.position);
+		return supportPoint(direction, new Vector3());
+	}
+
+	@Override
+	public Vector3 supportPoint(Vector3 direction, Vector3 result) {
+		transform();
+		
+		// only the sign of the direction along the capsule axis is needed
+		final Matrix3 R = worldrotation;
+		final double vz = direction.x*R.a13 + direction.y*R.a23 + direction.z*R.a33;
+		final Vector3 p = vz<0? worldpoint2 : worldpoint1;
+		final Vector3 position = body.state.position;
+		return result.assign(p.x+position.x, p.y+position.y, p.z+position.z);
+	}
+	
+	// compute the world space rotation and end points, if the body was transformed since they 
+	// were last computed. The counter is stored last, so concurrent readers never see partial values
+	private final void transform() {
+		final int version = body.state.transformations;
+		if (transformations == version)
+			return;
+		final Matrix3 R = body.state.rotation;
+		worldrotation.assign(R.multiply(rotation));
+		worldpoint1.assign(R.multiply(rotation.multiply(new Vector3(0, 0,  0.5*length)).add(translation)));
+		worldpoint2.assign(R.multiply(rotation.multiply(new Vector3(0, 0, -0.5*length)).add(translation)));
+		transformations = version;
 	}
 
 	@Override
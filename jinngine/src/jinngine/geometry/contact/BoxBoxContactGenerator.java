@@ -0,0 +1,421 @@
+/**
+ * Copyright (c) 2008-2010  Morten Silcowitz.
+ *
+ * This file is part of the Jinngine physics library
+ *
+ * Jinngine is published under the GPL license, available
+ * at http://www.gnu.org/copyleft/gpl.html.
+ */
+package jinngine.geometry.contact;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import jinngine.geometry.Box;
+import jinngine.math.Matrix3;
+import jinngine.math.Vector3;
+import jinngine.physics.Body;
+
+/**
+ * Analytic contact generator for pairs of boxes. The separating axis test is applied to the 15 possible
+ * separating axes, the three face normals of each box and the nine cross products of their edge directions.
+ * If no axis separates the boxes by more than the envelope, the axis with the largest separation is used as
+ * contact normal. For a face axis, the face of the other box that is most anti-parallel to the reference face
+ * is clipped against the side planes of the reference face, giving up to eight contact points. For an edge axis,
+ * a single contact point is placed between the closest points of the two edges. If the boxes are separated, and none
+ * of these points lies at the distance between the boxes, a contact point is added between the closest points of the
+ * boxes, found among their corners and edges. As for {@link SupportMapContactGenerator},
+ * the contact normal points from box B towards box A, and the contact point lies midway between the two boxes.
+ */
+public final class BoxBoxContactGenerator implements ContactGenerator {
+	// an edge axis is only used if it separates the boxes clearly more than the best face axis. This keeps
+	// face contacts stable for resting boxes, where edge axes often give almost the same separation
+	private static final double relative = 0.98;
+	private static final double absolute = 1e-3;
+
+	// cross products of almost parallel edges are not used as axes
+	private static final double parallel = 1e-6;
+
+	// contact points of separated boxes within this distance of the separation are exact
+	private static final double tolerance = 1e-9;
+
+	// data
+	private final Box boxa, boxb;
+	private final List<ContactPoint> contacts = new ArrayList<ContactPoint>(9);
+	private final ContactPoint[] points = new ContactPoint[9];
+
+	// settings
+	private final double envelope;
+	private final double shell;
+	private double restitution;
+	private double friction;
+
+	// world space axes (stored as consecutive x,y,z triples), centres and half side lengths of the boxes,
+	// and the vector between the box centres, from B to A
+	private final double[] ua = new double[9], ub = new double[9];
+	private final double[] ca = new double[3], cb = new double[3];
+	private final double[] ha = new double[3], hb = new double[3];
+	private final double[] d = new double[3];
+
+	// scratch data
+	private final Matrix3 rotation = new Matrix3();
+	private final Vector3 displacement = new Vector3();
+	private final Vector3 dimensions = new Vector3();
+	private final double[] axis = new double[3], edgeaxis = new double[3];
+	private final double[] polygon = new double[24], clipped = new double[24];
+	private final double[] pa = new double[3], pb = new double[3];
+	private double nearest;
+
+	public BoxBoxContactGenerator(Box a, Box b) {
+		this.boxa = a;
+		this.boxb = b;
+
+		// select the largest envelope for contact generation
+		envelope = Math.max(a.getEnvelope(), b.getEnvelope());
+		shell = envelope*0.5;
+
+		for (int i=0; i<points.length; i++)
+			points[i] = new ContactPoint();
+	}
+
+	@Override
+	public Iterator<ContactPoint> getContacts() {
+		return contacts.iterator();
+	}
+
+	@Override
+	public void run() {
+		contacts.clear();
+
+		// select the smallest restitution and friction coefficients
+		restitution = Math.min(boxa.getRestitution(), boxb.getRestitution());
+		friction = Math.min(boxa.getFrictionCoefficient(), boxb.getFrictionCoefficient());
+
+		// box frames in world space. The cached transforms of the boxes are not used,
+		// because contact generators may run concurrently
+		frame(boxa, ua, ca, ha);
+		frame(boxb, ub, cb, hb);
+		d[0] = ca[0]-cb[0]; d[1] = ca[1]-cb[1]; d[2] = ca[2]-cb[2];
+
+		// face axes, 0-2 are the axes of A and 3-5 the axes of B
+		double face = Double.NEGATIVE_INFINITY;
+		int faceindex = -1;
+		for (int i=0; i<6; i++) {
+			final double s = separation(i<3? ua:ub, 3*(i%3));
+			if (s > envelope)
+				return;
+			if (s > face) {
+				face = s; faceindex = i;
+			}
+		}
+
+		// edge axes
+		double edge = Double.NEGATIVE_INFINITY;
+		int edgea = -1, edgeb = -1;
+		for (int i=0; i<3; i++) {
+			for (int j=0; j<3; j++) {
+				// axis = ua_i x ub_j
+				final int k = 3*i, l = 3*j;
+				axis[0] = ua[k+1]*ub[l+2] - ua[k+2]*ub[l+1];
+				axis[1] = ua[k+2]*ub[l]   - ua[k]*ub[l+2];
+				axis[2] = ua[k]*ub[l+1]   - ua[k+1]*ub[l];
+				final double length = Math.sqrt(axis[0]*axis[0]+axis[1]*axis[1]+axis[2]*axis[2]);
+				if (length < parallel)
+					continue;
+				axis[0] /= length; axis[1] /= length; axis[2] /= length;
+
+				final double s = separation(axis, 0);
+				if (s > envelope)
+					return;
+				if (s > edge) {
+					edge = s; edgea = i; edgeb = j;
+					edgeaxis[0] = axis[0]; edgeaxis[1] = axis[1]; edgeaxis[2] = axis[2];
+				}
+			}
+		}
+
+		// generate contact points using the best axis. The distance between separated boxes is at least the
+		// separation along any axis, so contact points at that distance are exact. Otherwise the closest points
+		// of separated boxes are not supported by the chosen axis, and a contact point between them is added
+		if (edgea >= 0 && edge > face + (1-relative)*Math.abs(face) + absolute) {
+			if (!edge(edgea, edgeb) && edge > 0) {
+				contacts.clear();
+				closest();
+			}
+			return;
+		}
+		if (faceindex < 3) {
+			// reference face on A. The normal of the face points towards B, so the contact normal is reversed
+			face(ua, ca, ha, faceindex, ub, cb, hb, -1);
+		} else {
+			face(ub, cb, hb, faceindex-3, ua, ca, ha, 1);
+		}
+
+		// the closest points of the boxes can lie outside the reference face, or be supported by an edge axis.
+		// The clipped points are kept, as they are still valid, and keep face contacts stable
+		if (face > 0 || edge > 0) {
+			double nearest = Double.POSITIVE_INFINITY;
+			for (int k=0; k<contacts.size(); k++)
+				nearest = Math.min(nearest, contacts.get(k).distance);
+			if (nearest > Math.max(face, edge) + tolerance)
+				closest();
+		} else if (contacts.isEmpty() && edgea >= 0) {
+			edge(edgea, edgeb);
+		}
+	}
+
+	// compute the world space axes, centre and half side lengths of the given box
+	private final void frame( final Box box, final double[] u, final double[] c, final double[] h ) {
+		final Body body = box.getBody();
+		box.getLocalTransform(rotation, displacement);
+		Matrix3.multiply(body.state.rotation, rotation, rotation);
+		Matrix3.multiply(body.state.rotation, displacement, displacement);
+
+		// the axes of the box are the columns of its rotation
+		u[0] = rotation.a11; u[1] = rotation.a21; u[2] = rotation.a31;
+		u[3] = rotation.a12; u[4] = rotation.a22; u[5] = rotation.a32;
+		u[6] = rotation.a13; u[7] = rotation.a23; u[8] = rotation.a33;
+
+		final Vector3 position = body.state.position;
+		c[0] = displacement.x+position.x; c[1] = displacement.y+position.y; c[2] = displacement.z+position.z;
+
+		box.getDimentions(dimensions);
+		h[0] = dimensions.x*0.5; h[1] = dimensions.y*0.5; h[2] = dimensions.z*0.5;
+	}
+
+	// separation of the boxes along the unit axis given by l[k], l[k+1] and l[k+2]. Negative when the
+	// projections of the boxes onto the axis overlap
+	private final double separation( final double[] l, final int k ) {
+		final double x = l[k], y = l[k+1], z = l[k+2];
+		double ra = 0, rb = 0;
+		for (int i=0; i<9; i+=3) {
+			ra += ha[i/3]*Math.abs(ua[i]*x + ua[i+1]*y + ua[i+2]*z);
+			rb += hb[i/3]*Math.abs(ub[i]*x + ub[i+1]*y + ub[i+2]*z);
+		}
+		return Math.abs(d[0]*x + d[1]*y + d[2]*z) - ra - rb;
+	}
+
+	// generate contact points by clipping the incident face of box I against the side planes of face i
+	// of the reference box R. The contact normal is the face normal, pointing from R towards I, times sign
+	private final void face( final double[] ur, final double[] cr, final double[] hr, final int i,
+			final double[] ui, final double[] ci, final double[] hi, final double sign ) {
+		// reference face normal, pointing towards the incident box
+		final int r = 3*i;
+		final double towards = (ci[0]-cr[0])*ur[r] + (ci[1]-cr[1])*ur[r+1] + (ci[2]-cr[2])*ur[r+2];
+		final double s = towards < 0? -1 : 1;
+		final double nx = ur[r]*s, ny = ur[r+1]*s, nz = ur[r+2]*s;
+
+		// incident face, the face of I whose normal is most anti-parallel to the reference normal
+		int j = 0;
+		double best = -1, dot = 0;
+		for (int k=0; k<3; k++) {
+			final double c = ui[3*k]*nx + ui[3*k+1]*ny + ui[3*k+2]*nz;
+			if (Math.abs(c) > best) {
+				best = Math.abs(c); dot = c; j = k;
+			}
+		}
+		final double t = (dot > 0? -1 : 1)*hi[j];
+		final int e1 = 3*((j+1)%3), e2 = 3*((j+2)%3);
+		final double h1 = hi[(j+1)%3], h2 = hi[(j+2)%3];
+
+		// corners of the incident face, in cyclic order
+		for (int k=0; k<4; k++) {
+			final double s1 = (k==0||k==3)? h1 : -h1;
+			final double s2 = k<2? h2 : -h2;
+			for (int m=0; m<3; m++)
+				polygon[3*k+m] = ci[m] + ui[3*j+m]*t + ui[e1+m]*s1 + ui[e2+m]*s2;
+		}
+
+		// clip against the four side planes of the reference face
+		int n = 4;
+		for (int k=1; k<3 && n>0; k++) {
+			final int a = 3*((i+k)%3);
+			final double offset = cr[0]*ur[a] + cr[1]*ur[a+1] + cr[2]*ur[a+2];
+			final double h = hr[(i+k)%3];
+			n = clip(polygon, n, clipped, ur[a], ur[a+1], ur[a+2], offset+h);
+			n = clip(clipped, n, polygon, -ur[a], -ur[a+1], -ur[a+2], -offset+h);
+		}
+
+		// keep points within the envelope of the reference face
+		final double plane = cr[0]*nx + cr[1]*ny + cr[2]*nz + hr[i];
+		for (int k=0; k<n; k++) {
+			final double px = polygon[3*k], py = polygon[3*k+1], pz = polygon[3*k+2];
+			final double distance = px*nx + py*ny + pz*nz - plane;
+			if (distance < envelope) {
+				final double half = distance*0.5;
+				add(px-nx*half, py-ny*half, pz-nz*half, nx*sign, ny*sign, nz*sign, distance);
+			}
+		}
+	}
+
+	// clip the polygon of n vertices in input against the half-space where the point x satisfies
+	// (nx,ny,nz).x <= offset. Returns the number of vertices written to output
+	private static final int clip( final double[] input, final int n, final double[] output,
+			final double nx, final double ny, final double nz, final double offset ) {
+		int m = 0;
+		for (int k=0; k<n; k++) {
+			final int p = 3*k, q = 3*((k+1)%n);
+			final double dp = input[p]*nx + input[p+1]*ny + input[p+2]*nz - offset;
+			final double dq = input[q]*nx + input[q+1]*ny + input[q+2]*nz - offset;
+			if (dp <= 0) {
+				output[3*m] = input[p]; output[3*m+1] = input[p+1]; output[3*m+2] = input[p+2];
+				m++;
+			}
+			// the edge crosses the plane
+			if ((dp < 0 && dq > 0) || (dp > 0 && dq < 0)) {
+				final double t = dp/(dp-dq);
+				output[3*m]   = input[p]   + (input[q]-input[p])*t;
+				output[3*m+1] = input[p+1] + (input[q+1]-input[p+1])*t;
+				output[3*m+2] = input[p+2] + (input[q+2]-input[p+2])*t;
+				m++;
+			}
+		}
+		return m;
+	}
+
+	// generate a contact point between edge i of A and edge j of B. Returns false if the closest points of
+	// the lines through the edges lie outside the edges
+	private final boolean edge( final int i, final int j ) {
+		// contact normal from B to A
+		final double s = d[0]*edgeaxis[0] + d[1]*edgeaxis[1] + d[2]*edgeaxis[2] < 0? -1 : 1;
+		final double nx = edgeaxis[0]*s, ny = edgeaxis[1]*s, nz = edgeaxis[2]*s;
+
+		// centres of the supporting edges, the edge of A is extremal along -n and the edge of B along n
+		double ax = ca[0], ay = ca[1], az = ca[2];
+		double bx = cb[0], by = cb[1], bz = cb[2];
+		for (int k=0; k<3; k++) {
+			final int m = 3*k;
+			if (k != i) {
+				final double t = ua[m]*nx + ua[m+1]*ny + ua[m+2]*nz > 0? -ha[k] : ha[k];
+				ax += ua[m]*t; ay += ua[m+1]*t; az += ua[m+2]*t;
+			}
+			if (k != j) {
+				final double t = ub[m]*nx + ub[m+1]*ny + ub[m+2]*nz > 0? hb[k] : -hb[k];
+				bx += ub[m]*t; by += ub[m+1]*t; bz += ub[m+2]*t;
+			}
+		}
+
+		// closest points of the lines through the edges, clamped to the edges
+		final int a = 3*i, b = 3*j;
+		final double rx = ax-bx, ry = ay-by, rz = az-bz;
+		final double c = ua[a]*ub[b] + ua[a+1]*ub[b+1] + ua[a+2]*ub[b+2];
+		final double e = ua[a]*rx + ua[a+1]*ry + ua[a+2]*rz;
+		final double f = ub[b]*rx + ub[b+1]*ry + ub[b+2]*rz;
+		double ta = (c*f-e)/(1-c*c);
+		double tb = f + c*ta;
+		final boolean inside = Math.abs(ta) <= ha[i] && Math.abs(tb) <= hb[j];
+		ta = ta < -ha[i]? -ha[i] : ta > ha[i]? ha[i] : ta;
+		tb = f + c*ta;
+		tb = tb < -hb[j]? -hb[j] : tb > hb[j]? hb[j] : tb;
+
+		ax += ua[a]*ta; ay += ua[a+1]*ta; az += ua[a+2]*ta;
+		bx += ub[b]*tb; by += ub[b+1]*tb; bz += ub[b+2]*tb;
+
+		final double distance = (ax-bx)*nx + (ay-by)*ny + (az-bz)*nz;
+		if (distance < envelope)
+			add((ax+bx)*0.5, (ay+by)*0.5, (az+bz)*0.5, nx, ny, nz, distance);
+		return inside;
+	}
+
+	// generate a contact point between the closest points of separated boxes. The closest points are a corner
+	// of one box and the closest point of the other box to it, or the closest points of an edge of each box,
+	// lying within both edges. The contact normal points along the line between the closest points
+	private final void closest() {
+		nearest = Double.POSITIVE_INFINITY;
+		corners(ua, ca, ha, ub, cb, hb, pa, pb);
+		corners(ub, cb, hb, ua, ca, ha, pb, pa);
+
+		for (int i=0; i<3; i++) {
+			for (int j=0; j<3; j++) {
+				final int a = 3*i, b = 3*j;
+				final double c = ua[a]*ub[b] + ua[a+1]*ub[b+1] + ua[a+2]*ub[b+2];
+				if (1-c*c < parallel)
+					continue;
+
+				// the four edges of A along axis i against the four edges of B along axis j
+				final int a1 = 3*((i+1)%3), a2 = 3*((i+2)%3), b1 = 3*((j+1)%3), b2 = 3*((j+2)%3);
+				final double ha1 = ha[(i+1)%3], ha2 = ha[(i+2)%3], hb1 = hb[(j+1)%3], hb2 = hb[(j+2)%3];
+				for (int k=0; k<4; k++) {
+					final double sa1 = (k&1)==0? ha1 : -ha1, sa2 = (k&2)==0? ha2 : -ha2;
+					final double ax = ca[0] + ua[a1]*sa1 + ua[a2]*sa2;
+					final double ay = ca[1] + ua[a1+1]*sa1 + ua[a2+1]*sa2;
+					final double az = ca[2] + ua[a1+2]*sa1 + ua[a2+2]*sa2;
+					for (int l=0; l<4; l++) {
+						final double sb1 = (l&1)==0? hb1 : -hb1, sb2 = (l&2)==0? hb2 : -hb2;
+						final double bx = cb[0] + ub[b1]*sb1 + ub[b2]*sb2;
+						final double by = cb[1] + ub[b1+1]*sb1 + ub[b2+1]*sb2;
+						final double bz = cb[2] + ub[b1+2]*sb1 + ub[b2+2]*sb2;
+
+						// closest points of the lines through the edges
+						final double rx = ax-bx, ry = ay-by, rz = az-bz;
+						final double e = ua[a]*rx + ua[a+1]*ry + ua[a+2]*rz;
+						final double f = ub[b]*rx + ub[b+1]*ry + ub[b+2]*rz;
+						final double ta = (c*f-e)/(1-c*c), tb = f + c*ta;
+						if (Math.abs(ta) > ha[i] || Math.abs(tb) > hb[j])
+							continue;
+						final double px = ax + ua[a]*ta, py = ay + ua[a+1]*ta, pz = az + ua[a+2]*ta;
+						final double qx = bx + ub[b]*tb, qy = by + ub[b+1]*tb, qz = bz + ub[b+2]*tb;
+						final double squared = (px-qx)*(px-qx) + (py-qy)*(py-qy) + (pz-qz)*(pz-qz);
+						if (squared < nearest) {
+							nearest = squared;
+							pa[0] = px; pa[1] = py; pa[2] = pz;
+							pb[0] = qx; pb[1] = qy; pb[2] = qz;
+						}
+					}
+				}
+			}
+		}
+
+		final double distance = Math.sqrt(nearest);
+		if (distance < envelope && distance > 0) {
+			final double nx = (pa[0]-pb[0])/distance, ny = (pa[1]-pb[1])/distance, nz = (pa[2]-pb[2])/distance;
+			add((pa[0]+pb[0])*0.5, (pa[1]+pb[1])*0.5, (pa[2]+pb[2])*0.5, nx, ny, nz, distance);
+		}
+	}
+
+	// find the corners of box C that are closer to box O than the nearest points found so far. The corner is
+	// stored in pc and the closest point of O in po
+	private final void corners( final double[] uc, final double[] cc, final double[] hc,
+			final double[] uo, final double[] co, final double[] ho, final double[] pc, final double[] po ) {
+		for (int k=0; k<8; k++) {
+			final double s0 = (k&1)==0? hc[0] : -hc[0], s1 = (k&2)==0? hc[1] : -hc[1], s2 = (k&4)==0? hc[2] : -hc[2];
+			final double x = cc[0] + uc[0]*s0 + uc[3]*s1 + uc[6]*s2;
+			final double y = cc[1] + uc[1]*s0 + uc[4]*s1 + uc[7]*s2;
+			final double z = cc[2] + uc[2]*s0 + uc[5]*s1 + uc[8]*s2;
+
+			// clamp the corner to O in the frame of O
+			double qx = co[0], qy = co[1], qz = co[2];
+			for (int m=0; m<3; m++) {
+				final int n = 3*m;
+				double t = (x-co[0])*uo[n] + (y-co[1])*uo[n+1] + (z-co[2])*uo[n+2];
+				t = t < -ho[m]? -ho[m] : t > ho[m]? ho[m] : t;
+				qx += uo[n]*t; qy += uo[n+1]*t; qz += uo[n+2]*t;
+			}
+			final double squared = (x-qx)*(x-qx) + (y-qy)*(y-qy) + (z-qz)*(z-qz);
+			if (squared < nearest) {
+				nearest = squared;
+				pc[0] = x; pc[1] = y; pc[2] = z;
+				po[0] = qx; po[1] = qy; po[2] = qz;
+			}
+		}
+	}
+
+	// add a contact point
+	private final void add( double px, double py, double pz, double nx, double ny, double nz, double distance ) {
+		final ContactPoint cp = points[contacts.size()];
+		cp.b1 = boxa.getBody();
+		cp.b2 = boxb.getBody();
+		cp.point.assign(px, py, pz);
+		cp.normal.assign(nx, ny, nz);
+		cp.distance = distance;
+		cp.depth = shell-distance;
+		cp.envelope = envelope;
+		cp.restitution = restitution;
+		cp.friction = friction;
+		contacts.add(cp);
+	}
+
+	@Override
+	public void remove() {/* nothing to clean up */}
+}
@@ -0,0 +1,330 @@
+/**
+ * Copyright (c) 2008-2010  Morten Silcowitz.
+ *
+ * This file is part of the Jinngine physics library
+ *
+ * Jinngine is published under the GPL license, available
+ * at http://www.gnu.org/copyleft/gpl.html.
+ */
+package jinngine.geometry.contact;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import jinngine.geometry.Box;
+import jinngine.geometry.UniformCapsule;
+import jinngine.geometry.util.ClosestPoints;
+import jinngine.math.Matrix3;
+import jinngine.math.Vector3;
+import jinngine.physics.Body;
+
+/**
+ * Analytic contact generator for capsule-box pairs, working in the frame of the box. If the capsule segment is
+ * outside the box, the closest points are found among the end points of the segment and the twelve edges of the
+ * box. If the segment intersects the box, the contact normal is the axis of least penetration among the box face
+ * normals and the cross products of the segment direction with the box axes. When the normal is a face normal, the
+ * segment is clipped against the side planes of the face, giving a contact point at each end of the clipped segment,
+ * so capsules can lie flat on boxes. Otherwise a single contact point is generated.
+ */
+public final class CapsuleBoxContactGenerator implements ContactGenerator {
+	// normals closer than this to a face normal are treated as face contacts
+	private static final double aligned = 1e-3;
+
+	// an edge axis is only used if it separates clearly more than the best face axis
+	private static final double relative = 0.98;
+	private static final double absolute = 1e-3;
+
+	// the box axes in the frame of the box
+	private static final double[] axes = new double[] { 1,0,0, 0,1,0, 0,0,1 };
+
+	// data
+	private final UniformCapsule capsule;
+	private final Box box;
+	private final boolean invertnormal;
+	private final List<ContactPoint> contacts = new ArrayList<ContactPoint>(2);
+	private final ContactPoint[] points = new ContactPoint[] { new ContactPoint(), new ContactPoint() };
+
+	// settings
+	private final double envelope;
+	private final double shell;
+	private double restitution;
+	private double friction;
+
+	// world space rotation, centre and half side lengths of the box, and the centre and unit direction
+	// of the capsule segment in the frame of the box
+	private final Matrix3 rotation = new Matrix3();
+	private final double[] centre = new double[3], h = new double[3];
+	private final double[] m = new double[3], u = new double[3];
+	private double half, radius;
+
+	// scratch data
+	private final Matrix3 capsulerotation = new Matrix3();
+	private final Vector3 displacement = new Vector3();
+	private final Vector3 dimensions = new Vector3();
+	private final double[] closest = new double[2], range = new double[2];
+	private final double[] p = new double[3], q = new double[3], n = new double[3], normal = new double[3], edge = new double[3];
+	private final double[] bestp = new double[3], bestq = new double[3];
+
+	public CapsuleBoxContactGenerator(UniformCapsule a, Box b) {
+		this(a, b, false);
+	}
+
+	/**
+	 * Alternative constructor for geometries in reversed order
+	 */
+	public CapsuleBoxContactGenerator(Box a, UniformCapsule b) {
+		this(b, a, true);
+	}
+
+	private CapsuleBoxContactGenerator(UniformCapsule capsule, Box box, boolean invertnormal) {
+		this.capsule = capsule;
+		this.box = box;
+		this.invertnormal = invertnormal;
+
+		// select the largest envelope for contact generation
+		envelope = Math.max(capsule.getEnvelope(), box.getEnvelope());
+		shell = envelope*0.5;
+	}
+
+	@Override
+	public Iterator<ContactPoint> getContacts() {
+		return contacts.iterator();
+	}
+
+	@Override
+	public void run() {
+		contacts.clear();
+
+		// select the smallest restitution and friction coefficients
+		restitution = Math.min(capsule.getRestitution(), box.getRestitution());
+		friction = Math.min(capsule.getFrictionCoefficient(), box.getFrictionCoefficient());
+
+		// box frame in world space
+		final Body body = box.getBody();
+		box.getLocalTransform(rotation, displacement);
+		Matrix3.multiply(body.state.rotation, rotation, rotation);
+		Matrix3.multiply(body.state.rotation, displacement, displacement);
+		centre[0] = displacement.x+body.state.position.x; centre[1] = displacement.y+body.state.position.y; centre[2] = displacement.z+body.state.position.z;
+		box.getDimentions(dimensions);
+		h[0] = dimensions.x*0.5; h[1] = dimensions.y*0.5; h[2] = dimensions.z*0.5;
+
+		// capsule segment in the frame of the box
+		CapsuleContactGenerator.segment(capsule, capsulerotation, displacement, p, n);
+		p[0] -= centre[0]; p[1] -= centre[1]; p[2] -= centre[2];
+		toBox(p, m);
+		toBox(n, u);
+		half = capsule.getLength()*0.5;
+		radius = capsule.getRadius();
+
+		// find contacts using the closest points, unless the segment intersects the box
+		if (clip(-1)) {
+			penetration();
+		} else {
+			separation();
+		}
+	}
+
+	// multiply v by the transposed box rotation
+	private final void toBox( final double[] v, final double[] result ) {
+		final Matrix3 R = rotation;
+		result[0] = R.a11*v[0] + R.a21*v[1] + R.a31*v[2];
+		result[1] = R.a12*v[0] + R.a22*v[1] + R.a32*v[2];
+		result[2] = R.a13*v[0] + R.a23*v[1] + R.a33*v[2];
+	}
+
+	// clip the parameter range of the segment against the slabs of the box, except for the slab of the
+	// axis given by skip. Returns true and stores the range, if the clipped segment is not empty
+	private final boolean clip( final int skip ) {
+		double low = -half, high = half;
+		for (int k=0; k<3; k++) {
+			if (k == skip)
+				continue;
+			if (Math.abs(u[k]) < 1e-12) {
+				if (Math.abs(m[k]) > h[k])
+					return false;
+			} else {
+				final double t1 = (-h[k]-m[k])/u[k], t2 = (h[k]-m[k])/u[k];
+				low = Math.max(low, Math.min(t1, t2));
+				high = Math.min(high, Math.max(t1, t2));
+			}
+		}
+		range[0] = low; range[1] = high;
+		return low <= high;
+	}
+
+	// contacts for a segment outside the box
+	private final void separation() {
+		double best = Double.POSITIVE_INFINITY;
+
+		// end points of the segment against the box
+		for (int i=0; i<2; i++) {
+			final double s = i==0? -half : half;
+			for (int k=0; k<3; k++) {
+				p[k] = m[k]+u[k]*s;
+				q[k] = p[k] < -h[k]? -h[k] : p[k] > h[k]? h[k] : p[k];
+			}
+			best = keep(best);
+		}
+
+		// the segment against the edges of the box
+		for (int k=0; k<3; k++) {
+			final int j = (k+1)%3, l = (k+2)%3;
+			for (int i=0; i<4; i++) {
+				edge[k] = 0;
+				edge[j] = (i&1)==0? -h[j] : h[j];
+				edge[l] = (i&2)==0? -h[l] : h[l];
+				ClosestPoints.segments(m, 0, u, 0, half, edge, 0, axes, 3*k, h[k], closest);
+				for (int c=0; c<3; c++) {
+					p[c] = m[c]+u[c]*closest[0];
+					q[c] = edge[c]+axes[3*k+c]*closest[1];
+				}
+				best = keep(best);
+			}
+		}
+
+		// the capsule is outside the envelope
+		final double d = Math.sqrt(best);
+		if (d-radius >= envelope)
+			return;
+
+		// the segment touches the surface of the box, and the normal is not well defined
+		if (d < 1e-12) {
+			penetration();
+			return;
+		}
+
+		// normal from the box towards the capsule
+		n[0] = (bestp[0]-bestq[0])/d; n[1] = (bestp[1]-bestq[1])/d; n[2] = (bestp[2]-bestq[2])/d;
+
+		// use face clipping if the normal is close to a face normal, and the closest point of the segment
+		// is above the face, so it is kept by the clipping
+		int k = 0;
+		for (int i=1; i<3; i++)
+			if (Math.abs(n[i]) > Math.abs(n[k]))
+				k = i;
+		final int j = (k+1)%3, l = (k+2)%3;
+		if (Math.abs(n[k]) > 1-aligned && Math.abs(bestp[j]) <= h[j] && Math.abs(bestp[l]) <= h[l] && face(k, n[k] < 0? -1 : 1))
+			return;
+
+		add(bestp, bestq, n, d-radius);
+	}
+
+	// keep the current pair of points p and q if they are closer than best. Returns the new best squared distance
+	private final double keep( final double best ) {
+		final double dx = p[0]-q[0], dy = p[1]-q[1], dz = p[2]-q[2];
+		final double d = dx*dx + dy*dy + dz*dz;
+		if (d < best) {
+			bestp[0] = p[0]; bestp[1] = p[1]; bestp[2] = p[2];
+			bestq[0] = q[0]; bestq[1] = q[1]; bestq[2] = q[2];
+			return d;
+		}
+		return best;
+	}
+
+	// contacts for a segment that intersects the box, using the axis of least penetration
+	private final void penetration() {
+		// face axes
+		double face = Double.NEGATIVE_INFINITY, facesign = 1;
+		int faceaxis = 0;
+		for (int k=0; k<3; k++) {
+			final double a = m[k]-Math.abs(u[k])*half, b = m[k]+Math.abs(u[k])*half;
+			final double positive = a-h[k], negative = -h[k]-b;
+			final double s = Math.max(positive, negative);
+			if (s > face) {
+				face = s; faceaxis = k; facesign = positive >= negative? 1 : -1;
+			}
+		}
+
+		// cross products of the segment direction with the box axes
+		double best = Double.NEGATIVE_INFINITY;
+		int edgeaxis = -1;
+		for (int k=0; k<3; k++) {
+			final int j = (k+1)%3, l = (k+2)%3;
+			// u x e_k
+			p[k] = 0; p[j] = u[l]; p[l] = -u[j];
+			final double length = Math.sqrt(p[0]*p[0]+p[1]*p[1]+p[2]*p[2]);
+			if (length < 1e-6)
+				continue;
+			final double projection = (p[0]*m[0]+p[1]*m[1]+p[2]*m[2])/length;
+			final double s = Math.abs(projection) - (h[j]*Math.abs(p[j]) + h[l]*Math.abs(p[l]))/length;
+			if (s > best) {
+				best = s; edgeaxis = k;
+				final double sign = projection < 0? -1/length : 1/length;
+				n[0] = p[0]*sign; n[1] = p[1]*sign; n[2] = p[2]*sign;
+			}
+		}
+
+		if (edgeaxis >= 0 && best > face + (1-relative)*Math.abs(face) + absolute) {
+			// the box edge along the axis that is extremal along the normal
+			final int k = edgeaxis;
+			for (int c=0; c<3; c++)
+				edge[c] = c==k? 0 : n[c] < 0? -h[c] : h[c];
+			ClosestPoints.segments(m, 0, u, 0, half, edge, 0, axes, 3*k, h[k], closest);
+			for (int c=0; c<3; c++) {
+				p[c] = m[c]+u[c]*closest[0];
+				q[c] = edge[c]+axes[3*k+c]*closest[1];
+			}
+			add(p, q, n, (p[0]-q[0])*n[0] + (p[1]-q[1])*n[1] + (p[2]-q[2])*n[2] - radius);
+		} else {
+			face(faceaxis, facesign);
+		}
+	}
+
+	// clip the segment against the side planes of the face with normal sign times axis k, and add a contact
+	// point at each end of the clipped segment. Returns false if no contact points were added
+	private final boolean face( final int k, final double sign ) {
+		if (!clip(k))
+			return false;
+
+		normal[0] = 0; normal[1] = 0; normal[2] = 0; normal[k] = sign;
+
+		// a short clipped segment only gets a contact point at its end closest to the face
+		final int size = contacts.size();
+		int first = 0, last = 1;
+		if (range[1]-range[0] < envelope) {
+			if (u[k]*sign < 0) first = 1; else last = 0;
+		}
+		for (int i=first; i<=last; i++) {
+			final double s = range[i];
+			for (int c=0; c<3; c++)
+				p[c] = q[c] = m[c]+u[c]*s;
+			q[k] = sign*h[k];
+			final double distance = sign*p[k] - h[k] - radius;
+			if (distance < envelope)
+				add(p, q, normal, distance);
+		}
+		return contacts.size() > size;
+	}
+
+	// add a contact point, given the point on the segment, the point on the box and the normal from the box
+	// towards the capsule, all in the frame of the box
+	private final void add( final double[] p, final double[] q, final double[] n, final double distance ) {
+		final ContactPoint cp = points[contacts.size()];
+		final Matrix3 R = rotation;
+
+		// points on the capsule and on the box in world space
+		final Vector3 pc = invertnormal? cp.pbw : cp.paw;
+		final Vector3 pb = invertnormal? cp.paw : cp.pbw;
+		final double x = p[0]-n[0]*radius, y = p[1]-n[1]*radius, z = p[2]-n[2]*radius;
+		pc.assign(R.a11*x + R.a12*y + R.a13*z + centre[0], R.a21*x + R.a22*y + R.a23*z + centre[1], R.a31*x + R.a32*y + R.a33*z + centre[2]);
+		pb.assign(R.a11*q[0] + R.a12*q[1] + R.a13*q[2] + centre[0], R.a21*q[0] + R.a22*q[1] + R.a23*q[2] + centre[1], R.a31*q[0] + R.a32*q[1] + R.a33*q[2] + centre[2]);
+		cp.point.assign((pc.x+pb.x)*0.5, (pc.y+pb.y)*0.5, (pc.z+pb.z)*0.5);
+
+		//invert the normal if geometries came in reverse order
+		final double sign = invertnormal? -1 : 1;
+		cp.normal.assign((R.a11*n[0] + R.a12*n[1] + R.a13*n[2])*sign, (R.a21*n[0] + R.a22*n[1] + R.a23*n[2])*sign, (R.a31*n[0] + R.a32*n[1] + R.a33*n[2])*sign);
+		cp.b1 = invertnormal? box.getBody() : capsule.getBody();
+		cp.b2 = invertnormal? capsule.getBody() : box.getBody();
+
+		cp.distance = distance;
+		cp.depth = shell-distance;
+		cp.envelope = envelope;
+		cp.restitution = restitution;
+		cp.friction = friction;
+		contacts.add(cp);
+	}
+
+	@Override
+	public void remove() {/* nothing to clean up */}
+}
@@ -0,0 +1,162 @@
+/**
+ * Copyright (c) 2008-2010  Morten Silcowitz.
+ *
+ * This file is part of the Jinngine physics library
+ *
+ * Jinngine is published under the GPL license, available
+ * at http://www.gnu.org/copyleft/gpl.html.
+ */
+package jinngine.geometry.contact;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import jinngine.geometry.UniformCapsule;
+import jinngine.geometry.util.ClosestPoints;
+import jinngine.math.Matrix3;
+import jinngine.math.Vector3;
+import jinngine.physics.Body;
+
+/**
+ * Analytic contact generator for pairs of capsules. A capsule is a segment swept by a sphere, so contacts are
+ * found from the closest points of the two segments, in closed form. Capsules that are almost parallel, such as
+ * capsules lying side by side, are given a contact point at each end of the overlap of the segments, so they can
+ * rest on each other. The contact normal points from capsule B towards capsule A.
+ */
+public final class CapsuleContactGenerator implements ContactGenerator {
+	// segments are treated as parallel, when the sine of the angle between them is below this
+	private static final double parallel = 1e-2;
+
+	// data
+	private final UniformCapsule capsulea, capsuleb;
+	private final List<ContactPoint> contacts = new ArrayList<ContactPoint>(2);
+	private final ContactPoint[] points = new ContactPoint[] { new ContactPoint(), new ContactPoint() };
+
+	// settings
+	private final double envelope;
+	private final double shell;
+	private double restitution;
+	private double friction;
+
+	// world space centres and unit directions of the capsule segments
+	private final double[] ca = new double[3], cb = new double[3];
+	private final double[] ua = new double[3], ub = new double[3];
+
+	// scratch data
+	private final Matrix3 rotation = new Matrix3();
+	private final Vector3 displacement = new Vector3();
+	private final double[] closest = new double[2];
+	private final double[] pa = new double[3], pb = new double[3], n = new double[3];
+
+	public CapsuleContactGenerator(UniformCapsule a, UniformCapsule b) {
+		this.capsulea = a;
+		this.capsuleb = b;
+
+		// select the largest envelope for contact generation
+		envelope = Math.max(a.getEnvelope(), b.getEnvelope());
+		shell = envelope*0.5;
+	}
+
+	@Override
+	public Iterator<ContactPoint> getContacts() {
+		return contacts.iterator();
+	}
+
+	@Override
+	public void run() {
+		contacts.clear();
+
+		// select the smallest restitution and friction coefficients
+		restitution = Math.min(capsulea.getRestitution(), capsuleb.getRestitution());
+		friction = Math.min(capsulea.getFrictionCoefficient(), capsuleb.getFrictionCoefficient());
+
+		// segments in world space
+		segment(capsulea, rotation, displacement, ca, ua);
+		segment(capsuleb, rotation, displacement, cb, ub);
+		final double ha = capsulea.getLength()*0.5, hb = capsuleb.getLength()*0.5;
+		final double b = ua[0]*ub[0] + ua[1]*ub[1] + ua[2]*ub[2];
+
+		if (1-b*b < parallel*parallel) {
+			// overlap of the segments along the direction of A
+			final double centre = ua[0]*(cb[0]-ca[0]) + ua[1]*(cb[1]-ca[1]) + ua[2]*(cb[2]-ca[2]);
+			final double extent = Math.abs(b)*hb;
+			final double low = Math.max(-ha, centre-extent), high = Math.min(ha, centre+extent);
+
+			if (high-low > envelope) {
+				contact(low);
+				contact(high);
+				return;
+			}
+		}
+
+		ClosestPoints.segments(ca, 0, ua, 0, ha, cb, 0, ub, 0, hb, closest);
+		contact(closest[0]);
+	}
+
+	// compute the world space centre and unit direction of the segment of the given capsule
+	static void segment( final UniformCapsule capsule, final Matrix3 rotation, final Vector3 displacement,
+			final double[] c, final double[] u ) {
+		final Body body = capsule.getBody();
+		capsule.getLocalTransform(rotation, displacement);
+		Matrix3.multiply(body.state.rotation, rotation, rotation);
+		Matrix3.multiply(body.state.rotation, displacement, displacement);
+
+		// the capsule is aligned with its local z axis
+		final Vector3 position = body.state.position;
+		c[0] = displacement.x+position.x; c[1] = displacement.y+position.y; c[2] = displacement.z+position.z;
+		u[0] = rotation.a13; u[1] = rotation.a23; u[2] = rotation.a33;
+	}
+
+	// store a unit vector orthogonal to u in n
+	static void orthogonal( final double[] u, final double[] n ) {
+		// cross u with the coordinate axis that is most orthogonal to u
+		final double x = Math.abs(u[0]), y = Math.abs(u[1]), z = Math.abs(u[2]);
+		if (x <= y && x <= z) {
+			n[0] = 0; n[1] = u[2]; n[2] = -u[1];
+		} else if (y <= z) {
+			n[0] = -u[2]; n[1] = 0; n[2] = u[0];
+		} else {
+			n[0] = u[1]; n[1] = -u[0]; n[2] = 0;
+		}
+		final double length = Math.sqrt(n[0]*n[0]+n[1]*n[1]+n[2]*n[2]);
+		n[0] /= length; n[1] /= length; n[2] /= length;
+	}
+
+	// add a contact between the point at parameter s on the segment of A, and the closest point on the segment of B
+	private final void contact( final double s ) {
+		final double ra = capsulea.getRadius(), rb = capsuleb.getRadius();
+		pa[0] = ca[0]+ua[0]*s; pa[1] = ca[1]+ua[1]*s; pa[2] = ca[2]+ua[2]*s;
+		final double t = ClosestPoints.point(cb, 0, ub, 0, capsuleb.getLength()*0.5, pa);
+		pb[0] = cb[0]+ub[0]*t; pb[1] = cb[1]+ub[1]*t; pb[2] = cb[2]+ub[2]*t;
+
+		// normal from B to A. If the segments touch, any direction orthogonal to A will do
+		n[0] = pa[0]-pb[0]; n[1] = pa[1]-pb[1]; n[2] = pa[2]-pb[2];
+		final double d = Math.sqrt(n[0]*n[0]+n[1]*n[1]+n[2]*n[2]);
+		if (d > 1e-12) {
+			n[0] /= d; n[1] /= d; n[2] /= d;
+		} else {
+			orthogonal(ua, n);
+		}
+
+		final double distance = d-ra-rb;
+		if (distance < envelope) {
+			final ContactPoint cp = points[contacts.size()];
+			cp.b1 = capsulea.getBody();
+			cp.b2 = capsuleb.getBody();
+			cp.paw.assign(pa[0]-n[0]*ra, pa[1]-n[1]*ra, pa[2]-n[2]*ra);
+			cp.pbw.assign(pb[0]+n[0]*rb, pb[1]+n[1]*rb, pb[2]+n[2]*rb);
+			cp.point.assign((cp.paw.x+cp.pbw.x)*0.5, (cp.paw.y+cp.pbw.y)*0.5, (cp.paw.z+cp.pbw.z)*0.5);
+			cp.normal.assign(n[0], n[1], n[2]);
+			cp.distance = distance;
+			cp.depth = shell-distance;
+			cp.envelope = envelope;
+			cp.restitution = restitution;
+			cp.friction = friction;
+			contacts.add(cp);
+		}
+	}
+
+	@Override
+	public void remove() {/* nothing to clean up */}
+}
@@ -0,0 +1,123 @@
+/**
+ * Copyright (c) 2008-2010  Morten Silcowitz.
+ *
+ * This file is part of the Jinngine physics library
+ *
+ * Jinngine is published under the GPL license, available
+ * at http://www.gnu.org/copyleft/gpl.html.
+ */
+package jinngine.geometry.contact;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import jinngine.geometry.Sphere;
+import jinngine.geometry.UniformCapsule;
+import jinngine.geometry.util.ClosestPoints;
+import jinngine.math.Matrix3;
+import jinngine.math.Vector3;
+import jinngine.physics.Body;
+
+/**
+ * Analytic contact generator for capsule-sphere pairs. The single contact point is found from the point on
+ * the capsule segment that is closest to the sphere centre, in closed form. The envelope of the capsule is used,
+ * because the envelope of a sphere only pads its bounding box.
+ */
+public final class CapsuleSphereContactGenerator implements ContactGenerator {
+	// data
+	private final UniformCapsule capsule;
+	private final Sphere sphere;
+	private final List<ContactPoint> contacts = new ArrayList<ContactPoint>(1);
+	private final ContactPoint cp = new ContactPoint();
+	private final boolean invertnormal;
+
+	// settings
+	private final double envelope;
+	private final double shell;
+
+	// world space segment of the capsule and centre of the sphere
+	private final double[] c = new double[3], u = new double[3], x = new double[3];
+
+	// scratch data
+	private final Matrix3 rotation = new Matrix3();
+	private final Vector3 displacement = new Vector3();
+	private final double[] n = new double[3];
+
+	public CapsuleSphereContactGenerator(UniformCapsule a, Sphere b) {
+		this(a, b, false);
+	}
+
+	/**
+	 * Alternative constructor for geometries in reversed order
+	 */
+	public CapsuleSphereContactGenerator(Sphere a, UniformCapsule b) {
+		this(b, a, true);
+	}
+
+	private CapsuleSphereContactGenerator(UniformCapsule capsule, Sphere sphere, boolean invertnormal) {
+		this.capsule = capsule;
+		this.sphere = sphere;
+		this.invertnormal = invertnormal;
+		envelope = capsule.getEnvelope();
+		shell = envelope*0.5;
+	}
+
+	@Override
+	public Iterator<ContactPoint> getContacts() {
+		return contacts.iterator();
+	}
+
+	@Override
+	public void run() {
+		contacts.clear();
+
+		// capsule segment and sphere centre in world space
+		CapsuleContactGenerator.segment(capsule, rotation, displacement, c, u);
+		final Body body = sphere.getBody();
+		sphere.getLocalTranslation(displacement);
+		Matrix3.multiply(body.state.rotation, displacement, displacement);
+		x[0] = displacement.x+body.state.position.x; x[1] = displacement.y+body.state.position.y; x[2] = displacement.z+body.state.position.z;
+
+		// closest point on the segment, and the normal from the sphere towards the capsule
+		final double s = ClosestPoints.point(c, 0, u, 0, capsule.getLength()*0.5, x);
+		final double px = c[0]+u[0]*s, py = c[1]+u[1]*s, pz = c[2]+u[2]*s;
+		n[0] = px-x[0]; n[1] = py-x[1]; n[2] = pz-x[2];
+		final double d = Math.sqrt(n[0]*n[0]+n[1]*n[1]+n[2]*n[2]);
+		if (d > 1e-12) {
+			n[0] /= d; n[1] /= d; n[2] /= d;
+		} else {
+			CapsuleContactGenerator.orthogonal(u, n);
+		}
+
+		final double rc = capsule.getRadius(), rs = sphere.getRadius();
+		final double distance = d-rc-rs;
+		if (distance >= envelope)
+			return;
+
+		// points on the capsule and on the sphere
+		final Vector3 pc = invertnormal? cp.pbw : cp.paw;
+		final Vector3 ps = invertnormal? cp.paw : cp.pbw;
+		pc.assign(px-n[0]*rc, py-n[1]*rc, pz-n[2]*rc);
+		ps.assign(x[0]+n[0]*rs, x[1]+n[1]*rs, x[2]+n[2]*rs);
+		cp.point.assign((pc.x+ps.x)*0.5, (pc.y+ps.y)*0.5, (pc.z+ps.z)*0.5);
+
+		//invert the normal if geometries came in reverse order
+		final double sign = invertnormal? -1 : 1;
+		cp.normal.assign(n[0]*sign, n[1]*sign, n[2]*sign);
+		cp.b1 = invertnormal? body : capsule.getBody();
+		cp.b2 = invertnormal? capsule.getBody() : body;
+
+		cp.distance = distance;
+		cp.depth = shell-distance;
+		cp.envelope = envelope;
+
+		//select the smallest restitution and friction coefficients
+		cp.restitution = Math.min(capsule.getRestitution(), sphere.getRestitution());
+		cp.friction = Math.min(capsule.getFrictionCoefficient(), sphere.getFrictionCoefficient());
+		contacts.add(cp);
+	}
+
+	@Override
+	public void remove() {/* nothing to clean up */}
+}
@@ -0,0 +1,22 @@
+/**
+ * Copyright (c) 2008-2010  Morten Silcowitz.
+ *
+ * This file is part of the Jinngine physics library
+ *
+ * Jinngine is published under the GPL license, available 
+ * at http://www.gnu.org/copyleft/gpl.html. 
+ */
+package jinngine.geometry.contact;
+
+/**
+ * A {@link ContactGenerator} that reports the number of GJK iterations used by its geometry pair in the 
+ * last call to run(). The scene collects these counts into its {@link jinngine.physics.SceneMetrics}.
+ */
+public interface MonitoredContactGenerator extends ContactGenerator {
+	
+	/**
+	 * Return the number of GJK iterations performed in the last call to run(), including the iterations 
+	 * of any ray casts used to find the penetration depth. Zero if GJK was not run
+	 */
+	public int getIterations();
+}
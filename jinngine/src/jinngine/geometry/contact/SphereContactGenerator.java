@@ -12,6 +12,7 @@ import java.util.Iterator;
 import jinngine.geometry.Material;
 import jinngine.geometry.Sphere;
 import jinngine.math.*;
+import jinngine.physics.Body;
 
 /**
  * Simple, fast, sphere-sphere contact generator.
@@ -85,11 +86,20 @@ public class SphereContactGenerator implements ContactGenerator {
 		};
 	}
 
+	// centre of the given sphere in world space
+	private static final Vector3 centre( Sphere s ) {
+		Body b = s.getBody();
+		Vector3 displacement = new Vector3();
+		s.getLocalTransform(new Matrix3(), displacement);
+		return Matrix3.multiply(b.state.rotation, displacement, displacement).add(b.state.position);
+	}
+
 	@Override
 	public void run() {
-		// sphere centres in world space
-		Vector3 caw = s1.getTransform().multiply(new Vector3());
-		Vector3 cbw = s2.getTransform().multiply(new Vector3());
+		// sphere centres in world space. The sphere transforms are not used, because they
+		// are cached inside the sphere geometries, and contact generators may run concurrently
+		Vector3 caw = centre(s1);
+		Vector3 cbw = centre(s2);
 
 		// contact normal
 		Vector3 normal = caw.sub(cbw).normalize();
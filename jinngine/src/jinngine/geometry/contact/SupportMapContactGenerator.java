@@ -24,7 +24,7 @@ import jinngine.math.Matrix3;
 import jinngine.math.Vector3;
 import jinngine.util.GramSchmidt;
 
-public final class SupportMapContactGenerator implements ContactGenerator {
+public final class SupportMapContactGenerator implements MonitoredContactGenerator {
 	// data
 	private final SupportMap3 Sa, Sb;
 	private final Geometry ga, gb;
@@ -38,8 +38,8 @@ public final class SupportMapContactGenerator implements ContactGenerator {
 
 	// settings
 	private final double epsilon = 1e-7;
-	private final double envelope;
-	private final double shell;
+	private double envelope;
+	private double shell;
 	private double restitution;
 	private double friction;
 	private final double spa;
@@ -48,6 +48,19 @@ public final class SupportMapContactGenerator implements ContactGenerator {
 	// distance algorithms
 	private final GJK gjk = new GJK();
 	private final RayCast raycast = new RayCast();
+	private int iterations = 0;
+	
+	// scratch vectors for support points
+	private final Vector3 negated = new Vector3();
+	private final Vector3 supporta = new Vector3();
+	private final Vector3 supportb = new Vector3();
+	
+	// separating axis cache. When the pair is found to be separated by more than the envelope, a unit axis 
+	// from B to A is kept. GJK is skipped as long as the gap between the supporting planes of A and B along 
+	// the axis exceeds the envelope. The gap is evaluated with the current support mappings, so it follows 
+	// changes to the bodies, the local transforms and the shapes of the geometries, as well as the envelope
+	private boolean separated = false;
+	private final Vector3 axis = new Vector3();
 
 	public SupportMapContactGenerator(SupportMap3 sa, Geometry ga, SupportMap3 sb, Geometry gb) {
 		this.Sa = sa;
@@ -59,7 +72,11 @@ public final class SupportMapContactGenerator implements ContactGenerator {
 		this.spa =  Sa.sphereSweepRadius();
 		this.spb =  Sb.sphereSweepRadius();
 		
-		// select the largest envelope for contact generation
+		envelope();
+	}
+	
+	// select the largest envelope for contact generation
+	private final void envelope() {
 		if  ( gb.getEnvelope() > ga.getEnvelope() ) {
 			envelope = gb.getEnvelope();
 			shell = envelope*0.5;
@@ -69,6 +86,11 @@ public final class SupportMapContactGenerator implements ContactGenerator {
 		}
 	}
 	
+	@Override
+	public int getIterations() {
+		return iterations;
+	}
+	
 	@Override
 	public Iterator<ContactPoint> getContacts() {
 		return contacts.iterator();
@@ -76,6 +98,18 @@ public final class SupportMapContactGenerator implements ContactGenerator {
 
 	@Override
 	public void run() {		
+		// the envelope of either geometry can have changed since the last run
+		envelope();
+		
+		// skip gjk if the pair is still separated along the cached axis. Contacts was cleared when the pair was found separated
+		if (separated) {
+			if (gap() > 0) {
+				iterations = 0;
+				return;
+			}
+			separated = false;
+		}
+		
 		//select the smallest restitution and friction coefficients 
 		if ( ga instanceof Material && gb instanceof Material) {
 			double ea = ((Material)ga).getRestitution();
@@ -101,6 +135,7 @@ public final class SupportMapContactGenerator implements ContactGenerator {
 		// we must know is the distance is less than the envelope 
 		// plus sphere sweep radius for both geometries
 		gjk.run(Sa, Sb, pa, pb, envelope+spa+spb, epsilon, 32);
+		iterations = gjk.getState().iterations;
 		
 		// if objects are intersecting
 		if (gjk.getState().intersection) {
@@ -122,9 +157,13 @@ public final class SupportMapContactGenerator implements ContactGenerator {
 
 			// compute the largest possible starting lambda, based on 
 			// the support of A-B along the ray direction
-			Vector3 sp = Sa.supportPoint(direction.negate()).sub(Sb.supportPoint(direction));
-			double lambda = direction.dot(sp)/direction.dot(direction)-envelope/direction.norm();
+			negated.assign(-direction.x, -direction.y, -direction.z);
+			Sa.supportPoint(negated, supporta);
+			Sb.supportPoint(direction, supportb);
+			Vector3.sub(supporta, supportb);
+			double lambda = direction.dot(supporta)/direction.dot(direction)-envelope/direction.norm();
 			raycast.run(Sa, Sb, new Vector3(), direction, pa, pb, lambda, envelope, epsilon, false);
+			iterations += raycast.getIterations();
 			
 			// generate contact points
 			generate(pa, pb, pa.sub(pb).normalize() );
@@ -145,9 +184,29 @@ public final class SupportMapContactGenerator implements ContactGenerator {
 			// or outside envelope
 			} else {
 				contacts.clear();	
+				separate();
 			}
 		} 	
 	}
+	
+	// cache a separating axis, using the direction found by gjk. The gap along the axis is a lower bound 
+	// for the distance, even if gjk terminated early
+	private final void separate() {
+		final Vector3 v = gjk.getState().v;
+		final double length = v.norm();
+		if (!(length > 0))
+			return;
+		axis.assign(v.x/length, v.y/length, v.z/length);
+		separated = gap() > 0;
+	}
+	
+	// distance between the supporting planes of A and B along the cached axis, in excess of the envelope
+	private final double gap() {
+		negated.assign(-axis.x, -axis.y, -axis.z);
+		Sa.supportPoint(negated, supporta);
+		Sb.supportPoint(axis, supportb);
+		return axis.x*(supporta.x-supportb.x) + axis.y*(supporta.y-supportb.y) + axis.z*(supporta.z-supportb.z) - spa - spb - envelope;
+	}
 
 	private final void generate(final Vector3 a, final Vector3 b, final Vector3 v ) {
 		contacts.clear(); faceA.clear(); faceB.clear();
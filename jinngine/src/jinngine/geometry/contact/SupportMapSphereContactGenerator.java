@@ -26,7 +26,7 @@ import jinngine.physics.Body;
  * we use just the sphere centre point as supprt map for the sphere. This makes GJK behave much 
  * more regular, because the continuous shape is avoided. 
  */
-public final class SupportMapSphereContactGenerator implements ContactGenerator {
+public final class SupportMapSphereContactGenerator implements MonitoredContactGenerator {
 	// data
 	@SuppressWarnings("unused")
 	private final Body b1, b2;
@@ -49,6 +49,12 @@ public final class SupportMapSphereContactGenerator implements ContactGenerator
 	// algorithms
 	private final GJK closest = new GJK();
 	private final RayCast raycast = new RayCast();
+	private int iterations = 0;
+	
+	// scratch vectors for support points
+	private final Vector3 negated = new Vector3();
+	private final Vector3 supporta = new Vector3();
+	private final Vector3 supportb = new Vector3();
 	
 	public SupportMapSphereContactGenerator(Body b1, Geometry g1, SupportMap3 convex, Body b2, Sphere sphere) {
 		this.convex = convex;
@@ -60,6 +66,7 @@ public final class SupportMapSphereContactGenerator implements ContactGenerator
 		// SupportMap for the sphere centre
 		this.pointmap = new SupportMap3() {
 			public final Vector3 supportPoint(Vector3 direction) { return new Vector3(spherecentreworld); }
+			public final Vector3 supportPoint(Vector3 direction, Vector3 result) { return result.assign(spherecentreworld); }
 			public final void supportFeature(Vector3 d, List<Vector3> face) {}
 			public final double sphereSweepRadius() {return 0;}
 		};
@@ -85,6 +92,7 @@ public final class SupportMapSphereContactGenerator implements ContactGenerator
 		// SupportMap for the sphere centre
 		this.pointmap = new SupportMap3() {
 			public final Vector3 supportPoint(Vector3 direction) { return new Vector3(spherecentreworld); }
+			public final Vector3 supportPoint(Vector3 direction, Vector3 result) { return result.assign(spherecentreworld); }
 			public final void supportFeature(Vector3 d, List<Vector3> face) {}
 			public final double sphereSweepRadius() { return 0; }
 		};
@@ -95,6 +103,11 @@ public final class SupportMapSphereContactGenerator implements ContactGenerator
 		invertnormal = true;
 	}
 	
+	@Override
+	public final int getIterations() {
+		return iterations;
+	}
+	
 	@Override
 	public final Iterator<ContactPoint> getContacts() {
 		return new Iterator<ContactPoint>() {
@@ -145,6 +158,7 @@ public final class SupportMapSphereContactGenerator implements ContactGenerator
 
 		// run GJK
 		closest.run(convex, pointmap, cp.paw, cp.pbw, sphere.getRadius()+envelope, epsilon, 31); //notice the envelope size
+		iterations = closest.getState().iterations;
 				
 		// penetration
 		if ( closest.getState().simplexSize > 3  || cp.paw.sub(cp.pbw).norm() < 1e-7 ) {
@@ -162,9 +176,13 @@ public final class SupportMapSphereContactGenerator implements ContactGenerator
 
 			// compute the largest possible starting lambda, based on 
 			// the support of A-B along the ray direction
-			Vector3 sp = convex.supportPoint(direction.negate()).sub(pointmap.supportPoint(direction));
-			double lambda = direction.dot(sp)/direction.dot(direction)-envelope/direction.norm();
+			negated.assign(-direction.x, -direction.y, -direction.z);
+			convex.supportPoint(negated, supporta);
+			pointmap.supportPoint(direction, supportb);
+			Vector3.sub(supporta, supportb);
+			double lambda = direction.dot(supporta)/direction.dot(direction)-envelope/direction.norm();
 			raycast.run(convex, pointmap, new Vector3(), direction, cp.paw, cp.pbw, lambda, sphere.getRadius()+envelope, epsilon, false);
+			iterations += raycast.getIterations();
 
 			// cp.paw is the point on the convex shape
 			// pb-pa is the normal direction
@@ -0,0 +1,67 @@
+/**
+ * Copyright (c) 2008-2010  Morten Silcowitz.
+ *
+ * This file is part of the Jinngine physics library
+ *
+ * Jinngine is published under the GPL license, available
+ * at http://www.gnu.org/copyleft/gpl.html.
+ */
+package jinngine.geometry.util;
+
+/**
+ * Closed form closest points of line segments and points. A segment is given by its centre c, a unit direction u
+ * and a half length h, and its points are c + s u, for s in [-h,h]. Vectors are given as arrays, where the x,y,z
+ * components of a vector are found at index k, k+1 and k+2. Results are returned as segment parameters s.
+ */
+public final class ClosestPoints {
+
+	private ClosestPoints() {}
+
+	/**
+	 * Return the parameter of the point on the segment closest to the point x
+	 * @param c array containing the segment centre at index k
+	 * @param u array containing the unit segment direction at index l
+	 * @param h half length of the segment
+	 * @param x the point
+	 */
+	public static double point( final double[] c, final int k, final double[] u, final int l, final double h, final double[] x ) {
+		final double s = u[l]*(x[0]-c[k]) + u[l+1]*(x[1]-c[k+1]) + u[l+2]*(x[2]-c[k+2]);
+		return s < -h? -h : s > h? h : s;
+	}
+
+	/**
+	 * Find the parameters of the closest points of two segments. The parameter of the first segment is written into
+	 * result[0] and that of the second segment into result[1]. For parallel segments, one of the pairs of closest points
+	 * is returned. Algorithm from Ericson 2005, "Real-Time Collision Detection", adapted to centred segments
+	 * @param p array containing the centre of the first segment at index k
+	 * @param u array containing the unit direction of the first segment at index l
+	 * @param hp half length of the first segment
+	 * @param q array containing the centre of the second segment at index m
+	 * @param v array containing the unit direction of the second segment at index n
+	 * @param hq half length of the second segment
+	 * @param result receives the parameters of the closest points
+	 */
+	public static void segments( final double[] p, final int k, final double[] u, final int l, final double hp,
+			final double[] q, final int m, final double[] v, final int n, final double hq, final double[] result ) {
+		final double rx = p[k]-q[m], ry = p[k+1]-q[m+1], rz = p[k+2]-q[m+2];
+		final double b = u[l]*v[n] + u[l+1]*v[n+1] + u[l+2]*v[n+2];
+		final double c = u[l]*rx + u[l+1]*ry + u[l+2]*rz;
+		final double f = v[n]*rx + v[n+1]*ry + v[n+2]*rz;
+
+		// closest point on the line of the first segment, clamped to the segment. Parallel
+		// segments start from the centre of the first segment
+		final double denominator = 1-b*b;
+		double s = denominator > 1e-12? (b*f-c)/denominator : 0;
+		s = s < -hp? -hp : s > hp? hp : s;
+
+		// closest point on the second segment, and if it was clamped, recompute the first point
+		double t = f + b*s;
+		if (t < -hq || t > hq) {
+			t = t < -hq? -hq : hq;
+			s = b*t - c;
+			s = s < -hp? -hp : s > hp? hp : s;
+		}
+		result[0] = s;
+		result[1] = t;
+	}
+}
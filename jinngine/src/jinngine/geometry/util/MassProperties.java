@@ -21,9 +21,10 @@ public class MassProperties {
 		this.masslimit = masslimit;
 		
 		// start subdivision using initial bounding box
-		divide( Sa.supportPoint(new Vector3(1,0,0)).x, Sa.supportPoint(new Vector3(-1,0,0)).x,
-				Sa.supportPoint(new Vector3(0,1,0)).y, Sa.supportPoint(new Vector3(0,-1,0)).y,     
-				Sa.supportPoint(new Vector3(0,0,1)).z, Sa.supportPoint(new Vector3(0,0,-1)).z, 0 );
+		final Vector3 p = new Vector3();
+		divide( Sa.supportPoint(new Vector3(1,0,0), p).x, Sa.supportPoint(new Vector3(-1,0,0), p).x,
+				Sa.supportPoint(new Vector3(0,1,0), p).y, Sa.supportPoint(new Vector3(0,-1,0), p).y,     
+				Sa.supportPoint(new Vector3(0,0,1), p).z, Sa.supportPoint(new Vector3(0,0,-1), p).z, 0 );
 //		System.out.println("calculated mass " + totalmass);
 		
 		// finalise calculation of centre of mass
@@ -59,6 +60,9 @@ public class MassProperties {
 				double sv3 = v.z<0?zmin:zmax;
 				return new Vector3(sv1, sv2, sv3);
 			}
+			public final Vector3 supportPoint(Vector3 v, Vector3 result) {
+				return result.assign(v.x<0?xmin:xmax, v.y<0?ymin:ymax, v.z<0?zmin:zmax);
+			}
 			public final void supportFeature(Vector3 d, List<Vector3> face) {}
 			public final double sphereSweepRadius() {return 0;}
 		};
@@ -126,6 +130,7 @@ public class MassProperties {
 		final Vector3 point = new Vector3();
 		SupportMap3 Sb = new SupportMap3() {
 			public final Vector3 supportPoint(Vector3 v) { return point; }
+			public final Vector3 supportPoint(Vector3 v, Vector3 result) { return result.assign(point); }
 			public final void supportFeature(Vector3 d, List<Vector3> face) {}
 			public final double sphereSweepRadius() {return 0;}
 		};
@@ -20,6 +20,10 @@ import jinngine.math.*;
 public final class Body {
 	// global public name
 	public final String identifier;
+	
+	// dense integer id, assigned when the body is added to a scene, and -1 otherwise. 
+	// Ids are reused after bodies are removed, and are used to key pairs of bodies
+	public int                         id = -1;
 
 	// delta velocities. these vectors contains the time integrated force
 	// contributions for the current time-step. The first two is the internal
@@ -40,6 +44,7 @@ public final class Body {
 	public final Vector3               auxDeltaOmega = new Vector3();
 	public final Vector3               auxDeltav2 = new Vector3();
 	public final Vector3               auxDeltaOmega2 = new Vector3();
+	public int                         auxIndex = -1;
 
 	// physical state of body
 	public final State state = new State();
@@ -291,6 +296,9 @@ public final class Body {
 
 		// affine transform
 		Matrix4.multiply(Transforms.rotateAndTranslate4( state.orientation, state.position), state.transform, state.transform);
+		
+		// invalidate world space transforms cached by geometries
+		state.transformations++;
 	}
 	
 	/**
@@ -353,8 +361,8 @@ public final class Body {
 	 * @param dt time-step size
 	 */
 	public final void applyForce( Vector3 point, Vector3 f, double dt ) {
-		// fixed bodies are unaffected by external forces
-		if (!isFixed()) { 
+		// fixed and deactivated bodies are unaffected by external forces
+		if (!isFixed() && !deactivated) { 
 			//apply directly to delta velocities
 			Vector3.add(this.externaldeltavelocity, state.inverseanisotropicmass.multiply(f.multiply(dt)));
 			Vector3.add(this.externaldeltaomega, state.inverseinertia.multiply(point.cross(f)).multiply(dt));
@@ -368,8 +376,8 @@ public final class Body {
 	 * @param dt time-step size
 	 */	
 	public final void applyGeneralizedForce( Vector3 f, Vector3 tau, double dt ) {
-		// fixed bodies are unaffected by external forces
-		if (!isFixed()) { 
+		// fixed and deactivated bodies are unaffected by external forces
+		if (!isFixed() && !deactivated) { 
 			//apply directly to delta velocities
 			Vector3.add(this.externaldeltavelocity, state.inverseanisotropicmass.multiply(f.multiply(dt)));
 			Vector3.add(this.externaldeltaomega, state.inverseinertia.multiply(tau.multiply(dt)));
@@ -8,14 +8,20 @@
  */
 package jinngine.physics;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import jinngine.physics.constraint.*;
+import jinngine.physics.constraint.contact.ContactConstraint;
 import jinngine.physics.constraint.contact.ContactConstraintManager;
 import jinngine.physics.constraint.contact.DefaultContactConstraintManager;
 import jinngine.physics.solver.*;
 import jinngine.physics.solver.Solver.NCPConstraint;
 import jinngine.collision.*;
 import jinngine.geometry.*;
+import jinngine.geometry.contact.ContactGenerator;
+import jinngine.geometry.contact.MonitoredContactGenerator;
+import jinngine.math.Vector3;
 import jinngine.physics.force.*;
 import jinngine.util.*;
 
@@ -29,6 +35,16 @@ public final class DefaultScene implements Scene {
 	// bodies in model
 	public final List<Body> bodies = new ArrayList<Body>();
 	
+	// bodies that are not deactivated. Only these bodies are visited in each time-step
+	private final Set<Body> awake = new LinkedHashSet<Body>();
+	
+	// dense ids for bodies and geometries, reusing ids released by removed objects
+	private final IdPool bodyids = new IdPool();
+	private final IdPool geometryids = new IdPool();
+	
+	// non-fixed bodies in active components, passed on to the solver
+	private final List<Body> solverbodies = new ArrayList<Body>();
+	
 	// constraints, joints and forces
 	public final List<NCPConstraint> ncpconstraints = new ArrayList<NCPConstraint>();
 	private final List<Body> ncpbodies = new ArrayList<Body>();
@@ -50,6 +66,9 @@ public final class DefaultScene implements Scene {
 	// inner class for storing data in components in constraint graph
 	public final class ConstraintGroup {
 		public boolean deactivated = false;
+		// ncp constraints and bodies of this component, filled in when islands are solved independently
+		public final List<NCPConstraint> ncpconstraints = new ArrayList<NCPConstraint>();
+		public final List<Body> bodies = new ArrayList<Body>();
 		@Override
 		public String toString() {
 			return deactivated?"deactivated":"active";
@@ -74,13 +93,13 @@ public final class DefaultScene implements Scene {
 				// all bodies from the remaining group
 				Iterator<Body> bodies = constraintGraph.getNodesInComponent(remaining);
 				while(bodies.hasNext()){
-					policy.activate(bodies.next());
+					wake(bodies.next());
 				}
 				
 				// all bodies from the leaving group
 				bodies = constraintGraph.getNodesInComponent(leaving);
 				while(bodies.hasNext()){
-					policy.activate(bodies.next());
+					wake(bodies.next());
 				}
 			}
 		}
@@ -91,11 +110,14 @@ public final class DefaultScene implements Scene {
 				// all bodies from the remaining group
 				Iterator<Body> bodies = constraintGraph.getNodesInComponent(component);
 				while(bodies.hasNext()){
-					policy.activate(bodies.next());
+					wake(bodies.next());
 				}
 				
 				// set the group activation setting
 				component.deactivated = false;
+			} else if (node.deactivated && !component.deactivated) {
+				// a sleeping body interacting with an active component is activated
+				wake(node);
 			}
 		}
 
@@ -126,6 +148,80 @@ public final class DefaultScene implements Scene {
 	
 	// time-step size
 	private double timestep = 0.08; 
+	
+	// timings and counters for each time-step
+	private final SceneMetrics metrics = new SceneMetrics();
+	
+	// fork-join pool used for solving independent components in parallel. If null, 
+	// all components are solved as one single ncp problem
+	private ForkJoinPool islandpool = null;
+	
+	// active components in the current time-step
+	private final List<ConstraintGroup> activegroups = new ArrayList<ConstraintGroup>();
+	
+	// fork-join pool used for running contact generators in parallel. If null, contact
+	// generators are run by the contact constraints, when constraints are applied
+	private ForkJoinPool narrowphasepool = null;
+	
+	// fork-join pool used for computing bounding boxes in parallel. If null, bounding 
+	// boxes are computed in the calling thread
+	private ForkJoinPool boundspool = null;
+	
+	// contact constraints in active components, used for the parallel narrow-phase
+	private final List<ContactConstraint> activecontacts = new ArrayList<ContactConstraint>();
+	
+	// fork-join task that solves a range of active components. The range is split recursively 
+	// until a single component remains, which is then solved on the executing worker thread.
+	// Components share no active bodies, because fixed bodies act as delimiters in the constraint
+	// graph. Fixed bodies can be shared, and the solvers and ConstraintBuffer.scatter() write their
+	// delta velocities from several tasks at once, without synchronization. This race is harmless only
+	// because constraints give fixed bodies zero B entries, so every task writes the same zero values.
+	private final class IslandSolveTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final int from, to;
+		
+		public IslandSolveTask(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+		
+		@Override
+		protected final void compute() {
+			if (to-from == 1) {
+				ConstraintGroup g = activegroups.get(from);
+				applyInitialSolution( g.ncpconstraints );
+				solver.solve( g.ncpconstraints, g.bodies, 1e-5 );
+			} else {
+				int middle = (from+to) >>> 1;
+				invokeAll( new IslandSolveTask(from, middle), new IslandSolveTask(middle, to));
+			}
+		}
+	}
+
+	// fork-join task that runs the contact generators of a range of contact constraints. 
+	// Contact generators only read the transforms of their geometries, and write into their 
+	// own contact point lists, so different contact constraints can be generated concurrently.
+	private final class NarrowphaseTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private static final int BATCH = 8;
+		private final int from, to;
+		
+		public NarrowphaseTask(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+		
+		@Override
+		protected final void compute() {
+			if (to-from <= BATCH) {
+				for (int i=from; i<to; i++) 
+					activecontacts.get(i).generateContacts();
+			} else {
+				int middle = (from+to) >>> 1;
+				invokeAll( new NarrowphaseTask(from, middle), new NarrowphaseTask(middle, to));
+			}
+		}
+	}
 
 	/** 
 	 * Create a new fixed time-stepping simulator 
@@ -171,12 +267,21 @@ public final class DefaultScene implements Scene {
 		// but in short, ContactConstraintManager will insert ContactConstraints into the constraintGraph, and update 
 		// these constraints. See ContactConstraintManager for more details on this.
 		
+		metrics.begin();
+		
+		// compute the bounding boxes of all active geometries, in one pass, before the 
+		// broad-phase is run. The broad-phase reads the bounding boxes from the store
+		broadphase.getBoundsStore().update(boundspool);
+		metrics.end(SceneMetrics.Phase.BOUNDS);
+		
 		// run the broad-phase collision detection (this automatically updates the contactGraph,
 		// through the BroadfaseCollisionDetection.Handler type)
 		broadphase.run();
+		metrics.end(SceneMetrics.Phase.BROADPHASE);
 				
-		// clear acting forces and delta velocities
-		for (Body bi:bodies) {
+		// clear acting forces and delta velocities. Deactivated bodies keep their external delta
+		// velocities, and forces are not applied to them, see Body.applyForce()
+		for (Body bi:awake) {
 			bi.externaldeltavelocity.assignZero();
 			bi.externaldeltaomega.assignZero();
 
@@ -186,6 +291,7 @@ public final class DefaultScene implements Scene {
 		for (Force fi: forces) {
 			fi.apply(timestep);
 		}
+		metrics.end(SceneMetrics.Phase.FORCES);
 						
 		// Process live constraints. Live constraints are constraints which is not purely
 		// a function of the velocities in the system, such as user controlled motors.
@@ -204,11 +310,20 @@ public final class DefaultScene implements Scene {
 			live.applyConstraints(ncpconstraints.listIterator(), timestep);
 			pgs.solve(ncpconstraints, ncpbodies , 1e-7);
 			
+			// sleeping bodies are not inspected by the deactivation policy, so they must
+			// be activated here, if the live constraint is changing their velocities
+			for (Body body: ncpbodies) {
+				if (body.deactivated && policy.shouldBeActivated(body)) {
+					activateBody(body);
+				}
+			}
 		} 
+		metrics.end(SceneMetrics.Phase.LIVECONSTRAINTS);
 
 		// create a special iterator to be used with constraints. Each constraint will
 		// insert its ncp-constraints into this list
 		ncpconstraints.clear();
+		activegroups.clear();
 		ListIterator<NCPConstraint> constraintIterator = ncpconstraints.listIterator();
 		
 		// iterate through groups/components in the constraint graph
@@ -238,12 +353,8 @@ public final class DefaultScene implements Scene {
 					ConstraintGroup data = g;
 					data.deactivated = false;
 					
-					// apply all constraints in interaction component
-					Iterator<Constraint> constraints = constraintGraph.getEdgesInComponent(g);
-					while (constraints.hasNext()) {
-						Constraint c = constraints.next();
-						c.applyConstraints(constraintIterator, timestep);
-					} // while
+					// constraints in the component are applied after the narrow-phase
+					activegroups.add(g);
 				} // if active found
 				else {
 					// if we don't find an active body, we mark the whole group as deactivated
@@ -253,101 +364,249 @@ public final class DefaultScene implements Scene {
 					// deactivate all bodies in component
 					bodyiter =constraintGraph.getNodesInComponent(g);
 					while (bodyiter.hasNext()) {
-						policy.deactivate(bodyiter.next());
+						sleep(bodyiter.next());
 					}
 				}
 			} // if component active
-			else {
-				// component is deactivated
-				// check if the whole component can be activated
-				Iterator<Body> bodyiter =constraintGraph.getNodesInComponent(g);
-				boolean activefound = false;
-				while (bodyiter.hasNext()) {
-					if ( policy.shouldBeActivated(bodyiter.next()) ) {
-						activefound = true;
-						break;
-					}
+			
+			// a deactivated component is sleeping. Its bodies are not inspected, and it is only 
+			// activated when an active body starts interacting with it, see the component handler 
+			// above, or when activateBody() is called
+		} //while components
+		
+		// run the narrow-phase for all active contact constraints in parallel, before
+		// constraints are applied. Otherwise, contact generation is done in applyConstraints()
+		if (narrowphasepool != null) {
+			activecontacts.clear();
+			for (ConstraintGroup g: activegroups) {
+				Iterator<Constraint> constraints = constraintGraph.getEdgesInComponent(g);
+				while (constraints.hasNext()) {
+					Constraint c = constraints.next();
+					if (c instanceof ContactConstraint)
+						activecontacts.add((ContactConstraint)c);
 				}
-				
-				if (activefound) {
-					// mark component as active
-					ConstraintGroup data = g;
-					data.deactivated = false;
-
-					// activate all bodies in component
-					bodyiter =constraintGraph.getNodesInComponent(g);
-					while (bodyiter.hasNext()) {
-						policy.activate(bodyiter.next());
-					}
-
-					
-					// apply all constraints in interaction component
-					Iterator<Constraint> constraints = constraintGraph.getEdgesInComponent(g);
-					while (constraints.hasNext()) {
-						Constraint c = constraints.next();
-						c.applyConstraints(constraintIterator, timestep);
-					} // while					
-				} // if activatable body found
-				
 			}
-		} //while components
+			
+			if (activecontacts.size() > 0)
+				narrowphasepool.invoke(new NarrowphaseTask(0, activecontacts.size()));
+		}
+		
+		// apply all constraints in active components
+		solverbodies.clear();
+		for (ConstraintGroup g: activegroups) {
+			applyComponent(g, constraintIterator);
+		}
 		
-		// handle free bodies, not in any components
+		// handle free bodies, not in any components. Sleeping free bodies are 
+		// activated when they start interacting with other bodies
 		Iterator<Body> freebodies = constraintGraph.getFreeNodes();
 		while (freebodies.hasNext()) {
 			Body body = freebodies.next();
-			if (body.deactivated) {
-				if (policy.shouldBeActivated(body)) {
-					policy.activate(body);
-				}
-			} else {
+			if (!body.deactivated) {
 				if (policy.shouldBeDeactivated(body)) {
-					policy.deactivate(body);
+					sleep(body);
 				}
 			}
 		}
 		
-		// clear acting forces and delta velocities
-		for (Body c:bodies) {
-			// clear delta velocities for active bodies. This is reflects the
-			// fact that all constraints on active bodies starts of with lambda = 0
-			// when solved
-			if (!c.deactivated) {
-				c.deltavelocity.assignZero();
-				c.deltaomega.assignZero();
-			}
+		metrics.end(SceneMetrics.Phase.CONSTRAINTS);
+		
+		// clear delta velocities for active bodies. Initial lambda values of 
+		// the constraints are applied to the delta velocities before solving
+		for (Body c:awake) {
+			c.deltavelocity.assignZero();
+			c.deltaomega.assignZero();
 		}
 		
+		// reset solver statistics, if the solver reports any
+		final SolverStatistics statistics = solver instanceof MonitoredSolver? ((MonitoredSolver)solver).getStatistics() : null;
+		if (statistics != null)
+			statistics.reset();
+		
 		// run the solver (compute delta velocities) for all 
 		// components in the constraint graph
-		solver.solve( ncpconstraints, bodies, 1e-5 );
+		int ncpsize = 0;
+		if (islandpool == null) {
+			ncpsize = ncpconstraints.size();
+			applyInitialSolution( ncpconstraints );
+			solver.solve( ncpconstraints, solverbodies, 1e-5 );
+		} else if (activegroups.size() > 0) {
+			for (ConstraintGroup g: activegroups)
+				ncpsize += g.ncpconstraints.size();
+			
+			// solve each active component as an independent ncp problem
+			islandpool.invoke(new IslandSolveTask(0, activegroups.size()));
+		}
+		metrics.end(SceneMetrics.Phase.SOLVER);
 		
 		// update triggers
 		for (Trigger trigger: triggers) {
 			trigger.update(this);
 		}
+		metrics.end(SceneMetrics.Phase.TRIGGERS);
 		
 		// go through bodies to advance velocities and positions
-		for (Body body: bodies) {
-			if ( !body.deactivated ) {
-				if ( !body.isFixed() ) {
-					if (body.deltavelocity.isNaN() || body.deltaomega.isNaN() ) 
-						throw new IllegalStateException("DefaultScene: delta velocities containes NaN");
-					if (body.externaldeltavelocity.isNaN() || body.externaldeltaomega.isNaN() ) 
-						throw new IllegalStateException("DefaultScene: external delta velocities containes NaN");
-
-					// apply delta velocities
-					body.state.velocity.assign( body.state.velocity.add( body.deltavelocity).add(body.externaldeltavelocity) );
-					body.state.omega.assign( body.state.omega.add( body.deltaomega).add(body.externaldeltaomega));
+		for (Body body: awake) {
+			if ( !body.isFixed() ) {
+				if (body.deltavelocity.isNaN() || body.deltaomega.isNaN() ) 
+					throw new IllegalStateException("DefaultScene: delta velocities containes NaN");
+				if (body.externaldeltavelocity.isNaN() || body.externaldeltaomega.isNaN() ) 
+					throw new IllegalStateException("DefaultScene: external delta velocities containes NaN");
 
-				}
+				// apply delta velocities
+				body.state.velocity.assign( body.state.velocity.add( body.deltavelocity).add(body.externaldeltavelocity) );
+				body.state.omega.assign( body.state.omega.add( body.deltaomega).add(body.externaldeltaomega));
 
-				// integrate forward on positions
-				body.advancePositions(timestep);
 			}
+
+			// integrate forward on positions
+			body.advancePositions(timestep);
 		}
+		metrics.end(SceneMetrics.Phase.INTEGRATION);
+		
+		metrics.commit(activegroups.size(), bodies.size(), awake.size(), ncpsize, 
+				statistics != null? statistics.getIterations() : -1, 
+				statistics != null? statistics.getResidual() : Double.NaN);
 	} //time-step
 
+	/**
+	 * Apply the initial lambda values of the given ncp constraints to the delta velocities of the 
+	 * involved bodies, so that delta velocities and lambda values are consistent when the solver starts. 
+	 * Constraints start out with lambda = 0, unless warm starting is used by the constraint.
+	 */
+	private static final void applyInitialSolution( List<NCPConstraint> constraints ) {
+		for (NCPConstraint ci: constraints) {
+			final double lambda = ci.lambda;
+			if (lambda != 0) {
+				Vector3.multiplyAndAdd( ci.b1, lambda, ci.body1.deltavelocity );
+				Vector3.multiplyAndAdd( ci.b2, lambda, ci.body1.deltaomega );
+				Vector3.multiplyAndAdd( ci.b3, lambda, ci.body2.deltavelocity );
+				Vector3.multiplyAndAdd( ci.b4, lambda, ci.body2.deltaomega );
+			}
+		}
+	}
+
+	/**
+	 * Apply all constraints in the given active component. If islands are solved independently, 
+	 * the ncp constraints are gathered in the component itself, along with the bodies of the 
+	 * component. Otherwise, ncp constraints are inserted using the given global iterator.
+	 */
+	private final void applyComponent( ConstraintGroup g, ListIterator<NCPConstraint> constraintIterator ) {
+		if (islandpool != null) {
+			g.ncpconstraints.clear();
+			g.bodies.clear();
+			constraintIterator = g.ncpconstraints.listIterator();
+			
+			// only non-fixed bodies are present in components
+			Iterator<Body> bodyiter = constraintGraph.getNodesInComponent(g);
+			while (bodyiter.hasNext()) {
+				g.bodies.add(bodyiter.next());
+			}
+		} else {
+			Iterator<Body> bodyiter = constraintGraph.getNodesInComponent(g);
+			while (bodyiter.hasNext()) {
+				solverbodies.add(bodyiter.next());
+			}
+		}
+		
+		Iterator<Constraint> constraints = constraintGraph.getEdgesInComponent(g);
+		while (constraints.hasNext()) {
+			Constraint c = constraints.next();
+			c.applyConstraints(constraintIterator, timestep);
+			
+			// report the gjk iterations of each geometry pair to the metrics
+			if (c instanceof ContactConstraint) {
+				Iterator<ContactGenerator> generators = ((ContactConstraint)c).getGenerators();
+				while (generators.hasNext()) {
+					ContactGenerator generator = generators.next();
+					if (generator instanceof MonitoredContactGenerator)
+						metrics.pair(((MonitoredContactGenerator)generator).getIterations());
+				}
+			}
+		} // while
+	}
+	
+	// activate a body, and insert it into the set of awake bodies
+	private final void wake( Body body ) {
+		final boolean deactivated = body.deactivated;
+		policy.activate(body);
+		if (!body.deactivated) {
+			awake.add(body);
+			
+			// put the geometries back into the broad-phase workload
+			if (deactivated) {
+				Iterator<Geometry> i = body.getGeometries();
+				while (i.hasNext())
+					broadphase.activate(i.next());
+			}
+		}
+	}
+	
+	// deactivate a body, and remove it from the set of awake bodies
+	private final void sleep( Body body ) {
+		final boolean deactivated = body.deactivated;
+		policy.deactivate(body);
+		if (body.deactivated) {
+			awake.remove(body);
+			
+			// take the geometries out of the broad-phase workload. Existing pairs are kept
+			if (!deactivated) {
+				Iterator<Geometry> i = body.getGeometries();
+				while (i.hasNext())
+					broadphase.deactivate(i.next());
+			}
+		}
+	}
+	
+	@Override
+	public final void activateBody( Body body ) {
+		ConstraintGroup g = constraintGraph.getComponent(body);
+		if (g != null) {
+			// activate the whole component
+			g.deactivated = false;
+			Iterator<Body> bodyiter = constraintGraph.getNodesInComponent(g);
+			while (bodyiter.hasNext()) {
+				wake(bodyiter.next());
+			}
+		} else {
+			wake(body);
+		}
+	}
+	
+	/**
+	 * Enable or disable solving of independent components (islands) in parallel. When a pool is given, each 
+	 * active component in the constraint graph is given its own list of ncp constraints and bodies, and the 
+	 * components are solved concurrently by the given pool. The {@link Solver} of this scene must then be 
+	 * safe to invoke concurrently on disjoint problems, which is the case for {@link ProjectedGaussSeidel} and 
+	 * {@link NonsmoothNonlinearConjugateGradient}. 
+	 * @param pool a fork-join pool to run the solver in, or null to solve all components as one problem 
+	 */
+	public final void setIslandParallelism( ForkJoinPool pool ) {
+		this.islandpool = pool;
+	}
+	
+	/**
+	 * Enable or disable parallel contact generation. When a pool is given, the contact generators of all 
+	 * contact constraints in active components are run concurrently by the given pool, before any constraints
+	 * are applied. Contact constraints will then use the contact points generated in this stage. Contact 
+	 * generators must be safe to run concurrently when they involve different geometry pairs, which is 
+	 * the case for the generators shipped with jinngine. 
+	 * @param pool a fork-join pool to run contact generators in, or null to generate contacts serially 
+	 */
+	public final void setNarrowphaseParallelism( ForkJoinPool pool ) {
+		this.narrowphasepool = pool;
+	}
+	
+	/**
+	 * Enable or disable parallel computation of bounding boxes. When a pool is given, the world space bounding 
+	 * boxes of all geometries attached to active bodies are computed concurrently by the given pool, at the 
+	 * beginning of each time-step. The broad-phase then reads the computed bounding boxes from its {@link BoundsStore}.
+	 * @param pool a fork-join pool to compute bounding boxes in, or null to compute them serially 
+	 */
+	public final void setBoundsParallelism( ForkJoinPool pool ) {
+		this.boundspool = pool;
+	}
+
 
 	@Override
 	public void addForce( Force f ) {
@@ -362,6 +621,7 @@ public final class DefaultScene implements Scene {
 	@Override
 	public void addBody( Body c) {
 		bodies.add(c);
+		assignId(c);
 		c.updateTransformations();
 		
 		// install geometries into the broad-phase collision detection
@@ -370,6 +630,30 @@ public final class DefaultScene implements Scene {
 			Geometry g = i.next();
 			broadphase.add(g);
 		}
+		
+		// new bodies start out active
+		wake(c);
+	}
+	
+	@Override
+	public void addBodies( Collection<Body> collection ) {
+		List<Geometry> geometries = new ArrayList<Geometry>();
+		for (Body c: collection) {
+			bodies.add(c);
+			assignId(c);
+			c.updateTransformations();
+			
+			Iterator<Geometry> i = c.getGeometries();
+			while (i.hasNext()) 
+				geometries.add(i.next());
+		}
+		
+		// install all geometries into the broad-phase collision detection at once
+		broadphase.addAll(geometries);
+		
+		// new bodies start out active
+		for (Body c: collection)
+			wake(c);
 	}
 	
 	@Override
@@ -394,10 +678,10 @@ public final class DefaultScene implements Scene {
 		if (c!=null) {
 			constraintGraph.removeEdge(c.getBodies());
 			
-			// force activation for affected bodies
+			// activate affected bodies
 			Pair<Body> pair = c.getBodies();
-			policy.forceActivate(pair.getFirst());
-			policy.forceActivate(pair.getSecond());
+			activateBody(pair.getFirst());
+			activateBody(pair.getSecond());
 			
 		} else {
 			throw new IllegalArgumentException("DefaultScene: attempt to remove null constraint");
@@ -414,7 +698,71 @@ public final class DefaultScene implements Scene {
 		
 		//finally remove from body list
 		bodies.remove(body);
+		awake.remove(body);
+		releaseId(body);
+	}
+
+	@Override
+	public void removeBodies( Collection<Body> collection ) {
+		//remove associated geometries from collision detection
+		List<Geometry> geometries = new ArrayList<Geometry>();
+		for (Body body: collection) {
+			Iterator<Geometry> i = body.getGeometries();
+			while (i.hasNext()) 
+				geometries.add(i.next());
+		}
+		broadphase.removeAll(geometries);
 		
+		//finally remove from body list
+		bodies.removeAll(new HashSet<Body>(collection));
+		awake.removeAll(collection);
+		for (Body body: collection)
+			releaseId(body);
+	}
+
+	// assign ids to the body and its geometries
+	private final void assignId( Body body ) {
+		body.id = bodyids.obtain();
+		Iterator<Geometry> i = body.getGeometries();
+		while (i.hasNext())
+			i.next().setId(geometryids.obtain());
+	}
+	
+	// release the ids of a removed body and its geometries, so they can be reused. This must happen
+	// after the geometries are removed from the broad-phase, because separation events refer to the ids
+	private final void releaseId( Body body ) {
+		if (body.id >= 0) {
+			bodyids.release(body.id);
+			body.id = -1;
+		}
+		Iterator<Geometry> i = body.getGeometries();
+		while (i.hasNext()) {
+			Geometry g = i.next();
+			if (g.getId() >= 0) {
+				geometryids.release(g.getId());
+				g.setId(-1);
+			}
+		}
+	}
+	
+	// pool of dense integer ids
+	private static final class IdPool {
+		private int[] free = new int[16];
+		private int freecount = 0;
+		private int next = 0;
+		
+		public final int obtain() {
+			return freecount > 0? free[--freecount] : next++;
+		}
+		
+		public final void release( int id ) {
+			if (freecount == free.length) {
+				int[] f = new int[2*free.length];
+				System.arraycopy(free, 0, f, 0, freecount);
+				free = f;
+			}
+			free[freecount++] = id;
+		}
 	}
 
 	@Override
@@ -496,5 +844,10 @@ public final class DefaultScene implements Scene {
 	public BroadphaseCollisionDetection getBroadphase() {
 		return this.broadphase;
 	}
+	
+	@Override
+	public SceneMetrics getMetrics() {
+		return this.metrics;
+	}
 
 }
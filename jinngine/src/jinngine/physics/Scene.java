@@ -8,6 +8,7 @@
  */
 package jinngine.physics;
 
+import java.util.Collection;
 import java.util.Iterator;
 
 import jinngine.collision.BroadphaseCollisionDetection;
@@ -47,6 +48,14 @@ public interface Scene {
 	 */
 	public void addBody( Body b );
 	
+	/**
+	 * Add a collection of bodies to the scene. This is equivalent to calling addBody() for each body, 
+	 * but the geometries are handed to the broad-phase in one batch, which is faster when adding many bodies 
+	 * at once, for instance when loading a level
+	 * @param bodies
+	 */
+	public void addBodies( Collection<Body> bodies );
+	
 	/**
 	 * Add a force to the scene
 	 * @param f
@@ -65,6 +74,12 @@ public interface Scene {
 	 */
 	public void removeBody( Body b );
 	
+	/**
+	 * Remove a collection of bodies from the scene
+	 * @param bodies
+	 */
+	public void removeBodies( Collection<Body> bodies );
+	
 	/** 
 	 * Remove a force from the scene
 	 * @param f
@@ -98,6 +113,15 @@ public interface Scene {
 	 */
 	public void fixBody( Body b, boolean fixed );
 	
+	/**
+	 * Activate the given body, along with all bodies it is interacting with. Deactivated (sleeping) bodies 
+	 * are not visited in time-steps, and forces are not applied to them. A sleeping body is activated when 
+	 * an active body starts interacting with it, but other changes, like moving the body or changing the 
+	 * forces acting on it, requires the body to be activated using this method.
+	 * @param b body to activate
+	 */
+	public void activateBody( Body b );
+	
 	/**
 	 * Add a live constraint. A live constraint is a {@link Constraint} that is controlled by the user
 	 * or some other control mechanism, partly or completely independent of the velocities and forces in the 
@@ -137,4 +161,9 @@ public interface Scene {
 	 * Get the broadphase collision detection system
 	 */
 	public BroadphaseCollisionDetection getBroadphase();
+	
+	/**
+	 * Get timings and counters for the time-steps taken by this scene
+	 */
+	public SceneMetrics getMetrics();
 }
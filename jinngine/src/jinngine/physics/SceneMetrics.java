@@ -0,0 +1,273 @@
+/**
+ * Copyright (c) 2008-2010  Morten Silcowitz.
+ *
+ * This file is part of the Jinngine physics library
+ *
+ * Jinngine is published under the GPL license, available
+ * at http://www.gnu.org/copyleft/gpl.html.
+ */
+package jinngine.physics;
+
+import java.util.Arrays;
+
+/**
+ * Timings and counters for the time-steps of a {@link Scene}. The scene records the time spent in each
+ * phase of a time-step, along with the size of the simulated problem. The most recent time-step is
+ * available as an immutable {@link Snapshot}, and the timings of a window of recent time-steps are kept
+ * in a {@link Histogram} per phase. Metrics can be read from another thread than the one running the
+ * simulation, for instance to export frame budget telemetry.
+ */
+public final class SceneMetrics {
+
+	/**
+	 * Phases of a time-step. TICK covers the whole time-step
+	 */
+	public enum Phase {
+		BOUNDS, BROADPHASE, FORCES, LIVECONSTRAINTS, CONSTRAINTS, SOLVER, TRIGGERS, INTEGRATION, TICK
+	}
+
+	/**
+	 * Immutable record of a single time-step
+	 */
+	public static final class Snapshot {
+		private long tick;
+		private final long[] nanos = new long[Phase.values().length];
+		private int components, bodies, activebodies, ncpconstraints;
+		private long iterations;
+		private double residual;
+		private int pairs, maxpairiterations;
+		private long pairiterations;
+
+		private Snapshot() {}
+
+		// copy the given record into this one. Only used on records that are not handed out
+		private void assign( Snapshot s ) {
+			tick = s.tick;
+			System.arraycopy(s.nanos, 0, nanos, 0, nanos.length);
+			components = s.components;
+			bodies = s.bodies;
+			activebodies = s.activebodies;
+			ncpconstraints = s.ncpconstraints;
+			iterations = s.iterations;
+			residual = s.residual;
+			pairs = s.pairs;
+			pairiterations = s.pairiterations;
+			maxpairiterations = s.maxpairiterations;
+		}
+
+		/** Sequence number of the time-step, starting at 1 */
+		public final long getTick() { return tick; }
+		/** Time spent in the given phase, in nanoseconds */
+		public final long getTime( Phase phase ) { return nanos[phase.ordinal()]; }
+		/** Number of active components in the constraint graph */
+		public final int getActiveComponents() { return components; }
+		/** Number of bodies in the scene */
+		public final int getBodies() { return bodies; }
+		/** Number of bodies that was integrated */
+		public final int getActiveBodies() { return activebodies; }
+		/** Number of ncp constraints passed to the solver */
+		public final int getNcpConstraints() { return ncpconstraints; }
+		/** Total number of solver iterations, summed over islands, or -1 if the solver does not report iterations */
+		public final long getSolverIterations() { return iterations; }
+		/** Largest final residual reported by the solver, or NaN if the solver does not report residuals */
+		public final double getSolverResidual() { return residual; }
+		/** Number of geometry pairs whose contact generators reported GJK iterations */
+		public final int getNarrowphasePairs() { return pairs; }
+		/** Total number of GJK iterations, summed over geometry pairs */
+		public final long getNarrowphaseIterations() { return pairiterations; }
+		/** Largest number of GJK iterations used by a single geometry pair */
+		public final int getMaxPairIterations() { return maxpairiterations; }
+	}
+
+	/**
+	 * Rolling window of recent samples. Samples are stored in a ring buffer, such that only the last
+	 * window samples are kept. Order statistics are computed on demand.
+	 */
+	public static final class Histogram {
+		private final long[] samples;
+		private int next = 0;
+		private int count = 0;
+
+		private Histogram( int window ) {
+			samples = new long[window];
+		}
+
+		private synchronized void record( long value ) {
+			samples[next] = value;
+			next = (next+1) % samples.length;
+			if (count < samples.length)
+				count++;
+		}
+
+		/** Number of samples in the window */
+		public synchronized int getCount() {
+			return count;
+		}
+
+		/** Mean of the samples in the window, or 0 if there are no samples */
+		public synchronized double getMean() {
+			if (count == 0) return 0;
+			double sum = 0;
+			for (int i=0; i<count; i++)
+				sum += samples[i];
+			return sum/count;
+		}
+
+		/** Largest sample in the window, or 0 if there are no samples */
+		public synchronized long getMax() {
+			long max = 0;
+			for (int i=0; i<count; i++)
+				max = Math.max(max, samples[i]);
+			return max;
+		}
+
+		/**
+		 * Return the sample at the given quantile, using the nearest rank method
+		 * @param q quantile in [0,1], for instance 0.99 for the 99th percentile
+		 * @return the sample at the quantile, or 0 if there are no samples
+		 */
+		public synchronized long getQuantile( double q ) {
+			if (count == 0) return 0;
+			if (q < 0 || q > 1)
+				throw new IllegalArgumentException("SceneMetrics: quantile must be in [0,1]");
+			final long[] sorted = Arrays.copyOf(samples, count);
+			Arrays.sort(sorted);
+			final int rank = (int)Math.ceil(q*count);
+			return sorted[Math.max(0, rank-1)];
+		}
+
+		/** Return a copy of the samples in the window, oldest first */
+		public synchronized long[] getSamples() {
+			final long[] copy = new long[count];
+			final int first = count < samples.length? 0 : next;
+			for (int i=0; i<count; i++)
+				copy[i] = samples[(first+i) % samples.length];
+			return copy;
+		}
+
+		private synchronized void clear() {
+			next = 0; count = 0;
+		}
+	}
+
+	private final Histogram[] histograms = new Histogram[Phase.values().length];
+	private final Histogram iterations;
+	private long ticks = 0;
+
+	// record of the last time-step. It is reused in every time-step, so committing does not allocate,
+	// and readers are handed a copy. Guarded by this
+	private final Snapshot last = new Snapshot();
+
+	// timing of the current time-step
+	private final long[] nanos = new long[Phase.values().length];
+	private long start, mark;
+	private int pairs, maxpairiterations;
+	private long pairiterations;
+
+	/**
+	 * Create new metrics, keeping a window of 256 time-steps
+	 */
+	public SceneMetrics() {
+		this(256);
+	}
+
+	/**
+	 * Create new metrics, keeping the given number of time-steps in the histograms
+	 */
+	public SceneMetrics( int window ) {
+		if (window < 1)
+			throw new IllegalArgumentException("SceneMetrics: window must be positive");
+		for (int i=0; i<histograms.length; i++)
+			histograms[i] = new Histogram(window);
+		iterations = new Histogram(window);
+	}
+
+	/**
+	 * Return a snapshot of the most recent time-step, or null if no time-step has been taken
+	 */
+	public final synchronized Snapshot getLastTick() {
+		if (last.tick == 0)
+			return null;
+		final Snapshot snapshot = new Snapshot();
+		snapshot.assign(last);
+		return snapshot;
+	}
+
+	/**
+	 * Return the histogram of timings for the given phase, in nanoseconds
+	 */
+	public final Histogram getHistogram( Phase phase ) {
+		return histograms[phase.ordinal()];
+	}
+
+	/**
+	 * Return the histogram of solver iterations per time-step. Only time-steps where the solver
+	 * reported iterations are included
+	 */
+	public final Histogram getIterationHistogram() {
+		return iterations;
+	}
+
+	/**
+	 * Clear all histograms
+	 */
+	public final void reset() {
+		for (Histogram h: histograms)
+			h.clear();
+		iterations.clear();
+	}
+
+	/**
+	 * Start timing a new time-step. Called by the scene
+	 */
+	public final void begin() {
+		Arrays.fill(nanos, 0);
+		pairs = 0; pairiterations = 0; maxpairiterations = 0;
+		start = mark = System.nanoTime();
+	}
+	
+	/**
+	 * Record the number of GJK iterations used by a geometry pair in the current time-step. Called by the scene
+	 */
+	public final void pair( int iterations ) {
+		pairs++;
+		pairiterations += iterations;
+		if (iterations > maxpairiterations)
+			maxpairiterations = iterations;
+	}
+
+	/**
+	 * End the given phase, which started when the previous phase ended. Called by the scene
+	 */
+	public final void end( Phase phase ) {
+		final long now = System.nanoTime();
+		nanos[phase.ordinal()] += now-mark;
+		mark = now;
+	}
+
+	/**
+	 * End the current time-step, and publish a snapshot with the given counters. Called by the scene
+	 */
+	public final void commit( int components, int bodies, int activebodies, int ncpconstraints, long solveriterations, double residual ) {
+		nanos[Phase.TICK.ordinal()] = System.nanoTime()-start;
+		for (int i=0; i<nanos.length; i++)
+			histograms[i].record(nanos[i]);
+		if (solveriterations >= 0)
+			iterations.record(solveriterations);
+
+		ticks++;
+		synchronized (this) {
+			last.tick = ticks;
+			System.arraycopy(nanos, 0, last.nanos, 0, nanos.length);
+			last.components = components;
+			last.bodies = bodies;
+			last.activebodies = activebodies;
+			last.ncpconstraints = ncpconstraints;
+			last.iterations = solveriterations;
+			last.residual = residual;
+			last.pairs = pairs;
+			last.pairiterations = pairiterations;
+			last.maxpairiterations = maxpairiterations;
+		}
+	}
+}
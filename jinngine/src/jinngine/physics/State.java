@@ -63,6 +63,8 @@ public final class State  {
 	public final Matrix3             rotation        = Matrix3.identity();
 	/** Inverse rotation matrix */	
 	public final Matrix3             inverserotation = Matrix3.identity();
+	/** Incremented whenever rotation and transform are recomputed, so geometries can cache world space transforms */
+	public int                       transformations = 0;
 	/** The centre of mass displacement found by finalize() **/
 	public final Vector3             centreofmass    = new Vector3();
 
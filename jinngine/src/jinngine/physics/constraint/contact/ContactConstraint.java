@@ -50,5 +50,15 @@ public interface ContactConstraint extends Constraint {
 	 * Return the number of contact point generators
 	 */
 	public double getNumberOfGenerators();	
+	
+	/**
+	 * Run all contact generators of this contact constraint. If this method is called before
+	 * applyConstraints(), the contact constraint will use the resulting contact points, instead 
+	 * of running the generators again. This allows contact generation for all contact constraints
+	 * in a scene to be carried out concurrently, prior to applying the constraints. Different
+	 * contact constraints can be generated at the same time, but each contact constraint must
+	 * only be generated by one thread at a time.
+	 */
+	public void generateContacts();
 		
 }
@@ -9,14 +9,19 @@
 package jinngine.physics.constraint.contact;
 
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map;
 
 import jinngine.physics.*;
 import jinngine.collision.BroadphaseCollisionDetection;
 import jinngine.geometry.Geometry;
+import jinngine.geometry.Box;
+import jinngine.geometry.Sphere;
 import jinngine.geometry.SupportMap3;
+import jinngine.geometry.UniformCapsule;
+import jinngine.geometry.contact.BoxBoxContactGenerator;
+import jinngine.geometry.contact.CapsuleBoxContactGenerator;
+import jinngine.geometry.contact.CapsuleContactGenerator;
+import jinngine.geometry.contact.CapsuleSphereContactGenerator;
 import jinngine.geometry.contact.ContactGenerator;
 import jinngine.geometry.contact.ContactGeneratorClassifier;
 import jinngine.geometry.contact.SphereContactGenerator;
@@ -27,6 +32,8 @@ import jinngine.physics.constraint.contact.ContactConstraint;
 import jinngine.physics.constraint.contact.ContactConstraintCreator;
 import jinngine.physics.constraint.contact.FrictionalContactConstraint;
 import jinngine.util.ComponentGraph;
+import jinngine.util.LongHashMap;
+import jinngine.util.LongIntHashMap;
 import jinngine.util.Pair;
 
 /**
@@ -47,17 +54,22 @@ public class DefaultContactConstraintManager implements ContactConstraintManager
 	// list of contact constraint creators
 	private final List<ContactConstraintCreator> contactConstraintCreators = new ArrayList<ContactConstraintCreator>();
 
-	// set of maintained contact constraints and generators
-	private final Map<Pair<Body>,ContactConstraint> contactConstraints = new LinkedHashMap<Pair<Body>,ContactConstraint>();
-	private final Map<Pair<Geometry>,ContactGenerator> contactGenerators = new LinkedHashMap<Pair<Geometry>,ContactGenerator>();
+	// set of maintained contact constraints and generators, keyed by the packed ids of the body and geometry pairs
+	private final LongHashMap<ContactConstraint> contactConstraints = new LongHashMap<ContactConstraint>();
+	private final LongHashMap<ContactGenerator> contactGenerators = new LongHashMap<ContactGenerator>();
 		
 	// the constraint graph to be updated by this contact constraint manager
 	private final ComponentGraph<Body,Constraint, DefaultScene.ConstraintGroup> constraintGraph;
 
+	// use warm starting in default contact constraints
+	private boolean warmstarting = false;
+
 	// the default contact constraint creator
 	private final ContactConstraintCreator defaultcreator = new ContactConstraintCreator() {
 		public final ContactConstraint createContactConstraint(Body b1, Body b2, ContactGenerator g) {
-			return new FrictionalContactConstraint(b1,b2,g);
+			FrictionalContactConstraint contact = new FrictionalContactConstraint(b1,b2,g);
+			contact.setWarmStarting(warmstarting);
+			return contact;
 //			return new SimplifiedContactConstraint(b1,b2,g);
 //			return new StabilisationContactConstraint(b1,b2,g);
 //			return new BaumgardeContactConstraint(b1,b2,g);
@@ -92,31 +104,19 @@ public class DefaultContactConstraintManager implements ContactConstraintManager
 					
 					//always order bodies and geometries the same way, so that normals 
 					//will be pointing the right direction
-					Pair<Body> bodypair;
 					Pair<Geometry> geometrypair;
+					final long bodykey = bodyKey(b1, b2);
+					final long geometrykey = geometryKey(inputpair);
 					
-					bodypair = new Pair<Body>(b1,b2);
-					
-//					if ( b1.hashCode() > b2.hashCode() ) {
-//						bodypair = new Pair<Body>(b1,b2);
-//						geometrypair = new Pair<Geometry>(inputpair.getFirst(), inputpair.getSecond());
-//					} else {
-//						bodypair = new Pair<Body>(b2,b1);
-//						geometrypair = new Pair<Geometry>(inputpair.getSecond(), inputpair.getFirst());
-//					}
-					
-					
-					ContactConstraint contactConstraint = null;
+					ContactConstraint contactConstraint = contactConstraints.get(bodykey);
 
 					//a contact constraint already exists 
-					if (contactConstraints.containsKey(bodypair)) {
-						contactConstraint = contactConstraints.get(bodypair);
-						
+					if (contactConstraint != null) {
 						// order the geometry pair to match the order of the contact constraint. 
 						// this is necessary to keep normals pointing in the right direction when 
 						// contact constraints have more than one contact generator
 						Pair<Body> orderedpair = contactConstraint.getBodies();
-						if (orderedpair.getFirst() == bodypair.getFirst()) {
+						if (orderedpair.getFirst() == b1) {
 							// same order
 							geometrypair = inputpair;
 						} else {
@@ -127,13 +127,14 @@ public class DefaultContactConstraintManager implements ContactConstraintManager
 																
 						//add a new contact generator to this contact constraint
 						ContactGenerator generator = getContactGenerator(geometrypair);
-						contactGenerators.put(geometrypair, generator);
+						contactGenerators.put(geometrykey, generator);
 						contactConstraint.addGenerator(generator);
 
 					//no contact constraint is present
 					} else {					
 						//do not act if some other constraint(joint) is already present
 						//in the contact graph
+						Pair<Body> bodypair = new Pair<Body>(b1,b2);
 						if (constraintGraph.getEdge(bodypair) == null)  {
 							//create a new contact generator
 							ContactGenerator generator = getContactGenerator(inputpair);
@@ -151,8 +152,8 @@ public class DefaultContactConstraintManager implements ContactConstraintManager
 							}
 									
 							//insert into data structures
-							contactConstraints.put(bodypair, contactConstraint);
-							contactGenerators.put(inputpair, generator);
+							contactConstraints.put(bodykey, contactConstraint);
+							contactGenerators.put(geometrykey, generator);
 							constraintGraph.addEdge( bodypair, contactConstraint);
 							
 							// signal handlers
@@ -169,7 +170,6 @@ public class DefaultContactConstraintManager implements ContactConstraintManager
 					//retrieve the bodies associated with overlapping geometries
 					Body a = geometrypair.getFirst().getBody();
 					Body b = geometrypair.getSecond().getBody();
-					Pair<Body> bodypair = new Pair<Body>(a,b);
 
 					//ignore overlaps stemming from the same body				
 					if ( a == b) return;
@@ -178,29 +178,26 @@ public class DefaultContactConstraintManager implements ContactConstraintManager
 					//ignore overlaps of fixed bodies
 					if ( a.isFixed() && b.isFixed() ) return;
 					
+					final long bodykey = bodyKey(a, b);
+					final ContactConstraint constraint = contactConstraints.get(bodykey);
+					
 					//if this geometry pair has an acting contact constraint,
 					//we must remove the contact generator
-					if (contactConstraints.containsKey(bodypair)) {
+					if (constraint != null) {
 						//check that we have the generator (if not, something is very wrong)
-						if (contactGenerators.containsKey(geometrypair)) {
-					
-							//remove the generator from the contact constraint
-							ContactConstraint constraint = contactConstraints.get(bodypair);
-							ContactGenerator cg = contactGenerators.get(geometrypair);
-							
+						final ContactGenerator cg = contactGenerators.remove(geometryKey(geometrypair));
+						if (cg != null) {
 							//notify contact generator (for possible clean-up)
 							cg.remove();
 							
 							// remove from contact constraint
 							constraint.removeGenerator(cg);
 							
-							//remove the generator from our list
-							contactGenerators.remove(geometrypair);
-
 							//if the contact constraint has no more generators, also
 							//remove the contact constraint
 							if (constraint.getNumberOfGenerators() < 1 ) {
-								contactConstraints.remove(bodypair);
+								final Pair<Body> bodypair = constraint.getBodies();
+								contactConstraints.remove(bodykey);
 								constraintGraph.removeEdge(bodypair);	
 								
 								// signal event handlers
@@ -228,6 +225,64 @@ public class DefaultContactConstraintManager implements ContactConstraintManager
 		broadphase.addHandler(handler);
 		
 		// create some initial ContactGeneratorClassifiers
+		// The Box - Box classifier, ahead of the general support map classifier
+		geometryClassifiers.add(new ContactGeneratorClassifier() {
+			@Override
+			public final ContactGenerator getGenerator(Geometry a,
+					Geometry b) {
+				if ( a instanceof Box && b instanceof Box) {
+					return new BoxBoxContactGenerator((Box)a, (Box)b);
+				}
+				//not recognised
+				return null;	
+			}
+		});
+		
+		// The Capsule - Capsule classifier
+		geometryClassifiers.add(new ContactGeneratorClassifier() {
+			@Override
+			public final ContactGenerator getGenerator(Geometry a,
+					Geometry b) {
+				if ( a instanceof UniformCapsule && b instanceof UniformCapsule) {
+					return new CapsuleContactGenerator((UniformCapsule)a, (UniformCapsule)b);
+				}
+				//not recognised
+				return null;	
+			}
+		});
+		
+		// The Capsule - Sphere classifier, ahead of the Sphere - SupportMap classifier
+		geometryClassifiers.add(new ContactGeneratorClassifier() {
+			@Override
+			public final ContactGenerator getGenerator(Geometry a,
+					Geometry b) {
+				if ( a instanceof UniformCapsule && b instanceof Sphere) {
+					return new CapsuleSphereContactGenerator((UniformCapsule)a, (Sphere)b);
+				}
+				if ( a instanceof Sphere && b instanceof UniformCapsule) {
+					return new CapsuleSphereContactGenerator((Sphere)a, (UniformCapsule)b);
+				}
+				//not recognised
+				return null;	
+			}
+		});
+		
+		// The Capsule - Box classifier
+		geometryClassifiers.add(new ContactGeneratorClassifier() {
+			@Override
+			public final ContactGenerator getGenerator(Geometry a,
+					Geometry b) {
+				if ( a instanceof UniformCapsule && b instanceof Box) {
+					return new CapsuleBoxContactGenerator((UniformCapsule)a, (Box)b);
+				}
+				if ( a instanceof Box && b instanceof UniformCapsule) {
+					return new CapsuleBoxContactGenerator((Box)a, (UniformCapsule)b);
+				}
+				//not recognised
+				return null;	
+			}
+		});
+		
 		// The Sphere - Sphere classifier
 		geometryClassifiers.add(new ContactGeneratorClassifier() {
 			@Override
@@ -297,6 +352,38 @@ public class DefaultContactConstraintManager implements ContactConstraintManager
 		contactConstraintCreators.remove(c);
 	}
 	
+	/**
+	 * Enable or disable warm starting for contact constraints created by the default contact 
+	 * constraint creator. The setting is also applied to all existing frictional contact constraints.
+	 * @param enabled
+	 */
+	public final void setWarmStarting( boolean enabled ) {
+		this.warmstarting = enabled;
+		for (int i=0; i<contactConstraints.capacity(); i++) {
+			if (contactConstraints.isUsed(i)) {
+				ContactConstraint c = contactConstraints.valueAt(i);
+				if (c instanceof FrictionalContactConstraint) {
+					((FrictionalContactConstraint)c).setWarmStarting(enabled);
+				}
+			}
+		}
+	}
+	
+	// key of a pair of bodies, using the ids assigned by the scene
+	private static final long bodyKey( Body a, Body b ) {
+		if (a.id < 0 || b.id < 0)
+			throw new IllegalStateException("DefaultContactConstraintManager: body is not in a scene");
+		return LongIntHashMap.pair(a.id, b.id);
+	}
+	
+	// key of a pair of geometries, using the ids assigned by the scene
+	private static final long geometryKey( Pair<Geometry> pair ) {
+		final int a = pair.getFirst().getId(), b = pair.getSecond().getId();
+		if (a < 0 || b < 0)
+			throw new IllegalStateException("DefaultContactConstraintManager: geometry is not in a scene");
+		return LongIntHashMap.pair(a, b);
+	}
+	
 	private ContactGenerator getContactGenerator(Pair<Geometry> pair) {
 		for ( ContactGeneratorClassifier gc: geometryClassifiers) {
 			ContactGenerator g = gc.getGenerator(pair.getFirst(), pair.getSecond());
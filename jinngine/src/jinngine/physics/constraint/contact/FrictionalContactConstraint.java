@@ -39,6 +39,33 @@ public final class FrictionalContactConstraint implements ContactConstraint {
 	
 	private boolean enableCoupling = true;
 	
+	// ncp constraints are recycled between time-steps. The pool grows to the largest 
+	// number of constraints ever needed by this contact constraint
+	private final List<NCPConstraint>       pool = new ArrayList<NCPConstraint>();
+	private int pooled = 0;
+	
+	// warm starting. Contact points are remembered in the frame of body 1, and the solution of 
+	// a contact point from the previous time-step is reused if a new contact point is found close by
+	private boolean warmstarting = false;
+	private List<Vector3> anchors = new ArrayList<Vector3>();
+	private List<Vector3> previousanchors = new ArrayList<Vector3>();
+	private double[] previouslambda = new double[0];
+	private boolean[] matched = new boolean[0];
+	private int previouscontacts = 0;
+	private int contacts = 0;
+	private int anchored = 0;
+	
+	// true if contact generators was run ahead of applyConstraints()
+	private boolean generated = false;
+
+	// scratch vectors used when creating the ncp constraints
+	private final Vector3 t1 = new Vector3(), t2 = new Vector3(), t3 = new Vector3();
+	private final Vector3 r1 = new Vector3(), r2 = new Vector3();
+	private final Vector3 nJ2 = new Vector3(), nJ3 = new Vector3(), nJ4 = new Vector3();
+	private final Vector3 nB1 = new Vector3(), nB2 = new Vector3(), nB3 = new Vector3(), nB4 = new Vector3();
+	private final Vector3 tJ2 = new Vector3(), tJ3 = new Vector3(), tJ4 = new Vector3();
+	private final Vector3 tB1 = new Vector3(), tB2 = new Vector3(), tB3 = new Vector3(), tB4 = new Vector3();
+	
 	/**
 	 * Create a new ContactConstraint, using one initial ContactGenerator
 	 * @param b1
@@ -76,15 +103,32 @@ public final class FrictionalContactConstraint implements ContactConstraint {
 		return generators.size();
 	}
 	
+	@Override
+	public final void generateContacts() {
+		for ( ContactGenerator cg: generators) {
+			cg.run();
+		}
+		generated = true;
+	}
+	
 	@Override
 	public final void applyConstraints(ListIterator<NCPConstraint> constraintIterator, double dt) {
-		//clear list of ncp constraints
+		// remember the solution from last time-step, before the ncp constraints are recycled
+		if (warmstarting) {
+			rememberContacts();
+		}
+		
+		//clear list of ncp constraints, and recycle the ncp constraints from last time-step
 		ncpconstraints.clear();
+		pooled = 0;
+		contacts = 0;
+		anchored = 0;
 		
 		//use ContactGenerators to create new contactpoints
 		for ( ContactGenerator cg: generators) {
-			//run contact generator
-			cg.run();
+			//run contact generator, unless contacts has already been generated
+			if (!generated)
+				cg.run();
 			
 			//generate contacts
 			Iterator<ContactGenerator.ContactPoint> i = cg.getContacts();
@@ -94,7 +138,7 @@ public final class FrictionalContactConstraint implements ContactConstraint {
 				createFrictionalContactConstraint(cp, b1, b2, cp.point, cp.normal, cp.depth, dt, constraintIterator);				
 			}
 		}
-		
+		generated = false;
 	}
 
 	//Create a regular contact constraint including tangential friction
@@ -105,19 +149,17 @@ public final class FrictionalContactConstraint implements ContactConstraint {
 	) {
 
 		//Use a gram-schmidt process to create a orthonormal basis for the contact point ( normal and tangential directions)
-		final Vector3 t1 = new Vector3(), t2 = new Vector3(), t3 = new Vector3();
-		final Matrix3 B  = GramSchmidt.run(n);
-		B.getColumnVectors(t1, t2, t3);
+		GramSchmidt.run(n, t1, t2, t3);
 
 		// interaction points and jacobian for normal constraint
-		final Vector3 r1 = p.sub(b1.state.position);
-		final Vector3 r2 = p.sub(b2.state.position);
+		r1.assign(p); Vector3.sub(r1, b1.state.position);
+		r2.assign(p); Vector3.sub(r2, b2.state.position);
 
 		// jacobians for normal direction
 		final Vector3 nJ1 = n;
-		final Vector3 nJ2 = r1.cross(n);
-		final Vector3 nJ3 = n.negate();
-		final Vector3 nJ4 = r2.cross(n).negate();
+		Vector3.crossProduct(r1, n, nJ2);
+		nJ3.assign(n); Vector3.multiply(nJ3, -1);
+		Vector3.crossProduct(r2, n, nJ4); Vector3.multiply(nJ4, -1);
 
 		//First off, create the constraint in the normal direction
 		final double e = cp.restitution; //coeficient of restitution
@@ -129,10 +171,10 @@ public final class FrictionalContactConstraint implements ContactConstraint {
 		final Matrix3 M1 = b1.state.inverseanisotropicmass;
 		final Matrix3 I2 = b2.state.inverseinertia;
 		final Matrix3 M2 = b2.state.inverseanisotropicmass;
-		final Vector3 nB1 = M1.multiply(nJ1);
-		final Vector3 nB2 = I1.multiply(nJ2);
-		final Vector3 nB3 = M2.multiply(nJ3);
-		final Vector3 nB4 = I2.multiply(nJ4);
+		Matrix3.multiply(M1, nJ1, nB1);
+		Matrix3.multiply(I1, nJ2, nB2);
+		Matrix3.multiply(M2, nJ3, nB3);
+		Matrix3.multiply(I2, nJ4, nB4);
 
 		// clear out B's if mass is "infinity"
 		if (b1.isFixed()) { nB1.assignZero(); nB2.assignZero(); }
@@ -173,7 +215,7 @@ public final class FrictionalContactConstraint implements ContactConstraint {
 		//correction=correction>0?0:correction;
 
 		// the normal constraint
-		final NCPConstraint c = new NCPConstraint();
+		final NCPConstraint c = nextConstraint();
 		c.assign(b1,b2,
 				nB1, nB2, nB3, nB4,
 				nJ1, nJ2, nJ3, nJ4,
@@ -191,51 +233,18 @@ public final class FrictionalContactConstraint implements ContactConstraint {
 		c.mu = cp.friction;
 						
 		//first tangent
-		final Vector3 t2J1 = t2;
-		final Vector3 t2J2 = r1.cross(t2);
-		final Vector3 t2J3 = t2.negate();
-		final Vector3 t2J4 = r2.cross(t2).negate();
-		final Vector3 t2B1 = b1.isFixed()? new Vector3(): M1.multiply(t2J1);
-		final Vector3 t2B2 = b1.isFixed()?  new Vector3(): I1.multiply(t2J2);
-		final Vector3 t2B3 = b2.isFixed()? new Vector3(): M2.multiply(t2J3);
-		final Vector3 t2B4 = b2.isFixed()? new Vector3(): I2.multiply(t2J4);
-
-		//then the tangential friction constraints 
-		double ut1i = t2J1.dot(b1.state.velocity) + t2J2.dot(b1.state.omega) + t2J3.dot(b2.state.velocity) + t2J4.dot(b2.state.omega); //relativeVelocity(b1,b2,p,t2);
-		double ut1f = 0;
-		
-		//double t2Fext = t2B1.dot(b1.state.FCm) + t2B2.dot(b1.state.tauCm) + t2B3.dot(b2.state.FCm) + t2B4.dot(b2.state.tauCm);
-		final NCPConstraint c2 = new NCPConstraint();
-		c2.assign(b1,b2,
-				t2B1, t2B2,	t2B3, t2B4,				
-				t2J1, t2J2, t2J3, t2J4,
-				-frictionBoundMagnitude, frictionBoundMagnitude,
-				coupling,
-				-(ut1f-ut1i),
-				0
-		);
+		final NCPConstraint c2 = nextConstraint();
+		createTangentialConstraint(c2, b1, b2, t2, coupling);
 		
 		//second tangent
-		final Vector3 t3J1 = t3;
-		final Vector3 t3J2 = r1.cross(t3);
-		final Vector3 t3J3 = t3.negate();
-		final Vector3 t3J4 = r2.cross(t3).negate();
-		final Vector3 t3B1 = b1.isFixed()? new Vector3(): M1.multiply(t3J1);
-		final Vector3 t3B2 = b1.isFixed()? new Vector3(): I1.multiply(t3J2);
-		final Vector3 t3B3 = b2.isFixed()? new Vector3(): M2.multiply(t3J3);
-		final Vector3 t3B4 = b2.isFixed()? new Vector3(): I2.multiply(t3J4);
+		final NCPConstraint c3 = nextConstraint();
+		createTangentialConstraint(c3, b1, b2, t3, coupling);
 
-		double ut2i = t3J1.dot(b1.state.velocity) + t3J2.dot(b1.state.omega) + t3J3.dot(b2.state.velocity) + t3J4.dot(b2.state.omega); //relativeVelocity(b1,b2,p,t2);
-		double ut2f = 0;
-		
-		final NCPConstraint c3 = new NCPConstraint();
-		c3.assign(b1,b2,
-				t3B1, t3B2,	t3B3, t3B4,
-				t3J1, t3J2, t3J3, t3J4,
-				-frictionBoundMagnitude, frictionBoundMagnitude,
-				coupling,
-				-(ut2f-ut2i), 0  
-		);
+		// seed the solution with the one from a matching contact point in the last time-step
+		if (warmstarting) {
+			warmstart(b1, p, cp.envelope, c, c2, c3);
+		}
+		contacts++;
 
 		outConstraints.add(c);
 		outConstraints.add(c2);
@@ -247,6 +256,105 @@ public final class FrictionalContactConstraint implements ContactConstraint {
 		ncpconstraints.add(c3);
 
 	}
+	
+	// create a tangential friction constraint in the direction t
+	private final void createTangentialConstraint( NCPConstraint c, Body b1, Body b2, Vector3 t, NCPConstraint coupling ) {
+		final Vector3 tJ1 = t;
+		Vector3.crossProduct(r1, t, tJ2);
+		tJ3.assign(t); Vector3.multiply(tJ3, -1);
+		Vector3.crossProduct(r2, t, tJ4); Vector3.multiply(tJ4, -1);
+		
+		if (b1.isFixed()) { 
+			tB1.assignZero(); tB2.assignZero(); 
+		} else {
+			Matrix3.multiply(b1.state.inverseanisotropicmass, tJ1, tB1);
+			Matrix3.multiply(b1.state.inverseinertia, tJ2, tB2);
+		}
+		
+		if (b2.isFixed()) { 
+			tB3.assignZero(); tB4.assignZero(); 
+		} else {
+			Matrix3.multiply(b2.state.inverseanisotropicmass, tJ3, tB3);
+			Matrix3.multiply(b2.state.inverseinertia, tJ4, tB4);
+		}
+
+		//then the tangential friction constraints 
+		final double uti = tJ1.dot(b1.state.velocity) + tJ2.dot(b1.state.omega) + tJ3.dot(b2.state.velocity) + tJ4.dot(b2.state.omega); //relativeVelocity(b1,b2,p,t);
+		final double utf = 0;
+		
+		c.assign(b1,b2,
+				tB1, tB2, tB3, tB4,				
+				tJ1, tJ2, tJ3, tJ4,
+				-frictionBoundMagnitude, frictionBoundMagnitude,
+				coupling,
+				-(utf-uti),
+				0
+		);
+	}
+	
+	// store the lambda values and anchors of the contact points from last time-step
+	private final void rememberContacts() {
+		final int n = ncpconstraints.size();
+		if (previouslambda.length < n) {
+			previouslambda = new double[Math.max(n, 2*previouslambda.length)];
+			matched = new boolean[previouslambda.length/3+1];
+		}
+		for (int i=0; i<n; i++) {
+			previouslambda[i] = ncpconstraints.get(i).lambda;
+		}
+		for (int i=0; i<anchored; i++) {
+			matched[i] = false;
+		}
+		previouscontacts = anchored;
+		
+		// swap anchor lists 
+		final List<Vector3> swap = previousanchors;
+		previousanchors = anchors;
+		anchors = swap;
+	}
+	
+	// compute the anchor of a new contact point, and copy the lambda values of the closest 
+	// unmatched contact point from last time-step, if any is within the envelope distance
+	private final void warmstart( Body b1, Vector3 p, double envelope, NCPConstraint c, NCPConstraint c2, NCPConstraint c3 ) {
+		if (anchors.size() == contacts)
+			anchors.add(new Vector3());
+		final Vector3 anchor = anchors.get(contacts);
+		anchored = contacts+1;
+		
+		// anchor in the frame of body 1
+		anchor.assign(p); Vector3.sub(anchor, b1.state.position);
+		Matrix3.multiply(b1.state.inverserotation, anchor, anchor);
+		
+		int best = -1;
+		double bestdistance = envelope*envelope;
+		for (int i=0; i<previouscontacts; i++) {
+			if (matched[i]) continue;
+			final Vector3 q = previousanchors.get(i);
+			final double dx = q.x-anchor.x, dy = q.y-anchor.y, dz = q.z-anchor.z;
+			final double d = dx*dx+dy*dy+dz*dz;
+			if (d < bestdistance) {
+				bestdistance = d;
+				best = i;
+			}
+		}
+		
+		if (best >= 0) {
+			matched[best] = true;
+			c.lambda = Math.max(c.lower, previouslambda[3*best]);
+			
+			// respect friction bounds given by the normal force 
+			final double bound = c2.coupling != null? Math.abs(c.lambda)*c.mu : frictionBoundMagnitude;
+			c2.lambda = Math.max(-bound, Math.min(previouslambda[3*best+1], bound));
+			c3.lambda = Math.max(-bound, Math.min(previouslambda[3*best+2], bound));
+		}
+	}
+	
+	// return a recycled ncp constraint, or a new one if the pool is exhausted
+	private final NCPConstraint nextConstraint() {
+		if (pooled == pool.size()) 
+			pool.add(new NCPConstraint());
+		return pool.get(pooled++);
+	}
 
 	@Override
 	public final Pair<Body> getBodies() {
@@ -262,6 +370,16 @@ public final class FrictionalContactConstraint implements ContactConstraint {
 		this.enableCoupling = coupling;
 	}
 	
+	/**
+	 * Enable or disable warm starting. When enabled, contact points are matched with the contact points 
+	 * of the previous time-step, and the previous solution is used as the starting point for the solver. 
+	 * Two contact points match if they are closer than the contact envelope, in the frame of the first body.
+	 * @param enabled
+	 */
+	public final void setWarmStarting( boolean enabled ) {
+		this.warmstarting = enabled;
+	}
+	
 	/**
 	 * Set the limits for fixed bound friction
 	 * @param magnitude
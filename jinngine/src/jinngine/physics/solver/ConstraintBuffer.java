@@ -0,0 +1,200 @@
+/**
+ * Copyright (c) 2008-2010  Morten Silcowitz.
+ *
+ * This file is part of the Jinngine physics library
+ *
+ * Jinngine is published under the GPL license, available
+ * at http://www.gnu.org/copyleft/gpl.html.
+ */
+package jinngine.physics.solver;
+
+import java.util.List;
+
+import jinngine.math.Vector3;
+import jinngine.physics.Body;
+import jinngine.physics.solver.Solver.NCPConstraint;
+
+/**
+ * Packed structure-of-arrays storage of an NCP problem. Constraints are gathered from a list of
+ * {@link NCPConstraint} objects into primitive arrays, such that solvers can iterate the problem
+ * without following object references. Bodies are given consecutive indices, and their delta
+ * velocities are stored in a single array with six entries per body. When a solver is done,
+ * the solution is written back into the constraint and body objects using scatter(). Buffers
+ * grow as needed, and are intended to be reused between time-steps.
+ */
+public final class ConstraintBuffer {
+
+	/** Number of constraints in the buffer */
+	public int size = 0;
+	/** Number of bodies in the buffer */
+	public int bodies = 0;
+
+	// constraint data
+	/** Jacobian rows, 12 entries per constraint */
+	public double[] j = new double[0];
+	/** B rows, where B = M^-1 J^T, 12 entries per constraint */
+	public double[] bm = new double[0];
+	/** Solution lambda values */
+	public double[] lambda = new double[0];
+	/** Lower limits */
+	public double[] lower = new double[0];
+	/** Upper limits */
+	public double[] upper = new double[0];
+	/** Diagonal elements A_i,i */
+	public double[] diagonal = new double[0];
+	/** b vector */
+	public double[] b = new double[0];
+	/** Damping coefficients */
+	public double[] damper = new double[0];
+	/** External force impulses */
+	public double[] fext = new double[0];
+	/** Friction coefficients */
+	public double[] mu = new double[0];
+	/** Index of the coupled constraint, or -1 if not coupled */
+	public int[] coupling = new int[0];
+	/** Body indices */
+	public int[] body1 = new int[0], body2 = new int[0];
+	/** Auxiliary per constraint arrays for solvers */
+	public double[] residual = new double[0], d = new double[0];
+
+	// body data
+	/** Delta velocities, velocity followed by angular velocity, 6 entries per body */
+	public double[] dv = new double[0];
+	/** Auxiliary per body arrays for solvers, 6 entries per body */
+	public double[] aux = new double[0], aux2 = new double[0];
+
+	// body references in index order
+	private Body[] bodyrefs = new Body[0];
+	private NCPConstraint[] constraintrefs = new NCPConstraint[0];
+
+	/**
+	 * Gather the given constraints into this buffer. Any previous contents are discarded. Body delta
+	 * velocities are copied into the buffer, and the external force contribution of each
+	 * constraint is computed.
+	 */
+	public final void gather( List<NCPConstraint> constraints ) {
+		final int n = constraints.size();
+		ensureConstraintCapacity(n);
+		size = 0;
+		bodies = 0;
+
+		for (NCPConstraint ci: constraints) {
+			final int i = size;
+			ci.index = i;
+			constraintrefs[i] = ci;
+
+			body1[i] = indexOf(ci.body1);
+			body2[i] = indexOf(ci.body2);
+
+			final int k = 12*i;
+			put(j, k, ci.j1); put(j, k+3, ci.j2); put(j, k+6, ci.j3); put(j, k+9, ci.j4);
+			put(bm, k, ci.b1); put(bm, k+3, ci.b2); put(bm, k+6, ci.b3); put(bm, k+9, ci.b4);
+
+			lambda[i] = ci.lambda;
+			lower[i] = ci.lower;
+			upper[i] = ci.upper;
+			diagonal[i] = ci.diagonal;
+			b[i] = ci.b;
+			damper[i] = ci.damper;
+			mu[i] = ci.mu;
+
+			// compute external force contribution
+			fext[i] = ci.j1.dot(ci.body1.externaldeltavelocity)
+			+ ci.j2.dot(ci.body1.externaldeltaomega)
+			+ ci.j3.dot(ci.body2.externaldeltavelocity)
+			+ ci.j4.dot(ci.body2.externaldeltaomega);
+
+			size++;
+		}
+
+		// resolve couplings, now that all constraints have an index
+		for (int i=0; i<size; i++) {
+			final NCPConstraint coupled = constraintrefs[i].coupling;
+			coupling[i] = (coupled != null && coupled.index < size && constraintrefs[coupled.index] == coupled)? coupled.index : -1;
+		}
+	}
+
+	/**
+	 * Write lambda values, external force contributions and body delta velocities back into the
+	 * constraint and body objects that was gathered
+	 */
+	public final void scatter() {
+		for (int i=0; i<size; i++) {
+			final NCPConstraint ci = constraintrefs[i];
+			ci.lambda = lambda[i];
+			ci.Fext = fext[i];
+			if (coupling[i] >= 0) {
+				ci.lower = lower[i];
+				ci.upper = upper[i];
+			}
+			constraintrefs[i] = null;
+		}
+
+		for (int i=0; i<bodies; i++) {
+			final Body body = bodyrefs[i];
+			final int k = 6*i;
+			body.deltavelocity.assign(dv[k], dv[k+1], dv[k+2]);
+			body.deltaomega.assign(dv[k+3], dv[k+4], dv[k+5]);
+			bodyrefs[i] = null;
+		}
+	}
+
+	/**
+	 * Return the index of the given body in this buffer, adding it if not present. The index is cached
+	 * in the body, but it is always validated against the buffer contents. This way, a body can safely
+	 * appear in several buffers, as is the case for fixed bodies when solving islands in parallel.
+	 */
+	private final int indexOf( Body body ) {
+		final int cached = body.auxIndex;
+		if (cached >= 0 && cached < bodies && bodyrefs[cached] == body)
+			return cached;
+
+		// add new body
+		if (bodies >= bodyrefs.length)
+			ensureBodyCapacity(Math.max(16, 2*bodyrefs.length));
+		final int i = bodies++;
+		bodyrefs[i] = body;
+		body.auxIndex = i;
+		final int k = 6*i;
+		dv[k]   = body.deltavelocity.x; dv[k+1] = body.deltavelocity.y; dv[k+2] = body.deltavelocity.z;
+		dv[k+3] = body.deltaomega.x;    dv[k+4] = body.deltaomega.y;    dv[k+5] = body.deltaomega.z;
+		return i;
+	}
+
+	private static final void put( double[] a, int k, Vector3 v) {
+		a[k] = v.x; a[k+1] = v.y; a[k+2] = v.z;
+	}
+
+	private final void ensureConstraintCapacity( int n ) {
+		if (n <= lambda.length)
+			return;
+		final int m = Math.max(n, 2*lambda.length);
+		j = new double[12*m];
+		bm = new double[12*m];
+		lambda = new double[m];
+		lower = new double[m];
+		upper = new double[m];
+		diagonal = new double[m];
+		b = new double[m];
+		damper = new double[m];
+		fext = new double[m];
+		mu = new double[m];
+		coupling = new int[m];
+		body1 = new int[m];
+		body2 = new int[m];
+		residual = new double[m];
+		d = new double[m];
+		constraintrefs = new NCPConstraint[m];
+	}
+
+	private final void ensureBodyCapacity( int m ) {
+		final Body[] refs = new Body[m];
+		System.arraycopy(bodyrefs, 0, refs, 0, bodies);
+		bodyrefs = refs;
+		final double[] v = new double[6*m];
+		System.arraycopy(dv, 0, v, 0, 6*bodies);
+		dv = v;
+		aux = new double[6*m];
+		aux2 = new double[6*m];
+	}
+}
@@ -0,0 +1,21 @@
+/**
+ * Copyright (c) 2008-2010  Morten Silcowitz.
+ *
+ * This file is part of the Jinngine physics library
+ *
+ * Jinngine is published under the GPL license, available 
+ * at http://www.gnu.org/copyleft/gpl.html. 
+ */
+package jinngine.physics.solver;
+
+/**
+ * A {@link Solver} that reports the number of iterations and the final residual of each call to solve(). 
+ * The residual is the squared norm of the change in lambda in the last iteration performed.
+ */
+public interface MonitoredSolver extends Solver {
+	
+	/**
+	 * Return the statistics object that this solver reports to
+	 */
+	public SolverStatistics getStatistics();
+}
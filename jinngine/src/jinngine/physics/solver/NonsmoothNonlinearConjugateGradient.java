@@ -13,9 +13,10 @@ import java.util.List;
 import jinngine.math.Vector3;
 import jinngine.physics.Body;
 
-public class NonsmoothNonlinearConjugateGradient implements Solver {
+public class NonsmoothNonlinearConjugateGradient implements MonitoredSolver {
 	int max = 10000;
 	private final double eps = 1e-7;
+	private final SolverStatistics statistics = new SolverStatistics();
 	
 	public double[] pgsiters = new double[max];
 	public double[] errors = new double[max];
@@ -25,6 +26,11 @@ public class NonsmoothNonlinearConjugateGradient implements Solver {
 	//	max =n;
 
 	}
+
+	@Override
+	public final SolverStatistics getStatistics() {
+		return statistics;
+	}
 	
 	public NonsmoothNonlinearConjugateGradient(int n ) {
 		this.max = n;
@@ -61,7 +67,23 @@ public class NonsmoothNonlinearConjugateGradient implements Solver {
 //			}
 		}
 		bnorm = Math.sqrt(bnorm);
+		
+		// avoid division by zero for a vanishing b vector
+		if (bnorm == 0) bnorm = 1;
 //		bnorm=1;
+		
+		// the problem is solved in the bnorm scaled lambda. Scale any initial solution accordingly, 
+		// including its contribution to the delta velocities
+		for (NCPConstraint ci: constraints) {
+			if (ci.lambda != 0) {
+				final double factor = (1/bnorm-1)*ci.lambda;
+				Vector3.multiplyAndAdd( ci.b1, factor, ci.body1.deltavelocity );
+				Vector3.multiplyAndAdd( ci.b2, factor, ci.body1.deltaomega );
+				Vector3.multiplyAndAdd( ci.b3, factor, ci.body2.deltavelocity );
+				Vector3.multiplyAndAdd( ci.b4, factor, ci.body2.deltaomega );
+				ci.lambda = ci.lambda/bnorm;
+			}
+		}
 //		System.out.println("bnorm="+bnorm);
 		
 		// reset search direction
@@ -180,16 +202,18 @@ public class NonsmoothNonlinearConjugateGradient implements Solver {
 		} // while true
 //		System.out.println("rnew="+rnew+", iters="+iter);
 		
-		// scale lambda in the bnorm. This is unnecessary if bnorm is set to 1
+		// scale lambda in the bnorm, such that lambda is the true solution. This is unnecessary if bnorm is set to 1
 		for (NCPConstraint ci: constraints) {
 			final double factor = (bnorm-1)*ci.lambda;
 			Vector3.add( ci.body1.deltavelocity, ci.b1.multiply(factor));
 			Vector3.add( ci.body1.deltaomega, ci.b2.multiply(factor));
 			Vector3.add( ci.body2.deltavelocity, ci.b3.multiply(factor));
 			Vector3.add( ci.body2.deltaomega, ci.b4.multiply(factor));
+			ci.lambda = ci.lambda*bnorm;
 		}
 		
-		
+		// residual in the unscaled lambda
+		statistics.record(iter, rnew*bnorm*bnorm);
 		return 0;
 	}
 	
@@ -0,0 +1,198 @@
+/**
+ * Copyright (c) 2008-2010  Morten Silcowitz.
+ *
+ * This file is part of the Jinngine physics library
+ *
+ * Jinngine is published under the GPL license, available 
+ * at http://www.gnu.org/copyleft/gpl.html. 
+ */
+package jinngine.physics.solver;
+
+import java.util.List;
+
+import jinngine.physics.Body;
+
+/**
+ * Implementation of the NNCG solver, working on a packed {@link ConstraintBuffer}. The iterations are 
+ * identical to those of {@link NonsmoothNonlinearConjugateGradient}, but the inner loops only touch 
+ * primitive arrays. A buffer is kept per thread, so the solver can be used for solving islands in parallel.
+ */
+public class PackedNonsmoothNonlinearConjugateGradient implements MonitoredSolver {
+	private int max = 10000;
+	private final SolverStatistics statistics = new SolverStatistics();
+
+	private final ThreadLocal<ConstraintBuffer> buffers = new ThreadLocal<ConstraintBuffer>() {
+		@Override
+		protected ConstraintBuffer initialValue() {
+			return new ConstraintBuffer();
+		}
+	};
+
+	public PackedNonsmoothNonlinearConjugateGradient(int n ) {
+		this.max = n;
+	}
+
+	@Override
+	public void setMaximumIterations(int n) {
+	//	max =n;
+	}
+
+	@Override
+	public final SolverStatistics getStatistics() {
+		return statistics;
+	}
+	
+	@Override
+	public double solve(List<NCPConstraint> constraints, List<Body> bodies, double epsilon) {
+		final ConstraintBuffer buffer = buffers.get();
+		buffer.gather(constraints);
+		solve(buffer, epsilon);
+		buffer.scatter();
+		return 0;
+	}
+
+	/**
+	 * Solve the NCP problem stored in the given buffer
+	 */
+	public final void solve(ConstraintBuffer buffer, double epsilon) {
+		final int n = buffer.size, nb = 6*buffer.bodies;
+		final double[] j = buffer.j, bm = buffer.bm, dv = buffer.dv;
+		final double[] lambda = buffer.lambda, lower = buffer.lower, upper = buffer.upper;
+		final double[] diagonal = buffer.diagonal, b = buffer.b, damper = buffer.damper;
+		final double[] fext = buffer.fext, mu = buffer.mu, d = buffer.d, residual = buffer.residual;
+		final double[] direction = buffer.aux, previous = buffer.aux2;
+		final int[] coupling = buffer.coupling, body1 = buffer.body1, body2 = buffer.body2;
+
+		double rnew = 0;
+		double rold = 0;
+		double beta= 0;		
+		int iter = 0;
+		int restarts = 0;
+		
+		// clear direction and residual, compute b vector norm
+		double bnorm = 0;
+		for (int i=0; i<n; i++) {
+			d[i] = 0; residual[i] = 0;
+			bnorm += Math.pow(b[i]+fext[i],2);
+		}
+		bnorm = Math.sqrt(bnorm);
+		
+		// avoid division by zero for a vanishing b vector
+		if (bnorm == 0) bnorm = 1;
+		
+		// the problem is solved in the bnorm scaled lambda. Scale any initial solution accordingly, 
+		// including its contribution to the delta velocities
+		for (int i=0; i<n; i++) {
+			if (lambda[i] != 0) {
+				final int k = 12*i, v1 = 6*body1[i], v2 = 6*body2[i];
+				final double factor = (1/bnorm-1)*lambda[i];
+				dv[v1]   += bm[k]*factor;   dv[v1+1] += bm[k+1]*factor;  dv[v1+2] += bm[k+2]*factor;
+				dv[v1+3] += bm[k+3]*factor; dv[v1+4] += bm[k+4]*factor;  dv[v1+5] += bm[k+5]*factor;
+				dv[v2]   += bm[k+6]*factor; dv[v2+1] += bm[k+7]*factor;  dv[v2+2] += bm[k+8]*factor;
+				dv[v2+3] += bm[k+9]*factor; dv[v2+4] += bm[k+10]*factor; dv[v2+5] += bm[k+11]*factor;
+				lambda[i] = lambda[i]/bnorm;
+			}
+		}
+		
+		// reset search direction
+		for (int k=0; k<nb; k++)
+			direction[k] = 0;
+
+		while (true) {	
+			// copy body velocity
+			System.arraycopy(dv, 0, previous, 0, nb);
+			
+			rold = rnew; rnew = 0;
+			
+			// use one PGS iteration to compute new residual 
+			for (int i=0; i<n; i++) {
+				final int k = 12*i, v1 = 6*body1[i], v2 = 6*body2[i];
+
+				// update lambda and d
+				final double alpha  = beta*d[i];
+				lambda[i] += alpha;
+				d[i] = alpha + residual[i]; // gradient is -r
+
+				//calculate (Ax+b)_i 				
+				final double w = 
+				  j[k]*dv[v1]    + j[k+1]*dv[v1+1]  + j[k+2]*dv[v1+2]
+				+ j[k+3]*dv[v1+3]+ j[k+4]*dv[v1+4]  + j[k+5]*dv[v1+5]
+				+ j[k+6]*dv[v2]  + j[k+7]*dv[v2+1]  + j[k+8]*dv[v2+2]
+				+ j[k+9]*dv[v2+3]+ j[k+10]*dv[v2+4] + j[k+11]*dv[v2+5]
+				+ lambda[i]*damper[i];
+			    
+			    double deltaLambda = -((b[i]+fext[i])/bnorm+w)/(diagonal[i] + damper[i] );
+				final double lambda0 = lambda[i];
+				
+				//if the constraint is coupled, allow only lambda <= coupled lambda
+				final int c = coupling[i];
+				if (c >= 0) {
+					lower[i] = -Math.abs(lambda[c])*mu[c];
+					upper[i] =  Math.abs(lambda[c])*mu[c];
+				} 
+
+				// do projection
+				final double newlambda = Math.max(lower[i], Math.min(lambda0 + deltaLambda, upper[i]));
+
+				// update the V vector
+				deltaLambda = (newlambda - lambda0);
+				
+				// apply to delta velocities
+				dv[v1]   += bm[k]*deltaLambda;   dv[v1+1] += bm[k+1]*deltaLambda;  dv[v1+2] += bm[k+2]*deltaLambda;
+				dv[v1+3] += bm[k+3]*deltaLambda; dv[v1+4] += bm[k+4]*deltaLambda;  dv[v1+5] += bm[k+5]*deltaLambda;
+				dv[v2]   += bm[k+6]*deltaLambda; dv[v2+1] += bm[k+7]*deltaLambda;  dv[v2+2] += bm[k+8]*deltaLambda;
+				dv[v2+3] += bm[k+9]*deltaLambda; dv[v2+4] += bm[k+10]*deltaLambda; dv[v2+5] += bm[k+11]*deltaLambda;
+				lambda[i] += deltaLambda;
+
+				// update residual and squared gradient
+				rnew += deltaLambda*deltaLambda;
+				residual[i] = deltaLambda;
+			} //for constraints	
+
+			if (Math.abs(rnew) < epsilon) {
+				break;
+			}	
+			
+			// iteration limit
+			if (iter>max || restarts > 17 )
+				break;
+
+			//compute beta
+			beta = rnew/rold;
+
+			if ( beta > 1.0 || iter == 0 )  {
+				beta = 0;
+				restarts = restarts+1;
+			} 
+				
+			for (int k=0; k<nb; k++) {
+				// compute residual in body space
+				final double r = dv[k] - previous[k];
+				
+				// apply to delta velocities
+				direction[k] *= beta;
+				dv[k] += direction[k];
+				
+				// add gradient from this iteration
+				direction[k] += r;
+			}
+
+			//iteration count
+			iter = iter+1;
+		} // while true
+		
+		// scale lambda in the bnorm, such that lambda is the true solution. This is unnecessary if bnorm is set to 1
+		for (int i=0; i<n; i++) {
+			final int k = 12*i, v1 = 6*body1[i], v2 = 6*body2[i];
+			final double factor = (bnorm-1)*lambda[i];
+			dv[v1]   += bm[k]*factor;   dv[v1+1] += bm[k+1]*factor;  dv[v1+2] += bm[k+2]*factor;
+			dv[v1+3] += bm[k+3]*factor; dv[v1+4] += bm[k+4]*factor;  dv[v1+5] += bm[k+5]*factor;
+			dv[v2]   += bm[k+6]*factor; dv[v2+1] += bm[k+7]*factor;  dv[v2+2] += bm[k+8]*factor;
+			dv[v2+3] += bm[k+9]*factor; dv[v2+4] += bm[k+10]*factor; dv[v2+5] += bm[k+11]*factor;
+			lambda[i] = lambda[i]*bnorm;
+		}
+		
+		// residual in the unscaled lambda
+		statistics.record(iter, rnew*bnorm*bnorm);
+	}
+}
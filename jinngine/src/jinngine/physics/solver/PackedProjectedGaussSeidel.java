@@ -0,0 +1,120 @@
+/**
+ * Copyright (c) 2008-2010  Morten Silcowitz.
+ *
+ * This file is part of the Jinngine physics library
+ *
+ * Jinngine is published under the GPL license, available 
+ * at http://www.gnu.org/copyleft/gpl.html. 
+ */
+package jinngine.physics.solver;
+
+import java.util.List;
+
+import jinngine.physics.Body;
+
+/**
+ * Implementation of the PGS solver, working on a packed {@link ConstraintBuffer}. The iterations are 
+ * identical to those of {@link ProjectedGaussSeidel}, but the inner loop only touches primitive arrays. 
+ * A buffer is kept per thread, so the solver can be used for solving islands in parallel.
+ */
+public class PackedProjectedGaussSeidel implements MonitoredSolver {
+	private int maximumIterations = 35;
+	private final SolverStatistics statistics = new SolverStatistics();
+	
+	private final ThreadLocal<ConstraintBuffer> buffers = new ThreadLocal<ConstraintBuffer>() {
+		@Override
+		protected ConstraintBuffer initialValue() {
+			return new ConstraintBuffer();
+		}
+	};
+	
+	public PackedProjectedGaussSeidel() {}
+	
+	public PackedProjectedGaussSeidel(int n) {
+		maximumIterations = n;
+	}
+	
+	@Override
+	public void setMaximumIterations(int n) {
+		//this.maximumIterations = n;
+	}
+
+	@Override
+	public final SolverStatistics getStatistics() {
+		return statistics;
+	}
+
+	@Override
+	public final double solve(List<NCPConstraint> constraints, List<Body> bodies, double epsilon) {
+		final ConstraintBuffer buffer = buffers.get();
+		buffer.gather(constraints);
+		final double iterations = solve(buffer, epsilon);
+		buffer.scatter();
+		return iterations;
+	}
+	
+	/**
+	 * Solve the NCP problem stored in the given buffer
+	 * @return number of iterations performed
+	 */
+	public final double solve(ConstraintBuffer buffer, double epsilon) {
+		final int n = buffer.size;
+		final double[] j = buffer.j, bm = buffer.bm, dv = buffer.dv;
+		final double[] lambda = buffer.lambda, lower = buffer.lower, upper = buffer.upper;
+		final double[] diagonal = buffer.diagonal, b = buffer.b, damper = buffer.damper;
+		final double[] fext = buffer.fext, mu = buffer.mu;
+		final int[] coupling = buffer.coupling, body1 = buffer.body1, body2 = buffer.body2;
+		double iterations = 0;
+		double residual = 0;
+		
+		//perform iterations
+		for (int m=0; m<maximumIterations; m++) {
+			double deltaResidual = 0;
+			for (int i=0; i<n; i++) {
+				final int k = 12*i, v1 = 6*body1[i], v2 = 6*body2[i];
+				
+				//calculate (Ax+b)_i 
+				final double w = 
+				  j[k]*dv[v1]    + j[k+1]*dv[v1+1]  + j[k+2]*dv[v1+2]
+				+ j[k+3]*dv[v1+3]+ j[k+4]*dv[v1+4]  + j[k+5]*dv[v1+5]
+				+ j[k+6]*dv[v2]  + j[k+7]*dv[v2+1]  + j[k+8]*dv[v2+2]
+				+ j[k+9]*dv[v2+3]+ j[k+10]*dv[v2+4] + j[k+11]*dv[v2+5]
+				+ lambda[i]*damper[i] + fext[i];
+				
+				double deltaLambda = (-b[i]-w)/(diagonal[i] + damper[i] );
+				final double lambda0 = lambda[i];
+
+				//if the constraint is coupled, allow only lambda <= coupled lambda
+				final int c = coupling[i];
+				if (c >= 0) {
+					lower[i] = -Math.abs(lambda[c])*mu[c];
+					upper[i] =  Math.abs(lambda[c])*mu[c];
+				} 
+
+				//do projection
+				lambda[i] = Math.max(lower[i], Math.min(lambda0 + deltaLambda, upper[i]));
+							
+				//update the V vector
+				deltaLambda = lambda[i] - lambda0;
+				
+				//update residual of change
+				deltaResidual += deltaLambda*deltaLambda;
+
+				//Apply to delta velocities
+				dv[v1]   += bm[k]*deltaLambda;   dv[v1+1] += bm[k+1]*deltaLambda;  dv[v1+2] += bm[k+2]*deltaLambda;
+				dv[v1+3] += bm[k+3]*deltaLambda; dv[v1+4] += bm[k+4]*deltaLambda;  dv[v1+5] += bm[k+5]*deltaLambda;
+				dv[v2]   += bm[k+6]*deltaLambda; dv[v2+1] += bm[k+7]*deltaLambda;  dv[v2+2] += bm[k+8]*deltaLambda;
+				dv[v2+3] += bm[k+9]*deltaLambda; dv[v2+4] += bm[k+10]*deltaLambda; dv[v2+5] += bm[k+11]*deltaLambda;
+			} //for constraints	
+			
+			residual = deltaResidual;
+			if (deltaResidual < epsilon)
+				break;
+			
+			iterations +=1;
+		}
+		
+		statistics.record((int)iterations, residual);
+		return iterations;
+	}
+}
@@ -14,9 +14,9 @@ import jinngine.physics.Body;
 /**
  * Implementation of the PGS solver. 
  */
-public class ProjectedGaussSeidel implements Solver {
+public class ProjectedGaussSeidel implements MonitoredSolver {
 	private int maximumIterations = 35;
-	private double deltaResidual = 0;	
+	private final SolverStatistics statistics = new SolverStatistics();
 		
 	public ProjectedGaussSeidel() {}
 	
@@ -29,10 +29,16 @@ public class ProjectedGaussSeidel implements Solver {
 		//this.maximumIterations = n;
 	}
 
+	@Override
+	public final SolverStatistics getStatistics() {
+		return statistics;
+	}
+
 	@Override
 	//solve NCP problem
 	public final double solve(List<NCPConstraint> constraints, List<Body> bodies, double epsilon) {
 		double iterations = 0;
+		double residual = 0;
 		
 		// compute external force contribution, clear direction and residual
 		for (NCPConstraint ci: constraints) {
@@ -44,7 +50,7 @@ public class ProjectedGaussSeidel implements Solver {
 		
 		//perform iterations
 		for (int m=0; m<maximumIterations; m++) {
-			deltaResidual = 0;
+			double deltaResidual = 0;
 			for (NCPConstraint ci: constraints) {				
 				//calculate (Ax+b)_i 
 				final double w =  ci.j1.dot(ci.body1.deltavelocity) 
@@ -106,11 +112,14 @@ public class ProjectedGaussSeidel implements Solver {
 				
 			} //for constraints	
 			
+			residual = deltaResidual;
 			if (deltaResidual < epsilon)
 				break;
 			
 			iterations +=1;
 		}
+		
+		statistics.record((int)iterations, residual);
 		return iterations ;
 	}
 }
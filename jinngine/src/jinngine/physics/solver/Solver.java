@@ -111,6 +111,8 @@ public interface Solver {
 		public double u;
 		public double l;
 		public double distance;
+		/** Position of this constraint in a packed {@link ConstraintBuffer} */
+		public int index;
 		
 		// hack
 		public final Vector3 stickA = new Vector3();
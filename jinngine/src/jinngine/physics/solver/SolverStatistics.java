@@ -0,0 +1,71 @@
+/**
+ * Copyright (c) 2008-2010  Morten Silcowitz.
+ *
+ * This file is part of the Jinngine physics library
+ *
+ * Jinngine is published under the GPL license, available 
+ * at http://www.gnu.org/copyleft/gpl.html. 
+ */
+package jinngine.physics.solver;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Statistics reported by a {@link MonitoredSolver}. Iterations are summed over all calls to solve() since 
+ * the last reset, and the residual is the largest final residual reported in that period. A solver can be 
+ * invoked concurrently when islands are solved in parallel, so values are kept in atomic variables.
+ */
+public final class SolverStatistics {
+	private final AtomicLong solves = new AtomicLong();
+	private final AtomicLong iterations = new AtomicLong();
+	private final AtomicLong residual = new AtomicLong(Double.doubleToLongBits(0));
+	
+	/**
+	 * Record the outcome of one call to solve()
+	 * @param iterations number of iterations performed
+	 * @param residual final residual of the solution
+	 */
+	public final void record( int iterations, double residual ) {
+		this.solves.incrementAndGet();
+		this.iterations.addAndGet(iterations);
+		
+		// keep the largest residual
+		while (true) {
+			final long current = this.residual.get();
+			if (!(residual > Double.longBitsToDouble(current))) 
+				break;
+			if (this.residual.compareAndSet(current, Double.doubleToLongBits(residual)))
+				break;
+		}
+	}
+	
+	/**
+	 * Clear all statistics
+	 */
+	public final void reset() {
+		solves.set(0);
+		iterations.set(0);
+		residual.set(Double.doubleToLongBits(0));
+	}
+	
+	/**
+	 * Number of calls to solve() since the last reset
+	 */
+	public final long getSolves() {
+		return solves.get();
+	}
+	
+	/**
+	 * Total number of iterations since the last reset
+	 */
+	public final long getIterations() {
+		return iterations.get();
+	}
+	
+	/**
+	 * Largest final residual since the last reset
+	 */
+	public final double getResidual() {
+		return Double.longBitsToDouble(residual.get());
+	}
+}
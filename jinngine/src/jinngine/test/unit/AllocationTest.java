@@ -0,0 +1,272 @@
+/**
+ * Copyright (c) 2008-2010  Morten Silcowitz.
+ *
+ * This file is part of the Jinngine physics library
+ *
+ * Jinngine is published under the GPL license, available
+ * at http://www.gnu.org/copyleft/gpl.html.
+ */
+package jinngine.test.unit;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import jinngine.collision.BroadphaseCollisionDetection;
+import jinngine.collision.DynamicAABBTree;
+import jinngine.collision.SAP2;
+import jinngine.collision.SceneQuery;
+import jinngine.collision.SpatialHashGrid;
+import jinngine.geometry.Box;
+import jinngine.geometry.UniformCapsule;
+import jinngine.geometry.contact.BoxBoxContactGenerator;
+import jinngine.geometry.contact.CapsuleBoxContactGenerator;
+import jinngine.geometry.contact.ContactGenerator;
+import jinngine.geometry.contact.ContactGenerator.ContactPoint;
+import jinngine.math.Quaternion;
+import jinngine.math.Vector3;
+import jinngine.physics.Body;
+import jinngine.physics.DefaultDeactivationPolicy;
+import jinngine.physics.DefaultScene;
+import jinngine.physics.SceneMetrics;
+import jinngine.physics.constraint.contact.FrictionalContactConstraint;
+import jinngine.physics.force.GravityForce;
+import jinngine.physics.solver.ConstraintBuffer;
+import jinngine.physics.solver.PackedNonsmoothNonlinearConjugateGradient;
+import jinngine.physics.solver.PackedProjectedGaussSeidel;
+import jinngine.physics.solver.Solver.NCPConstraint;
+import junit.framework.TestCase;
+
+/**
+ * Checks that the packed solvers, the creation of contact constraints, ray casts, the box contact generators
+ * and the recording of metrics do not allocate memory in steady state. Allocation is measured per thread, and the tests are skipped if the virtual machine
+ * does not support this.
+ */
+public class AllocationTest extends TestCase {
+
+	private static final int CALLS = 1000;
+
+	// bytes allocated by the calling thread so far, or -1 if this cannot be measured
+	private static long allocated() {
+		final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			final com.sun.management.ThreadMXBean sunbean = (com.sun.management.ThreadMXBean)bean;
+			if (sunbean.isThreadAllocatedMemorySupported() && sunbean.isThreadAllocatedMemoryEnabled())
+				return sunbean.getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
+
+	/**
+	 * Return the ncp constraints of a small pyramid of boxes, after a few time-steps
+	 */
+	private static List<NCPConstraint> constraints() {
+		DefaultScene scene = new DefaultScene(new SAP2(), new PackedProjectedGaussSeidel(20), new DefaultDeactivationPolicy());
+		Body floor = new Body("floor", new Box(200,10,200));
+		floor.setPosition(0,-5,0);
+		floor.setFixed(true);
+		scene.addBody(floor);
+
+		for (int i=0; i<3; i++) {
+			for (int j=0; j<3-i; j++) {
+				Body box = new Body("box", new Box(1,1,1));
+				box.setPosition(j*1.1+i*0.55, 0.5+i*1.0, 0);
+				scene.addBody(box);
+				scene.addForce(new GravityForce(box));
+			}
+		}
+
+		for (int i=0; i<10; i++)
+			scene.tick();
+
+		return new ArrayList<NCPConstraint>(scene.ncpconstraints);
+	}
+
+	/**
+	 * The iterations of the packed solvers only touch the arrays of the buffer
+	 */
+	public void testPackedSolve() {
+		if (allocated() < 0) return;
+
+		final List<NCPConstraint> constraints = constraints();
+		assertTrue(constraints.size() > 0);
+		final ConstraintBuffer buffer = new ConstraintBuffer();
+		buffer.gather(constraints);
+
+		final PackedProjectedGaussSeidel pgs = new PackedProjectedGaussSeidel(20);
+		final PackedNonsmoothNonlinearConjugateGradient nncg = new PackedNonsmoothNonlinearConjugateGradient(20);
+
+		// warm up, so the measurement does not include class loading
+		for (int i=0; i<CALLS; i++) {
+			pgs.solve(buffer, 1e-5);
+			nncg.solve(buffer, 1e-5);
+		}
+
+		long start = allocated();
+		for (int i=0; i<CALLS; i++)
+			pgs.solve(buffer, 1e-5);
+		assertTrue(allocated()-start < 1024);
+
+		start = allocated();
+		for (int i=0; i<CALLS; i++)
+			nncg.solve(buffer, 1e-5);
+		assertTrue(allocated()-start < 1024);
+	}
+
+	/**
+	 * Gathering and scattering the constraints into a reused buffer allocates at most an iterator
+	 * of the constraint list, regardless of the number of constraints
+	 */
+	public void testPackedGatherScatter() {
+		if (allocated() < 0) return;
+
+		final List<NCPConstraint> constraints = constraints();
+		final List<Body> bodies = new ArrayList<Body>();
+		final PackedProjectedGaussSeidel pgs = new PackedProjectedGaussSeidel(20);
+
+		for (int i=0; i<CALLS; i++)
+			pgs.solve(constraints, bodies, 1e-5);
+
+		final long start = allocated();
+		for (int i=0; i<CALLS; i++)
+			pgs.solve(constraints, bodies, 1e-5);
+		assertTrue((allocated()-start)/CALLS < 64);
+	}
+
+	/**
+	 * Ncp constraints of a contact constraint are recycled, so creating them allocates at most the
+	 * iterators of the generator and contact lists, regardless of the number of contact points
+	 */
+	public void testFrictionalContactConstraint() {
+		if (allocated() < 0) return;
+
+		final Body b1 = new Body("box1", new Box(1,1,1));
+		final Body b2 = new Body("box2", new Box(1,1,1));
+		b2.setPosition(0,1,0);
+
+		// a generator that always returns the same eight contact points
+		final ContactPoint cp = new ContactPoint();
+		cp.point.assign(0,0.5,0);
+		cp.normal.assign(0,-1,0);
+		cp.envelope = 0.1;
+		cp.depth = 0.01;
+		cp.restitution = 0.5;
+		cp.friction = 0.5;
+		final List<ContactPoint> points = Arrays.asList(cp,cp,cp,cp,cp,cp,cp,cp);
+		final ContactGenerator generator = new ContactGenerator() {
+			public Iterator<ContactPoint> getContacts() { return points.iterator(); }
+			public void run() {}
+			public void remove() {}
+		};
+
+		final FrictionalContactConstraint constraint = new FrictionalContactConstraint(b1, b2, generator);
+		final List<NCPConstraint> ncpconstraints = new ArrayList<NCPConstraint>();
+		for (int i=0; i<CALLS; i++) {
+			ncpconstraints.clear();
+			constraint.applyConstraints(ncpconstraints.listIterator(), 0.01);
+		}
+		assertEquals(3*points.size(), ncpconstraints.size());
+
+		final long start = allocated();
+		for (int i=0; i<CALLS; i++) {
+			ncpconstraints.clear();
+			constraint.applyConstraints(ncpconstraints.listIterator(), 0.01);
+		}
+		// less than 16 bytes per contact point, where a single Vector3 takes up more
+		assertTrue((allocated()-start)/CALLS < 16*points.size());
+	}
+
+	// bytes allocated per ray cast against random boxes in the given broad-phase
+	private static long raycast( BroadphaseCollisionDetection broadphase ) {
+		final Random random = new Random(3);
+		for (int i=0; i<200; i++) {
+			final Body body = new Body("box", new Box(1,1,1));
+			body.setPosition(random.nextDouble()*20-10, random.nextDouble()*20-10, random.nextDouble()*20-10);
+			broadphase.add(body.getGeometries().next());
+		}
+		broadphase.run();
+
+		final SceneQuery query = new SceneQuery(broadphase);
+		final SceneQuery.Hit hit = new SceneQuery.Hit();
+		final Vector3 point = new Vector3(), direction = new Vector3();
+		long start = 0;
+		for (int i=0; i<20*CALLS; i++) {
+			// warm up, so the measurement does not include class loading and compilation
+			if (i == 10*CALLS)
+				start = allocated();
+			point.assign(random.nextDouble()*20-10, random.nextDouble()*20-10, 15);
+			direction.assign(random.nextDouble()*0.2-0.1, random.nextDouble()*0.2-0.1, -1);
+			query.raycast(point, direction, 30, ~0, hit);
+		}
+		return (allocated()-start)/(10*CALLS);
+	}
+
+	/**
+	 * Ray casts reuse the scratch space of the query and the buffers of the broad-phase queries
+	 */
+	public void testRaycast() {
+		if (allocated() < 0) return;
+
+		// less than a single Vector3 per ray
+		assertTrue(raycast(new DynamicAABBTree()) < 16);
+		assertTrue(raycast(new SAP2()) < 16);
+		assertTrue(raycast(new SpatialHashGrid(1.0, 2)) < 16);
+	}
+
+	/**
+	 * Recording the metrics of a time-step reuses the record of the previous time-step
+	 */
+	public void testMetrics() {
+		if (allocated() < 0) return;
+
+		final SceneMetrics metrics = new SceneMetrics();
+		for (int i=0; i<CALLS; i++)
+			record(metrics);
+
+		final long start = allocated();
+		for (int i=0; i<CALLS; i++)
+			record(metrics);
+		assertTrue(allocated()-start < 1024);
+		assertEquals(2*CALLS, metrics.getLastTick().getTick());
+	}
+
+	/**
+	 * The box contact generators keep the frames and contact points of the boxes in scratch space
+	 */
+	public void testBoxContactGenerators() {
+		if (allocated() < 0) return;
+
+		final Box box1 = new Box(1,1,1), box2 = new Box(1,2,1);
+		new Body("box1", box1);
+		final Body body2 = new Body("box2", box2);
+		body2.setPosition(0.2, 1.55, 0.1);
+		body2.setOrientation(Quaternion.rotation(0.3, new Vector3(1,1,0).normalize()).toRotationMatrix3());
+		final UniformCapsule capsule = new UniformCapsule(0.25, 1);
+		new Body("capsule", capsule).setPosition(0, 0.8, 0);
+		final ContactGenerator boxbox = new BoxBoxContactGenerator(box1, box2);
+		final ContactGenerator capsulebox = new CapsuleBoxContactGenerator(capsule, box1);
+
+		for (int i=0; i<CALLS; i++) {
+			boxbox.run();
+			capsulebox.run();
+		}
+		final long start = allocated();
+		for (int i=0; i<CALLS; i++) {
+			boxbox.run();
+			capsulebox.run();
+		}
+		assertTrue(allocated()-start < 1024);
+	}
+
+	private static void record( SceneMetrics metrics ) {
+		metrics.begin();
+		metrics.end(SceneMetrics.Phase.BOUNDS);
+		metrics.pair(3);
+		metrics.end(SceneMetrics.Phase.SOLVER);
+		metrics.commit(1, 2, 2, 4, 10, 1e-3);
+	}
+}
@@ -0,0 +1,115 @@
+/**
+ * Copyright (c) 2008-2010  Morten Silcowitz.
+ *
+ * This file is part of the Jinngine physics library
+ *
+ * Jinngine is published under the GPL license, available
+ * at http://www.gnu.org/copyleft/gpl.html.
+ */
+package jinngine.test.unit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import jinngine.collision.BoundsStore;
+import jinngine.geometry.Box;
+import jinngine.geometry.Geometry;
+import jinngine.geometry.Sphere;
+import jinngine.math.Quaternion;
+import jinngine.math.Vector3;
+import jinngine.physics.Body;
+import junit.framework.TestCase;
+
+public class BoundsStoreTest extends TestCase {
+
+	// check that the stored bounds of g are identical to the bounds reported by g
+	private static void assertBounds( BoundsStore store, Geometry g ) {
+		final int handle = store.getHandle(g);
+		final Vector3 min = g.getMinBounds(), max = g.getMaxBounds();
+		for (int axis=0; axis<3; axis++) {
+			assertEquals(min.get(axis), store.getMin(handle, axis), 0);
+			assertEquals(max.get(axis), store.getMax(handle, axis), 0);
+		}
+	}
+
+	private static List<Geometry> bodies( int n ) {
+		List<Geometry> geometries = new ArrayList<Geometry>();
+		for (int i=0; i<n; i++) {
+			Geometry g = i%2==0? new Box(1,2,3) : new Sphere(0.5);
+			Body body = new Body("body", g);
+			body.setPosition(i, i%7, -i);
+			body.setOrientation(Quaternion.rotation(0.1*i, new Vector3(1,1,0).normalize()).toRotationMatrix3());
+			geometries.add(g);
+		}
+		return geometries;
+	}
+
+	/**
+	 * Handles must be released on removal and reused by later geometries
+	 */
+	public void testHandles() {
+		BoundsStore store = new BoundsStore();
+		List<Geometry> geometries = bodies(40);
+		for (Geometry g: geometries)
+			store.add(g);
+		assertEquals(40, store.size());
+
+		Geometry removed = geometries.get(7);
+		int handle = store.remove(removed);
+		assertEquals(-1, store.getHandle(removed));
+		assertNull(store.getGeometry(handle));
+
+		Geometry g = bodies(1).get(0);
+		assertEquals(handle, store.add(g));
+		assertSame(g, store.getGeometry(handle));
+		assertEquals(40, store.getHandleCount());
+
+		try {
+			store.add(g);
+			fail("adding a geometry twice must fail");
+		} catch (IllegalArgumentException e) {}
+	}
+
+	/**
+	 * Bounds computed in parallel must be identical to the bounds of each geometry
+	 */
+	public void testParallelUpdate() {
+		BoundsStore store = new BoundsStore();
+		List<Geometry> geometries = bodies(500);
+		for (Geometry g: geometries)
+			store.add(g);
+
+		// move the bodies
+		for (Geometry g: geometries)
+			g.getBody().setPosition(g.getBody().getPosition().add(new Vector3(0.5,-1,2)));
+
+		ForkJoinPool pool = new ForkJoinPool(4);
+		store.update(pool);
+		pool.shutdown();
+
+		for (Geometry g: geometries)
+			assertBounds(store, g);
+	}
+
+	/**
+	 * Bounds of geometries on deactivated bodies must not be computed again
+	 */
+	public void testSleeping() {
+		BoundsStore store = new BoundsStore();
+		List<Geometry> geometries = bodies(2);
+		for (Geometry g: geometries)
+			store.add(g);
+
+		Geometry sleeping = geometries.get(0);
+		int handle = store.getHandle(sleeping);
+		double x = store.getMin(handle, 0);
+		sleeping.getBody().deactivated = true;
+		sleeping.getBody().setPosition(100,0,0);
+		geometries.get(1).getBody().setPosition(100,0,0);
+		store.update();
+
+		assertEquals(x, store.getMin(handle, 0), 0);
+		assertBounds(store, geometries.get(1));
+	}
+}
@@ -0,0 +1,175 @@
+/**
+ * Copyright (c) 2008-2010  Morten Silcowitz.
+ *
+ * This file is part of the Jinngine physics library
+ *
+ * Jinngine is published under the GPL license, available
+ * at http://www.gnu.org/copyleft/gpl.html.
+ */
+package jinngine.test.unit;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import jinngine.collision.GJK;
+import jinngine.geometry.Box;
+import jinngine.geometry.contact.BoxBoxContactGenerator;
+import jinngine.geometry.contact.ContactGenerator;
+import jinngine.geometry.contact.ContactGenerator.ContactPoint;
+import jinngine.math.Quaternion;
+import jinngine.math.Vector3;
+import jinngine.physics.Body;
+import junit.framework.TestCase;
+
+public class BoxBoxContactGeneratorTest extends TestCase {
+
+	private static final double epsilon = 1e-10;
+
+	// run the generator and return its contact points
+	private static List<ContactPoint> contacts( ContactGenerator g ) {
+		g.run();
+		List<ContactPoint> result = new ArrayList<ContactPoint>();
+		Iterator<ContactPoint> i = g.getContacts();
+		while (i.hasNext())
+			result.add(i.next());
+		return result;
+	}
+
+	// check that the contact point is at the expected point, with the expected normal and distance
+	private static void assertContact( List<ContactPoint> contacts, Vector3 point, Vector3 normal, double distance ) {
+		for (ContactPoint cp: contacts) {
+			if (cp.point.sub(point).norm() < 1e-9) {
+				assertTrue(cp.normal.sub(normal).norm() < epsilon);
+				assertEquals(distance, cp.distance, epsilon);
+				assertEquals(cp.envelope*0.5-distance, cp.depth, epsilon);
+				return;
+			}
+		}
+		fail("no contact point at "+point);
+	}
+
+	/**
+	 * Two boxes on top of each other must give the four corners of the contact face, midway between the boxes
+	 */
+	public void testFaceFace() {
+		Box box1 = new Box(1,1,1);
+		Box box2 = new Box(2,1,2);
+		new Body("box1", box1);
+		Body body2 = new Body("box2", box2);
+		body2.setPosition(0, 1.05, 0);
+
+		// box2 is B, the normal points from box2 towards box1
+		List<ContactPoint> contacts = contacts(new BoxBoxContactGenerator(box1, box2));
+		assertEquals(4, contacts.size());
+		Vector3 normal = new Vector3(0,-1,0);
+		assertContact(contacts, new Vector3( 0.5,0.525, 0.5), normal, 0.05);
+		assertContact(contacts, new Vector3(-0.5,0.525, 0.5), normal, 0.05);
+		assertContact(contacts, new Vector3(-0.5,0.525,-0.5), normal, 0.05);
+		assertContact(contacts, new Vector3( 0.5,0.525,-0.5), normal, 0.05);
+		assertSame(contacts.get(0).b1, box1.getBody());
+
+		// swapping the boxes reverses the normal
+		contacts = contacts(new BoxBoxContactGenerator(box2, box1));
+		assertEquals(4, contacts.size());
+		assertContact(contacts, new Vector3(0.5,0.525,0.5), new Vector3(0,1,0), 0.05);
+
+		// penetration
+		body2.setPosition(0, 0.9, 0);
+		contacts = contacts(new BoxBoxContactGenerator(box1, box2));
+		assertEquals(4, contacts.size());
+		assertContact(contacts, new Vector3(0.5,0.45,0.5), normal, -0.1);
+
+		// separated by more than the envelope
+		body2.setPosition(0, 1.2, 0);
+		assertEquals(0, contacts(new BoxBoxContactGenerator(box1, box2)).size());
+	}
+
+	/**
+	 * A box resting on one of its edges must give the two end points of the edge
+	 */
+	public void testEdgeFace() {
+		Box box1 = new Box(1,1,1);
+		Box box2 = new Box(1,1,1);
+		new Body("box1", box1);
+		Body body2 = new Body("box2", box2);
+		body2.setOrientation(Quaternion.rotation(Math.PI*0.25, new Vector3(0,0,1)).toRotationMatrix3());
+		body2.setPosition(0, 0.5+Math.sqrt(0.5)+0.05, 0);
+
+		List<ContactPoint> contacts = contacts(new BoxBoxContactGenerator(box1, box2));
+		assertEquals(2, contacts.size());
+		assertContact(contacts, new Vector3(0,0.525, 0.5), new Vector3(0,-1,0), 0.05);
+		assertContact(contacts, new Vector3(0,0.525,-0.5), new Vector3(0,-1,0), 0.05);
+	}
+
+	/**
+	 * Two crossed edges must give a single contact point between the edges
+	 */
+	public void testEdgeEdge() {
+		Box box1 = new Box(1,1,1);
+		Box box2 = new Box(1,1,1);
+		Body body1 = new Body("box1", box1);
+		Body body2 = new Body("box2", box2);
+		// the top edge of box1 is along the x axis, and the bottom edge of box2 along the z axis
+		body1.setOrientation(Quaternion.rotation(Math.PI*0.25, new Vector3(1,0,0)).toRotationMatrix3());
+		body2.setOrientation(Quaternion.rotation(Math.PI*0.25, new Vector3(0,0,1)).toRotationMatrix3());
+		body2.setPosition(0, 2*Math.sqrt(0.5)+0.05, 0);
+
+		List<ContactPoint> contacts = contacts(new BoxBoxContactGenerator(box1, box2));
+		assertEquals(1, contacts.size());
+		assertContact(contacts, new Vector3(0,Math.sqrt(0.5)+0.025,0), new Vector3(0,-1,0), 0.05);
+
+		// separated by more than the envelope
+		body2.setPosition(0, 2*Math.sqrt(0.5)+0.2, 0);
+		assertEquals(0, contacts(new BoxBoxContactGenerator(box1, box2)).size());
+	}
+
+	/**
+	 * Randomly oriented boxes, separated by less than the envelope, must have a contact point at the distance
+	 * between the boxes, which is computed by gjk
+	 */
+	public void testSeparatedDistance() {
+		final GJK gjk = new GJK();
+		final Random random = new Random(5973);
+		for (int i=0; i<2000; i++) {
+			final Box box1 = new Box(0.5+random.nextDouble(), 0.5+random.nextDouble(), 0.5+random.nextDouble());
+			final Box box2 = new Box(0.5+random.nextDouble(), 0.5+random.nextDouble(), 0.5+random.nextDouble());
+			final Body body1 = new Body("box1", box1);
+			final Body body2 = new Body("box2", box2);
+			body1.setOrientation(Quaternion.rotation(random.nextDouble()*2*Math.PI, direction(random)).toRotationMatrix3());
+			body2.setOrientation(Quaternion.rotation(random.nextDouble()*2*Math.PI, direction(random)).toRotationMatrix3());
+
+			// move box2 away from box1 along a random direction, until the distance between them is the gap
+			final Vector3 direction = direction(random);
+			final double gap = 0.005 + random.nextDouble()*(box1.getEnvelope()-0.01);
+			double low = 0, high = 5;
+			for (int k=0; k<60; k++) {
+				body2.setPosition(direction.multiply((low+high)*0.5));
+				if (distance(gjk, box1, box2) < gap)
+					low = (low+high)*0.5;
+				else
+					high = (low+high)*0.5;
+			}
+			body2.setPosition(direction.multiply(high));
+			final double expected = distance(gjk, box1, box2);
+
+			double nearest = Double.POSITIVE_INFINITY;
+			for (ContactPoint cp: contacts(new BoxBoxContactGenerator(box1, box2)))
+				nearest = Math.min(nearest, cp.distance);
+			assertEquals(expected, nearest, 1e-6);
+		}
+	}
+
+	// random unit vector
+	private static Vector3 direction( Random random ) {
+		return new Vector3(random.nextGaussian(), random.nextGaussian(), random.nextGaussian()).normalize();
+	}
+
+	// distance between the boxes, computed by gjk
+	private static double distance( GJK gjk, Box box1, Box box2 ) {
+		final Vector3 p1 = new Vector3(), p2 = new Vector3();
+		gjk.run(box1, box2, p1, p2, Double.POSITIVE_INFINITY, 1e-9, 64);
+		return gjk.getState().intersection? 0 : p1.sub(p2).norm();
+	}
+}
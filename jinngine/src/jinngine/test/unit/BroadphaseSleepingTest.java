@@ -0,0 +1,158 @@
+/**
+ * Copyright (c) 2008-2010  Morten Silcowitz.
+ *
+ * This file is part of the Jinngine physics library
+ *
+ * Jinngine is published under the GPL license, available
+ * at http://www.gnu.org/copyleft/gpl.html.
+ */
+package jinngine.test.unit;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import jinngine.collision.BoundsStore;
+import jinngine.collision.BroadphaseCollisionDetection;
+import jinngine.collision.DynamicAABBTree;
+import jinngine.collision.ExhaustiveSearch;
+import jinngine.collision.SAP2;
+import jinngine.collision.SAP3;
+import jinngine.collision.SpatialHashGrid;
+import jinngine.collision.SweepAndPrune;
+import jinngine.geometry.Box;
+import jinngine.geometry.Geometry;
+import jinngine.physics.Body;
+import jinngine.util.Pair;
+import junit.framework.TestCase;
+
+/**
+ * Checks that deactivated geometries are taken out of the work done by the broad-phase implementations in
+ * each run, while their pairs are kept, and overlaps with active geometries are still found
+ */
+public class BroadphaseSleepingTest extends TestCase {
+
+	private static final int ROWS = 10, COLUMNS = 20;
+
+	private List<Body> sleepers;
+	private Body mover;
+
+	// a grid of overlapping boxes that is deactivated after the first run, and a single active box
+	private void setUp( BroadphaseCollisionDetection broadphase ) {
+		sleepers = new ArrayList<Body>();
+		for (int i=0; i<COLUMNS; i++) {
+			for (int j=0; j<ROWS; j++) {
+				final Body body = new Body("sleeper", new Box(1,1,1));
+				body.setPosition(i*0.9, j*0.9, 0);
+				broadphase.add(body.getGeometries().next());
+				sleepers.add(body);
+			}
+		}
+		mover = new Body("mover", new Box(1,1,1));
+		mover.setPosition(-5, 0.3, 0.5);
+		broadphase.add(mover.getGeometries().next());
+		broadphase.run();
+
+		for (Body body: sleepers) {
+			body.deactivated = true;
+			broadphase.deactivate(body.getGeometries().next());
+		}
+	}
+
+	// overlapping pairs, found by testing all pairs of stored bounding boxes
+	private Set<Pair<Geometry>> pairs( BroadphaseCollisionDetection broadphase ) {
+		final List<Body> bodies = new ArrayList<Body>(sleepers);
+		bodies.add(mover);
+		final BoundsStore store = broadphase.getBoundsStore();
+		final Set<Pair<Geometry>> pairs = new LinkedHashSet<Pair<Geometry>>();
+		for (int i=0; i<bodies.size(); i++) {
+			for (int j=i+1; j<bodies.size(); j++) {
+				final Geometry a = bodies.get(i).getGeometries().next(), b = bodies.get(j).getGeometries().next();
+				if (store.overlap(store.getHandle(a), store.getHandle(b)))
+					pairs.add(new Pair<Geometry>(a,b));
+			}
+		}
+		return pairs;
+	}
+
+	// move the active box through the first row of sleeping boxes, and return the largest
+	// amount of work done in a run, as measured by the given counter
+	private int sweep( BroadphaseCollisionDetection broadphase, Counter counter ) {
+		final Set<Pair<Geometry>> sleeping = pairs(broadphase);
+		assertTrue(sleeping.size() > 2*ROWS*COLUMNS);
+
+		int work = 0;
+		for (int i=0; i<40; i++) {
+			mover.setPosition(-2+i*0.5, 0.3, 0.5);
+			broadphase.run();
+			if (i > 0)
+				work = Math.max(work, counter.work());
+			assertEquals(pairs(broadphase), broadphase.getOverlappingPairs());
+		}
+		return work;
+	}
+
+	private interface Counter {
+		public int work();
+	}
+
+	public void testSAP2() {
+		final SAP2 sap = new SAP2();
+		setUp(sap);
+		final int sorted = sweep(sap, new Counter() { public int work() { return sap.getSortedPoints(); } });
+		assertEquals(6, sorted);
+		// the box passes at most two columns of sleeping boxes in each run
+		final int visited = sweep(sap, new Counter() { public int work() { return sap.getVisitedCounters(); } });
+		assertTrue(visited <= 2*ROWS);
+	}
+
+	public void testSAP3() {
+		final SAP3 sap = new SAP3();
+		setUp(sap);
+		assertEquals(6, sweep(sap, new Counter() { public int work() { return sap.getSortedPoints(); } }));
+	}
+
+	public void testSweepAndPrune() {
+		final SweepAndPrune sap = new SweepAndPrune();
+		setUp(sap);
+		assertEquals(6, sweep(sap, new Counter() { public int work() { return sap.getSortedPoints(); } }));
+	}
+
+	public void testExhaustiveSearch() {
+		final ExhaustiveSearch search = new ExhaustiveSearch();
+		setUp(search);
+		assertEquals(ROWS*COLUMNS, sweep(search, new Counter() { public int work() { return search.getTests(); } }));
+	}
+
+	public void testSpatialHashGrid() {
+		final SpatialHashGrid grid = new SpatialHashGrid(1.5, 2);
+		setUp(grid);
+		assertTrue(sweep(grid, new Counter() { public int work() { return grid.getInsertedEntries(); } }) <= 8);
+	}
+
+	public void testDynamicAABBTree() {
+		final DynamicAABBTree tree = new DynamicAABBTree();
+		setUp(tree);
+		sweep(tree, new Counter() { public int work() { return 0; } });
+	}
+
+	/**
+	 * An activated geometry is sorted again, and its pairs follow it when it moves
+	 */
+	public void testActivate() {
+		final SAP2 sap = new SAP2();
+		setUp(sap);
+		sap.run();
+		sap.run();
+		assertEquals(6, sap.getSortedPoints());
+
+		final Body body = sleepers.get(ROWS+1);
+		body.deactivated = false;
+		sap.activate(body.getGeometries().next());
+		body.setPosition(30, 30, 30);
+		sap.run();
+		assertEquals(12, sap.getSortedPoints());
+		assertEquals(pairs(sap), sap.getOverlappingPairs());
+	}
+}
@@ -0,0 +1,169 @@
+/**
+ * Copyright (c) 2008-2010  Morten Silcowitz.
+ *
+ * This file is part of the Jinngine physics library
+ *
+ * Jinngine is published under the GPL license, available
+ * at http://www.gnu.org/copyleft/gpl.html.
+ */
+package jinngine.test.unit;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import jinngine.geometry.Box;
+import jinngine.geometry.Sphere;
+import jinngine.geometry.UniformCapsule;
+import jinngine.geometry.contact.CapsuleBoxContactGenerator;
+import jinngine.geometry.contact.CapsuleContactGenerator;
+import jinngine.geometry.contact.CapsuleSphereContactGenerator;
+import jinngine.geometry.contact.ContactGenerator;
+import jinngine.geometry.contact.ContactGenerator.ContactPoint;
+import jinngine.math.Matrix3;
+import jinngine.math.Quaternion;
+import jinngine.math.Vector3;
+import jinngine.physics.Body;
+import junit.framework.TestCase;
+
+public class CapsuleContactGeneratorTest extends TestCase {
+
+	private static final double epsilon = 1e-10;
+
+	// rotation that takes the capsule axis from the z axis to the x axis
+	private static final Matrix3 alongx = Quaternion.rotation(Math.PI*0.5, new Vector3(0,1,0)).toRotationMatrix3();
+
+	// run the generator and return its contact points
+	private static List<ContactPoint> contacts( ContactGenerator g ) {
+		g.run();
+		List<ContactPoint> result = new ArrayList<ContactPoint>();
+		Iterator<ContactPoint> i = g.getContacts();
+		while (i.hasNext())
+			result.add(i.next());
+		return result;
+	}
+
+	// check that a contact point is at the expected point, with the expected normal and distance
+	private static void assertContact( List<ContactPoint> contacts, Vector3 point, Vector3 normal, double distance ) {
+		for (ContactPoint cp: contacts) {
+			if (cp.point.sub(point).norm() < 1e-9) {
+				assertTrue(cp.normal.sub(normal).norm() < epsilon);
+				assertEquals(distance, cp.distance, epsilon);
+				assertEquals(cp.envelope*0.5-distance, cp.depth, epsilon);
+				return;
+			}
+		}
+		fail("no contact point at "+point);
+	}
+
+	/**
+	 * Crossed capsules touch in a single point, and parallel capsules at both ends of their overlap
+	 */
+	public void testCapsuleCapsule() {
+		UniformCapsule capsule1 = new UniformCapsule(0.5, 2);
+		UniformCapsule capsule2 = new UniformCapsule(0.25, 4);
+		Body body1 = new Body("capsule1", capsule1);
+		Body body2 = new Body("capsule2", capsule2);
+
+		// capsule1 along the x axis, capsule2 along the z axis above it
+		body1.setOrientation(alongx);
+		body2.setPosition(0.5, 0.8, 0);
+		List<ContactPoint> contacts = contacts(new CapsuleContactGenerator(capsule1, capsule2));
+		assertEquals(1, contacts.size());
+		assertContact(contacts, new Vector3(0.5,0.525,0), new Vector3(0,-1,0), 0.05);
+		assertSame(body1, contacts.get(0).b1);
+
+		// both along the x axis, overlapping from x=0 to x=1
+		body2.setOrientation(alongx);
+		body2.setPosition(2, 0.8, 0);
+		contacts = contacts(new CapsuleContactGenerator(capsule1, capsule2));
+		assertEquals(2, contacts.size());
+		assertContact(contacts, new Vector3(0,0.525,0), new Vector3(0,-1,0), 0.05);
+		assertContact(contacts, new Vector3(1,0.525,0), new Vector3(0,-1,0), 0.05);
+
+		// separated by more than the envelope
+		body2.setPosition(2, 1, 0);
+		assertEquals(0, contacts(new CapsuleContactGenerator(capsule1, capsule2)).size());
+	}
+
+	/**
+	 * The sphere touches the capsule at the point on the segment closest to its centre, in either order
+	 */
+	public void testCapsuleSphere() {
+		UniformCapsule capsule = new UniformCapsule(0.5, 2);
+		Sphere sphere = new Sphere(1);
+		new Body("capsule", capsule);
+		Body body = new Body("sphere", sphere);
+
+		// beyond the end of the capsule at z=1
+		body.setPosition(0, 0, 2.6);
+		List<ContactPoint> contacts = contacts(new CapsuleSphereContactGenerator(capsule, sphere));
+		assertEquals(1, contacts.size());
+		assertContact(contacts, new Vector3(0,0,1.55), new Vector3(0,0,-1), 0.1);
+
+		contacts = contacts(new CapsuleSphereContactGenerator(sphere, capsule));
+		assertEquals(1, contacts.size());
+		assertContact(contacts, new Vector3(0,0,1.55), new Vector3(0,0,1), 0.1);
+		assertSame(body, contacts.get(0).b1);
+
+		// penetrating the side of the capsule
+		body.setPosition(1.25, 0, 0.5);
+		contacts = contacts(new CapsuleSphereContactGenerator(capsule, sphere));
+		assertEquals(1, contacts.size());
+		assertContact(contacts, new Vector3(0.375,0,0.5), new Vector3(-1,0,0), -0.25);
+
+		body.setPosition(1.7, 0, 0.5);
+		assertEquals(0, contacts(new CapsuleSphereContactGenerator(capsule, sphere)).size());
+	}
+
+	/**
+	 * A capsule lying on a box face touches it at both ends of the segment clipped to the face, while a capsule
+	 * standing on its end touches it in a single point
+	 */
+	public void testCapsuleBox() {
+		UniformCapsule capsule = new UniformCapsule(0.5, 4);
+		Box box = new Box(2,1,2);
+		Body body1 = new Body("capsule", capsule);
+		Body body2 = new Body("box", box);
+		body2.setPosition(0, -0.5, 0);
+
+		// lying along the x axis, the segment extends past the box face, from x=-2 to x=2
+		body1.setOrientation(alongx);
+		body1.setPosition(0, 0.6, 0);
+		List<ContactPoint> contacts = contacts(new CapsuleBoxContactGenerator(capsule, box));
+		assertEquals(2, contacts.size());
+		assertContact(contacts, new Vector3(-1,0.05,0), new Vector3(0,1,0), 0.1);
+		assertContact(contacts, new Vector3( 1,0.05,0), new Vector3(0,1,0), 0.1);
+
+		// reversed order
+		contacts = contacts(new CapsuleBoxContactGenerator(box, capsule));
+		assertEquals(2, contacts.size());
+		assertContact(contacts, new Vector3(1,0.05,0), new Vector3(0,-1,0), 0.1);
+		assertSame(body2, contacts.get(0).b1);
+
+		// sunk into the box, so the segment intersects the box
+		body1.setPosition(0, -0.2, 0.5);
+		contacts = contacts(new CapsuleBoxContactGenerator(capsule, box));
+		assertEquals(2, contacts.size());
+		assertContact(contacts, new Vector3(-1,-0.35,0.5), new Vector3(0,1,0), -0.7);
+		assertContact(contacts, new Vector3( 1,-0.35,0.5), new Vector3(0,1,0), -0.7);
+
+		// standing on its end, above a corner of the box
+		body1.setOrientation(Quaternion.rotation(Math.PI*0.5, new Vector3(1,0,0)).toRotationMatrix3());
+		body1.setPosition(0.9, 2.55, 0.9);
+		contacts = contacts(new CapsuleBoxContactGenerator(capsule, box));
+		assertEquals(1, contacts.size());
+		assertContact(contacts, new Vector3(0.9,0.025,0.9), new Vector3(0,1,0), 0.05);
+
+		// along the z axis, parallel to an edge of the box and diagonally away from it
+		body1.setOrientation(Matrix3.identity());
+		body1.setPosition(1+Math.sqrt(0.5)*0.55, Math.sqrt(0.5)*0.55, 0);
+		contacts = contacts(new CapsuleBoxContactGenerator(capsule, box));
+		assertEquals(1, contacts.size());
+		assertEquals(0.05, contacts.get(0).distance, epsilon);
+		assertTrue(contacts.get(0).normal.sub(new Vector3(Math.sqrt(0.5),Math.sqrt(0.5),0)).norm() < epsilon);
+
+		body1.setPosition(3, 0.6, 0);
+		assertEquals(0, contacts(new CapsuleBoxContactGenerator(capsule, box)).size());
+	}
+}
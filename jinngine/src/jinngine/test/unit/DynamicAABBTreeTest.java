@@ -0,0 +1,42 @@
+/**
+ * Copyright (c) 2008-2010  Morten Silcowitz.
+ *
+ * This file is part of the Jinngine physics library
+ *
+ * Jinngine is published under the GPL license, available 
+ * at http://www.gnu.org/copyleft/gpl.html. 
+ */
+package jinngine.test.unit;
+
+import jinngine.collision.DynamicAABBTree;
+import jinngine.geometry.Box;
+import jinngine.physics.Body;
+import junit.framework.TestCase;
+
+public class DynamicAABBTreeTest extends TestCase {
+
+	/**
+	 * Overlapping pairs and events must match those of the exhaustive search
+	 */
+	public void testAgainstExhaustiveSearch() {
+		SweepAndPruneTest.compareWithExhaustiveSearch(new DynamicAABBTree());
+		SweepAndPruneTest.compareWithExhaustiveSearch(new DynamicAABBTree(0));
+	}
+	
+	/**
+	 * Geometries clustered along a single axis must still give a balanced tree
+	 */
+	public void testBalance() {
+		DynamicAABBTree tree = new DynamicAABBTree();
+		for (int i=0; i<1024; i++) {
+			Box box = new Box(1,1,1);
+			Body body = new Body("box", box);
+			body.setPosition(0, i*2.0, 0);
+			tree.add(box);
+		}
+		tree.run();
+		
+		// a balanced tree of 1024 leaves has height 10
+		assertTrue( tree.getHeight() <= 20 );
+	}
+}
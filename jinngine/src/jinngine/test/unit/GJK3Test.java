@@ -8,7 +8,10 @@
  */
 package jinngine.test.unit;
 
+import java.util.Random;
+
 import jinngine.collision.GJK;
+import jinngine.geometry.Box;
 import jinngine.geometry.Sphere;
 import jinngine.math.Vector3;
 import jinngine.physics.Body;
@@ -147,5 +150,32 @@ public class GJK3Test extends TestCase {
 		}
 	}
 
+	/*
+	 * Spheres placed randomly around a box, including configurations where the closest point is on an edge 
+	 * or a corner of the box, and overlapping configurations. The distance is known in closed form. A single
+	 * gjk instance is used, so that the simplex is reused between configurations
+	 */
+	public void testSphereBox() {
+		GJK gjk = new GJK();
+		Sphere sphere = new Sphere(0.7);
+		Body b1 = new Body("default", sphere);
+		Box box = new Box(1.5,0.4,1);
+		new Body("default", box);
+		Random random = new Random(3);
+
+		for (int i=0; i<5000; i++) {
+			Vector3 c = new Vector3(random.nextDouble()*4-2, random.nextDouble()*4-2, random.nextDouble()*4-2);
+			b1.setPosition(c);
+			double dx = Math.max(Math.abs(c.x)-0.75,0), dy = Math.max(Math.abs(c.y)-0.2,0), dz = Math.max(Math.abs(c.z)-0.5,0);
+			double expected = Math.max(Math.sqrt(dx*dx+dy*dy+dz*dz)-0.7, 0);
 
+			Vector3 p1 = new Vector3();
+			Vector3 p2 = new Vector3();
+			gjk.run(sphere,box,p1,p2,Double.POSITIVE_INFINITY, 1e-7, 31);
+			double d = gjk.getState().intersection? 0 : p1.sub(p2).norm();
+
+			assertEquals(expected, d, 1e-5);
+			assertTrue(gjk.getState().iterations <= 32);
+		}
+	}
 }
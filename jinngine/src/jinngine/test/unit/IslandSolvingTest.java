@@ -0,0 +1,113 @@
+/**
+ * Copyright (c) 2008-2010  Morten Silcowitz.
+ *
+ * This file is part of the Jinngine physics library
+ *
+ * Jinngine is published under the GPL license, available 
+ * at http://www.gnu.org/copyleft/gpl.html. 
+ */
+package jinngine.test.unit;
+
+import java.util.concurrent.ForkJoinPool;
+
+import jinngine.collision.SAP2;
+import jinngine.geometry.Box;
+import jinngine.math.Vector3;
+import jinngine.physics.Body;
+import jinngine.physics.DefaultDeactivationPolicy;
+import jinngine.physics.DefaultScene;
+import jinngine.physics.force.GravityForce;
+import jinngine.physics.solver.ProjectedGaussSeidel;
+import junit.framework.TestCase;
+
+public class IslandSolvingTest extends TestCase {
+
+	/**
+	 * Create a scene with a fixed floor and a number of separate box stacks. The 
+	 * stacks will form independent components in the constraint graph
+	 */
+	private Body[] createStacks( DefaultScene scene, int stacks, int height ) {
+		Body floor = new Body("floor", new Box(200,10,200));
+		floor.setPosition(0,-5,0);
+		floor.setFixed(true);
+		scene.addBody(floor);
+		
+		Body[] boxes = new Body[stacks*height];
+		for (int i=0; i<stacks; i++) {
+			for (int j=0; j<height; j++) {
+				Body box = new Body("box", new Box(1,1,1));
+				box.setPosition(i*5, 0.5+j*1.0, 0);
+				scene.addBody(box);
+				scene.addForce(new GravityForce(box));
+				boxes[i*height+j] = box;
+			}
+		}
+		return boxes;
+	}
+	
+	/**
+	 * Solving a single component in a pool must give exactly the same result as serial solving
+	 */
+	public void testSingleIsland() {
+		DefaultScene serial = new DefaultScene(new SAP2(), new ProjectedGaussSeidel(25), new DefaultDeactivationPolicy());
+		DefaultScene parallel = new DefaultScene(new SAP2(), new ProjectedGaussSeidel(25), new DefaultDeactivationPolicy());
+		parallel.setIslandParallelism(new ForkJoinPool(2));
+		
+		Body[] a = createStacks(serial, 1, 3);
+		Body[] b = createStacks(parallel, 1, 3);
+		
+		for (int n=0; n<50; n++) {
+			serial.tick();
+			parallel.tick();
+		}
+		
+		for (int i=0; i<a.length; i++) 
+			assertTrue( a[i].getPosition().sub(b[i].getPosition()).norm() < 1e-12 );
+	}
+
+	/**
+	 * Stacks solved as independent islands must stay close to the serially solved stacks
+	 */
+	public void testSeveralIslands() {
+		DefaultScene serial = new DefaultScene(new SAP2(), new ProjectedGaussSeidel(25), new DefaultDeactivationPolicy());
+		DefaultScene parallel = new DefaultScene(new SAP2(), new ProjectedGaussSeidel(25), new DefaultDeactivationPolicy());
+		parallel.setIslandParallelism(new ForkJoinPool(4));
+		
+		Body[] a = createStacks(serial, 4, 3);
+		Body[] b = createStacks(parallel, 4, 3);
+		
+		for (int n=0; n<50; n++) {
+			serial.tick();
+			parallel.tick();
+		}
+		
+		// stacks must be independent of each other
+		for (int i=1; i<4; i++) 
+			for (int j=0; j<3; j++) 
+				assertTrue( b[i*3+j].getPosition().sub(new Vector3(i*5,0,0)).sub(b[j].getPosition()).norm() < 1e-9 );
+		
+		for (int i=0; i<a.length; i++) 
+			assertTrue( a[i].getPosition().sub(b[i].getPosition()).norm() < 1e-2 );
+	}
+
+	/**
+	 * Generating contacts in parallel, ahead of applying constraints, must give exactly the same 
+	 * result as generating contacts serially
+	 */
+	public void testParallelNarrowphase() {
+		DefaultScene serial = new DefaultScene(new SAP2(), new ProjectedGaussSeidel(25), new DefaultDeactivationPolicy());
+		DefaultScene parallel = new DefaultScene(new SAP2(), new ProjectedGaussSeidel(25), new DefaultDeactivationPolicy());
+		parallel.setNarrowphaseParallelism(new ForkJoinPool(4));
+		
+		Body[] a = createStacks(serial, 4, 3);
+		Body[] b = createStacks(parallel, 4, 3);
+		
+		for (int n=0; n<50; n++) {
+			serial.tick();
+			parallel.tick();
+		}
+		
+		for (int i=0; i<a.length; i++) 
+			assertTrue( a[i].getPosition().sub(b[i].getPosition()).norm() < 1e-12 );
+	}
+}
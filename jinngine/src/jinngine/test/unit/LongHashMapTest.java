@@ -0,0 +1,58 @@
+/**
+ * Copyright (c) 2008-2010  Morten Silcowitz.
+ *
+ * This file is part of the Jinngine physics library
+ *
+ * Jinngine is published under the GPL license, available 
+ * at http://www.gnu.org/copyleft/gpl.html. 
+ */
+package jinngine.test.unit;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import jinngine.util.LongHashMap;
+import jinngine.util.LongIntHashMap;
+import junit.framework.TestCase;
+
+public class LongHashMapTest extends TestCase {
+
+	/**
+	 * Insert, replace and remove random keys, and compare with a java.util.HashMap
+	 */
+	public void testRandomOperations() {
+		Random random = new Random(5);
+		LongHashMap<String> map = new LongHashMap<String>();
+		Map<Long,String> reference = new HashMap<Long,String>();
+		
+		for (int i=0; i<20000; i++) {
+			// use a small key range to force collisions and removals
+			long key = LongIntHashMap.pair(random.nextInt(40), random.nextInt(40));
+			if (random.nextBoolean()) {
+				map.put(key, "value"+i);
+				reference.put(key, "value"+i);
+			} else {
+				assertEquals( reference.remove(key), map.remove(key) );
+			}
+			assertEquals( reference.size(), map.size() );
+			assertEquals( reference.containsKey(key), map.containsKey(key) );
+		}
+		
+		// all entries must be found by lookup and by iteration
+		int found = 0;
+		for (int i=0; i<map.capacity(); i++) {
+			if (map.isUsed(i)) {
+				found++;
+				assertEquals( reference.get(map.keyAt(i)), map.valueAt(i) );
+			}
+		}
+		assertEquals( reference.size(), found );
+		for (Map.Entry<Long,String> e: reference.entrySet()) 
+			assertEquals( e.getValue(), map.get(e.getKey()) );
+		
+		map.clear();
+		assertEquals( 0, map.size() );
+		assertNull( map.get(LongIntHashMap.pair(1, 2)) );
+	}
+}
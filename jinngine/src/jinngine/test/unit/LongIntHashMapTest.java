@@ -0,0 +1,69 @@
+/**
+ * Copyright (c) 2008-2010  Morten Silcowitz.
+ *
+ * This file is part of the Jinngine physics library
+ *
+ * Jinngine is published under the GPL license, available 
+ * at http://www.gnu.org/copyleft/gpl.html. 
+ */
+package jinngine.test.unit;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import jinngine.util.LongIntHashMap;
+import junit.framework.TestCase;
+
+public class LongIntHashMapTest extends TestCase {
+
+	/**
+	 * Insert, update and remove random keys, and compare with a java.util.HashMap
+	 */
+	public void testRandomOperations() {
+		Random random = new Random(3);
+		LongIntHashMap map = new LongIntHashMap();
+		Map<Long,Integer> reference = new HashMap<Long,Integer>();
+		
+		for (int i=0; i<20000; i++) {
+			// use a small key range to force collisions and removals
+			long key = LongIntHashMap.pair(random.nextInt(40), random.nextInt(40));
+			int op = random.nextInt(3);
+			if (op == 0) {
+				map.put(key, i);
+				reference.put(key, i);
+			} else if (op == 1) {
+				Integer value = reference.remove(key);
+				assertEquals( value == null? -1 : value.intValue(), map.remove(key, -1));
+			} else {
+				int value = map.add(key, 2);
+				Integer old = reference.get(key);
+				reference.put(key, old == null? 2 : old+2 );
+				assertEquals( reference.get(key).intValue(), value );
+			}
+			assertEquals( reference.size(), map.size() );
+		}
+		
+		// all entries must be found by lookup and by iteration
+		int found = 0;
+		for (int i=0; i<map.capacity(); i++) {
+			if (map.isUsed(i)) {
+				found++;
+				assertEquals( reference.get(map.keyAt(i)).intValue(), map.valueAt(i) );
+			}
+		}
+		assertEquals( reference.size(), found );
+		for (Map.Entry<Long,Integer> e: reference.entrySet()) 
+			assertEquals( e.getValue().intValue(), map.get(e.getKey(), -1) );
+	}
+	
+	/**
+	 * Unordered pair keys must not depend on the order of the two integers
+	 */
+	public void testPairKeys() {
+		long key = LongIntHashMap.pair(5, 3);
+		assertEquals( key, LongIntHashMap.pair(3, 5) );
+		assertEquals( 3, LongIntHashMap.first(key) );
+		assertEquals( 5, LongIntHashMap.second(key) );
+	}
+}
@@ -0,0 +1,73 @@
+/**
+ * Copyright (c) 2008-2010  Morten Silcowitz.
+ *
+ * This file is part of the Jinngine physics library
+ *
+ * Jinngine is published under the GPL license, available 
+ * at http://www.gnu.org/copyleft/gpl.html. 
+ */
+package jinngine.test.unit;
+
+import jinngine.collision.SAP2;
+import jinngine.geometry.Box;
+import jinngine.physics.Body;
+import jinngine.physics.DefaultDeactivationPolicy;
+import jinngine.physics.DefaultScene;
+import jinngine.physics.force.GravityForce;
+import jinngine.physics.solver.NonsmoothNonlinearConjugateGradient;
+import jinngine.physics.solver.PackedNonsmoothNonlinearConjugateGradient;
+import jinngine.physics.solver.PackedProjectedGaussSeidel;
+import jinngine.physics.solver.ProjectedGaussSeidel;
+import jinngine.physics.solver.Solver;
+import junit.framework.TestCase;
+
+public class PackedSolverTest extends TestCase {
+
+	/**
+	 * Simulate a small pyramid of boxes using the given solver, and return the bodies
+	 */
+	private Body[] simulate( Solver solver, int steps ) {
+		DefaultScene scene = new DefaultScene(new SAP2(), solver, new DefaultDeactivationPolicy());
+		Body floor = new Body("floor", new Box(200,10,200));
+		floor.setPosition(0,-5,0);
+		floor.setFixed(true);
+		scene.addBody(floor);
+		
+		Body[] boxes = new Body[6];
+		int n = 0;
+		for (int i=0; i<3; i++) {
+			for (int j=0; j<3-i; j++) {
+				Body box = new Body("box", new Box(1,1,1));
+				box.setPosition(j*1.1+i*0.55, 0.5+i*1.0, 0);
+				scene.addBody(box);
+				scene.addForce(new GravityForce(box));
+				boxes[n++] = box;
+			}
+		}
+		
+		for (int i=0; i<steps; i++)
+			scene.tick();
+		
+		return boxes;
+	}
+	
+	/**
+	 * Packed PGS must reproduce the trajectory of the object based PGS
+	 */
+	public void testPackedProjectedGaussSeidel() {
+		Body[] a = simulate(new ProjectedGaussSeidel(20), 40);
+		Body[] b = simulate(new PackedProjectedGaussSeidel(20), 40);
+		for (int i=0; i<a.length; i++) 
+			assertTrue( a[i].getPosition().sub(b[i].getPosition()).norm() < 1e-8 );
+	}
+
+	/**
+	 * Packed NNCG must reproduce the trajectory of the object based NNCG
+	 */
+	public void testPackedNonsmoothNonlinearConjugateGradient() {
+		Body[] a = simulate(new NonsmoothNonlinearConjugateGradient(20), 40);
+		Body[] b = simulate(new PackedNonsmoothNonlinearConjugateGradient(20), 40);
+		for (int i=0; i<a.length; i++) 
+			assertTrue( a[i].getPosition().sub(b[i].getPosition()).norm() < 1e-8 );
+	}
+}
@@ -0,0 +1,94 @@
+/**
+ * Copyright (c) 2008-2010  Morten Silcowitz.
+ *
+ * This file is part of the Jinngine physics library
+ *
+ * Jinngine is published under the GPL license, available
+ * at http://www.gnu.org/copyleft/gpl.html.
+ */
+package jinngine.test.unit;
+
+import jinngine.collision.SAP2;
+import jinngine.geometry.Box;
+import jinngine.physics.Body;
+import jinngine.physics.DefaultDeactivationPolicy;
+import jinngine.physics.DefaultScene;
+import jinngine.physics.SceneMetrics;
+import jinngine.physics.force.GravityForce;
+import jinngine.physics.solver.ProjectedGaussSeidel;
+import junit.framework.TestCase;
+
+public class SceneMetricsTest extends TestCase {
+
+	/**
+	 * Snapshots must count the bodies, components and ncp constraints of a simple stack
+	 */
+	public void testSnapshot() {
+		DefaultScene scene = new DefaultScene(new SAP2(), new ProjectedGaussSeidel(25), new DefaultDeactivationPolicy());
+		assertNull(scene.getMetrics().getLastTick());
+
+		Body floor = new Body("floor", new Box(20,10,20));
+		floor.setPosition(0,-5,0);
+		floor.setFixed(true);
+		scene.addBody(floor);
+		for (int i=0; i<2; i++) {
+			Body box = new Body("box", new Box(1,1,1));
+			box.setPosition(0, 0.5+i, 0);
+			scene.addBody(box);
+			scene.addForce(new GravityForce(box));
+		}
+
+		for (int i=0; i<10; i++)
+			scene.tick();
+
+		SceneMetrics.Snapshot snapshot = scene.getMetrics().getLastTick();
+		assertEquals(10, snapshot.getTick());
+		assertEquals(3, snapshot.getBodies());
+		assertEquals(1, snapshot.getActiveComponents());
+
+		// two contacts with four contact points each, and three ncp constraints per contact point
+		assertEquals(24, snapshot.getNcpConstraints());
+		assertTrue(snapshot.getSolverIterations() > 0);
+		assertTrue(snapshot.getSolverIterations() <= 25);
+		assertFalse(Double.isNaN(snapshot.getSolverResidual()));
+
+		// both box pairs are handled by the analytic box-box contact generator, which does not run gjk
+		assertEquals(0, snapshot.getNarrowphasePairs());
+		assertEquals(0, snapshot.getNarrowphaseIterations());
+		assertEquals(0, snapshot.getMaxPairIterations());
+
+		// the whole time-step must be at least as long as its phases
+		long sum = 0;
+		for (SceneMetrics.Phase phase: SceneMetrics.Phase.values())
+			if (phase != SceneMetrics.Phase.TICK)
+				sum += snapshot.getTime(phase);
+		assertTrue(sum <= snapshot.getTime(SceneMetrics.Phase.TICK));
+
+		assertEquals(10, scene.getMetrics().getHistogram(SceneMetrics.Phase.SOLVER).getCount());
+		assertEquals(10, scene.getMetrics().getIterationHistogram().getCount());
+	}
+
+	/**
+	 * Histograms must keep a rolling window of samples
+	 */
+	public void testHistogramWindow() {
+		SceneMetrics metrics = new SceneMetrics(4);
+		for (int i=1; i<=6; i++) {
+			metrics.begin();
+			metrics.commit(0, 0, 0, 0, i, 0);
+		}
+
+		SceneMetrics.Histogram h = metrics.getIterationHistogram();
+		assertEquals(4, h.getCount());
+		assertEquals(6, h.getMax());
+		assertEquals(4.5, h.getMean(), 1e-12);
+		assertEquals(3, h.getQuantile(0));
+		assertEquals(4, h.getQuantile(0.5));
+		assertEquals(6, h.getQuantile(1));
+
+		long[] samples = h.getSamples();
+		assertEquals(4, samples.length);
+		for (int i=0; i<4; i++)
+			assertEquals(3+i, samples[i]);
+	}
+}
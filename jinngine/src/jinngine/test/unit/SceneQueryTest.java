@@ -0,0 +1,292 @@
+/**
+ * Copyright (c) 2008-2010  Morten Silcowitz.
+ *
+ * This file is part of the Jinngine physics library
+ *
+ * Jinngine is published under the GPL license, available
+ * at http://www.gnu.org/copyleft/gpl.html.
+ */
+package jinngine.test.unit;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import jinngine.collision.BatchRayCast;
+import jinngine.collision.BoundsStore;
+import jinngine.collision.BroadphaseCollisionDetection;
+import jinngine.collision.DynamicAABBTree;
+import jinngine.collision.RayCast;
+import jinngine.collision.SAP2;
+import jinngine.collision.SAP3;
+import jinngine.collision.SceneQuery;
+import jinngine.collision.SpatialHashGrid;
+import jinngine.collision.SweepAndPrune;
+import jinngine.geometry.Box;
+import jinngine.geometry.Geometry;
+import jinngine.geometry.Sphere;
+import jinngine.geometry.SupportMap3;
+import jinngine.geometry.UniformCapsule;
+import jinngine.math.Vector3;
+import jinngine.physics.Body;
+import junit.framework.TestCase;
+
+public class SceneQueryTest extends TestCase {
+
+	// random boxes, spheres and capsules
+	private static List<Geometry> geometries( BroadphaseCollisionDetection broadphase, int n ) {
+		final Random random = new Random(5);
+		final List<Geometry> geometries = new ArrayList<Geometry>();
+		for (int i=0; i<n; i++) {
+			Geometry g;
+			switch (i%3) {
+			case 0: g = new Box(1,0.5,2); break;
+			case 1: g = new Sphere(0.7); break;
+			default: g = new UniformCapsule(0.3, 1.5); break;
+			}
+			Body body = new Body("body", g);
+			body.setPosition(random.nextDouble()*20-10, random.nextDouble()*20-10, random.nextDouble()*20-10);
+			geometries.add(g);
+		}
+		broadphase.addAll(geometries);
+		broadphase.run();
+		return geometries;
+	}
+
+	// closest hit, found by casting against every geometry
+	private static double closest( List<Geometry> geometries, Vector3 point, Vector3 direction, SupportMap3 shape ) {
+		double best = Double.POSITIVE_INFINITY;
+		for (Geometry g: geometries) {
+			double t = new RayCast().run((SupportMap3)g, shape, point, direction.normalize(), new Vector3(), new Vector3(), 0, 1e-5, 1e-7, true);
+			best = Math.min(best, t);
+		}
+		return best;
+	}
+
+	private static void checkRays( BroadphaseCollisionDetection broadphase ) {
+		final List<Geometry> geometries = geometries(broadphase, 90);
+		final SceneQuery query = new SceneQuery(broadphase);
+		final Random random = new Random(7);
+		final SceneQuery.Hit hit = new SceneQuery.Hit();
+		int hits = 0;
+
+		for (int i=0; i<200; i++) {
+			Vector3 point = new Vector3(random.nextDouble()*20-10, random.nextDouble()*20-10, 15);
+			Vector3 direction = new Vector3(random.nextDouble()*0.2-0.1, random.nextDouble()*0.2-0.1, -1);
+			double expected = closest(geometries, point, direction, null);
+
+			if (query.raycast(point, direction, Double.POSITIVE_INFINITY, ~0, hit)) {
+				hits++;
+				assertEquals(expected, hit.distance, 1e-3);
+				assertEquals(1, hit.normal.norm(), 1e-6);
+				// normal points towards the origin of the ray
+				assertTrue(hit.normal.dot(direction) < 0);
+
+				// all hits in increasing order, starting with the closest
+				List<SceneQuery.Hit> all = new ArrayList<SceneQuery.Hit>();
+				int count = query.raycastAll(point, direction, Double.POSITIVE_INFINITY, ~0, all);
+				assertEquals(count, all.size());
+				assertEquals(expected, all.get(0).distance, 1e-3);
+				for (int j=1; j<count; j++)
+					assertTrue(all.get(j-1).distance <= all.get(j).distance);
+
+				// a ray that stops short of the closest hit
+				assertFalse(query.raycast(point, direction, hit.distance*0.5, ~0, hit));
+			} else {
+				assertEquals(Double.POSITIVE_INFINITY, expected);
+			}
+		}
+		// make sure the test is not trivial
+		assertTrue(hits > 20);
+	}
+
+	/**
+	 * Ray casts using the broad-phase must give the same closest hits as casting against each geometry
+	 */
+	public void testRaycast() {
+		checkRays(new DynamicAABBTree());
+		checkRays(new SAP2());
+		checkRays(new SAP3());
+		checkRays(new SweepAndPrune());
+		checkRays(new SpatialHashGrid(1.0));
+		checkRays(new SpatialHashGrid(0.5, 4));
+	}
+
+	/**
+	 * A sphere cast against a sphere, and a convex cast with a geometry that must not hit itself
+	 */
+	public void testSweeps() {
+		BroadphaseCollisionDetection broadphase = new DynamicAABBTree();
+		Sphere target = new Sphere(1);
+		new Body("target", target).setPosition(10,0,0);
+		Box box = new Box(1,1,1);
+		new Body("box", box).setPosition(0,0,0);
+		broadphase.add(target);
+		broadphase.add(box);
+		broadphase.run();
+
+		SceneQuery query = new SceneQuery(broadphase);
+		SceneQuery.Hit hit = new SceneQuery.Hit();
+
+		// sphere of radius 0.5 passes above the box, and touches the target when its centre is 1.5 away from x=10,z=0
+		assertTrue(query.sweepSphere(new Vector3(0,0,1.2), 0.5, new Vector3(1,0,0), Double.POSITIVE_INFINITY, ~0, hit));
+		assertSame(target, hit.geometry);
+		assertEquals(10-Math.sqrt(1.5*1.5-1.2*1.2), hit.distance, 1e-3);
+		assertFalse(query.sweepSphere(new Vector3(0,0,3), 0.5, new Vector3(1,0,0), Double.POSITIVE_INFINITY, ~0, hit));
+		assertTrue(query.sweepSphere(new Vector3(0,0,0), 0.5, new Vector3(1,0,0), Double.POSITIVE_INFINITY, ~0, hit));
+		assertSame(box, hit.geometry);
+		assertEquals(0, hit.distance, 1e-3);
+
+		// the box is swept from its position, and must only hit the target, with its face at x=0.5
+		assertTrue(query.sweep(box, new Vector3(1,0,0), Double.POSITIVE_INFINITY, ~0, hit));
+		assertSame(target, hit.geometry);
+		assertEquals(8.5, hit.distance, 1e-3);
+		assertEquals(-1, hit.normal.x, 1e-3);
+		assertEquals(9, hit.point.x, 1e-3);
+
+		// sweeping away from the target
+		assertFalse(query.sweep(box, new Vector3(-1,0,0), Double.POSITIVE_INFINITY, ~0, hit));
+
+		// filtered by the mask
+		target.setCollisionCategory(2);
+		assertFalse(query.sweep(box, new Vector3(1,0,0), Double.POSITIVE_INFINITY, 1, hit));
+	}
+
+	/**
+	 * Box queries must match the geometries whose bounds overlap the box, also after bodies are moved and bounds updated
+	 */
+	public void testOverlap() {
+		checkOverlap(new DynamicAABBTree());
+		checkOverlap(new SAP2());
+		checkOverlap(new SAP3());
+		checkOverlap(new SweepAndPrune());
+		checkOverlap(new SpatialHashGrid(1.0, 3));
+	}
+
+	private static void checkOverlap( BroadphaseCollisionDetection broadphase ) {
+		List<Geometry> geometries = geometries(broadphase, 60);
+		SceneQuery query = new SceneQuery(broadphase);
+		Random random = new Random(11);
+
+		for (int step=0; step<10; step++) {
+			for (Geometry g: geometries) {
+				Body body = g.getBody();
+				body.setPosition(body.getPosition().add(new Vector3(random.nextDouble()-0.5, random.nextDouble()-0.5, random.nextDouble()-0.5)));
+			}
+			query.update();
+
+			Vector3 min = new Vector3(random.nextDouble()*10-10, random.nextDouble()*10-10, random.nextDouble()*10-10);
+			Vector3 max = min.add(new Vector3(6,6,6));
+			HashSet<Geometry> expected = new HashSet<Geometry>();
+			for (Geometry g: geometries) {
+				Vector3 gmin = g.getMinBounds(), gmax = g.getMaxBounds();
+				if (gmin.x < max.x && min.x < gmax.x && gmin.y < max.y && min.y < gmax.y && gmin.z < max.z && min.z < gmax.z)
+					expected.add(g);
+			}
+			List<Geometry> result = new ArrayList<Geometry>();
+			query.overlap(min, max, ~0, result);
+			assertEquals(expected, new HashSet<Geometry>(result));
+			assertEquals(expected.size(), result.size());
+
+			broadphase.run();
+		}
+	}
+
+	private interface Counter {
+		public int tests();
+	}
+
+	// a row of boxes along the x axis, queried by a small box and a short ray near one end of the row. Returns 
+	// the largest number of candidates tested by a query, as measured by the given counter
+	private static int cull( BroadphaseCollisionDetection broadphase, Counter counter ) {
+		final List<Body> bodies = new ArrayList<Body>();
+		for (int i=0; i<1000; i++) {
+			Body body = new Body("box", new Box(1,1,1));
+			body.setPosition(2*i, 0, 0);
+			broadphase.add(body.getGeometries().next());
+			bodies.add(body);
+		}
+		broadphase.run();
+
+		// bodies are moved after the run, so queries must use the updated bounds
+		for (Body body: bodies)
+			body.setPosition(body.getPosition().add(new Vector3(1,0,0)));
+		broadphase.getBoundsStore().update();
+
+		final BoundsStore store = broadphase.getBoundsStore();
+		int tests = 0;
+		List<Geometry> result = new ArrayList<Geometry>(), expected = new ArrayList<Geometry>();
+		broadphase.query(new Vector3(8.8,-1,-1), new Vector3(11.2,1,1), result);
+		store.query(new Vector3(8.8,-1,-1), new Vector3(11.2,1,1), expected);
+		assertEquals(2, result.size());
+		assertEquals(new HashSet<Geometry>(expected), new HashSet<Geometry>(result));
+		tests = Math.max(tests, counter.tests());
+
+		result.clear(); expected.clear();
+		broadphase.query(new Vector3(5,0.2,0.1), new Vector3(1,0.01,0), 10, new Vector3(0.1,0.1,0.1), result);
+		store.query(new Vector3(5,0.2,0.1), new Vector3(1,0.01,0), 10, new Vector3(0.1,0.1,0.1), expected);
+		assertEquals(6, result.size());
+		assertEquals(new HashSet<Geometry>(expected), new HashSet<Geometry>(result));
+		tests = Math.max(tests, counter.tests());
+		return tests;
+	}
+
+	/**
+	 * Queries must only test the bounding boxes near the query, instead of every bounding box
+	 */
+	public void testCulling() {
+		final SAP2 sap2 = new SAP2();
+		assertTrue(cull(sap2, new Counter() { public int tests() { return sap2.getQueryTests(); } }) <= 10);
+		final SAP3 sap3 = new SAP3();
+		assertTrue(cull(sap3, new Counter() { public int tests() { return sap3.getQueryTests(); } }) <= 10);
+		final SweepAndPrune sap = new SweepAndPrune();
+		assertTrue(cull(sap, new Counter() { public int tests() { return sap.getQueryTests(); } }) <= 10);
+		final SpatialHashGrid grid = new SpatialHashGrid(1.0, 2);
+		assertTrue(cull(grid, new Counter() { public int tests() { return grid.getVisitedEntries(); } }) <= 100);
+	}
+
+	/**
+	 * Rays cast in parallel batches must give the same closest hits as single ray casts
+	 */
+	public void testBatch() {
+		BroadphaseCollisionDetection broadphase = new DynamicAABBTree();
+		geometries(broadphase, 90);
+		Random random = new Random(13);
+		final int n = 3000;
+		double[] origins = new double[3*n], directions = new double[3*n];
+		for (int i=0; i<n; i++) {
+			origins[3*i] = random.nextDouble()*20-10; origins[3*i+1] = random.nextDouble()*20-10; origins[3*i+2] = 15;
+			directions[3*i] = random.nextDouble()*0.2-0.1; directions[3*i+1] = random.nextDouble()*0.2-0.1; directions[3*i+2] = -2;
+		}
+		double[] distances = new double[n], normals = new double[3*n];
+		Geometry[] geometries = new Geometry[n];
+
+		ForkJoinPool pool = new ForkJoinPool(4);
+		BatchRayCast batch = new BatchRayCast(broadphase);
+		batch.run(pool, origins, directions, n, 30, ~0, distances, normals, geometries);
+		pool.shutdown();
+
+		SceneQuery query = new SceneQuery(broadphase);
+		SceneQuery.Hit hit = new SceneQuery.Hit();
+		int hits = 0;
+		for (int i=0; i<n; i++) {
+			Vector3 point = new Vector3(origins[3*i], origins[3*i+1], origins[3*i+2]);
+			Vector3 direction = new Vector3(directions[3*i], directions[3*i+1], directions[3*i+2]);
+			if (query.raycast(point, direction, 30, ~0, hit)) {
+				hits++;
+				assertSame(hit.geometry, geometries[i]);
+				// GJK is warm started from the previous cast of each worker, so results differ slightly
+				assertEquals(hit.distance, distances[i], 1e-4);
+				assertEquals(hit.normal.x, normals[3*i], 1e-2);
+				assertEquals(hit.normal.y, normals[3*i+1], 1e-2);
+				assertEquals(hit.normal.z, normals[3*i+2], 1e-2);
+			} else {
+				assertNull(geometries[i]);
+				assertEquals(Double.POSITIVE_INFINITY, distances[i]);
+			}
+		}
+		assertTrue(hits > 300);
+	}
+}
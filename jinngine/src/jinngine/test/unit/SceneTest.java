@@ -0,0 +1,91 @@
+/**
+ * Copyright (c) 2008-2010  Morten Silcowitz.
+ *
+ * This file is part of the Jinngine physics library
+ *
+ * Jinngine is published under the GPL license, available 
+ * at http://www.gnu.org/copyleft/gpl.html. 
+ */
+package jinngine.test.unit;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import jinngine.collision.SAP2;
+import jinngine.geometry.Box;
+import jinngine.physics.Body;
+import jinngine.physics.DefaultDeactivationPolicy;
+import jinngine.physics.DefaultScene;
+import jinngine.physics.force.GravityForce;
+import jinngine.physics.solver.ProjectedGaussSeidel;
+import junit.framework.TestCase;
+
+public class SceneTest extends TestCase {
+
+	/**
+	 * Bodies added in a batch must collide like bodies added one by one, and must be gone
+	 * from the scene and the broad-phase after being removed in a batch
+	 */
+	public void testAddBodies() {
+		SAP2 broadphase = new SAP2();
+		DefaultScene scene = new DefaultScene(broadphase, new ProjectedGaussSeidel(25), new DefaultDeactivationPolicy());
+		
+		Body floor = new Body("floor", new Box(200,10,200));
+		floor.setPosition(0,-5,0);
+		floor.setFixed(true);
+		scene.addBody(floor);
+		
+		List<Body> boxes = new ArrayList<Body>();
+		for (int i=0; i<10; i++) {
+			Body box = new Body("box", new Box(1,1,1));
+			box.setPosition(i*2, 1.5, 0);
+			boxes.add(box);
+		}
+		scene.addBodies(boxes);
+		for (Body box: boxes)
+			scene.addForce(new GravityForce(box));
+		
+		for (int n=0; n<60; n++)
+			scene.tick();
+		
+		// boxes rest on the floor
+		for (Body box: boxes)
+			assertEquals(0.5, box.getPosition().y, 0.1);
+		assertEquals(10, broadphase.getOverlappingPairs().size());
+		
+		scene.removeBodies(boxes.subList(0, 5));
+		int count = 0;
+		Iterator<Body> i = scene.getBodies();
+		while (i.hasNext()) {
+			assertFalse(boxes.subList(0, 5).contains(i.next()));
+			count++;
+		}
+		assertEquals(6, count);
+		assertEquals(5, broadphase.getOverlappingPairs().size());
+	}
+	
+	/**
+	 * Bodies and geometries must receive dense ids when added, and ids must be reused after removal
+	 */
+	public void testIds() {
+		DefaultScene scene = new DefaultScene(new SAP2(), new ProjectedGaussSeidel(25), new DefaultDeactivationPolicy());
+		Body[] bodies = new Body[4];
+		for (int i=0; i<bodies.length; i++) {
+			bodies[i] = new Body("box", new Box(1,1,1));
+			bodies[i].setPosition(i*2, 0, 0);
+			scene.addBody(bodies[i]);
+			assertEquals(i, bodies[i].id);
+			assertEquals(i, bodies[i].getGeometries().next().getId());
+		}
+		
+		scene.removeBody(bodies[1]);
+		assertEquals(-1, bodies[1].id);
+		assertEquals(-1, bodies[1].getGeometries().next().getId());
+		
+		Body body = new Body("box", new Box(1,1,1));
+		scene.addBody(body);
+		assertEquals(1, body.id);
+		assertEquals(1, body.getGeometries().next().getId());
+	}
+}
@@ -0,0 +1,105 @@
+/**
+ * Copyright (c) 2008-2010  Morten Silcowitz.
+ *
+ * This file is part of the Jinngine physics library
+ *
+ * Jinngine is published under the GPL license, available
+ * at http://www.gnu.org/copyleft/gpl.html.
+ */
+package jinngine.test.unit;
+
+import jinngine.collision.SAP2;
+import jinngine.geometry.Box;
+import jinngine.geometry.Sphere;
+import jinngine.math.Vector3;
+import jinngine.physics.Body;
+import jinngine.physics.DefaultDeactivationPolicy;
+import jinngine.physics.DefaultScene;
+import jinngine.physics.force.GravityForce;
+import jinngine.physics.solver.ProjectedGaussSeidel;
+import junit.framework.TestCase;
+
+public class SleepingTest extends TestCase {
+	private DefaultScene scene;
+	private Body left, right;
+
+	@Override
+	protected void setUp() {
+		scene = new DefaultScene(new SAP2(), new ProjectedGaussSeidel(25), new DefaultDeactivationPolicy());
+		Body floor = new Body("floor", new Box(20,10,20));
+		floor.setPosition(0,-5,0);
+		floor.setFixed(true);
+		scene.addBody(floor);
+
+		left = new Body("left", new Box(1,1,1));
+		left.setPosition(0,0.5,0);
+		scene.addBody(left);
+		scene.addForce(new GravityForce(left));
+
+		right = new Body("right", new Box(1,1,1));
+		right.setPosition(5,0.5,0);
+		scene.addBody(right);
+		scene.addForce(new GravityForce(right));
+
+		// let the boxes come to rest
+		for (int i=0; i<20; i++)
+			scene.tick();
+	}
+
+	/**
+	 * Resting boxes must be deactivated, and not visited or moved by time-steps
+	 */
+	public void testSleeping() {
+		assertTrue(left.deactivated);
+		assertTrue(right.deactivated);
+		assertEquals(0, scene.getMetrics().getLastTick().getActiveBodies());
+		assertEquals(0, scene.getMetrics().getLastTick().getActiveComponents());
+
+		Vector3 position = left.getPosition();
+		for (int i=0; i<20; i++)
+			scene.tick();
+		assertTrue(left.deactivated);
+		assertEquals(0, left.getPosition().sub(position).norm(), 0);
+	}
+
+	/**
+	 * A falling sphere must wake the box it lands on, but not the other box
+	 */
+	public void testWakeByOverlap() {
+		Body ball = new Body("ball", new Sphere(0.5));
+		ball.setPosition(0,3,0);
+		scene.addBody(ball);
+		scene.addForce(new GravityForce(ball));
+
+		boolean woken = false;
+		for (int i=0; i<10; i++) {
+			scene.tick();
+			woken = woken || !left.deactivated;
+		}
+
+		assertTrue(woken);
+		assertTrue(right.deactivated);
+
+		// the ball must not fall through the box
+		assertTrue(ball.getPosition().y > 1.0);
+	}
+
+	/**
+	 * Explicit activation must wake a body
+	 */
+	public void testActivateBody() {
+		scene.activateBody(right);
+		assertFalse(right.deactivated);
+		assertTrue(left.deactivated);
+
+		// the body is integrated again, and falls back to sleep after landing
+		Vector3 position = right.getPosition();
+		right.setVelocity(0,2,0);
+		scene.tick();
+		assertFalse(right.deactivated);
+		assertTrue(right.getPosition().y > position.y);
+		for (int i=0; i<40; i++)
+			scene.tick();
+		assertTrue(right.deactivated);
+	}
+}
@@ -0,0 +1,67 @@
+/**
+ * Copyright (c) 2008-2010  Morten Silcowitz.
+ *
+ * This file is part of the Jinngine physics library
+ *
+ * Jinngine is published under the GPL license, available
+ * at http://www.gnu.org/copyleft/gpl.html.
+ */
+package jinngine.test.unit;
+
+import java.util.Random;
+
+import jinngine.collision.BroadphaseCollisionDetection;
+import jinngine.collision.ExhaustiveSearch;
+import jinngine.collision.SpatialHashGrid;
+import jinngine.geometry.Box;
+import jinngine.geometry.Geometry;
+import jinngine.geometry.Sphere;
+import jinngine.math.Vector3;
+import jinngine.physics.Body;
+import junit.framework.TestCase;
+
+public class SpatialHashGridTest extends TestCase {
+
+	/**
+	 * Overlapping pairs and events must match those of the exhaustive search
+	 */
+	public void testAgainstExhaustiveSearch() {
+		SweepAndPruneTest.compareWithExhaustiveSearch(new SpatialHashGrid(1.0));
+		SweepAndPruneTest.compareWithExhaustiveSearch(new SpatialHashGrid(0.3));
+		SweepAndPruneTest.compareWithExhaustiveSearch(new SpatialHashGrid(0.25, 4));
+	}
+
+	/**
+	 * Geometries of mixed sizes must be found across levels, also far from the origin
+	 */
+	public void testMixedSizes() {
+		final Random random = new Random(3);
+		final int n = 80;
+		BroadphaseCollisionDetection grid = new SpatialHashGrid(0.5, 3);
+		BroadphaseCollisionDetection exhaustive = new ExhaustiveSearch();
+
+		Body[] bodies = new Body[n];
+		for (int i=0; i<n; i++) {
+			Geometry g;
+			switch (i%3) {
+			case 0: g = new Sphere(0.2); break;
+			case 1: g = new Box(1.5,1.5,1.5); break;
+			default: g = new Box(6,0.5,6); break;
+			}
+			bodies[i] = new Body("body", g);
+			bodies[i].setPosition(1e6 + random.nextDouble()*12, -1e6 + random.nextDouble()*12, random.nextDouble()*12);
+			grid.add(g);
+			exhaustive.add(g);
+		}
+
+		for (int step=0; step<20; step++) {
+			for (int i=0; i<n; i++) {
+				Vector3 p = bodies[i].getPosition();
+				bodies[i].setPosition(p.add(new Vector3(random.nextDouble()-0.5, random.nextDouble()-0.5, random.nextDouble()-0.5)));
+			}
+			grid.run();
+			exhaustive.run();
+			assertEquals( exhaustive.getOverlappingPairs(), grid.getOverlappingPairs() );
+		}
+	}
+}
@@ -9,6 +9,8 @@ import jinngine.geometry.Box;
 import jinngine.geometry.contact.ContactGenerator;
 import jinngine.geometry.contact.SupportMapContactGenerator;
 import jinngine.geometry.contact.ContactGenerator.ContactPoint;
+import jinngine.math.Matrix3;
+import jinngine.math.Quaternion;
 import jinngine.math.Vector3;
 import jinngine.physics.Body;
 import junit.framework.TestCase;
@@ -144,6 +146,92 @@ public class SupportMapContactGeneratorTest extends TestCase {
 		assertTrue(verifyPolygon(expect, result));
 		
 	}
+
+	/**
+	 * A separated pair must skip GJK until the boxes could have closed the gap, and must then find the contact
+	 */
+	public void testSeparationCache() {
+		final Box box1 = new Box(1,1,1);
+		final Box box2 = new Box(1,1,1);
+		final Body body1 = new Body("box1", box1);
+		final Body body2 = new Body("box2", box2);
+		body2.setPosition(0, 3, 0);
+		final SupportMapContactGenerator g = new SupportMapContactGenerator(box1,box1,box2,box2);
+		
+		// separated, gjk is run and the axis is cached
+		g.run();
+		assertFalse(g.getContacts().hasNext());
+		assertTrue(g.getIterations() > 0);
+		
+		// nothing moved, and motion away from or along the gap, does not require gjk
+		g.run();
+		assertEquals(0, g.getIterations());
+		body2.setPosition(0.5, 3.5, 0);
+		g.run();
+		assertEquals(0, g.getIterations());
+		
+		// a small rotation of box1 can not close the gap
+		body1.setOrientation(Quaternion.rotation(0.1, new Vector3(0,0,1)).toRotationMatrix3());
+		g.run();
+		assertEquals(0, g.getIterations());
+		
+		// moving box2 into contact with box1 is detected
+		body1.setOrientation(Matrix3.identity());
+		body2.setPosition(0, 1, 0);
+		g.run();
+		assertTrue(g.getIterations() > 0);
+		assertTrue(g.getContacts().hasNext());
+		
+		// a rotation that does not close the gap, does not require gjk
+		body2.setPosition(0, 3, 0);
+		g.run();
+		assertFalse(g.getContacts().hasNext());
+		body2.setOrientation(Quaternion.rotation(1.5, new Vector3(0,0,1)).toRotationMatrix3());
+		g.run();
+		assertEquals(0, g.getIterations());
+	}
+	
+	/**
+	 * The separation cache must follow changes to the geometries, and not only to the bodies
+	 */
+	public void testSeparationCacheGeometryChanges() {
+		final Box box1 = new Box(1,1,1);
+		final Box box2 = new Box(1,1,1);
+		new Body("box1", box1);
+		new Body("box2", box2).setPosition(0, 1.5, 0);
+		final SupportMapContactGenerator g = new SupportMapContactGenerator(box1,box1,box2,box2);
+		
+		// local transform
+		g.run();
+		assertFalse(g.getContacts().hasNext());
+		box1.setLocalTransform(Matrix3.identity(), new Vector3(0,0.5,0));
+		g.run();
+		assertTrue(g.getContacts().hasNext());
+		box1.setLocalTransform(Matrix3.identity(), new Vector3());
+		
+		// side lengths
+		g.run();
+		assertFalse(g.getContacts().hasNext());
+		box1.setBoxSideLengths(1, 2, 1);
+		g.run();
+		assertTrue(g.getContacts().hasNext());
+		box1.setBoxSideLengths(1, 1, 1);
+		
+		// envelope
+		g.run();
+		assertFalse(g.getContacts().hasNext());
+		box2.setEnvelope(0.75);
+		g.run();
+		assertTrue(g.getContacts().hasNext());
+		box2.setEnvelope(box1.getEnvelope());
+		
+		// re-attaching box1 to a body close to box2
+		g.run();
+		assertFalse(g.getContacts().hasNext());
+		new Body("box3", box1).setPosition(0, 0.75, 0);
+		g.run();
+		assertTrue(g.getContacts().hasNext());
+	}
 	
 	
 	
@@ -0,0 +1,85 @@
+/**
+ * Copyright (c) 2008-2010  Morten Silcowitz.
+ *
+ * This file is part of the Jinngine physics library
+ *
+ * Jinngine is published under the GPL license, available
+ * at http://www.gnu.org/copyleft/gpl.html.
+ */
+package jinngine.test.unit;
+
+import jinngine.geometry.Box;
+import jinngine.geometry.Sphere;
+import jinngine.geometry.SupportMap3;
+import jinngine.geometry.UniformCapsule;
+import jinngine.math.Matrix3;
+import jinngine.math.Quaternion;
+import jinngine.math.Vector3;
+import jinngine.physics.Body;
+import junit.framework.TestCase;
+
+public class SupportMapTest extends TestCase {
+
+	private static final double epsilon = 1e-10;
+
+	private static void assertVector( Vector3 expected, Vector3 actual ) {
+		assertEquals(expected.x, actual.x, epsilon);
+		assertEquals(expected.y, actual.y, epsilon);
+		assertEquals(expected.z, actual.z, epsilon);
+	}
+
+	// both support point methods must give the same point
+	private static void assertSupport( Vector3 expected, SupportMap3 map, Vector3 direction ) {
+		final Vector3 result = new Vector3(7,7,7);
+		assertSame(result, map.supportPoint(direction, result));
+		assertVector(expected, result);
+		assertVector(expected, map.supportPoint(direction));
+	}
+
+	/**
+	 * Support points must follow changes to the body transform and to the local transform of geometries,
+	 * even though world space transforms are cached by the geometries
+	 */
+	public void testTransformChanges() {
+		final Box box = new Box(1,2,4);
+		final Body body = new Body("box", box);
+		final Vector3 direction = new Vector3(1,1,1);
+
+		assertSupport(new Vector3(0.5,1,2), box, direction);
+
+		// move the body
+		body.setPosition(1, 2, 3);
+		assertSupport(new Vector3(1.5,3,5), box, direction);
+
+		// rotate the body 90 degrees around the z axis, the x and y side lengths swap
+		body.setOrientation(Quaternion.rotation(Math.PI*0.5, new Vector3(0,0,1)).toRotationMatrix3());
+		assertSupport(new Vector3(2,2.5,5), box, direction);
+
+		// rotate back and apply a local translation
+		body.setOrientation(Matrix3.identity());
+		box.setLocalTransform(Matrix3.identity(), new Vector3(0,0,-1));
+		assertSupport(new Vector3(1.5,3,4), box, direction);
+	}
+
+	/**
+	 * Support points of spheres and capsules
+	 */
+	public void testShapes() {
+		final Sphere sphere = new Sphere(2);
+		final Body body1 = new Body("sphere", sphere);
+		body1.setPosition(1, 0, 0);
+		assertSupport(new Vector3(1,2,0), sphere, new Vector3(0,3,0));
+		// zero direction gives a point along the x axis
+		assertSupport(new Vector3(3,0,0), sphere, new Vector3());
+		sphere.setLocalTransform(Matrix3.identity(), new Vector3(0,0,1));
+		assertSupport(new Vector3(1,0,-1), sphere, new Vector3(0,0,-1));
+
+		// capsule along the z axis, end points at z=-1 and z=1
+		final UniformCapsule capsule = new UniformCapsule(0.5, 2);
+		final Body body2 = new Body("capsule", capsule);
+		assertSupport(new Vector3(0,0,1), capsule, new Vector3(1,0,1));
+		body2.setOrientation(Quaternion.rotation(Math.PI*0.5, new Vector3(0,1,0)).toRotationMatrix3());
+		assertSupport(new Vector3(1,0,0), capsule, new Vector3(1,0,1));
+		assertSupport(new Vector3(-1,0,0), capsule, new Vector3(-1,0,0));
+	}
+}
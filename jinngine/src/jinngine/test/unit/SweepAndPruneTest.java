@@ -7,8 +7,21 @@
  * at http://www.gnu.org/copyleft/gpl.html. 
  */
 package jinngine.test.unit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
 import jinngine.collision.BroadphaseCollisionDetection;
+import jinngine.collision.DynamicAABBTree;
+import jinngine.collision.ExhaustiveSearch;
+import jinngine.collision.PairView;
 import jinngine.collision.SAP2;
+import jinngine.collision.SAP3;
+import jinngine.collision.SpatialHashGrid;
 import jinngine.collision.SweepAndPrune;
 import jinngine.collision.BroadphaseCollisionDetection.Handler;
 import jinngine.geometry.Box;
@@ -97,4 +110,364 @@ public class SweepAndPruneTest extends TestCase {
 		sweep.run();
 		assertTrue( sweep.getOverlappingPairs().contains(new Pair<Geometry>(box1,box2)));
 	}
+
+	/**
+	 * Compare the overlapping pairs reported by the given broad-phase against the {@link ExhaustiveSearch}, 
+	 * using randomly moving boxes. Geometries are removed and added again during the test, and the pairs 
+	 * reported through the handler events are checked as well.
+	 */
+	public static void compareWithExhaustiveSearch( BroadphaseCollisionDetection sweep ) {
+		final Random random = new Random(7);
+		final int n = 60;
+		
+		final Set<Pair<Geometry>> reported = new LinkedHashSet<Pair<Geometry>>();
+		sweep.addHandler( new Handler() {
+			public void overlap(Pair<Geometry> pair) {
+				assertTrue( reported.add(pair) );
+			}
+			public void separation(Pair<Geometry> pair) {
+				assertTrue( reported.remove(pair) );
+			}
+		});
+		
+		BroadphaseCollisionDetection exhaustive = new ExhaustiveSearch();
+		
+		Box[] boxes = new Box[n];
+		Body[] bodies = new Body[n];
+		for (int i=0; i<n; i++) {
+			boxes[i] = new Box(1,1,1);
+			bodies[i] = new Body("box", boxes[i]);
+			bodies[i].setPosition(random.nextDouble()*10, random.nextDouble()*10, random.nextDouble()*10);
+			sweep.add(boxes[i]);
+			exhaustive.add(boxes[i]);
+		}
+		
+		for (int step=0; step<40; step++) {
+			// move boxes
+			for (int i=0; i<n; i++) {
+				Vector3 p = bodies[i].getPosition();
+				bodies[i].setPosition(p.add(new Vector3(random.nextDouble()-0.5, random.nextDouble()-0.5, random.nextDouble()-0.5)));
+			}
+			
+			// remove or re-add a few boxes
+			if (step % 5 == 2) {
+				for (int i=0; i<n; i+=7) {
+					sweep.remove(boxes[i]);
+					exhaustive.remove(boxes[i]);
+				}
+			}
+			if (step % 5 == 4) {
+				for (int i=0; i<n; i+=7) {
+					sweep.add(boxes[i]);
+					exhaustive.add(boxes[i]);
+				}
+			}
+			
+			sweep.run();
+			exhaustive.run();
+			
+			assertEquals( exhaustive.getOverlappingPairs(), sweep.getOverlappingPairs() );
+			assertEquals( exhaustive.getOverlappingPairs(), reported );
+		}
+	}
+	
+	public void testSAP3() {
+		compareWithExhaustiveSearch(new SAP3());
+	}
+	
+	public void testSAP2() {
+		compareWithExhaustiveSearch(new SAP2());
+	}
+	
+	public void testSweepAndPrune() {
+		compareWithExhaustiveSearch(new SweepAndPrune());
+	}
+	
+	/**
+	 * Removing a geometry must report separation of its overlapping pairs at once, and only those
+	 */
+	public void testRemoval() {
+		checkRemoval(new SAP2());
+		checkRemoval(new SweepAndPrune());
+		checkRemoval(new ExhaustiveSearch());
+	}
+	
+	private static void checkRemoval( BroadphaseCollisionDetection sweep ) {
+		final Set<Pair<Geometry>> reported = new LinkedHashSet<Pair<Geometry>>();
+		sweep.addHandler( new Handler() {
+			public void overlap(Pair<Geometry> pair) {
+				assertTrue( reported.add(pair) );
+			}
+			public void separation(Pair<Geometry> pair) {
+				assertTrue( reported.remove(pair) );
+			}
+		});
+		
+		// a ground box touching a row of projectiles
+		Box ground = new Box(100,1,1);
+		new Body("ground", ground);
+		sweep.add(ground);
+		Box[] projectiles = new Box[50];
+		for (int i=0; i<projectiles.length; i++) {
+			projectiles[i] = new Box(1,1,1);
+			Body body = new Body("projectile", projectiles[i]);
+			body.setPosition(i*2-50, 0.9, 0);
+			sweep.add(projectiles[i]);
+		}
+		sweep.run();
+		assertEquals(50, reported.size());
+		
+		// despawn and respawn projectiles
+		for (int round=0; round<5; round++) {
+			for (int i=round%2; i<projectiles.length; i+=2) {
+				sweep.remove(projectiles[i]);
+			}
+			assertEquals(25, reported.size());
+			assertEquals(reported, sweep.getOverlappingPairs());
+			for (int i=round%2; i<projectiles.length; i+=2) {
+				sweep.add(projectiles[i]);
+			}
+			sweep.run();
+			assertEquals(50, reported.size());
+			assertEquals(reported, sweep.getOverlappingPairs());
+		}
+		
+		try {
+			sweep.remove(new Box(1,1,1));
+			fail("removing an unknown geometry must fail");
+		} catch (IllegalArgumentException e) {}
+	}
+	
+	/**
+	 * Geometries added and removed in batches must give the same pairs and events as the exhaustive search,
+	 * also when a batch is added to a non-empty broad-phase whose geometries have moved since the last run
+	 */
+	public void testBulkInsertion() {
+		checkBulkInsertion(new SAP2());
+		checkBulkInsertion(new SAP3());
+		checkBulkInsertion(new SweepAndPrune());
+	}
+	
+	private static void checkBulkInsertion( BroadphaseCollisionDetection sweep ) {
+		final Set<Pair<Geometry>> reported = new LinkedHashSet<Pair<Geometry>>();
+		sweep.addHandler( new Handler() {
+			public void overlap(Pair<Geometry> pair) {
+				assertTrue( reported.add(pair) );
+			}
+			public void separation(Pair<Geometry> pair) {
+				assertTrue( reported.remove(pair) );
+			}
+		});
+		BroadphaseCollisionDetection exhaustive = new ExhaustiveSearch();
+		
+		final Random random = new Random(5);
+		List<Geometry> first = new ArrayList<Geometry>();
+		List<Geometry> second = new ArrayList<Geometry>();
+		for (int i=0; i<300; i++) {
+			Box box = new Box(1,1,1);
+			Body body = new Body("box", box);
+			body.setPosition(random.nextDouble()*12, random.nextDouble()*12, random.nextDouble()*12);
+			(i<200? first : second).add(box);
+		}
+		
+		sweep.addAll(first);
+		exhaustive.addAll(first);
+		
+		for (int step=0; step<20; step++) {
+			for (Geometry g: first) {
+				Body body = g.getBody();
+				body.setPosition(body.getPosition().add(new Vector3(random.nextDouble()-0.5, random.nextDouble()-0.5, random.nextDouble()-0.5)));
+			}
+			
+			// add or remove the second batch
+			if (step % 4 == 1) {
+				sweep.addAll(second);
+				exhaustive.addAll(second);
+			}
+			if (step % 4 == 3) {
+				sweep.removeAll(second);
+				exhaustive.removeAll(second);
+			}
+			
+			sweep.run();
+			exhaustive.run();
+			
+			assertEquals( exhaustive.getOverlappingPairs(), sweep.getOverlappingPairs() );
+			assertEquals( exhaustive.getOverlappingPairs(), reported );
+		}
+	}
+	
+	/**
+	 * Pairs rejected by the collision filter must never be reported, by any broad-phase
+	 */
+	public void testCollisionFilter() {
+		checkCollisionFilter(new SAP2());
+		checkCollisionFilter(new SAP3());
+		checkCollisionFilter(new SweepAndPrune());
+		checkCollisionFilter(new ExhaustiveSearch());
+		checkCollisionFilter(new DynamicAABBTree());
+		checkCollisionFilter(new SpatialHashGrid(1.0));
+	}
+	
+	private static void checkCollisionFilter( BroadphaseCollisionDetection sweep ) {
+		final Set<Pair<Geometry>> reported = new LinkedHashSet<Pair<Geometry>>();
+		sweep.addHandler( new Handler() {
+			public void overlap(Pair<Geometry> pair) {
+				assertTrue( reported.add(pair) );
+			}
+			public void separation(Pair<Geometry> pair) {
+				assertTrue( reported.remove(pair) );
+			}
+		});
+		
+		// every other box is debris, that does not collide with other debris
+		final Random random = new Random(13);
+		final int n = 60;
+		Box[] boxes = new Box[n];
+		for (int i=0; i<n; i++) {
+			boxes[i] = new Box(1,1,1);
+			if (i%2 == 1) {
+				boxes[i].setCollisionCategory(2);
+				boxes[i].setCollisionMask(~2);
+			}
+			Body body = new Body("box", boxes[i]);
+			body.setPosition(random.nextDouble()*6, random.nextDouble()*6, random.nextDouble()*6);
+		}
+		sweep.addAll(Arrays.<Geometry>asList(boxes));
+		
+		for (int step=0; step<20; step++) {
+			for (Box box: boxes) {
+				Body body = box.getBody();
+				body.setPosition(body.getPosition().add(new Vector3(random.nextDouble()-0.5, random.nextDouble()-0.5, random.nextDouble()-0.5)));
+			}
+			sweep.run();
+			
+			// find the expected pairs directly from the bounding boxes
+			Set<Pair<Geometry>> expected = new LinkedHashSet<Pair<Geometry>>();
+			for (int i=0; i<n; i++) {
+				for (int j=i+1; j<n; j++) {
+					if (i%2 == 1 && j%2 == 1)
+						continue;
+					Vector3 mini = boxes[i].getMinBounds(), maxi = boxes[i].getMaxBounds();
+					Vector3 minj = boxes[j].getMinBounds(), maxj = boxes[j].getMaxBounds();
+					if (mini.x < maxj.x && minj.x < maxi.x && mini.y < maxj.y && minj.y < maxi.y && mini.z < maxj.z && minj.z < maxi.z)
+						expected.add(new Pair<Geometry>(boxes[i], boxes[j]));
+				}
+			}
+			
+			assertTrue( expected.size() > 0 );
+			assertEquals( expected, sweep.getOverlappingPairs() );
+			assertEquals( expected, reported );
+		}
+	}
+	
+	/**
+	 * The overlapping pair view must hold the overlapping pairs, and a consumer applying the change sets 
+	 * after each run must end up with the same pairs, also when geometries are removed between runs
+	 */
+	public void testPairViews() {
+		checkPairViews(new SAP2());
+		checkPairViews(new SAP3());
+		checkPairViews(new SweepAndPrune());
+		checkPairViews(new ExhaustiveSearch());
+		checkPairViews(new DynamicAABBTree());
+		checkPairViews(new SpatialHashGrid(1.0));
+	}
+	
+	private static void checkPairViews( BroadphaseCollisionDetection sweep ) {
+		final Random random = new Random(17);
+		final int n = 60;
+		Box[] boxes = new Box[n];
+		for (int i=0; i<n; i++) {
+			boxes[i] = new Box(1,1,1);
+			Body body = new Body("box", boxes[i]);
+			body.setPosition(random.nextDouble()*8, random.nextDouble()*8, random.nextDouble()*8);
+			sweep.add(boxes[i]);
+		}
+		
+		Set<Pair<Geometry>> consumer = new LinkedHashSet<Pair<Geometry>>();
+		for (int step=0; step<30; step++) {
+			for (Box box: boxes) {
+				Body body = box.getBody();
+				body.setPosition(body.getPosition().add(new Vector3(random.nextDouble()-0.5, random.nextDouble()-0.5, random.nextDouble()-0.5)));
+			}
+			
+			// remove and re-add a few boxes between runs
+			if (step % 3 == 1) {
+				for (int i=step%7; i<n; i+=9) {
+					sweep.remove(boxes[i]);
+					sweep.add(boxes[i]);
+				}
+			}
+			sweep.run();
+			
+			// apply changes
+			PairView removed = sweep.getRemovedPairs();
+			for (int i=0; i<removed.size(); i++)
+				assertTrue( consumer.remove(removed.get(i)) );
+			PairView added = sweep.getAddedPairs();
+			for (int i=0; i<added.size(); i++)
+				assertTrue( consumer.add(added.get(i)) );
+			assertEquals( sweep.getOverlappingPairs(), consumer );
+			
+			// view must contain the overlapping pairs
+			PairView view = sweep.getOverlappingPairView();
+			Set<Pair<Geometry>> viewed = new LinkedHashSet<Pair<Geometry>>();
+			for (int i=0; i<view.size(); i++)
+				viewed.add(view.get(i));
+			assertEquals( view.size(), viewed.size() );
+			assertEquals( sweep.getOverlappingPairs(), viewed );
+		}
+	}
+	
+	/**
+	 * Sorting axes concurrently must report the same events, in the same order, as sorting serially
+	 */
+	public void testSAP2Parallel() {
+		ForkJoinPool pool = new ForkJoinPool(3);
+		SAP2 parallel = new SAP2();
+		parallel.setParallelism(pool);
+		compareWithExhaustiveSearch(parallel);
+		
+		final List<String> serialevents = new ArrayList<String>();
+		final List<String> parallelevents = new ArrayList<String>();
+		SAP2 serial = new SAP2();
+		parallel = new SAP2();
+		parallel.setParallelism(pool);
+		serial.addHandler(recorder(serialevents));
+		parallel.addHandler(recorder(parallelevents));
+		
+		Random random = new Random(11);
+		Body[] bodies = new Body[100];
+		for (int i=0; i<bodies.length; i++) {
+			Box box = new Box(1,1,1);
+			bodies[i] = new Body("box"+i, box);
+			bodies[i].setPosition(random.nextDouble()*8, random.nextDouble()*8, random.nextDouble()*8);
+			serial.add(box);
+			parallel.add(box);
+		}
+		
+		for (int step=0; step<30; step++) {
+			for (Body body: bodies) {
+				body.setPosition(body.getPosition().add(new Vector3(random.nextDouble()-0.5, random.nextDouble()-0.5, random.nextDouble()-0.5)));
+			}
+			serial.run();
+			parallel.run();
+		}
+		pool.shutdown();
+		
+		assertTrue(serialevents.size() > 0);
+		assertEquals(serialevents, parallelevents);
+	}
+	
+	private static Handler recorder( final List<String> events ) {
+		return new Handler() {
+			public void overlap(Pair<Geometry> pair) {
+				events.add("overlap " + pair.getFirst().getBody().identifier + " " + pair.getSecond().getBody().identifier);
+			}
+			public void separation(Pair<Geometry> pair) {
+				events.add("separation " + pair.getFirst().getBody().identifier + " " + pair.getSecond().getBody().identifier);
+			}
+		};
+	}
 }
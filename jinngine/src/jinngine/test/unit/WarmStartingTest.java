@@ -0,0 +1,84 @@
+/**
+ * Copyright (c) 2008-2010  Morten Silcowitz.
+ *
+ * This file is part of the Jinngine physics library
+ *
+ * Jinngine is published under the GPL license, available 
+ * at http://www.gnu.org/copyleft/gpl.html. 
+ */
+package jinngine.test.unit;
+
+import java.util.List;
+
+import jinngine.collision.SAP2;
+import jinngine.geometry.Box;
+import jinngine.physics.Body;
+import jinngine.physics.DefaultScene;
+import jinngine.physics.DisabledDeactivationPolicy;
+import jinngine.physics.constraint.contact.DefaultContactConstraintManager;
+import jinngine.physics.force.GravityForce;
+import jinngine.physics.solver.ProjectedGaussSeidel;
+import jinngine.physics.solver.Solver;
+import junit.framework.TestCase;
+
+public class WarmStartingTest extends TestCase {
+	
+	// number of solver iterations used
+	private double iterations = 0;
+
+	/**
+	 * Simulate a resting stack of boxes, and return the number of PGS iterations used in the last steps
+	 */
+	private double simulate( boolean warmstarting, Body[] boxes ) {
+		final Solver pgs = new ProjectedGaussSeidel(200);
+		final Solver counting = new Solver() {
+			public double solve(List<NCPConstraint> constraints, List<Body> bodies, double epsilon) {
+				final double n = pgs.solve(constraints, bodies, epsilon);
+				iterations += n;
+				return n;
+			}
+			public void setMaximumIterations(int n) {}
+		};
+		
+		DefaultScene scene = new DefaultScene(new SAP2(), counting, new DisabledDeactivationPolicy());
+		((DefaultContactConstraintManager)scene.getContactConstraintManager()).setWarmStarting(warmstarting);
+		
+		Body floor = new Body("floor", new Box(200,10,200));
+		floor.setPosition(0,-5,0);
+		floor.setFixed(true);
+		scene.addBody(floor);
+
+		for (int i=0; i<boxes.length; i++) {
+			boxes[i] = new Body("box", new Box(1,1,1));
+			boxes[i].setPosition(0, 0.5+i*1.0, 0);
+			scene.addBody(boxes[i]);
+			scene.addForce(new GravityForce(boxes[i]));
+		}
+		
+		// let the stack settle
+		for (int i=0; i<100; i++)
+			scene.tick();
+		
+		iterations = 0;
+		for (int i=0; i<100; i++)
+			scene.tick();
+		
+		return iterations;
+	}
+	
+	/**
+	 * A warm started resting stack must stay at rest, using fewer solver iterations 
+	 */
+	public void testRestingStack() {
+		Body[] cold = new Body[2], warm = new Body[2];
+		double coldIterations = simulate(false, cold);
+		double warmIterations = simulate(true, warm);
+		
+		assertTrue( warmIterations < coldIterations );
+		
+		for (int i=0; i<2; i++) {
+			assertTrue( Math.abs(warm[i].getPosition().y - cold[i].getPosition().y) < 1e-1 );
+			assertTrue( warm[i].getVelocity().norm() < 1e-1 );
+		}
+	}
+}
@@ -152,6 +152,12 @@ public interface ComponentGraph<T,U,V> {
 	 */
 	public Iterator<T> getFreeNodes();
 	
+	/**
+	 * Get the component that contains the given node
+	 * @return the component of the node, or null if the node is free, a delimiter, or not in the graph
+	 */
+	public V getComponent(T node);
+	
 	/**
 	 * Get all nodes that is connected to the given node. The constructible pairs
 	 * Pair<T> can then be used to obtain the edge type U using getEdge(Pair<T>)
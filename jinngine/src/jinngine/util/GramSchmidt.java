@@ -35,6 +35,47 @@ public class GramSchmidt {
 		return new Matrix3(t1,t2,t3);
 	}
 	
+	/**
+	 * Given the vector v, compute an orthonormal basis t1, t2, t3 with t1 aligned with v. This computes
+	 * the same basis as run(v), but stores it in the given vectors instead of allocating a new matrix. 
+	 * The vector v may be the same instance as t1, but must be distinct from t2 and t3. 
+	 * @param v
+	 * @param t1 first basis vector, aligned with v
+	 * @param t2 second basis vector
+	 * @param t3 third basis vector
+	 */
+	public static void run(Vector3 v, Vector3 t1, Vector3 t2, Vector3 t3) {
+		double l = Math.sqrt(v.x*v.x+v.y*v.y+v.z*v.z);
+		if (l == 0.0) {
+			t1.assign(1,0,0);
+		} else {
+			l = 1./l;
+			t1.assign(v.x*l, v.y*l, v.z*l);
+		}
+		
+		// project t1 out of the x-axis
+		t2.assign(1-t1.x*t1.x, -t1.y*t1.x, -t1.z*t1.x);
+		
+		//if t1 and t2 is linearly dependent, chose another vector, not aligned with t2
+		if (t2.norm() < 1e-10) {
+			t2.assign(-t1.x*t1.z, -t1.y*t1.z, 1-t1.z*t1.z);
+		}
+		
+		normalize(t2);
+		
+		//having two orthogonal vectors we obtain the third by crossing
+		Vector3.crossProduct(t1, t2, t3);
+		normalize(t3);
+	}
+	
+	// normalise v in place, in the same way as Vector3.normalize()
+	private static void normalize(Vector3 v) {
+		double l = Math.sqrt(v.x*v.x+v.y*v.y+v.z*v.z);
+		if ( l == 0.0 ) { v.assign(1,0,0); return; }
+		l=1./l;
+		v.assign(v.x*l, v.y*l, v.z*l);
+	}
+	
 	public static Matrix3 run(Vector3 v1, Vector3 v2) {
 		Vector3 t1 = v1.normalize();
 		Vector3 t2 = new Vector3(v2);
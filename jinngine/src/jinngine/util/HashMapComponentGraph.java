@@ -23,10 +23,11 @@ import java.util.*;
  */
 public class HashMapComponentGraph<T,U,V> implements ComponentGraph<T,U,V> {
 	
-	// wrapping classes
+	// wrapping classes. Each node has a dense integer id, used to key edges
 	private final class Node {
-		public Node(T element) {this.element = element;}
+		public Node(T element, int id) {this.element = element; this.id = id;}
 		public final T element;
+		public final int id;
 		public int color;
 		
 		public final int hashCode() {
@@ -65,19 +66,23 @@ public class HashMapComponentGraph<T,U,V> implements ComponentGraph<T,U,V> {
 //	}
 		
 	
-	// this would ideally be a Set, but the HashSet implementation doesn't allow one to get the
-	// actual reference to a specific object in the set. This means that we can't keep our Node objects
-	// unique, which we would like to do
-	private final LinkedHashMap<Node,Node>               allnodes = new LinkedHashMap<Node,Node>();
+	// nodes are looked up by their elements, so no wrapper objects are needed for lookups. Edge data 
+	// is keyed by the packed ids of the two nodes
+	private final LinkedHashMap<T,Node>          allnodes = new LinkedHashMap<T,Node>();
 	private final LinkedHashSet<Node>		               freenodes = new LinkedHashSet<Node>();//	
 	private final Map<Node,Set<Node>>            edges = new LinkedHashMap<Node,Set<Node>>();
 	private final Map<Node,Component>            component = new LinkedHashMap<Node,Component>();
-	private final Map<Pair<T>,U>                 edgeData = new LinkedHashMap<Pair<T>,U>();//
+	private final LongHashMap<U>                 edgeData = new LongHashMap<U>();//
 	private final Map<Component,Set<Node>>       componentNodes = new LinkedHashMap<Component,Set<Node>>();//
 	private final Map<Component,Set<Pair<T>>>    componentEdges = new LinkedHashMap<Component,Set<Pair<T>>>();//
 
 	
 	private final NodeClassifier<T> nodeClassifier;
+	
+	// node ids released by removed nodes
+	private int[] freeids = new int[16];
+	private int freeidcount = 0;
+	private int nextid = 0;
 
 	//TODO the nodes map is not cleaned up, nodes that are removed still remains in here
 	
@@ -116,33 +121,30 @@ public class HashMapComponentGraph<T,U,V> implements ComponentGraph<T,U,V> {
 	 */
 	@Override
 	public final void addEdge( Pair<T> pair, U edgeelement) { 
+		//get nodes from the node tables ( in this way we can keep data other than T in the Node objects)
+		// if the nodes are not present, we add them to the allnodes and to freenodes
+		Node a = allnodes.get(pair.getFirst());
+		if ( a == null) {
+			a = createNode(pair.getFirst());
+			freenodes.add(a);
+		}
+		Node b = allnodes.get(pair.getSecond());
+		if ( b == null) { 
+			b = createNode(pair.getSecond());
+			freenodes.add(b);
+		}
+		
 		//do not act if edge is already present
-		if (edgeData.containsKey(pair)) {
+		final long key = LongIntHashMap.pair(a.id, b.id);
+		if (edgeData.containsKey(key)) {
 			// update the edge data user reference
-			edgeData.put(pair,edgeelement);
+			edgeData.put(key,edgeelement);
 //			System.out.println("Edge already present");
 			return;
 		}
 		
 		// add the new edge data to the edge
-		edgeData.put(pair,edgeelement);
-		
-		//get nodes from the node tables ( in this way we can keep data other than T in the Node objects)
-		// if the nodes are not present, we add them to the allnodes and to freenodes
-		Node a = new Node(pair.getFirst());
-		if ( allnodes.containsKey(a)) {
-			a = allnodes.get(a); 
-		} else { 
-			allnodes.put(a,a);
-			freenodes.add(a);
-		}
-		Node b = new Node(pair.getSecond());
-		if ( allnodes.containsKey(b)) { 
-			b = allnodes.get(b); 
-		} else { 
-			allnodes.put(b,b);
-			freenodes.add(b);
-		}
+		edgeData.put(key,edgeelement);
 
 		
 		//if b is fixed, interchange a and b ( now, if b is fixed, both a and b are fixed)
@@ -353,30 +355,16 @@ public class HashMapComponentGraph<T,U,V> implements ComponentGraph<T,U,V> {
 	 */
 	@Override
 	public final boolean removeEdge( Pair<T> pair) {
-		//don't act if edge is not  present
-		if (!edgeData.containsKey(pair)) {
-//			System.out.println("Edge NOT present");
-			return false; 
-		} else { 
-			edgeData.remove(pair);
-		}
-		
-		// get the node out of the node adjacency hash map ( at this point we know that the nodes must
-		// exist, because the edge exists 
-		Node a = new Node(pair.getFirst());
-		if ( allnodes.containsKey(a)) { 
-			a = allnodes.get(a); 
-		} else { 
-			// not possible
-			throw new IllegalStateException("ComponentGraph.removeEdge(): Node did not have an adjacency entry. ComponentGraph corrupted.");
+		// get the nodes out of the node hash map. The edge can not be present if one of the nodes is missing
+		Node a = allnodes.get(pair.getFirst());
+		Node b = allnodes.get(pair.getSecond());
+		if (a == null || b == null) {
+			return false;
 		}
 		
-		Node b = new Node(pair.getSecond());
-		if ( allnodes.containsKey(b)) { 
-			b = allnodes.get(b); 
-		} else { 
-			// this is not possible
-			throw new IllegalStateException("ComponentGraph.removeEdge(): Node did not have an adjacency entry. ComponentGraph corrupted.");
+		//don't act if edge is not  present
+		if (edgeData.remove(LongIntHashMap.pair(a.id, b.id)) == null) {
+			return false; 
 		}
 
 		//if b is fixed, interchange a and b ( now, if b is fixed, both a and b are fixed)
@@ -708,14 +696,22 @@ public class HashMapComponentGraph<T,U,V> implements ComponentGraph<T,U,V> {
 	
 	@Override
 	public final U getEdge(Pair<T> pair) {
-		if( edgeData.containsKey(pair)) {
-			return edgeData.get(pair);
+		final Node a = allnodes.get(pair.getFirst());
+		final Node b = allnodes.get(pair.getSecond());
+		if( a != null && b != null) {
+			return edgeData.get(LongIntHashMap.pair(a.id, b.id));
 		} else {
 			return null;
 		}
 	}
 
 	
+	@Override
+	public final V getComponent(T node) {
+		final Component c = component.get(allnodes.get(node));
+		return c != null? c.element : null;
+	}
+	
 	@Override
 	public final Iterator<V> getComponents() {
 		// wrapping iterator
@@ -758,7 +754,7 @@ public class HashMapComponentGraph<T,U,V> implements ComponentGraph<T,U,V> {
 				if (i.hasNext()) {
 					Pair<T> p = i.next();
 					//return the edge data
-					return edgeData.get(p);
+					return getEdge(p);
 				}
 				//no element available
 				return null;
@@ -859,7 +855,7 @@ public class HashMapComponentGraph<T,U,V> implements ComponentGraph<T,U,V> {
 	public Iterator<T> getConnectedNodes(final T node) {
 		// create a wrap iterator
 		return new Iterator<T>() {
-			Iterator<Node> i = edges.get(new Node(node)).iterator();
+			Iterator<Node> i = edges.get(allnodes.get(node)).iterator();
 			@Override
 			public boolean hasNext() {
 				return i.hasNext();
@@ -876,25 +872,25 @@ public class HashMapComponentGraph<T,U,V> implements ComponentGraph<T,U,V> {
 	
 	public void addNode(T nodeelement) {
 		// check if we know about this node
-		Node node = new Node(nodeelement);
-		
-		if (allnodes.containsKey(node) ) {
+		if (allnodes.containsKey(nodeelement) ) {
 			// ignore. Maybe give warning?
 			System.out.println("HashMapComponentGraph.addNode(): Node is already in graph");
 		} else {
 			// add to both allnodes and freenodes
-			allnodes.put(node,node);
-			freenodes.add(node);
+			freenodes.add(createNode(nodeelement));
 		}
 	}
 	
 	public void removeNode(T nodeelement) {
-		Node node = new Node(nodeelement);
+		Node node = allnodes.get(nodeelement);
+		if (node == null)
+			return;
+		
 		// check if node is in freenodes. If so, we don't have to do anything but removing the node
 		// from both freenodes and allnodes
 		if ( freenodes.contains(node)) {
 			freenodes.remove(node);
-			allnodes.remove(node);
+			deleteNode(node);
 			return;
 		}
 		
@@ -916,7 +912,7 @@ public class HashMapComponentGraph<T,U,V> implements ComponentGraph<T,U,V> {
 		// we can now remove the node
 		if ( freenodes.contains(node)) {
 			freenodes.remove(node);
-			allnodes.remove(node);
+			deleteNode(node);
 			return;
 		} else {
 			System.out.println("HashMapComponentGraph.removeNode(): Node was not free after removing its edges");			
@@ -953,12 +949,31 @@ public class HashMapComponentGraph<T,U,V> implements ComponentGraph<T,U,V> {
 		};
 	}
 
+	// create a node with a new id, and add it to allnodes
+	private final Node createNode( T element ) {
+		final Node node = new Node(element, freeidcount > 0? freeids[--freeidcount] : nextid++);
+		allnodes.put(element, node);
+		return node;
+	}
+	
+	// remove a node from allnodes, and release its id
+	private final void deleteNode( Node node ) {
+		allnodes.remove(node.element);
+		if (freeidcount == freeids.length) {
+			final int[] ids = new int[2*freeids.length];
+			System.arraycopy(freeids, 0, ids, 0, freeidcount);
+			freeids = ids;
+		}
+		freeids[freeidcount++] = node.id;
+	}
+	
 	@Override
-	public Iterator<U> getConnectedEdges(final T node) {
-		if ( edges.containsKey(new Node(node))) {
+	public Iterator<U> getConnectedEdges(final T element) {
+		final Node node = allnodes.get(element);
+		if ( node != null && edges.containsKey(node)) {
 			// create a wrap iterator
 			return new Iterator<U>() {
-				Set<Node> outEdges = edges.get(new Node(node));
+				Set<Node> outEdges = edges.get(node);
 				Iterator<Node> i = outEdges.iterator();
 
 				@Override
@@ -968,7 +983,7 @@ public class HashMapComponentGraph<T,U,V> implements ComponentGraph<T,U,V> {
 				@Override
 				public U next() {
 					// create a edge pair from the node types, and return the edge data
-					return  edgeData.get(new Pair<T>(node,i.next().element));
+					return  edgeData.get(LongIntHashMap.pair(node.id, i.next().id));
 				}
 				@Override
 				public void remove() {
@@ -0,0 +1,213 @@
+/**
+ * Copyright (c) 2008-2010  Morten Silcowitz.
+ *
+ * This file is part of the Jinngine physics library
+ *
+ * Jinngine is published under the GPL license, available
+ * at http://www.gnu.org/copyleft/gpl.html.
+ */
+package jinngine.util;
+
+/**
+ * Open addressing hash map from primitive long keys to object values. This is the object valued variant of
+ * {@link LongIntHashMap}, using the same probing and removal scheme, so lookups allocate no key objects. 
+ * Keys are typically packed pairs of integer ids, see {@link LongIntHashMap#pair(int, int)}. The key 
+ * Long.MIN_VALUE is reserved, and null values cannot be stored. Entries can be iterated using capacity(), 
+ * isUsed(), keyAt() and valueAt(), but the map must not be modified during such an iteration.
+ */
+public final class LongHashMap<V> {
+	private static final long EMPTY = LongIntHashMap.EMPTY;
+
+	private long[] keys;
+	private Object[] values;
+	private int size = 0;
+	private int mask;
+
+	/**
+	 * Create a new map with a default initial capacity
+	 */
+	public LongHashMap() {
+		this(16);
+	}
+
+	/**
+	 * Create a new map that can hold the given number of entries without growing
+	 * @param expected expected number of entries
+	 */
+	public LongHashMap( int expected ) {
+		int capacity = 8;
+		while (capacity < 2*expected)
+			capacity <<= 1;
+		allocate(capacity);
+	}
+
+	/**
+	 * Return the value associated with the given key, or null if the key is not present
+	 */
+	@SuppressWarnings("unchecked")
+	public final V get( long key ) {
+		int i = index(key);
+		long k;
+		while ((k = keys[i]) != EMPTY) {
+			if (k == key)
+				return (V)values[i];
+			i = (i+1) & mask;
+		}
+		return null;
+	}
+
+	/**
+	 * Return true if the given key is present in this map
+	 */
+	public final boolean containsKey( long key ) {
+		int i = index(key);
+		long k;
+		while ((k = keys[i]) != EMPTY) {
+			if (k == key)
+				return true;
+			i = (i+1) & mask;
+		}
+		return false;
+	}
+
+	/**
+	 * Associate the value with the given key, replacing any existing value
+	 */
+	public final void put( long key, V value ) {
+		if (key == EMPTY)
+			throw new IllegalArgumentException("LongHashMap: reserved key");
+		if (value == null)
+			throw new IllegalArgumentException("LongHashMap: null value");
+
+		int i = index(key);
+		long k;
+		while ((k = keys[i]) != EMPTY) {
+			if (k == key) {
+				values[i] = value;
+				return;
+			}
+			i = (i+1) & mask;
+		}
+
+		keys[i] = key;
+		values[i] = value;
+		size++;
+
+		// keep load factor below one half
+		if (2*size > keys.length)
+			rehash(2*keys.length);
+	}
+
+	/**
+	 * Remove the given key from the map
+	 * @return the value associated with the key, or null if the key was not present
+	 */
+	@SuppressWarnings("unchecked")
+	public final V remove( long key ) {
+		int i = index(key);
+		long k;
+		while ((k = keys[i]) != EMPTY) {
+			if (k == key) {
+				final V value = (V)values[i];
+				shift(i);
+				size--;
+				return value;
+			}
+			i = (i+1) & mask;
+		}
+		return null;
+	}
+
+	/**
+	 * Remove all entries
+	 */
+	public final void clear() {
+		for (int i=0; i<keys.length; i++) {
+			keys[i] = EMPTY;
+			values[i] = null;
+		}
+		size = 0;
+	}
+
+	/**
+	 * Number of entries in this map
+	 */
+	public final int size() {
+		return size;
+	}
+
+	/**
+	 * Number of slots in the underlying table, for iteration
+	 */
+	public final int capacity() {
+		return keys.length;
+	}
+
+	/**
+	 * Return true if the given slot holds an entry
+	 */
+	public final boolean isUsed( int slot ) {
+		return keys[slot] != EMPTY;
+	}
+
+	/**
+	 * Return the key stored in the given slot
+	 */
+	public final long keyAt( int slot ) {
+		return keys[slot];
+	}
+
+	/**
+	 * Return the value stored in the given slot
+	 */
+	@SuppressWarnings("unchecked")
+	public final V valueAt( int slot ) {
+		return (V)values[slot];
+	}
+
+	// remove the entry in slot i, and shift following entries of the probe sequence back
+	private final void shift( int i ) {
+		int j = i;
+		while (true) {
+			j = (j+1) & mask;
+			final long k = keys[j];
+			if (k == EMPTY)
+				break;
+
+			// move the entry at j into i, if its home slot is not cyclically in (i,j]
+			final int home = index(k);
+			if ( i <= j ? (home <= i || home > j) : (home <= i && home > j) ) {
+				keys[i] = k;
+				values[i] = values[j];
+				i = j;
+			}
+		}
+		keys[i] = EMPTY;
+		values[i] = null;
+	}
+
+	private final int index( long key ) {
+		final long h = key * 0x9E3779B97F4A7C15L;
+		return (int)(h ^ (h >>> 32)) & mask;
+	}
+
+	private final void allocate( int capacity ) {
+		keys = new long[capacity];
+		values = new Object[capacity];
+		mask = capacity-1;
+		for (int i=0; i<capacity; i++)
+			keys[i] = EMPTY;
+	}
+
+	@SuppressWarnings("unchecked")
+	private final void rehash( int capacity ) {
+		final long[] oldkeys = keys;
+		final Object[] oldvalues = values;
+		allocate(capacity);
+		size = 0;
+		for (int i=0; i<oldkeys.length; i++) {
+			if (oldkeys[i] != EMPTY)
+				put(oldkeys[i], (V)oldvalues[i]);
+		}
+	}
+}
@@ -0,0 +1,250 @@
+/**
+ * Copyright (c) 2008-2010  Morten Silcowitz.
+ *
+ * This file is part of the Jinngine physics library
+ *
+ * Jinngine is published under the GPL license, available
+ * at http://www.gnu.org/copyleft/gpl.html.
+ */
+package jinngine.util;
+
+/**
+ * Open addressing hash map from primitive long keys to primitive int values. Collisions are resolved by
+ * linear probing, and removal is done by backward shifting, so no tombstones are left in the table. No
+ * objects are allocated, except when the table grows. The key Long.MIN_VALUE is reserved, and cannot be
+ * used as a key. Entries can be iterated using capacity(), isUsed(), keyAt() and valueAt(), but the map
+ * must not be modified during such an iteration.
+ */
+public final class LongIntHashMap {
+	/** Reserved key value marking an empty slot */
+	public static final long EMPTY = Long.MIN_VALUE;
+
+	private long[] keys;
+	private int[] values;
+	private int size = 0;
+	private int mask;
+
+	/**
+	 * Create a new map with a default initial capacity
+	 */
+	public LongIntHashMap() {
+		this(16);
+	}
+
+	/**
+	 * Create a new map that can hold the given number of entries without growing
+	 * @param expected expected number of entries
+	 */
+	public LongIntHashMap( int expected ) {
+		int capacity = 8;
+		while (capacity < 2*expected)
+			capacity <<= 1;
+		allocate(capacity);
+	}
+
+	/**
+	 * Pack two non-negative integers into a long key. The order of a and b is significant
+	 */
+	public static long pack( int a, int b ) {
+		return ((long)a << 32) | (b & 0xffffffffL);
+	}
+
+	/**
+	 * Pack an unordered pair of non-negative integers into a long key, such that pair(a,b) = pair(b,a)
+	 */
+	public static long pair( int a, int b ) {
+		return a<b? pack(a,b) : pack(b,a);
+	}
+
+	/**
+	 * Return the first integer of a packed key
+	 */
+	public static int first( long key ) {
+		return (int)(key >>> 32);
+	}
+
+	/**
+	 * Return the second integer of a packed key
+	 */
+	public static int second( long key ) {
+		return (int)key;
+	}
+
+	/**
+	 * Return the value associated with the given key, or defaultValue if the key is not present
+	 */
+	public final int get( long key, int defaultValue ) {
+		int i = index(key);
+		long k;
+		while ((k = keys[i]) != EMPTY) {
+			if (k == key)
+				return values[i];
+			i = (i+1) & mask;
+		}
+		return defaultValue;
+	}
+
+	/**
+	 * Return true if the given key is present in this map
+	 */
+	public final boolean containsKey( long key ) {
+		int i = index(key);
+		long k;
+		while ((k = keys[i]) != EMPTY) {
+			if (k == key)
+				return true;
+			i = (i+1) & mask;
+		}
+		return false;
+	}
+
+	/**
+	 * Associate the value with the given key, replacing any existing value
+	 */
+	public final void put( long key, int value ) {
+		if (key == EMPTY)
+			throw new IllegalArgumentException("LongIntHashMap: reserved key");
+
+		int i = index(key);
+		long k;
+		while ((k = keys[i]) != EMPTY) {
+			if (k == key) {
+				values[i] = value;
+				return;
+			}
+			i = (i+1) & mask;
+		}
+
+		keys[i] = key;
+		values[i] = value;
+		size++;
+
+		// keep load factor below one half
+		if (2*size > keys.length)
+			rehash(2*keys.length);
+	}
+
+	/**
+	 * Add the given delta to the value of the given key. If the key is not present, it is inserted
+	 * with the value delta.
+	 * @return the new value
+	 */
+	public final int add( long key, int delta ) {
+		int i = index(key);
+		long k;
+		while ((k = keys[i]) != EMPTY) {
+			if (k == key)
+				return values[i] += delta;
+			i = (i+1) & mask;
+		}
+		put(key, delta);
+		return delta;
+	}
+
+	/**
+	 * Remove the given key from the map
+	 * @return the value associated with the key, or defaultValue if the key was not present
+	 */
+	public final int remove( long key, int defaultValue ) {
+		int i = index(key);
+		long k;
+		while ((k = keys[i]) != EMPTY) {
+			if (k == key) {
+				final int value = values[i];
+				shift(i);
+				size--;
+				return value;
+			}
+			i = (i+1) & mask;
+		}
+		return defaultValue;
+	}
+
+	/**
+	 * Remove all entries
+	 */
+	public final void clear() {
+		for (int i=0; i<keys.length; i++)
+			keys[i] = EMPTY;
+		size = 0;
+	}
+
+	/**
+	 * Number of entries in this map
+	 */
+	public final int size() {
+		return size;
+	}
+
+	/**
+	 * Number of slots in the underlying table, for iteration
+	 */
+	public final int capacity() {
+		return keys.length;
+	}
+
+	/**
+	 * Return true if the given slot holds an entry
+	 */
+	public final boolean isUsed( int slot ) {
+		return keys[slot] != EMPTY;
+	}
+
+	/**
+	 * Return the key stored in the given slot
+	 */
+	public final long keyAt( int slot ) {
+		return keys[slot];
+	}
+
+	/**
+	 * Return the value stored in the given slot
+	 */
+	public final int valueAt( int slot ) {
+		return values[slot];
+	}
+
+	// remove the entry in slot i, and shift following entries of the probe sequence back
+	private final void shift( int i ) {
+		int j = i;
+		while (true) {
+			j = (j+1) & mask;
+			final long k = keys[j];
+			if (k == EMPTY)
+				break;
+
+			// move the entry at j into i, if its home slot is not cyclically in (i,j]
+			final int home = index(k);
+			if ( i <= j ? (home <= i || home > j) : (home <= i && home > j) ) {
+				keys[i] = k;
+				values[i] = values[j];
+				i = j;
+			}
+		}
+		keys[i] = EMPTY;
+	}
+
+	private final int index( long key ) {
+		final long h = key * 0x9E3779B97F4A7C15L;
+		return (int)(h ^ (h >>> 32)) & mask;
+	}
+
+	private final void allocate( int capacity ) {
+		keys = new long[capacity];
+		values = new int[capacity];
+		mask = capacity-1;
+		for (int i=0; i<capacity; i++)
+			keys[i] = EMPTY;
+	}
+
+	private final void rehash( int capacity ) {
+		final long[] oldkeys = keys;
+		final int[] oldvalues = values;
+		allocate(capacity);
+		size = 0;
+		for (int i=0; i<oldkeys.length; i++) {
+			if (oldkeys[i] != EMPTY)
+				put(oldkeys[i], oldvalues[i]);
+		}
+	}
+}